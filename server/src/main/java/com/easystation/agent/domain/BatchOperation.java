@@ -50,6 +50,9 @@ public class BatchOperation extends PanacheEntityBase {
     @Column(name = "failed_count")
     public Integer failedCount = 0;
 
+    @Column(name = "running_count")
+    public Integer runningCount = 0;
+
     @OneToMany(mappedBy = "batchOperation", cascade = CascadeType.ALL)
     public List<BatchOperationItem> items = new ArrayList<>();
 
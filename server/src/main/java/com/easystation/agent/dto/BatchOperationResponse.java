@@ -17,5 +17,6 @@ public record BatchOperationResponse(
     LocalDateTime completedAt,
     Integer totalItems,
     Integer successCount,
-    Integer failedCount
+    Integer failedCount,
+    Integer runningCount
 ) {}
\ No newline at end of file
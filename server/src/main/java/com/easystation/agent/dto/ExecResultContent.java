@@ -0,0 +1,11 @@
+package com.easystation.agent.dto;
+
+/**
+ * Content of an EXEC_RESULT message reported by an agent.
+ */
+public record ExecResultContent(
+    String status,
+    Integer exitCode,
+    Long durationMs,
+    String output
+) {}
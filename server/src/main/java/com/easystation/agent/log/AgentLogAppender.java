@@ -0,0 +1,261 @@
+package com.easystation.agent.log;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.ShutdownEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous appender in front of {@link AgentLogStore}.
+ * <p>
+ * Producers (WebSocket callback threads) only enqueue into a bounded per-agent queue and never touch
+ * the filesystem. A single writer thread drains the queues in batches into the store, which keeps the
+ * active segment channel open, and fsyncs dirty agents every {@code agent.log.async.fsync-interval-ms}.
+ * When an agent's queue is full the line is dropped and counted, so a chatty agent cannot stall
+ * heartbeat handling for other hosts. Queues are created on the first line and removed once a
+ * disconnected agent's queue has been drained.
+ */
+@ApplicationScoped
+public class AgentLogAppender {
+
+    @Inject
+    AgentLogStore logStore;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "agent.log.async.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "agent.log.async.queue-capacity", defaultValue = "10000")
+    int queueCapacity;
+
+    @ConfigProperty(name = "agent.log.async.batch-size", defaultValue = "512")
+    int batchSize;
+
+    @ConfigProperty(name = "agent.log.async.fsync-interval-ms", defaultValue = "1000")
+    long fsyncIntervalMs;
+
+    private final Map<UUID, BlockingQueue<String>> queues = new ConcurrentHashMap<>();
+    private final BlockingQueue<UUID> ready = new LinkedBlockingQueue<>();
+    private final Set<UUID> scheduled = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> released = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    private Counter writtenCounter;
+    private Counter droppedCounter;
+    private Counter failedCounter;
+    private DistributionSummary batchSummary;
+    private Timer fsyncTimer;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("esa.agent.log.appender.queued", queued, AtomicInteger::get)
+                .description("Log lines waiting for the writer thread")
+                .register(registry);
+        writtenCounter = Counter.builder("esa.agent.log.appender.written.total")
+                .description("Log lines written by the writer thread")
+                .register(registry);
+        droppedCounter = Counter.builder("esa.agent.log.appender.dropped.total")
+                .description("Log lines dropped because the agent queue was full")
+                .register(registry);
+        failedCounter = Counter.builder("esa.agent.log.appender.failed.total")
+                .description("Log lines lost because of write errors")
+                .register(registry);
+        batchSummary = DistributionSummary.builder("esa.agent.log.appender.batch.size")
+                .description("Lines written per batch")
+                .register(registry);
+        fsyncTimer = Timer.builder("esa.agent.log.appender.fsync")
+                .description("Time spent forcing log segments to disk")
+                .register(registry);
+
+        if (enabled) {
+            running = true;
+            writer = new Thread(this::runWriter, "agent-log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Enqueue a formatted line. Never blocks.
+     *
+     * @return false if the line was dropped
+     */
+    public boolean append(UUID agentId, String line) {
+        if (!enabled) {
+            try {
+                logStore.append(agentId, List.of(line));
+                writtenCounter.increment();
+                return true;
+            } catch (IOException e) {
+                failedCounter.increment();
+                Log.errorf(e, "Failed to write log for agent %s", agentId);
+                return false;
+            }
+        }
+
+        boolean[] accepted = {false};
+        // Offer under the map lock so a released queue cannot be removed while a line is added to it
+        queues.compute(agentId, (id, queue) -> {
+            if (queue == null) {
+                queue = new LinkedBlockingQueue<>(queueCapacity);
+                released.remove(id);
+            }
+            accepted[0] = queue.offer(line);
+            return queue;
+        });
+        if (!accepted[0]) {
+            droppedCounter.increment();
+            return false;
+        }
+        queued.incrementAndGet();
+        if (scheduled.add(agentId)) {
+            ready.offer(agentId);
+        }
+        return true;
+    }
+
+    /**
+     * Called when the agent disconnects; its queue is removed as soon as the writer has drained it.
+     */
+    public void release(UUID agentId) {
+        released.add(agentId);
+        removeIfDrained(agentId);
+    }
+
+    private void removeIfDrained(UUID agentId) {
+        if (!released.contains(agentId)) {
+            return;
+        }
+        if (queues.computeIfPresent(agentId, (id, queue) -> queue.isEmpty() ? null : queue) == null) {
+            released.remove(agentId);
+        }
+    }
+
+    boolean hasQueue(UUID agentId) {
+        return queues.containsKey(agentId);
+    }
+
+    private void runWriter() {
+        Set<UUID> dirty = new HashSet<>();
+        List<String> batch = new ArrayList<>(batchSize);
+        long lastSync = System.nanoTime();
+
+        while (running || !ready.isEmpty()) {
+            try {
+                UUID agentId = ready.poll(fsyncIntervalMs, TimeUnit.MILLISECONDS);
+                if (agentId != null) {
+                    drain(agentId, batch);
+                    dirty.add(agentId);
+                }
+                if (System.nanoTime() - lastSync >= TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs)) {
+                    sync(dirty);
+                    lastSync = System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                Log.errorf(e, "Agent log writer iteration failed");
+            }
+        }
+        // Final drain on shutdown
+        UUID agentId;
+        while ((agentId = ready.poll()) != null) {
+            drain(agentId, batch);
+            dirty.add(agentId);
+        }
+        sync(dirty);
+    }
+
+    private void drain(UUID agentId, List<String> batch) {
+        BlockingQueue<String> queue = queues.get(agentId);
+        if (queue == null) {
+            scheduled.remove(agentId);
+            return;
+        }
+        batch.clear();
+        queue.drainTo(batch, batchSize);
+        // Clear the flag before re-checking so a concurrent producer cannot be lost
+        scheduled.remove(agentId);
+        if (!queue.isEmpty() && scheduled.add(agentId)) {
+            ready.offer(agentId);
+        }
+        removeIfDrained(agentId);
+        if (batch.isEmpty()) {
+            return;
+        }
+        queued.addAndGet(-batch.size());
+        try {
+            logStore.append(agentId, batch);
+            writtenCounter.increment(batch.size());
+            batchSummary.record(batch.size());
+        } catch (IOException e) {
+            failedCounter.increment(batch.size());
+            Log.errorf(e, "Failed to write %d log lines for agent %s", batch.size(), agentId);
+        }
+    }
+
+    private void sync(Set<UUID> dirty) {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        for (UUID agentId : dirty) {
+            try {
+                logStore.force(agentId);
+            } catch (IOException e) {
+                Log.warnf("Failed to fsync log for agent %s: %s", agentId, e.getMessage());
+            }
+        }
+        dirty.clear();
+        fsyncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Drains on {@link ShutdownEvent}, which is fired before any bean is destroyed, so the queued
+     * lines reach {@link AgentLogStore} before its {@code closeAll()} runs.
+     */
+    void onShutdown(@Observes ShutdownEvent event) {
+        shutdown();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // No interrupt: it would close the FileChannel the writer is using
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
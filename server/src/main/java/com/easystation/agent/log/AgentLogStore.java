@@ -0,0 +1,250 @@
+package com.easystation.agent.log;
+
+import io.quarkus.logging.Log;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Segmented, indexed store for per-agent log files.
+ * <p>
+ * Layout: {@code work/logs/<agentId>/<sequence>.log} plus a sparse {@code .idx} per segment.
+ * The active segment rolls once it exceeds {@code agent.log.segment-max-bytes}. Tail reads and
+ * time-range scans seek through the index, and level counters are maintained on append, so
+ * reads cost time proportional to the result instead of the file size.
+ * A legacy single file {@code work/logs/<agentId>.log} is adopted as the first segment.
+ */
+@ApplicationScoped
+public class AgentLogStore {
+
+    @ConfigProperty(name = "agent.log.dir", defaultValue = "work/logs")
+    String logDir;
+
+    @ConfigProperty(name = "agent.log.segment-max-bytes", defaultValue = "67108864")
+    long segmentMaxBytes;
+
+    @ConfigProperty(name = "agent.log.index-interval", defaultValue = "256")
+    int indexInterval;
+
+    private final Map<UUID, AgentLog> logs = new ConcurrentHashMap<>();
+
+    /**
+     * Segments of one agent, oldest first. Appends are serialized on the instance.
+     */
+    final class AgentLog {
+        final Path dir;
+        final List<LogSegment> segments = new CopyOnWriteArrayList<>();
+
+        AgentLog(Path dir) {
+            this.dir = dir;
+        }
+
+        LogSegment active() {
+            return segments.get(segments.size() - 1);
+        }
+
+        synchronized void append(List<String> lines) throws IOException {
+            LogSegment active = active();
+            if (active.sizeBytes() >= segmentMaxBytes) {
+                active.close();
+                active = LogSegment.open(dir, active.sequence + 1, active.firstLine + active.lineCount(), indexInterval);
+                segments.add(active);
+            }
+            active.append(lines);
+        }
+    }
+
+    public void append(UUID agentId, List<String> lines) throws IOException {
+        if (lines.isEmpty()) {
+            return;
+        }
+        AgentLog log = open(agentId, true);
+        log.append(lines);
+    }
+
+    /**
+     * Flush the active segment of an agent to disk.
+     */
+    public void force(UUID agentId) throws IOException {
+        AgentLog log = logs.get(agentId);
+        if (log != null) {
+            log.active().force();
+        }
+    }
+
+    /**
+     * Last {@code limit} lines, oldest first.
+     */
+    public List<String> tail(UUID agentId, int limit) throws IOException {
+        AgentLog log = open(agentId, false);
+        if (log == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Deque<List<String>> chunks = new ArrayDeque<>();
+        int remaining = limit;
+        List<LogSegment> segments = log.segments;
+        for (int i = segments.size() - 1; i >= 0 && remaining > 0; i--) {
+            LogSegment segment = segments.get(i);
+            int count = segment.lineCount();
+            int from = Math.max(0, count - remaining);
+            int wanted = count - from;
+            List<String> chunk = new ArrayList<>(wanted);
+            segment.read(from, (line, text) -> chunk.add(text) && chunk.size() < wanted);
+            chunks.addFirst(chunk);
+            remaining -= chunk.size();
+        }
+        List<String> result = new ArrayList<>(limit - remaining);
+        chunks.forEach(result::addAll);
+        return result;
+    }
+
+    /**
+     * Scan lines in order, starting at the first line that may be at or after {@code start}.
+     * Segments entirely outside [start, end] are skipped; lines inside the remaining segments are
+     * passed to the visitor unfiltered, which may stop the scan early.
+     */
+    public void scan(UUID agentId, LocalDateTime start, LocalDateTime end, LogLines.LineVisitor visitor) throws IOException {
+        AgentLog log = open(agentId, false);
+        if (log == null) {
+            return;
+        }
+        for (LogSegment segment : log.segments) {
+            if (!segment.mayOverlap(start, end)) {
+                continue;
+            }
+            if (!segment.read(segment.seekTime(start), visitor)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Per-level line counts in {@link LogLines#LEVELS} order.
+     */
+    public long[] levelCounts(UUID agentId) throws IOException {
+        long[] totals = new long[LogLines.LEVELS.length];
+        AgentLog log = open(agentId, false);
+        if (log == null) {
+            return totals;
+        }
+        for (LogSegment segment : log.segments) {
+            int[] counts = segment.levelCounts();
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += counts[i];
+            }
+        }
+        return totals;
+    }
+
+    @PreDestroy
+    void closeAll() {
+        logs.values().forEach(log -> {
+            try {
+                log.active().force();
+                log.active().close();
+            } catch (IOException e) {
+                Log.warnf("Failed to close log segment in %s: %s", log.dir, e.getMessage());
+            }
+        });
+        logs.clear();
+    }
+
+    private AgentLog open(UUID agentId, boolean create) throws IOException {
+        AgentLog log = logs.get(agentId);
+        if (log != null) {
+            return log;
+        }
+        Path dir = Paths.get(logDir, agentId.toString());
+        Path legacy = Paths.get(logDir, agentId + ".log");
+        if (!create && !Files.isDirectory(dir) && !Files.exists(legacy)) {
+            return null;
+        }
+        try {
+            return logs.computeIfAbsent(agentId, id -> {
+                try {
+                    return load(dir, legacy);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private AgentLog load(Path dir, Path legacy) throws IOException {
+        Files.createDirectories(dir);
+        if (Files.exists(legacy)) {
+            Path first = dir.resolve(LogSegment.fileName(0) + ".log");
+            if (!Files.exists(first)) {
+                terminateLastLine(legacy);
+                Files.move(legacy, first, StandardCopyOption.ATOMIC_MOVE);
+                Log.infof("Adopted legacy log file %s as first segment", legacy);
+            }
+        }
+
+        List<Long> sequences = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.endsWith(".log"))
+                    .forEach(name -> {
+                        try {
+                            sequences.add(Long.parseLong(name.substring(0, name.length() - 4)));
+                        } catch (NumberFormatException ignored) {
+                            // not a segment
+                        }
+                    });
+        }
+        Collections.sort(sequences);
+        if (sequences.isEmpty()) {
+            sequences.add(0L);
+        }
+
+        AgentLog log = new AgentLog(dir);
+        long nextLine = 1;
+        for (long sequence : sequences) {
+            LogSegment segment = LogSegment.open(dir, sequence, nextLine, indexInterval);
+            log.segments.add(segment);
+            nextLine += segment.lineCount();
+        }
+        return log;
+    }
+
+    /**
+     * Legacy files may end without a newline; without one the next append would continue that line.
+     */
+    private static void terminateLastLine(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size == 0) {
+                return;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, size - 1);
+            if (last.get(0) != '\n') {
+                channel.write(ByteBuffer.wrap(new byte[] {'\n'}), size);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.easystation.agent.log;
+
+import com.easystation.agent.dto.AgentLogRecord.LogEntry;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parsing helpers for agent log lines ({@code yyyy-MM-dd HH:mm:ss LEVEL message}).
+ */
+public final class LogLines {
+
+    public static final DateTimeFormatter DEFAULT_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Levels in counter order.
+     */
+    public static final String[] LEVELS = {"DEBUG", "INFO", "WARN", "ERROR"};
+
+    private static final int INFO = 1;
+    private static final Pattern LOG_LINE_PATTERN = Pattern.compile("^(\\d{4}-\\d{2}-\\d{2}\\s+\\d{2}:\\d{2}:\\d{2})(?:\\.\\d+)?\\s+(DEBUG|INFO|WARN|ERROR)\\s+(.+)$");
+
+    private LogLines() {
+    }
+
+    /**
+     * Callback for sequential line reads.
+     */
+    @FunctionalInterface
+    public interface LineVisitor {
+        /**
+         * @return false to stop reading
+         */
+        boolean visit(long lineNumber, String line);
+    }
+
+    public record Parsed(int levelIndex, LocalDateTime timestamp, String message) {
+        public String level() {
+            return LEVELS[levelIndex];
+        }
+
+        public LogEntry toEntry(long lineNumber) {
+            return new LogEntry((int) lineNumber, timestamp, level(), message);
+        }
+    }
+
+    /**
+     * Parse a line; lines that do not match the format are treated as INFO without timestamp.
+     *
+     * @return null for empty lines
+     */
+    public static Parsed parse(String line) {
+        if (line == null || line.isEmpty()) return null;
+
+        Matcher matcher = LOG_LINE_PATTERN.matcher(line);
+        if (matcher.matches()) {
+            try {
+                LocalDateTime dateTime = LocalDateTime.parse(matcher.group(1), DEFAULT_FORMATTER);
+                return new Parsed(levelIndex(matcher.group(2)), dateTime, matcher.group(3));
+            } catch (Exception e) {
+                return new Parsed(INFO, null, line);
+            }
+        }
+        return new Parsed(INFO, null, line);
+    }
+
+    public static int levelIndex(String level) {
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i].equalsIgnoreCase(level)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,402 @@
+package com.easystation.agent.log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One rolling segment of an agent log together with its sparse index.
+ * <p>
+ * The index file is a sequence of fixed-size records written every {@code indexInterval} lines:
+ * {@code (int line, long byteOffset, long maxEpochSecondBefore, int[4] levelCountsBefore)}.
+ * It lets readers seek to a line or a point in time without scanning the segment from the start,
+ * and lets the level counters be restored on startup by scanning only the lines after the last record.
+ */
+final class LogSegment {
+
+    static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final int RECORD_BYTES = 4 + 8 + 8 + 4 * LogLines.LEVELS.length;
+
+    record IndexEntry(int line, long offset, long maxEpochBefore, int[] levelCounts) {
+    }
+
+    final long sequence;
+    final long firstLine;
+    final Path logPath;
+    final Path indexPath;
+
+    private final int indexInterval;
+    private final List<IndexEntry> index = new ArrayList<>();
+    private final int[] levelCounts = new int[LogLines.LEVELS.length];
+    private int lineCount;
+    private long sizeBytes;
+    private long minEpoch = Long.MAX_VALUE;
+    private long maxEpoch = NO_TIME;
+
+    private FileChannel logChannel;
+    private FileChannel indexChannel;
+
+    private LogSegment(Path dir, long sequence, long firstLine, int indexInterval) {
+        this.sequence = sequence;
+        this.firstLine = firstLine;
+        this.indexInterval = indexInterval;
+        this.logPath = dir.resolve(fileName(sequence) + ".log");
+        this.indexPath = dir.resolve(fileName(sequence) + ".idx");
+    }
+
+    static String fileName(long sequence) {
+        return String.format("%020d", sequence);
+    }
+
+    /**
+     * Open (or create) a segment, restoring its index and counters.
+     * Only the lines after the last persisted index record are rescanned.
+     */
+    static LogSegment open(Path dir, long sequence, long firstLine, int indexInterval) throws IOException {
+        LogSegment segment = new LogSegment(dir, sequence, firstLine, indexInterval);
+        segment.recover();
+        return segment;
+    }
+
+    private void recover() throws IOException {
+        long fileSize = Files.exists(logPath) ? Files.size(logPath) : 0;
+        List<IndexEntry> persisted = readIndexFile();
+        if (!persisted.isEmpty() && persisted.get(persisted.size() - 1).offset() > fileSize) {
+            // Log was truncated underneath the index; rebuild from scratch
+            persisted.clear();
+        }
+        rewriteIndexFile(persisted);
+
+        long scanFrom = 0;
+        if (!persisted.isEmpty()) {
+            IndexEntry last = persisted.remove(persisted.size() - 1);
+            index.addAll(persisted);
+            lineCount = last.line();
+            sizeBytes = last.offset();
+            maxEpoch = last.maxEpochBefore();
+            System.arraycopy(last.levelCounts(), 0, levelCounts, 0, levelCounts.length);
+            scanFrom = last.offset();
+            minEpoch = readFirstEpoch();
+            // The last record is re-emitted by account() when its line is scanned again
+            truncateIndexFile(persisted.size());
+        }
+
+        if (scanFrom < fileSize) {
+            try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                channel.position(scanFrom);
+                LineReader reader = new LineReader(Channels.newInputStream(channel));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    account(line, reader.lastLineBytes());
+                }
+            }
+        }
+    }
+
+    /**
+     * Append pre-formatted lines. Embedded newlines produce separate physical lines.
+     */
+    synchronized void append(List<String> lines) throws IOException {
+        ensureOpen();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (String entry : lines) {
+            for (String line : entry.split("\n", -1)) {
+                String clean = line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+                byte[] bytes = (clean + "\n").getBytes(StandardCharsets.UTF_8);
+                buffer.write(bytes);
+                account(clean, bytes.length);
+            }
+        }
+        ByteBuffer data = ByteBuffer.wrap(buffer.toByteArray());
+        while (data.hasRemaining()) {
+            logChannel.write(data);
+        }
+    }
+
+    /**
+     * Update counters and the sparse index for one physical line located at the current end of the segment.
+     */
+    private void account(String line, int byteLength) throws IOException {
+        if (lineCount % indexInterval == 0) {
+            IndexEntry entry = new IndexEntry(lineCount, sizeBytes, maxEpoch, levelCounts.clone());
+            index.add(entry);
+            writeIndexRecord(entry);
+        }
+        LogLines.Parsed parsed = LogLines.parse(line);
+        if (parsed != null) {
+            levelCounts[parsed.levelIndex()]++;
+            if (parsed.timestamp() != null) {
+                long epoch = parsed.timestamp().toEpochSecond(ZoneOffset.UTC);
+                minEpoch = Math.min(minEpoch, epoch);
+                maxEpoch = Math.max(maxEpoch, epoch);
+            }
+        }
+        lineCount++;
+        sizeBytes += byteLength;
+    }
+
+    synchronized void force() throws IOException {
+        if (logChannel != null) {
+            logChannel.force(false);
+        }
+        if (indexChannel != null) {
+            indexChannel.force(false);
+        }
+    }
+
+    synchronized void close() throws IOException {
+        if (logChannel != null) {
+            logChannel.close();
+            logChannel = null;
+        }
+        if (indexChannel != null) {
+            indexChannel.close();
+            indexChannel = null;
+        }
+    }
+
+    synchronized int lineCount() {
+        return lineCount;
+    }
+
+    synchronized long sizeBytes() {
+        return sizeBytes;
+    }
+
+    synchronized int[] levelCounts() {
+        return levelCounts.clone();
+    }
+
+    /**
+     * Whether any line of this segment may carry a timestamp within [start, end].
+     */
+    synchronized boolean mayOverlap(LocalDateTime start, LocalDateTime end) {
+        if (maxEpoch == NO_TIME) {
+            return true;
+        }
+        if (start != null && maxEpoch < start.toEpochSecond(ZoneOffset.UTC)) {
+            return false;
+        }
+        return end == null || minEpoch <= end.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * First relative line that may have a timestamp at or after {@code start}.
+     * Every line before the returned one is known to be strictly older.
+     */
+    synchronized int seekTime(LocalDateTime start) {
+        if (start == null || index.isEmpty()) {
+            return 0;
+        }
+        long epoch = start.toEpochSecond(ZoneOffset.UTC);
+        int lo = 0;
+        int hi = index.size() - 1;
+        int found = 0;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            IndexEntry entry = index.get(mid);
+            if (entry.maxEpochBefore() != NO_TIME && entry.maxEpochBefore() < epoch) {
+                found = entry.line();
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private synchronized IndexEntry floorByLine(int line) {
+        int lo = 0;
+        int hi = index.size() - 1;
+        IndexEntry found = null;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            IndexEntry entry = index.get(mid);
+            if (entry.line() <= line) {
+                found = entry;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Read lines forward starting at the given relative line, up to the lines committed when the call started.
+     *
+     * @return false if the visitor asked to stop
+     */
+    boolean read(int fromLine, LogLines.LineVisitor visitor) throws IOException {
+        int limit = lineCount();
+        if (fromLine >= limit) {
+            return true;
+        }
+        IndexEntry start = floorByLine(fromLine);
+        int line = start != null ? start.line() : 0;
+        long offset = start != null ? start.offset() : 0;
+
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            channel.position(offset);
+            LineReader reader = new LineReader(Channels.newInputStream(channel));
+            String text;
+            while (line < limit && (text = reader.readLine()) != null) {
+                if (line >= fromLine && !visitor.visit(firstLine + line, text)) {
+                    return false;
+                }
+                line++;
+            }
+        }
+        return true;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (logChannel == null || !logChannel.isOpen()) {
+            logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            logChannel.position(sizeBytes);
+        }
+    }
+
+    private void writeIndexRecord(IndexEntry entry) throws IOException {
+        if (indexChannel == null || !indexChannel.isOpen()) {
+            indexChannel = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        record.putInt(entry.line()).putLong(entry.offset()).putLong(entry.maxEpochBefore());
+        for (int count : entry.levelCounts()) {
+            record.putInt(count);
+        }
+        record.flip();
+        while (record.hasRemaining()) {
+            indexChannel.write(record);
+        }
+    }
+
+    private List<IndexEntry> readIndexFile() throws IOException {
+        List<IndexEntry> entries = new ArrayList<>();
+        if (!Files.exists(indexPath)) {
+            return entries;
+        }
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(indexPath));
+        int expectedLine = 0;
+        while (data.remaining() >= RECORD_BYTES) {
+            int line = data.getInt();
+            long offset = data.getLong();
+            long maxEpochBefore = data.getLong();
+            int[] counts = new int[LogLines.LEVELS.length];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = data.getInt();
+            }
+            if (line != expectedLine) {
+                // Corrupt or foreign record; keep what is consistent so far
+                break;
+            }
+            entries.add(new IndexEntry(line, offset, maxEpochBefore, counts));
+            expectedLine += indexInterval;
+        }
+        return entries;
+    }
+
+    private void rewriteIndexFile(List<IndexEntry> entries) throws IOException {
+        long expectedSize = (long) entries.size() * RECORD_BYTES;
+        if (Files.exists(indexPath) && Files.size(indexPath) != expectedSize) {
+            truncateIndexFile(entries.size());
+        }
+    }
+
+    private void truncateIndexFile(int records) throws IOException {
+        if (!Files.exists(indexPath)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.WRITE)) {
+            channel.truncate((long) records * RECORD_BYTES);
+        }
+    }
+
+    private long readFirstEpoch() throws IOException {
+        try (InputStream in = Files.newInputStream(logPath)) {
+            LineReader reader = new LineReader(in);
+            String line;
+            int scanned = 0;
+            while ((line = reader.readLine()) != null && scanned++ < indexInterval) {
+                LogLines.Parsed parsed = LogLines.parse(line);
+                if (parsed != null && parsed.timestamp() != null) {
+                    return parsed.timestamp().toEpochSecond(ZoneOffset.UTC);
+                }
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Minimal line reader that reports the exact byte length of each line, so offsets stay exact
+     * regardless of line terminators or multi-byte characters.
+     */
+    static final class LineReader {
+        private final InputStream in;
+        private final byte[] buffer = new byte[64 * 1024];
+        private final ByteArrayOutputStream current = new ByteArrayOutputStream(256);
+        private int position;
+        private int limit;
+        private int lastLineBytes;
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        String readLine() throws IOException {
+            current.reset();
+            int bytes = 0;
+            while (true) {
+                if (position == limit) {
+                    limit = in.read(buffer);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        break;
+                    }
+                }
+                int start = position;
+                while (position < limit && buffer[position] != '\n') {
+                    position++;
+                }
+                current.write(buffer, start, position - start);
+                bytes += position - start;
+                if (position < limit) {
+                    // consume the terminator
+                    position++;
+                    bytes++;
+                    lastLineBytes = bytes;
+                    return decode();
+                }
+            }
+            if (bytes == 0) {
+                return null;
+            }
+            lastLineBytes = bytes;
+            return decode();
+        }
+
+        private String decode() {
+            String line = current.toString(StandardCharsets.UTF_8);
+            return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+        }
+
+        int lastLineBytes() {
+            return lastLineBytes;
+        }
+    }
+}
@@ -2,72 +2,146 @@ package com.easystation.agent.planning.engine;
 
 import com.easystation.agent.planning.domain.PlanningTask;
 import com.easystation.agent.planning.domain.PlanningTaskDependency;
+import com.easystation.agent.planning.domain.enums.PlanningTaskStatus;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * 任务图数据结构
  * 用于表示任务及其依赖关系的图结构
  * 支持拓扑排序和循环依赖检测
+ *
+ * 内部使用紧凑表示：任务映射为 0..n-1 的整数下标，依赖边以 CSR（偏移数组 + 目标数组）存储。
+ * 拓扑序、循环检测、层级和关键路径长度在首次使用时由一次 Kahn 遍历计算并缓存；
+ * 图结构构建后不可变，任务完成状态可通过 {@link #markCompleted(UUID)} 增量更新。
+ * 依赖任务不在图中的边（外部依赖）保留在依赖计数中，但不参与下标映射。
  */
 public class TaskGraph {
 
+    private static final String HARD = "HARD";
+
     /** 所有任务节点 */
     private final List<PlanningTask> tasks;
 
     /** 所有依赖边 */
     private final List<PlanningTaskDependency> dependencies;
 
-    /** 任务 ID 到任务的映射 */
-    private final Map<UUID, PlanningTask> taskMap;
+    /** 任务 ID 到下标的映射 */
+    private final Map<UUID, Integer> index;
+
+    /** 下标到任务的映射 */
+    private final PlanningTask[] nodes;
+
+    /** 依赖关系（前驱）：predecessors[predOffsets[i] .. predOffsets[i+1]) 为任务 i 依赖的任务下标 */
+    private final int[] predOffsets;
+    private final int[] predecessors;
+
+    /** 反向依赖（后继）：successors[succOffsets[i] .. succOffsets[i+1]) 为依赖任务 i 的任务下标 */
+    private final int[] succOffsets;
+    private final int[] successors;
+
+    /** 与 successors 对应的边是否为硬依赖 */
+    private final boolean[] successorHard;
 
-    /** 依赖关系图：key 为任务 ID，value 为该任务依赖的任务 ID 列表 */
-    private final Map<UUID, List<UUID>> dependencyGraph;
+    /** 每个任务依赖的图外任务 ID（大多数任务没有） */
+    private final Map<Integer, List<UUID>> externalDependencies;
 
-    /** 反向依赖图：key 为任务 ID，value 为依赖该任务的任务 ID 列表 */
-    private final Map<UUID, List<UUID>> reverseDependencyGraph;
+    /** 每个任务尚未完成的硬依赖数量 */
+    private final int[] pendingHard;
+
+    /** 每个任务是否已完成 */
+    private final boolean[] completed;
+
+    /** 以下结果在首次使用时计算 */
+    private int[] order;
+    private boolean cyclic;
+    private int[] levels;
+    private long[] criticalPath;
 
     public TaskGraph(List<PlanningTask> tasks, List<PlanningTaskDependency> dependencies) {
         this.tasks = new ArrayList<>(tasks);
         this.dependencies = new ArrayList<>(dependencies);
-        this.taskMap = new HashMap<>();
-        this.dependencyGraph = new HashMap<>();
-        this.reverseDependencyGraph = new HashMap<>();
 
-        buildMaps();
-        buildDependencyGraphs();
-    }
-
-    /**
-     * 构建任务映射
-     */
-    private void buildMaps() {
+        this.index = new HashMap<>(tasks.size() * 2);
+        List<PlanningTask> unique = new ArrayList<>(tasks.size());
         for (PlanningTask task : tasks) {
-            taskMap.put(task.id, task);
+            if (index.putIfAbsent(task.id, unique.size()) == null) {
+                unique.add(task);
+            }
         }
-    }
-
-    /**
-     * 构建依赖关系图
-     */
-    private void buildDependencyGraphs() {
-        for (PlanningTask task : tasks) {
-            dependencyGraph.put(task.id, new ArrayList<>());
-            reverseDependencyGraph.put(task.id, new ArrayList<>());
+        int n = unique.size();
+        this.nodes = unique.toArray(new PlanningTask[0]);
+
+        // 统计边数并记录外部依赖
+        int[] predCount = new int[n];
+        int[] succCount = new int[n];
+        Map<Integer, List<UUID>> external = new HashMap<>();
+        int[] externalHardPending = new int[n];
+        for (PlanningTaskDependency dep : dependencies) {
+            if (dep.task == null || dep.dependsOnTask == null) {
+                continue;
+            }
+            Integer from = index.get(dep.task.id);
+            if (from == null) {
+                continue;
+            }
+            Integer to = index.get(dep.dependsOnTask.id);
+            if (to == null) {
+                external.computeIfAbsent(from, k -> new ArrayList<>()).add(dep.dependsOnTask.id);
+                if (isHard(dep) && dep.dependsOnTask.status != PlanningTaskStatus.COMPLETED) {
+                    externalHardPending[from]++;
+                }
+                continue;
+            }
+            predCount[from]++;
+            succCount[to]++;
         }
-
+        this.externalDependencies = external;
+
+        this.predOffsets = offsets(predCount);
+        this.succOffsets = offsets(succCount);
+        this.predecessors = new int[predOffsets[n]];
+        this.successors = new int[succOffsets[n]];
+        this.successorHard = new boolean[succOffsets[n]];
+
+        int[] predFill = Arrays.copyOf(predOffsets, n);
+        int[] succFill = Arrays.copyOf(succOffsets, n);
+        this.completed = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            completed[i] = nodes[i].status == PlanningTaskStatus.COMPLETED;
+        }
+        this.pendingHard = externalHardPending;
         for (PlanningTaskDependency dep : dependencies) {
-            if (dep.task != null && dep.dependsOnTask != null) {
-                UUID taskId = dep.task.id;
-                UUID dependsOnId = dep.dependsOnTask.id;
-
-                dependencyGraph.computeIfAbsent(taskId, k -> new ArrayList<>()).add(dependsOnId);
-                reverseDependencyGraph.computeIfAbsent(dependsOnId, k -> new ArrayList<>()).add(taskId);
+            if (dep.task == null || dep.dependsOnTask == null) {
+                continue;
+            }
+            Integer from = index.get(dep.task.id);
+            Integer to = index.get(dep.dependsOnTask.id);
+            if (from == null || to == null) {
+                continue;
+            }
+            boolean hard = isHard(dep);
+            predecessors[predFill[from]++] = to;
+            successorHard[succFill[to]] = hard;
+            successors[succFill[to]++] = from;
+            if (hard && !completed[to]) {
+                pendingHard[from]++;
             }
         }
     }
 
+    private static boolean isHard(PlanningTaskDependency dep) {
+        return HARD.equals(dep.dependencyType);
+    }
+
+    private static int[] offsets(int[] counts) {
+        int[] offsets = new int[counts.length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            offsets[i + 1] = offsets[i] + counts[i];
+        }
+        return offsets;
+    }
+
     /**
      * 获取所有任务
      */
@@ -86,7 +160,30 @@ public class TaskGraph {
      * 根据任务 ID 获取任务
      */
     public PlanningTask getTask(UUID taskId) {
-        return taskMap.get(taskId);
+        Integer i = index.get(taskId);
+        return i != null ? nodes[i] : null;
+    }
+
+    /**
+     * 任务数量（去重后）
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * 任务的紧凑下标，不在图中返回 -1
+     */
+    public int indexOf(UUID taskId) {
+        Integer i = index.get(taskId);
+        return i != null ? i : -1;
+    }
+
+    /**
+     * 根据紧凑下标获取任务
+     */
+    public PlanningTask taskAt(int i) {
+        return nodes[i];
     }
 
     /**
@@ -95,7 +192,16 @@ public class TaskGraph {
      * @return 该任务依赖的任务 ID 列表
      */
     public List<UUID> getDependencies(UUID taskId) {
-        return Collections.unmodifiableList(dependencyGraph.getOrDefault(taskId, Collections.emptyList()));
+        Integer i = index.get(taskId);
+        if (i == null) {
+            return Collections.emptyList();
+        }
+        List<UUID> result = new ArrayList<>(getDependencyCount(taskId));
+        for (int p = predOffsets[i]; p < predOffsets[i + 1]; p++) {
+            result.add(nodes[predecessors[p]].id);
+        }
+        result.addAll(externalDependencies.getOrDefault(i, Collections.emptyList()));
+        return Collections.unmodifiableList(result);
     }
 
     /**
@@ -104,67 +210,121 @@ public class TaskGraph {
      * @return 依赖该任务的任务 ID 列表
      */
     public List<UUID> getDependents(UUID taskId) {
-        return Collections.unmodifiableList(reverseDependencyGraph.getOrDefault(taskId, Collections.emptyList()));
+        Integer i = index.get(taskId);
+        if (i == null) {
+            return Collections.emptyList();
+        }
+        List<UUID> result = new ArrayList<>(succOffsets[i + 1] - succOffsets[i]);
+        for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+            result.add(nodes[successors[s]].id);
+        }
+        return Collections.unmodifiableList(result);
     }
 
     /**
      * 获取任务的直接依赖数量
      */
     public int getDependencyCount(UUID taskId) {
-        return dependencyGraph.getOrDefault(taskId, Collections.emptyList()).size();
+        Integer i = index.get(taskId);
+        if (i == null) {
+            return 0;
+        }
+        List<UUID> external = externalDependencies.get(i);
+        return predOffsets[i + 1] - predOffsets[i] + (external != null ? external.size() : 0);
     }
 
     /**
      * 获取依赖该任务的任务数量
      */
     public int getDependentCount(UUID taskId) {
-        return reverseDependencyGraph.getOrDefault(taskId, Collections.emptyList()).size();
+        Integer i = index.get(taskId);
+        return i != null ? succOffsets[i + 1] - succOffsets[i] : 0;
+    }
+
+    /**
+     * 一次 Kahn 遍历（只计图内的边）：得到拓扑序，未能输出的节点说明存在循环；
+     * 同时按拓扑序计算层级，按逆序计算关键路径长度
+     */
+    private synchronized void analyze() {
+        if (order != null) {
+            return;
+        }
+        int n = nodes.length;
+        int[] inDegree = new int[n];
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            inDegree[i] = predOffsets[i + 1] - predOffsets[i];
+            if (inDegree[i] == 0) {
+                queue[tail++] = i;
+            }
+        }
+        int[] levelOf = new int[n];
+        Arrays.fill(levelOf, -1);
+        while (head < tail) {
+            int current = queue[head++];
+            // 图外依赖的层级视为 0
+            int level = externalDependencies.containsKey(current) ? 1 : 0;
+            for (int p = predOffsets[current]; p < predOffsets[current + 1]; p++) {
+                level = Math.max(level, levelOf[predecessors[p]] + 1);
+            }
+            levelOf[current] = level;
+            for (int s = succOffsets[current]; s < succOffsets[current + 1]; s++) {
+                if (--inDegree[successors[s]] == 0) {
+                    queue[tail++] = successors[s];
+                }
+            }
+        }
+
+        long[] pathOf = new long[n];
+        for (int i = 0; i < n; i++) {
+            pathOf[i] = weight(nodes[i]);
+        }
+        for (int k = tail - 1; k >= 0; k--) {
+            int current = queue[k];
+            long longest = 0;
+            for (int s = succOffsets[current]; s < succOffsets[current + 1]; s++) {
+                longest = Math.max(longest, pathOf[successors[s]]);
+            }
+            pathOf[current] += longest;
+        }
+
+        this.cyclic = tail < n;
+        this.levels = levelOf;
+        this.criticalPath = pathOf;
+        this.order = Arrays.copyOf(queue, tail);
+    }
+
+    private static long weight(PlanningTask task) {
+        return task.estimatedDurationSeconds != null && task.estimatedDurationSeconds > 0
+                ? task.estimatedDurationSeconds : 1L;
     }
 
     /**
      * 拓扑排序
      * 返回按依赖关系排序的任务列表，依赖任务在前，被依赖任务在后
+     * 依赖了图外任务的任务（及其后继）不会出现在结果中
      *
      * @return 排序后的任务列表，如果存在循环依赖则返回空列表
      */
     public List<PlanningTask> topologicalSort() {
-        if (detectCycle()) {
+        analyze();
+        if (cyclic) {
             return Collections.emptyList();
         }
-
-        // Kahn 算法实现拓扑排序
-        Map<UUID, Integer> inDegree = new HashMap<>();
-        Queue<UUID> queue = new LinkedList<>();
-        List<PlanningTask> result = new ArrayList<>();
-
-        // 计算入度
-        for (PlanningTask task : tasks) {
-            int degree = dependencyGraph.getOrDefault(task.id, Collections.emptyList()).size();
-            inDegree.put(task.id, degree);
-            if (degree == 0) {
-                queue.offer(task.id);
-            }
-        }
-
-        // 拓扑排序
-        while (!queue.isEmpty()) {
-            UUID current = queue.poll();
-            PlanningTask task = taskMap.get(current);
-            if (task != null) {
-                result.add(task);
+        List<PlanningTask> result = new ArrayList<>(order.length);
+        boolean[] blocked = new boolean[nodes.length];
+        for (int current : order) {
+            boolean isBlocked = externalDependencies.containsKey(current);
+            for (int p = predOffsets[current]; p < predOffsets[current + 1] && !isBlocked; p++) {
+                isBlocked = blocked[predecessors[p]];
             }
-
-            // 减少依赖该任务的任务的入度
-            List<UUID> dependents = reverseDependencyGraph.getOrDefault(current, Collections.emptyList());
-            for (UUID dependent : dependents) {
-                int newDegree = inDegree.get(dependent) - 1;
-                inDegree.put(dependent, newDegree);
-                if (newDegree == 0) {
-                    queue.offer(dependent);
-                }
+            blocked[current] = isBlocked;
+            if (!isBlocked) {
+                result.add(nodes[current]);
             }
         }
-
         return result;
     }
 
@@ -181,141 +341,183 @@ public class TaskGraph {
 
     /**
      * 检测是否存在循环依赖
-     * 使用 DFS 深度优先搜索检测
+     * 由拓扑排序的 Kahn 遍历顺带得出，结果缓存
      */
     public boolean detectCycle() {
-        Set<UUID> visited = new HashSet<>();
-        Set<UUID> recursionStack = new HashSet<>();
-
-        for (PlanningTask task : tasks) {
-            if (hasCycleDFS(task.id, visited, recursionStack)) {
-                return true;
-            }
-        }
-
-        return false;
+        analyze();
+        return cyclic;
     }
 
     /**
-     * DFS 检测循环依赖
+     * 查找循环依赖路径
+     * 如果存在循环依赖，返回循环路径（首尾为同一任务）
      */
-    private boolean hasCycleDFS(UUID taskId, Set<UUID> visited, Set<UUID> recursionStack) {
-        if (recursionStack.contains(taskId)) {
-            return true;
-        }
-
-        if (visited.contains(taskId)) {
-            return false;
+    public List<UUID> findCyclePath() {
+        if (!detectCycle()) {
+            return Collections.emptyList();
         }
-
-        visited.add(taskId);
-        recursionStack.add(taskId);
-
-        List<UUID> dependsOn = dependencyGraph.getOrDefault(taskId, Collections.emptyList());
-        for (UUID dep : dependsOn) {
-            if (hasCycleDFS(dep, visited, recursionStack)) {
-                return true;
+        int n = nodes.length;
+        // 0 = 未访问，1 = 在当前路径上，2 = 已完成
+        byte[] state = new byte[n];
+        int[] parent = new int[n];
+        int[] cursor = new int[n];
+        int[] stack = new int[n];
+        for (int root = 0; root < n; root++) {
+            if (state[root] != 0) {
+                continue;
+            }
+            int top = 0;
+            stack[top++] = root;
+            state[root] = 1;
+            cursor[root] = predOffsets[root];
+            parent[root] = -1;
+            while (top > 0) {
+                int current = stack[top - 1];
+                if (cursor[current] == predOffsets[current + 1]) {
+                    state[current] = 2;
+                    top--;
+                    continue;
+                }
+                int next = predecessors[cursor[current]++];
+                if (state[next] == 1) {
+                    // 沿 parent 回溯到 next 得到环
+                    List<UUID> cycle = new ArrayList<>();
+                    cycle.add(nodes[next].id);
+                    for (int v = current; v != next; v = parent[v]) {
+                        cycle.add(nodes[v].id);
+                    }
+                    cycle.add(nodes[next].id);
+                    Collections.reverse(cycle);
+                    return cycle;
+                }
+                if (state[next] == 0) {
+                    state[next] = 1;
+                    parent[next] = current;
+                    cursor[next] = predOffsets[next];
+                    stack[top++] = next;
+                }
             }
         }
-
-        recursionStack.remove(taskId);
-        return false;
+        return Collections.emptyList();
     }
 
     /**
-     * 查找循环依赖路径
-     * 如果存在循环依赖，返回循环路径
+     * 获取可立即执行的任务（无依赖的任务）
      */
-    public List<UUID> findCyclePath() {
-        Set<UUID> visited = new HashSet<>();
-        Set<UUID> recursionStack = new HashSet<>();
-        Map<UUID, UUID> path = new HashMap<>();
-
+    public List<PlanningTask> getExecutableTasks() {
+        List<PlanningTask> result = new ArrayList<>();
         for (PlanningTask task : tasks) {
-            List<UUID> cycle = findCycleDFS(task.id, visited, recursionStack, path);
-            if (cycle != null) {
-                return cycle;
+            if (getDependencyCount(task.id) == 0) {
+                result.add(task);
             }
         }
-
-        return Collections.emptyList();
+        return result;
     }
 
     /**
-     * DFS 查找循环依赖路径
+     * 获取任务的层级（基于依赖深度）
+     * 处于循环上或循环下游的任务返回 -1
      */
-    private List<UUID> findCycleDFS(UUID taskId, Set<UUID> visited, Set<UUID> recursionStack, Map<UUID, UUID> path) {
-        if (recursionStack.contains(taskId)) {
-            // 找到循环，构建路径
-            List<UUID> cycle = new ArrayList<>();
-            UUID current = taskId;
-            cycle.add(current);
-            while (path.containsKey(current) && path.get(current) != taskId) {
-                current = path.get(current);
-                cycle.add(current);
-            }
-            cycle.add(taskId);
-            Collections.reverse(cycle);
-            return cycle;
+    public int getTaskLevel(UUID taskId) {
+        Integer i = index.get(taskId);
+        if (i == null) {
+            return 0;
         }
+        analyze();
+        return levels[i];
+    }
 
-        if (visited.contains(taskId)) {
-            return null;
+    /**
+     * 按层级分组任务
+     */
+    public Map<Integer, List<PlanningTask>> groupByLevel() {
+        Map<Integer, List<PlanningTask>> result = new HashMap<>();
+
+        for (PlanningTask task : tasks) {
+            int level = getTaskLevel(task.id);
+            result.computeIfAbsent(level, k -> new ArrayList<>()).add(task);
         }
 
-        visited.add(taskId);
-        recursionStack.add(taskId);
+        return result;
+    }
 
-        List<UUID> dependsOn = dependencyGraph.getOrDefault(taskId, Collections.emptyList());
-        for (UUID dep : dependsOn) {
-            path.put(dep, taskId);
-            List<UUID> cycle = findCycleDFS(dep, visited, recursionStack, path);
-            if (cycle != null) {
-                return cycle;
-            }
+    /**
+     * 从该任务开始到任一末端任务的最长路径长度（按预估时长加权，缺省按 1 计）
+     */
+    public long getCriticalPathLength(UUID taskId) {
+        Integer i = index.get(taskId);
+        if (i == null) {
+            return 0;
         }
+        analyze();
+        return criticalPath[i];
+    }
 
-        recursionStack.remove(taskId);
-        return null;
+    /**
+     * 整个图的关键路径长度
+     */
+    public long getCriticalPathLength() {
+        analyze();
+        long longest = 0;
+        for (long length : criticalPath) {
+            longest = Math.max(longest, length);
+        }
+        return longest;
     }
 
     /**
-     * 获取可立即执行的任务（无依赖的任务）
+     * 任务的硬依赖是否全部完成（软依赖不阻塞）
      */
-    public List<PlanningTask> getExecutableTasks() {
-        return tasks.stream()
-                .filter(task -> getDependencyCount(task.id) == 0)
-                .collect(Collectors.toList());
+    public synchronized boolean isReady(UUID taskId) {
+        Integer i = index.get(taskId);
+        return i != null && pendingHard[i] == 0;
     }
 
     /**
-     * 获取任务的层级（基于依赖深度）
+     * 硬依赖全部完成且自身未完成的任务
      */
-    public int getTaskLevel(UUID taskId) {
-        if (getDependencyCount(taskId) == 0) {
-            return 0;
+    public synchronized List<PlanningTask> getReadyTasks() {
+        List<PlanningTask> result = new ArrayList<>();
+        for (int i = 0; i < nodes.length; i++) {
+            if (pendingHard[i] == 0 && !completed[i]) {
+                result.add(nodes[i]);
+            }
         }
+        return result;
+    }
 
-        int maxLevel = 0;
-        for (UUID dep : getDependencies(taskId)) {
-            maxLevel = Math.max(maxLevel, getTaskLevel(dep) + 1);
+    /**
+     * 增量更新：标记任务已完成，返回因此变为就绪的任务
+     */
+    public synchronized List<PlanningTask> markCompleted(UUID taskId) {
+        Integer i = index.get(taskId);
+        if (i == null || completed[i]) {
+            return Collections.emptyList();
         }
-
-        return maxLevel;
+        completed[i] = true;
+        List<PlanningTask> released = new ArrayList<>();
+        for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+            if (successorHard[s] && --pendingHard[successors[s]] == 0 && !completed[successors[s]]) {
+                released.add(nodes[successors[s]]);
+            }
+        }
+        return released;
     }
 
     /**
-     * 按层级分组任务
+     * 增量更新：任务从完成状态退回（例如重新执行），其硬依赖后继重新被阻塞
      */
-    public Map<Integer, List<PlanningTask>> groupByLevel() {
-        Map<Integer, List<PlanningTask>> levels = new HashMap<>();
-
-        for (PlanningTask task : tasks) {
-            int level = getTaskLevel(task.id);
-            levels.computeIfAbsent(level, k -> new ArrayList<>()).add(task);
+    public synchronized void markIncomplete(UUID taskId) {
+        Integer i = index.get(taskId);
+        if (i == null || !completed[i]) {
+            return;
+        }
+        completed[i] = false;
+        for (int s = succOffsets[i]; s < succOffsets[i + 1]; s++) {
+            if (successorHard[s]) {
+                pendingHard[successors[s]]++;
+            }
         }
-
-        return levels;
     }
 
     /**
@@ -372,4 +574,4 @@ public class TaskGraph {
                     '}';
         }
     }
-}
\ No newline at end of file
+}
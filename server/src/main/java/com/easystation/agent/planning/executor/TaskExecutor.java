@@ -7,6 +7,7 @@ import com.easystation.agent.planning.domain.enums.PlanningTaskStatus;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 任务执行器接口
@@ -47,13 +48,30 @@ public interface TaskExecutor {
 
     /**
      * 执行指定目标的任务序列
-     * 按依赖顺序依次执行
+     * 按依赖顺序执行，依赖已满足的任务并行执行，等待全部结束后返回
      *
      * @param goalId 目标 ID
-     * @return 执行结果列表
+     * @return 执行结果列表（按完成顺序）
      */
     List<ExecutionResult> executeSequence(UUID goalId);
 
+    /**
+     * 异步并行执行指定目标的任务
+     *
+     * @param goalId 目标 ID
+     * @param maxConcurrency 该目标同时运行的任务上限
+     * @return 全部任务结束时完成的执行结果列表
+     */
+    CompletableFuture<List<ExecutionResult>> executeGoal(UUID goalId, int maxConcurrency);
+
+    /**
+     * 取消目标的并行执行：停止分派新任务并中断在途任务
+     *
+     * @param goalId 目标 ID
+     * @return 目标是否正在执行
+     */
+    boolean cancelGoal(UUID goalId);
+
     /**
      * 执行指定任务列表（按顺序）
      *
@@ -0,0 +1,280 @@
+package com.easystation.agent.planning.executor.impl;
+
+import com.easystation.agent.planning.domain.PlanningTask;
+import com.easystation.agent.planning.executor.TaskExecutor.ExecutionResult;
+import com.easystation.agent.planning.executor.TaskExecutor.HandlerResult;
+import com.easystation.agent.planning.scheduler.ScheduleSnapshot;
+import com.easystation.agent.planning.scheduler.TaskScheduler;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 目标级并行执行引擎
+ *
+ * 从调度快照的就绪堆中取出依赖已满足的任务，分派到虚拟线程执行；
+ * 全局并发受 planning.executor.max-concurrent 限制，单个目标的并发受各自上限限制。
+ * 每个任务的状态变更（开始、完成/失败）各自在独立的短事务中提交，处理器本身在事务外运行。
+ * 任务成功后通过快照增量释放其后继任务，因此宽 DAG 的总耗时接近关键路径，而不是所有任务耗时之和。
+ * 失败任务只阻塞其下游，其他分支继续执行。
+ */
+@ApplicationScoped
+public class GoalExecutionEngine {
+
+    @Inject
+    TaskScheduler taskScheduler;
+
+    @Inject
+    TaskExecutorImpl taskExecutor;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "planning.executor.max-concurrent", defaultValue = "32")
+    int maxConcurrent;
+
+    @ConfigProperty(name = "planning.executor.goal-concurrency", defaultValue = "8")
+    int goalConcurrency;
+
+    private ExecutorService workers;
+    private Semaphore permits;
+
+    /** 正在执行的目标 */
+    private final Map<UUID, GoalRun> runs = new ConcurrentHashMap<>();
+
+    /** 正在执行（已获得并发许可）的任务数 */
+    private final AtomicInteger runningTasks = new AtomicInteger();
+
+    @PostConstruct
+    void init() {
+        workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("planning-task-", 0).factory());
+        permits = new Semaphore(Math.max(1, maxConcurrent));
+
+        Gauge.builder("esa.planning.goals.active", runs, Map::size)
+                .description("Planning goals currently being executed")
+                .register(registry);
+        Gauge.builder("esa.planning.tasks.running", runningTasks, AtomicInteger::get)
+                .description("Planning tasks currently running")
+                .register(registry);
+    }
+
+    /**
+     * 以默认的单目标并发上限执行目标
+     */
+    public CompletableFuture<List<ExecutionResult>> execute(UUID goalId) {
+        return execute(goalId, goalConcurrency);
+    }
+
+    /**
+     * 并行执行目标下所有可执行任务；同一目标已在执行时返回正在进行的那次执行
+     *
+     * @param maxConcurrency 该目标同时运行的任务上限
+     * @return 所有任务结束（或取消后在途任务结束）时完成，结果按完成顺序排列
+     */
+    public CompletableFuture<List<ExecutionResult>> execute(UUID goalId, int maxConcurrency) {
+        GoalRun run = new GoalRun(goalId, Math.max(1, maxConcurrency));
+        GoalRun existing = runs.putIfAbsent(goalId, run);
+        if (existing != null) {
+            Log.infof("Goal %s is already executing", goalId);
+            return existing.result;
+        }
+        run.result.whenComplete((results, error) -> runs.remove(goalId, run));
+
+        try {
+            ScheduleSnapshot snapshot = QuarkusTransaction.requiringNew()
+                    .call(() -> taskScheduler.createSnapshot(goalId));
+            if (snapshot.getGraph().detectCycle()) {
+                Log.warnf("Cycle detected in task graph for goal: %s", goalId);
+                run.result.complete(Collections.emptyList());
+                return run.result;
+            }
+            Log.infof("Executing goal %s: %d tasks ready, concurrency %d",
+                    goalId, snapshot.readyCount(), run.maxConcurrency);
+            run.start(snapshot);
+        } catch (RuntimeException e) {
+            Log.errorf(e, "Failed to start execution of goal %s", goalId);
+            run.result.completeExceptionally(e);
+        }
+        return run.result;
+    }
+
+    /**
+     * 取消目标执行：不再分派新任务，并中断在途任务；未开始的任务保持原状态
+     *
+     * @return 目标是否正在执行
+     */
+    public boolean cancel(UUID goalId) {
+        GoalRun run = runs.get(goalId);
+        if (run == null) {
+            return false;
+        }
+        Log.infof("Cancelling execution of goal %s", goalId);
+        run.cancel();
+        return true;
+    }
+
+    public boolean isRunning(UUID goalId) {
+        return runs.containsKey(goalId);
+    }
+
+    private void runTask(GoalRun run, UUID taskId) {
+        ExecutionResult result = null;
+        try {
+            permits.acquire();
+            runningTasks.incrementAndGet();
+            try {
+                result = executeTask(run, taskId);
+            } finally {
+                runningTasks.decrementAndGet();
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Log.debugf("Task %s of goal %s interrupted before start", taskId, run.goalId);
+        } catch (RuntimeException e) {
+            Log.errorf(e, "Task %s of goal %s failed to execute", taskId, run.goalId);
+            result = ExecutionResult.failure(taskId, "Execution exception: " + e.getMessage(), 0);
+        } finally {
+            run.onFinished(taskId, result);
+        }
+    }
+
+    private ExecutionResult executeTask(GoalRun run, UUID taskId) {
+        if (run.isCancelled()) {
+            return null;
+        }
+        long startTime = System.currentTimeMillis();
+
+        PlanningTask task = QuarkusTransaction.requiringNew().call(() -> taskExecutor.beginTask(taskId));
+        if (task == null) {
+            return ExecutionResult.failure(taskId, "Task cannot be executed", 0);
+        }
+
+        // 只有处理器运行期间允许取消中断，状态事务不受影响
+        HandlerResult handlerResult;
+        if (run.attach(taskId, Thread.currentThread())) {
+            try {
+                handlerResult = taskExecutor.runHandler(task);
+            } catch (Exception e) {
+                handlerResult = HandlerResult.failure("Execution exception: " + e.getMessage());
+            } finally {
+                run.detach(taskId);
+                // 解除关联后不会再收到中断，清除处理器期间可能残留的中断标记
+                Thread.interrupted();
+            }
+        } else {
+            handlerResult = null;
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        if (run.isCancelled()) {
+            QuarkusTransaction.requiringNew().run(() -> taskExecutor.cancelTask(taskId));
+            return ExecutionResult.failure(taskId, "Task cancelled", duration);
+        }
+        HandlerResult outcome = handlerResult;
+        return QuarkusTransaction.requiringNew().call(() -> taskExecutor.finishTask(taskId, outcome, duration));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runs.values().forEach(GoalRun::cancel);
+        workers.shutdownNow();
+    }
+
+    /**
+     * 单个目标的一次执行。快照、在途任务和结果均由该对象的锁保护。
+     */
+    final class GoalRun {
+        final UUID goalId;
+        final int maxConcurrency;
+        final CompletableFuture<List<ExecutionResult>> result = new CompletableFuture<>();
+
+        private final List<ExecutionResult> results = new ArrayList<>();
+        private final Set<UUID> inFlight = new HashSet<>();
+        private final Map<UUID, Thread> threads = new HashMap<>();
+        private ScheduleSnapshot snapshot;
+        private boolean cancelled;
+
+        GoalRun(UUID goalId, int maxConcurrency) {
+            this.goalId = goalId;
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        synchronized void start(ScheduleSnapshot snapshot) {
+            this.snapshot = snapshot;
+            dispatch();
+        }
+
+        synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        synchronized boolean attach(UUID taskId, Thread thread) {
+            if (cancelled) {
+                return false;
+            }
+            threads.put(taskId, thread);
+            return true;
+        }
+
+        synchronized void detach(UUID taskId) {
+            threads.remove(taskId);
+        }
+
+        synchronized void onFinished(UUID taskId, ExecutionResult taskResult) {
+            inFlight.remove(taskId);
+            if (taskResult != null) {
+                results.add(taskResult);
+                if (taskResult.isSuccess()) {
+                    snapshot.markCompleted(taskId);
+                }
+            }
+            dispatch();
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            threads.values().forEach(Thread::interrupt);
+            if (inFlight.isEmpty()) {
+                result.complete(List.copyOf(results));
+            }
+        }
+
+        /**
+         * 在并发上限内分派就绪任务；没有在途任务时本次执行结束
+         */
+        private void dispatch() {
+            while (!cancelled && inFlight.size() < maxConcurrency) {
+                Optional<PlanningTask> next = snapshot.poll();
+                if (next.isEmpty()) {
+                    break;
+                }
+                UUID taskId = next.get().id;
+                try {
+                    workers.execute(() -> runTask(this, taskId));
+                    inFlight.add(taskId);
+                } catch (RejectedExecutionException e) {
+                    Log.warnf("Executor rejected task %s of goal %s", taskId, goalId);
+                    cancelled = true;
+                }
+            }
+            if (inFlight.isEmpty()) {
+                result.complete(List.copyOf(results));
+            }
+        }
+    }
+}
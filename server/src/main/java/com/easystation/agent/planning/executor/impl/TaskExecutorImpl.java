@@ -14,6 +14,7 @@ import jakarta.transaction.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -38,6 +39,9 @@ public class TaskExecutorImpl implements TaskExecutor {
     @Inject
     TaskScheduler taskScheduler;
 
+    @Inject
+    GoalExecutionEngine goalEngine;
+
     @Override
     @Transactional
     public ExecutionResult execute(PlanningTask task) {
@@ -135,7 +139,6 @@ public class TaskExecutorImpl implements TaskExecutor {
     }
 
     @Override
-    @Transactional
     public List<ExecutionResult> executeSequence(UUID goalId) {
         if (goalId == null) {
             return Collections.emptyList();
@@ -143,27 +146,24 @@ public class TaskExecutorImpl implements TaskExecutor {
 
         Log.infof("Executing task sequence for goal: %s", goalId);
 
-        List<ExecutionResult> results = new ArrayList<>();
-        List<PlanningTask> executionOrder = taskScheduler.getExecutionOrder(goalId);
-
-        for (PlanningTask task : executionOrder) {
-            // 检查是否需要执行（状态为 SCHEDULED 或 RETRYING）
-            if (task.status == PlanningTaskStatus.SCHEDULED
-                    || task.status == PlanningTaskStatus.RETRYING) {
+        // 不在外层事务中等待：每个任务的状态变更由执行引擎在各自的短事务中提交
+        List<ExecutionResult> results = goalEngine.execute(goalId).join();
 
-                ExecutionResult result = execute(task);
-                results.add(result);
+        Log.infof("Sequence execution completed: %d tasks executed", results.size());
+        return results;
+    }
 
-                // 如果失败且不可继续，停止执行
-                if (!result.isSuccess() && !taskScheduler.areDependenciesMet(task.id)) {
-                    Log.warnf("Stopping sequence execution due to failure of task %s", task.id);
-                    break;
-                }
-            }
+    @Override
+    public CompletableFuture<List<ExecutionResult>> executeGoal(UUID goalId, int maxConcurrency) {
+        if (goalId == null) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
         }
+        return goalEngine.execute(goalId, maxConcurrency);
+    }
 
-        Log.infof("Sequence execution completed: %d tasks executed", results.size());
-        return results;
+    @Override
+    public boolean cancelGoal(UUID goalId) {
+        return goalId != null && goalEngine.cancel(goalId);
     }
 
     @Override
@@ -384,6 +384,57 @@ public class TaskExecutorImpl implements TaskExecutor {
         return Optional.ofNullable(handlers.get(executorType));
     }
 
+    /**
+     * 并行执行第一步：重新加载任务，校验后置为 RUNNING；无法执行时返回 null
+     * 由 {@link GoalExecutionEngine} 在独立事务中调用
+     */
+    PlanningTask beginTask(UUID taskId) {
+        PlanningTask task = taskRepository.findById(taskId);
+        if (task == null || !taskScheduler.canExecute(task)) {
+            Log.warnf("Task %s cannot be executed (status: %s, dependencies not met)",
+                    taskId, task != null ? task.status : null);
+            return null;
+        }
+        return startExecution(task);
+    }
+
+    /**
+     * 并行执行的处理阶段，在事务外运行
+     */
+    HandlerResult runHandler(PlanningTask task) {
+        return doExecute(task);
+    }
+
+    /**
+     * 并行执行最后一步：按处理结果将任务置为 COMPLETED 或 FAILED
+     * 由 {@link GoalExecutionEngine} 在独立事务中调用
+     */
+    ExecutionResult finishTask(UUID taskId, HandlerResult handlerResult, long duration) {
+        PlanningTask task = taskRepository.findById(taskId);
+        if (task == null) {
+            return ExecutionResult.failure(taskId, "Task not found", duration);
+        }
+
+        if (handlerResult.isSuccess()) {
+            completeExecution(task, handlerResult.getResult());
+            Log.infof("Task %s completed successfully in %dms", taskId, duration);
+            return ExecutionResult.success(taskId, handlerResult.getResult(), duration);
+        }
+        failExecution(task, handlerResult.getErrorMessage());
+        Log.warnf("Task %s failed after %dms: %s", taskId, duration, handlerResult.getErrorMessage());
+        return ExecutionResult.failure(taskId, handlerResult.getErrorMessage(), duration);
+    }
+
+    /**
+     * 目标被取消时将在途任务置为 CANCELLED
+     */
+    void cancelTask(UUID taskId) {
+        PlanningTask task = taskRepository.findById(taskId);
+        if (task != null && task.status == PlanningTaskStatus.RUNNING) {
+            cancelExecution(task);
+        }
+    }
+
     /**
      * 执行任务的实际逻辑
      */
@@ -4,7 +4,10 @@ import com.easystation.agent.planning.domain.PlanningTaskDependency;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import jakarta.enterprise.context.ApplicationScoped;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -28,6 +31,45 @@ public class PlanningTaskDependencyRepository implements PanacheRepositoryBase<P
         return list("dependsOnTask.id", dependsOnTaskId);
     }
 
+    /**
+     * 查询目标相关的全部依赖边（任一端属于该目标），两端任务一并加载
+     */
+    public List<PlanningTaskDependency> findByGoalId(UUID goalId) {
+        return list("select d from PlanningTaskDependency d join fetch d.task t join fetch d.dependsOnTask o "
+                + "where t.goalId = ?1 or o.goalId = ?1", goalId);
+    }
+
+    /**
+     * 批量查询多个任务的依赖，被依赖任务一并加载
+     */
+    public List<PlanningTaskDependency> findByTaskIds(Collection<UUID> taskIds) {
+        if (taskIds.isEmpty()) {
+            return List.of();
+        }
+        return list("select d from PlanningTaskDependency d join fetch d.dependsOnTask where d.task.id in ?1",
+                taskIds);
+    }
+
+    /**
+     * 批量统计多个任务的被依赖数量，没有被依赖的任务不在结果中
+     */
+    @SuppressWarnings("unchecked")
+    public Map<UUID, Long> countByDependsOnTaskIds(Collection<UUID> dependsOnTaskIds) {
+        Map<UUID, Long> counts = new HashMap<>();
+        if (dependsOnTaskIds.isEmpty()) {
+            return counts;
+        }
+        String jpql = "SELECT d.dependsOnTask.id, COUNT(d) FROM PlanningTaskDependency d " +
+            "WHERE d.dependsOnTask.id IN :ids GROUP BY d.dependsOnTask.id";
+        List<Object[]> rows = getEntityManager().createQuery(jpql)
+            .setParameter("ids", dependsOnTaskIds)
+            .getResultList();
+        for (Object[] row : rows) {
+            counts.put((UUID) row[0], ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+
     /**
      * 查询依赖关系的数量
      */
@@ -59,6 +59,14 @@ public class PlanningTaskRepository implements PanacheRepositoryBase<PlanningTas
                 PlanningTaskStatus.SCHEDULED, PlanningTaskStatus.RETRYING);
     }
 
+    /**
+     * 查询指定目标的可执行任务（SCHEDULED 或 RETRYING 状态）
+     */
+    public List<PlanningTask> findExecutableTasksByGoalId(UUID goalId) {
+        return list("goalId = ?1 and status in (?2, ?3) order by priorityValue desc, createdAt asc",
+                goalId, PlanningTaskStatus.SCHEDULED, PlanningTaskStatus.RETRYING);
+    }
+
     /**
      * 查询根任务（无父任务）
      */
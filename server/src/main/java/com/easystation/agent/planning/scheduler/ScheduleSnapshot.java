@@ -0,0 +1,133 @@
+package com.easystation.agent.planning.scheduler;
+
+import com.easystation.agent.planning.domain.PlanningTask;
+import com.easystation.agent.planning.engine.TaskGraph;
+
+import java.util.*;
+
+/**
+ * 目标级调度快照
+ *
+ * 一次性加载目标下的任务与依赖边，预先计算每个任务的优先级分数，
+ * 并以堆维护“硬依赖已满足且处于可执行状态”的任务。
+ * 任务完成后调用 {@link #markCompleted(UUID)} 增量释放其后继任务，无需重新查询数据库。
+ * 快照中的任务实体在事务结束后即为游离状态，只用于读取调度所需字段。
+ */
+public class ScheduleSnapshot {
+
+    private final UUID goalId;
+    private final TaskGraph graph;
+
+    /** 按任务图下标存放的优先级分数 */
+    private final int[] scores;
+
+    /** 就绪任务堆：分数高者优先，同分按任务原始顺序 */
+    private final PriorityQueue<Integer> ready;
+
+    /** 已入堆或已取出的任务，避免重复入堆 */
+    private final boolean[] queued;
+
+    public ScheduleSnapshot(UUID goalId, TaskGraph graph, int[] scores) {
+        if (scores.length != graph.size()) {
+            throw new IllegalArgumentException("Expected " + graph.size() + " scores, got " + scores.length);
+        }
+        this.goalId = goalId;
+        this.graph = graph;
+        this.scores = scores;
+        this.queued = new boolean[graph.size()];
+        this.ready = new PriorityQueue<>(Math.max(1, graph.size()), (a, b) -> {
+            int compare = Integer.compare(scores[b], scores[a]);
+            return compare != 0 ? compare : Integer.compare(a, b);
+        });
+        for (PlanningTask task : graph.getReadyTasks()) {
+            offer(task);
+        }
+    }
+
+    public UUID getGoalId() {
+        return goalId;
+    }
+
+    public TaskGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * 任务的预计算优先级分数，不在快照中返回 0
+     */
+    public int getScore(UUID taskId) {
+        int i = graph.indexOf(taskId);
+        return i >= 0 ? scores[i] : 0;
+    }
+
+    /**
+     * 按预计算的优先级分数从高到低排序
+     */
+    public List<PlanningTask> sortByScore(Collection<PlanningTask> tasks) {
+        List<PlanningTask> sorted = new ArrayList<>(tasks);
+        sorted.sort(Comparator.comparingInt((PlanningTask t) -> getScore(t.id)).reversed());
+        return sorted;
+    }
+
+    /**
+     * 查看优先级最高的就绪任务
+     */
+    public synchronized Optional<PlanningTask> peek() {
+        Integer top = ready.peek();
+        return top != null ? Optional.of(graph.taskAt(top)) : Optional.empty();
+    }
+
+    /**
+     * 取出优先级最高的就绪任务
+     */
+    public synchronized Optional<PlanningTask> poll() {
+        Integer top = ready.poll();
+        return top != null ? Optional.of(graph.taskAt(top)) : Optional.empty();
+    }
+
+    /**
+     * 当前就绪任务数量
+     */
+    public synchronized int readyCount() {
+        return ready.size();
+    }
+
+    /**
+     * 按优先级排序的就绪任务（不出堆）
+     */
+    public synchronized List<PlanningTask> getReadyTasks() {
+        List<Integer> indexes = new ArrayList<>(ready);
+        indexes.sort(ready.comparator());
+        List<PlanningTask> result = new ArrayList<>(indexes.size());
+        for (int i : indexes) {
+            result.add(graph.taskAt(i));
+        }
+        return result;
+    }
+
+    /**
+     * 标记任务已完成，并将因此就绪的后继任务放入堆中
+     *
+     * @return 新就绪的任务
+     */
+    public synchronized List<PlanningTask> markCompleted(UUID taskId) {
+        List<PlanningTask> released = graph.markCompleted(taskId);
+        List<PlanningTask> offered = new ArrayList<>(released.size());
+        for (PlanningTask task : released) {
+            if (offer(task)) {
+                offered.add(task);
+            }
+        }
+        return offered;
+    }
+
+    private boolean offer(PlanningTask task) {
+        int i = graph.indexOf(task.id);
+        if (i < 0 || queued[i] || !task.canExecute()) {
+            return false;
+        }
+        queued[i] = true;
+        ready.offer(i);
+        return true;
+    }
+}
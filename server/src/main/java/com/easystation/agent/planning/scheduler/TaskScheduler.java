@@ -126,6 +126,14 @@ public interface TaskScheduler {
      */
     TaskGraph buildTaskGraph(UUID goalId);
 
+    /**
+     * 加载目标的调度快照：任务图、预计算的优先级分数和就绪任务堆
+     *
+     * @param goalId 目标 ID
+     * @return 调度快照
+     */
+    ScheduleSnapshot createSnapshot(UUID goalId);
+
     /**
      * 调度状态信息
      */
@@ -6,6 +6,7 @@ import com.easystation.agent.planning.domain.enums.PlanningTaskStatus;
 import com.easystation.agent.planning.engine.TaskGraph;
 import com.easystation.agent.planning.repository.PlanningTaskDependencyRepository;
 import com.easystation.agent.planning.repository.PlanningTaskRepository;
+import com.easystation.agent.planning.scheduler.ScheduleSnapshot;
 import com.easystation.agent.planning.scheduler.TaskScheduler;
 import io.quarkus.logging.Log;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -18,6 +19,11 @@ import java.util.stream.Collectors;
 /**
  * 任务调度器实现
  * 提供优先级计算、依赖感知调度和任务队列管理
+ *
+ * 需要整张任务图的目标级操作（调度、执行顺序）基于 {@link ScheduleSnapshot}：任务和依赖边各一次查询，
+ * 被依赖数量和优先级分数只计算一次，排序和比较不再触发逐任务的数据库查询。
+ * 只关心可执行任务的查询（下一个可执行任务、可执行任务列表）不构建快照，
+ * 只加载可执行任务及其依赖边，开销与目标的任务总数无关；需要连续取任务的调用方应自行持有快照并增量更新。
  */
 @ApplicationScoped
 public class TaskSchedulerImpl implements TaskScheduler {
@@ -51,11 +57,11 @@ public class TaskSchedulerImpl implements TaskScheduler {
             return Collections.emptyList();
         }
 
-        // 构建任务图
-        TaskGraph graph = buildTaskGraph(goalId);
+        // 构建任务图和优先级分数
+        ScheduleSnapshot snapshot = createSnapshot(goalId);
 
         // 检查循环依赖
-        if (graph.detectCycle()) {
+        if (snapshot.getGraph().detectCycle()) {
             Log.errorf("Cycle detected in task graph for goal: %s", goalId);
             return Collections.emptyList();
         }
@@ -63,7 +69,7 @@ public class TaskSchedulerImpl implements TaskScheduler {
         // 按执行顺序调度
         List<PlanningTask> scheduledTasks = new ArrayList<>();
         for (PlanningTask task : readyTasks) {
-            PlanningTask scheduled = scheduleTask(task);
+            PlanningTask scheduled = schedule(task, snapshot.getScore(task.id));
             if (scheduled != null) {
                 scheduledTasks.add(scheduled);
             }
@@ -86,8 +92,10 @@ public class TaskSchedulerImpl implements TaskScheduler {
             return null;
         }
 
-        // 计算优先级分数
-        int priorityScore = calculatePriorityScore(task);
+        return schedule(task, calculatePriorityScore(task));
+    }
+
+    private PlanningTask schedule(PlanningTask task, int priorityScore) {
         task.priorityValue = priorityScore;
 
         // 更新状态为 SCHEDULED
@@ -104,31 +112,35 @@ public class TaskSchedulerImpl implements TaskScheduler {
             return getNextExecutableTask();
         }
 
-        // 获取所有可执行状态的任务
-        List<PlanningTask> executableTasks = getExecutableTasks(goalId);
-
-        if (executableTasks.isEmpty()) {
-            return Optional.empty();
-        }
-
-        // 找到优先级最高且依赖满足的任务
-        return executableTasks.stream()
-                .filter(this::canExecute)
-                .max(Comparator.comparingInt(this::calculatePriorityScore));
+        return nextUnblocked(taskRepository.findExecutableTasksByGoalId(goalId));
     }
 
     @Override
     public Optional<PlanningTask> getNextExecutableTask() {
         // 获取全局可执行任务
-        List<PlanningTask> executableTasks = taskRepository.findExecutableTasks();
+        return nextUnblocked(taskRepository.findExecutableTasks());
+    }
 
+    /**
+     * 批量查询被依赖数量和依赖状态，返回硬依赖已满足且分数最高的任务；同分取靠前者
+     */
+    private Optional<PlanningTask> nextUnblocked(List<PlanningTask> executableTasks) {
         if (executableTasks.isEmpty()) {
             return Optional.empty();
         }
 
+        Set<UUID> taskIds = executableTasks.stream().map(t -> t.id).collect(Collectors.toSet());
+        Map<UUID, Integer> scores = scoreAll(executableTasks, taskIds);
+        Set<UUID> blocked = new HashSet<>();
+        for (PlanningTaskDependency dep : dependencyRepository.findByTaskIds(taskIds)) {
+            if (isBlocking(dep)) {
+                blocked.add(dep.task.id);
+            }
+        }
+
         return executableTasks.stream()
-                .filter(this::canExecute)
-                .max(Comparator.comparingInt(this::calculatePriorityScore));
+                .filter(t -> t.canExecute() && !blocked.contains(t.id))
+                .max(Comparator.comparingInt(t -> scores.get(t.id)));
     }
 
     @Override
@@ -137,18 +149,13 @@ public class TaskSchedulerImpl implements TaskScheduler {
             return Collections.emptyList();
         }
 
-        // 获取 SCHEDULED 和 RETRYING 状态的任务
-        List<PlanningTask> scheduled = taskRepository.findByGoalIdAndStatus(goalId, PlanningTaskStatus.SCHEDULED);
-        List<PlanningTask> retrying = taskRepository.findByGoalIdAndStatus(goalId, PlanningTaskStatus.RETRYING);
-
-        List<PlanningTask> all = new ArrayList<>();
-        all.addAll(scheduled);
-        all.addAll(retrying);
-
-        // 按优先级分数排序
-        return all.stream()
-                .sorted(Comparator.comparingInt(this::calculatePriorityScore).reversed())
-                .collect(Collectors.toList());
+        // SCHEDULED 和 RETRYING 状态的任务，按优先级分数排序
+        List<PlanningTask> executable = taskRepository.findExecutableTasksByGoalId(goalId);
+        Map<UUID, Integer> scores = scoreAll(executable,
+                executable.stream().map(t -> t.id).collect(Collectors.toSet()));
+        List<PlanningTask> sorted = new ArrayList<>(executable);
+        sorted.sort(Comparator.comparingInt((PlanningTask t) -> scores.get(t.id)).reversed());
+        return sorted;
     }
 
     @Override
@@ -182,7 +189,7 @@ public class TaskSchedulerImpl implements TaskScheduler {
             if (dependsOnTask != null) {
                 if ("HARD".equals(dep.dependencyType)) {
                     // 硬依赖：必须完成
-                    if (dependsOnTask.status != PlanningTaskStatus.COMPLETED) {
+                    if (isBlocking(dep)) {
                         Log.debugf("Task %s blocked by hard dependency %s (status: %s)",
                                 taskId, dependsOnTask.id, dependsOnTask.status);
                         return false;
@@ -201,12 +208,27 @@ public class TaskSchedulerImpl implements TaskScheduler {
         return true;
     }
 
+    /**
+     * 未完成的硬依赖会阻塞任务执行
+     */
+    private static boolean isBlocking(PlanningTaskDependency dep) {
+        return dep.dependsOnTask != null
+                && "HARD".equals(dep.dependencyType)
+                && dep.dependsOnTask.status != PlanningTaskStatus.COMPLETED;
+    }
+
     @Override
     public int calculatePriorityScore(PlanningTask task) {
         if (task == null) {
             return 0;
         }
+        return priorityScore(task, dependencyRepository.countByDependsOnTaskId(task.id));
+    }
 
+    /**
+     * 按给定的被依赖数量计算优先级分数
+     */
+    private int priorityScore(PlanningTask task, long dependentCount) {
         // 基础优先级
         int basePriority = task.priority.getValue();
 
@@ -214,8 +236,7 @@ public class TaskSchedulerImpl implements TaskScheduler {
         int depthBonus = Math.max(0, DEPTH_WEIGHT - task.depth * 2);
 
         // 依赖数量因素：被依赖越多优先级越高（会阻塞更多任务）
-        int dependentCount = (int) dependencyRepository.countByDependsOnTaskId(task.id);
-        int dependentBonus = Math.min(dependentCount * DEPENDENT_COUNT_WEIGHT, 30);
+        int dependentBonus = (int) Math.min(dependentCount * DEPENDENT_COUNT_WEIGHT, 30);
 
         // 预估时间因素：预估时间越短优先级越高（快速完成任务）
         int timeBonus = 0;
@@ -235,6 +256,18 @@ public class TaskSchedulerImpl implements TaskScheduler {
         return Math.max(1, totalScore);
     }
 
+    /**
+     * 一次批量查询被依赖数量后计算一组任务的优先级分数
+     */
+    private Map<UUID, Integer> scoreAll(List<PlanningTask> tasks, Set<UUID> taskIds) {
+        Map<UUID, Long> dependentCounts = dependencyRepository.countByDependsOnTaskIds(taskIds);
+        Map<UUID, Integer> scores = new HashMap<>(tasks.size() * 2);
+        for (PlanningTask task : tasks) {
+            scores.put(task.id, priorityScore(task, dependentCounts.getOrDefault(task.id, 0L)));
+        }
+        return scores;
+    }
+
     @Override
     @Transactional
     public void refreshQueue(UUID goalId) {
@@ -246,10 +279,11 @@ public class TaskSchedulerImpl implements TaskScheduler {
 
         // 重新计算所有 SCHEDULED 任务的优先级
         List<PlanningTask> scheduledTasks = taskRepository.findByGoalIdAndStatus(goalId, PlanningTaskStatus.SCHEDULED);
+        Map<UUID, Integer> scores = scoreAll(scheduledTasks,
+                scheduledTasks.stream().map(t -> t.id).collect(Collectors.toSet()));
 
         for (PlanningTask task : scheduledTasks) {
-            int newScore = calculatePriorityScore(task);
-            task.priorityValue = newScore;
+            task.priorityValue = scores.get(task.id);
             taskRepository.persist(task);
         }
 
@@ -262,7 +296,8 @@ public class TaskSchedulerImpl implements TaskScheduler {
             return new ScheduleStatus(null, 0, 0, 0, 0, 0, 0, false);
         }
 
-        List<PlanningTask> allTasks = taskRepository.findByGoalId(goalId);
+        TaskGraph graph = buildTaskGraph(goalId);
+        List<PlanningTask> allTasks = graph.getTasks();
 
         int total = allTasks.size();
         int scheduled = 0;
@@ -277,7 +312,7 @@ public class TaskSchedulerImpl implements TaskScheduler {
             switch (task.status) {
                 case SCHEDULED:
                     scheduled++;
-                    if (!areDependenciesMet(task.id)) {
+                    if (!graph.isReady(task.id)) {
                         hasBlocking = true;
                     }
                     break;
@@ -369,7 +404,8 @@ public class TaskSchedulerImpl implements TaskScheduler {
             return Collections.emptyList();
         }
 
-        TaskGraph graph = buildTaskGraph(goalId);
+        ScheduleSnapshot snapshot = createSnapshot(goalId);
+        TaskGraph graph = snapshot.getGraph();
 
         if (graph.detectCycle()) {
             Log.warnf("Cycle detected in task graph for goal: %s", goalId);
@@ -388,7 +424,7 @@ public class TaskSchedulerImpl implements TaskScheduler {
                         return levelCompare;
                     }
                     // 同层级按优先级排序
-                    return calculatePriorityScore(t2) - calculatePriorityScore(t1);
+                    return snapshot.getScore(t2.id) - snapshot.getScore(t1.id);
                 })
                 .collect(Collectors.toList());
     }
@@ -400,12 +436,41 @@ public class TaskSchedulerImpl implements TaskScheduler {
         }
 
         List<PlanningTask> tasks = taskRepository.findByGoalId(goalId);
+        return new TaskGraph(tasks, ownDependencies(goalId, dependencyRepository.findByGoalId(goalId)));
+    }
 
-        List<PlanningTaskDependency> dependencies = new ArrayList<>();
-        for (PlanningTask task : tasks) {
-            dependencies.addAll(dependencyRepository.findByTaskId(task.id));
+    @Override
+    public ScheduleSnapshot createSnapshot(UUID goalId) {
+        if (goalId == null) {
+            return new ScheduleSnapshot(null, buildTaskGraph(null), new int[0]);
         }
 
-        return new TaskGraph(tasks, dependencies);
+        List<PlanningTask> tasks = taskRepository.findByGoalId(goalId);
+        List<PlanningTaskDependency> edges = dependencyRepository.findByGoalId(goalId);
+
+        // 被依赖数量包含其他目标中依赖本目标任务的边
+        Map<UUID, Long> dependentCounts = new HashMap<>();
+        for (PlanningTaskDependency dep : edges) {
+            if (dep.dependsOnTask != null) {
+                dependentCounts.merge(dep.dependsOnTask.id, 1L, Long::sum);
+            }
+        }
+
+        TaskGraph graph = new TaskGraph(tasks, ownDependencies(goalId, edges));
+        int[] scores = new int[graph.size()];
+        for (int i = 0; i < scores.length; i++) {
+            PlanningTask task = graph.taskAt(i);
+            scores[i] = priorityScore(task, dependentCounts.getOrDefault(task.id, 0L));
+        }
+        return new ScheduleSnapshot(goalId, graph, scores);
+    }
+
+    /**
+     * 只保留后置任务属于该目标的依赖边
+     */
+    private static List<PlanningTaskDependency> ownDependencies(UUID goalId, List<PlanningTaskDependency> edges) {
+        return edges.stream()
+                .filter(dep -> dep.task != null && goalId.equals(dep.task.goalId))
+                .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+}
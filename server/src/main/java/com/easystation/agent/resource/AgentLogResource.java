@@ -61,8 +61,8 @@ public class AgentLogResource {
             offset != null ? offset : 0,
             level,
             keyword,
-            null, // TODO: parse startTime
-            null  // TODO: parse endTime
+            startTime != null ? parseDateTime(startTime) : null,
+            endTime != null ? parseDateTime(endTime) : null
         );
         
         var result = agentLogService.queryLogs(query);
@@ -190,7 +190,8 @@ public class BatchOperationResource {
                 operation.completedAt,
                 operation.totalItems,
                 operation.successCount,
-                operation.failedCount
+                operation.failedCount,
+                operation.runningCount
         );
     }
 
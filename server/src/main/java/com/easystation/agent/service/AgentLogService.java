@@ -10,64 +10,51 @@ import com.easystation.agent.dto.AgentLogRecord.TaskLogRecord;
 import com.easystation.agent.domain.AgentTask;
 import com.easystation.agent.domain.AgentInstance;
 import com.easystation.agent.domain.enums.AgentTaskStatus;
+import com.easystation.agent.log.AgentLogAppender;
+import com.easystation.agent.log.AgentLogStore;
+import com.easystation.agent.log.LogLines;
 import io.quarkus.logging.Log;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.*;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @ApplicationScoped
 public class AgentLogService {
 
-    private static final String LOG_DIR = "work/logs";
-    private static final DateTimeFormatter DEFAULT_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-    private static final Pattern LOG_LINE_PATTERN = Pattern.compile("^(\\d{4}-\\d{2}-\\d{2}\\s+\\d{2}:\\d{2}:\\d{2})(?:\\.\\d+)?\\s+(DEBUG|INFO|WARN|ERROR)\\s+(.+)$");
+    private static final List<String> DEPLOYMENT_KEYWORDS = List.of("DEPLOY", "deploy", "Deploy", "PACKAGING", "Packaging", "packaged");
+    private static final List<String> COMMAND_KEYWORDS = List.of("COMMAND", "command", "Command", "EXEC", "Exec", "exec", "TASK", "Task", "task");
 
-    public AgentLogService() {
-        try {
-            Files.createDirectories(Paths.get(LOG_DIR));
-        } catch (IOException e) {
-            Log.error("Failed to create log directory", e);
-        }
-    }
+    @Inject
+    AgentLogStore logStore;
+
+    @Inject
+    AgentLogAppender logAppender;
 
+    /**
+     * 追加日志：仅入队，由后台写线程批量落盘，不阻塞 WebSocket 回调线程
+     */
     public void appendLog(UUID agentId, String content) {
         if (content == null || content.isEmpty()) return;
 
-        Path logFile = getLogPath(agentId);
-        try {
-            String timestamp = LocalDateTime.now().format(DEFAULT_FORMATTER);
-            String logLine = timestamp + " INFO " + content;
-            Files.writeString(
-                logFile, 
-                logLine + System.lineSeparator(), 
-                StandardCharsets.UTF_8, 
-                StandardOpenOption.CREATE, 
-                StandardOpenOption.APPEND
-            );
-        } catch (IOException e) {
-            Log.errorf(e, "Failed to write log for agent %s", agentId);
+        String timestamp = LocalDateTime.now().format(LogLines.DEFAULT_FORMATTER);
+        if (!logAppender.append(agentId, timestamp + " INFO " + content)) {
+            Log.debugf("Dropped log line for agent %s", agentId);
         }
     }
 
-    public List<String> readLogs(UUID agentId, int limit) {
-        Path logFile = getLogPath(agentId);
-        if (!Files.exists(logFile)) {
-            return Collections.emptyList();
-        }
+    /**
+     * Agent 断开连接：其日志队列写完后即释放
+     */
+    public void releaseLogs(UUID agentId) {
+        logAppender.release(agentId);
+    }
 
-        try (Stream<String> lines = Files.lines(logFile, StandardCharsets.UTF_8)) {
-            List<String> allLines = lines.collect(Collectors.toList());
-            int fromIndex = Math.max(0, allLines.size() - limit);
-            return allLines.subList(fromIndex, allLines.size());
+    public List<String> readLogs(UUID agentId, int limit) {
+        try {
+            return logStore.tail(agentId, limit);
         } catch (IOException e) {
             Log.errorf(e, "Failed to read logs for agent %s", agentId);
             return Collections.emptyList();
@@ -75,41 +62,42 @@ public class AgentLogService {
     }
 
     public AgentLogRecord queryLogs(Query query) {
-        Path logFile = getLogPath(query.agentId());
-        if (!Files.exists(logFile)) {
-            return new AgentLogRecord(query.agentId(), null, 0, Collections.emptyList());
-        }
-
-        try (Stream<String> lines = Files.lines(logFile, StandardCharsets.UTF_8)) {
-            List<LogEntry> entries = new ArrayList<>();
-            int lineNumber = 0;
-            int totalCount = 0;
+        int offset = query.offset() != null ? query.offset() : 0;
+        int limit = query.limit() != null ? query.limit() : 100;
+        int levelIndex = query.level() != null ? LogLines.levelIndex(query.level()) : -1;
 
-            for (String line : (Iterable<String>) lines::iterator) {
-                lineNumber++;
-                LogEntry entry = parseLogLine(line, lineNumber);
-                if (entry == null) continue;
+        try {
+            long[] counts = logStore.levelCounts(query.agentId());
+            int totalCount = (int) Arrays.stream(counts).sum();
+            if (query.level() != null && (levelIndex < 0 || counts[levelIndex] <= offset)) {
+                // Not enough lines of this level to reach the requested page
+                return new AgentLogRecord(query.agentId(), null, totalCount, Collections.emptyList());
+            }
 
-                // Apply filters
-                totalCount++;
-                if (query.level() != null && !entry.level().equalsIgnoreCase(query.level())) {
-                    continue;
+            List<LogEntry> pagedEntries = new ArrayList<>(Math.min(limit, 1024));
+            int[] skipped = {0};
+            logStore.scan(query.agentId(), query.startTime(), query.endTime(), (lineNumber, line) -> {
+                LogLines.Parsed parsed = LogLines.parse(line);
+                if (parsed == null) return true;
+                if (query.endTime() != null && parsed.timestamp() != null && parsed.timestamp().isAfter(query.endTime())) {
+                    return false;
                 }
-                if (query.keyword() != null && !entry.message().contains(query.keyword())) {
-                    continue;
+                if (query.startTime() != null && parsed.timestamp() != null && parsed.timestamp().isBefore(query.startTime())) {
+                    return true;
                 }
-
-                entries.add(entry);
-            }
-
-            // Apply pagination
-            int offset = query.offset() != null ? query.offset() : 0;
-            int limit = query.limit() != null ? query.limit() : 100;
-            int endIndex = Math.min(offset + limit, entries.size());
-            
-            List<LogEntry> pagedEntries = offset < entries.size() 
-                ? entries.subList(offset, endIndex) 
-                : Collections.emptyList();
+                if (levelIndex >= 0 && parsed.levelIndex() != levelIndex) {
+                    return true;
+                }
+                if (query.keyword() != null && !parsed.message().contains(query.keyword())) {
+                    return true;
+                }
+                if (skipped[0] < offset) {
+                    skipped[0]++;
+                    return true;
+                }
+                pagedEntries.add(parsed.toEntry(lineNumber));
+                return pagedEntries.size() < limit;
+            });
 
             return new AgentLogRecord(
                 query.agentId(), 
@@ -124,29 +112,12 @@ public class AgentLogService {
     }
 
     public Stats getLogStats(UUID agentId) {
-        Path logFile = getLogPath(agentId);
-        if (!Files.exists(logFile)) {
-            return new Stats(0, 0, 0, 0, 0);
-        }
-
-        try (Stream<String> lines = Files.lines(logFile, StandardCharsets.UTF_8)) {
-            int errorCount = 0;
-            int warnCount = 0;
-            int infoCount = 0;
-            int debugCount = 0;
-
-            for (String line : (Iterable<String>) lines::iterator) {
-                LogEntry entry = parseLogLine(line, 0);
-                if (entry == null) continue;
-
-                switch (entry.level().toUpperCase()) {
-                    case "ERROR" -> errorCount++;
-                    case "WARN" -> warnCount++;
-                    case "INFO" -> infoCount++;
-                    case "DEBUG" -> debugCount++;
-                }
-            }
-
+        try {
+            long[] counts = logStore.levelCounts(agentId);
+            int debugCount = (int) counts[0];
+            int infoCount = (int) counts[1];
+            int warnCount = (int) counts[2];
+            int errorCount = (int) counts[3];
             int total = errorCount + warnCount + infoCount + debugCount;
             return new Stats(total, errorCount, warnCount, infoCount, debugCount);
         } catch (IOException e) {
@@ -159,97 +130,24 @@ public class AgentLogService {
         return readLogs(agentId, lines);
     }
 
-    private LogEntry parseLogLine(String line, int lineNumber) {
-        if (line == null || line.isEmpty()) return null;
-
-        Matcher matcher = LOG_LINE_PATTERN.matcher(line);
-        if (matcher.matches()) {
-            try {
-                String timestamp = matcher.group(1);
-                String level = matcher.group(2);
-                String message = matcher.group(3);
-                LocalDateTime dateTime = LocalDateTime.parse(timestamp, DEFAULT_FORMATTER);
-                return new LogEntry(lineNumber, dateTime, level, message);
-            } catch (Exception e) {
-                // Fallback: treat entire line as INFO
-                return new LogEntry(lineNumber, null, "INFO", line);
-            }
-        }
-
-        // Fallback: no timestamp format
-        return new LogEntry(lineNumber, null, "INFO", line);
-    }
-
-    private Path getLogPath(UUID agentId) {
-        return Paths.get(LOG_DIR, agentId.toString() + ".log");
-    }
-
     /**
      * 查询部署日志
      * 从日志文件中过滤包含部署相关关键词的日志，并结合数据库中的部署任务信息
      */
     public AgentLogRecord queryDeploymentLogs(DeploymentLogQuery query) {
-        List<LogEntry> entries = new ArrayList<>();
-        int totalCount = 0;
-
-        // 从日志文件中过滤部署相关日志
-        Path logPath = getLogPath(query.agentId());
-        if (Files.exists(logPath)) {
-            List<String> deploymentKeywords = Arrays.asList("DEPLOY", "deploy", "Deploy", "PACKAGING", "Packaging", "packaged");
-            
-            try (Stream<String> lines = Files.lines(logPath, StandardCharsets.UTF_8)) {
-                int lineNumber = 0;
-                for (String line : (Iterable<String>) lines::iterator) {
-                    lineNumber++;
-                    
-                    // 检查是否包含部署相关关键词
-                    boolean isDeploymentLog = deploymentKeywords.stream()
-                        .anyMatch(keyword -> line.contains(keyword));
-                    
-                    if (!isDeploymentLog) continue;
-
-                    LogEntry entry = parseLogLine(line, lineNumber);
-                    if (entry == null) continue;
-
-                    // 应用时间过滤
-                    if (query.startTime() != null && entry.timestamp() != null 
-                        && entry.timestamp().isBefore(query.startTime())) {
-                        continue;
-                    }
-                    if (query.endTime() != null && entry.timestamp() != null 
-                        && entry.timestamp().isAfter(query.endTime())) {
-                        continue;
-                    }
-
-                    totalCount++;
-                    entries.add(entry);
-                }
-            } catch (IOException e) {
-                Log.warnf("Failed to read deployment logs for agent %s: %s", query.agentId(), e.getMessage());
-            }
+        KeywordPage page = new KeywordPage(DEPLOYMENT_KEYWORDS, query.startTime(), query.endTime(),
+            query.offset() != null ? query.offset() : 0,
+            query.limit() != null ? query.limit() : 100);
+        try {
+            logStore.scan(query.agentId(), query.startTime(), query.endTime(), page);
+        } catch (IOException e) {
+            Log.warnf("Failed to read deployment logs for agent %s: %s", query.agentId(), e.getMessage());
         }
 
-        // 按时间倒序排列
-        entries.sort((a, b) -> {
-            if (a.timestamp() == null && b.timestamp() == null) return 0;
-            if (a.timestamp() == null) return 1;
-            if (b.timestamp() == null) return -1;
-            return b.timestamp().compareTo(a.timestamp());
-        });
-
-        // 应用分页
-        int offset = query.offset() != null ? query.offset() : 0;
-        int limit = query.limit() != null ? query.limit() : 100;
-        int endIndex = Math.min(offset + limit, entries.size());
-
-        List<LogEntry> pagedEntries = offset < entries.size()
-            ? entries.subList(offset, endIndex)
-            : Collections.emptyList();
-
         // 获取 Agent 名称
         String agentName = getAgentName(query.agentId());
 
-        return new AgentLogRecord(query.agentId(), agentName, totalCount, pagedEntries);
+        return new AgentLogRecord(query.agentId(), agentName, page.totalCount, page.entries());
     }
 
     /**
@@ -257,67 +155,91 @@ public class AgentLogService {
      * 从日志文件中过滤包含命令执行相关关键词的日志
      */
     public AgentLogRecord queryCommandLogs(CommandLogQuery query) {
-        List<LogEntry> entries = new ArrayList<>();
-        int totalCount = 0;
-
-        Path logPath = getLogPath(query.agentId());
-        if (Files.exists(logPath)) {
-            List<String> commandKeywords = Arrays.asList("COMMAND", "command", "Command", "EXEC", "Exec", "exec", "TASK", "Task", "task");
-            
-            // 如果指定了 executionId，添加到关键词
-            if (query.executionId() != null) {
-                commandKeywords = new ArrayList<>(commandKeywords);
-                commandKeywords.add(query.executionId().toString());
-            }
+        List<String> commandKeywords = COMMAND_KEYWORDS;
+        // 如果指定了 executionId，添加到关键词
+        if (query.executionId() != null) {
+            commandKeywords = new ArrayList<>(commandKeywords);
+            commandKeywords.add(query.executionId().toString());
+        }
 
-            try (Stream<String> lines = Files.lines(logPath, StandardCharsets.UTF_8)) {
-                int lineNumber = 0;
-                for (String line : (Iterable<String>) lines::iterator) {
-                    lineNumber++;
-                    
-                    boolean isCommandLog = commandKeywords.stream()
-                        .anyMatch(keyword -> line.contains(keyword));
-                    
-                    if (!isCommandLog) continue;
-
-                    LogEntry entry = parseLogLine(line, lineNumber);
-                    if (entry == null) continue;
-
-                    if (query.startTime() != null && entry.timestamp() != null 
-                        && entry.timestamp().isBefore(query.startTime())) {
-                        continue;
-                    }
-                    if (query.endTime() != null && entry.timestamp() != null 
-                        && entry.timestamp().isAfter(query.endTime())) {
-                        continue;
-                    }
-
-                    totalCount++;
-                    entries.add(entry);
-                }
-            } catch (IOException e) {
-                Log.warnf("Failed to read command logs for agent %s: %s", query.agentId(), e.getMessage());
-            }
+        KeywordPage page = new KeywordPage(commandKeywords, query.startTime(), query.endTime(),
+            query.offset() != null ? query.offset() : 0,
+            query.limit() != null ? query.limit() : 100);
+        try {
+            logStore.scan(query.agentId(), query.startTime(), query.endTime(), page);
+        } catch (IOException e) {
+            Log.warnf("Failed to read command logs for agent %s: %s", query.agentId(), e.getMessage());
         }
 
-        entries.sort((a, b) -> {
-            if (a.timestamp() == null && b.timestamp() == null) return 0;
-            if (a.timestamp() == null) return 1;
-            if (b.timestamp() == null) return -1;
-            return b.timestamp().compareTo(a.timestamp());
-        });
+        String agentName = getAgentName(query.agentId());
 
-        int offset = query.offset() != null ? query.offset() : 0;
-        int limit = query.limit() != null ? query.limit() : 100;
-        int endIndex = Math.min(offset + limit, entries.size());
+        return new AgentLogRecord(query.agentId(), agentName, page.totalCount, page.entries());
+    }
+
+    /**
+     * 按关键词和时间范围过滤日志，按时间倒序分页。
+     * 只保留最新的 offset + limit 条匹配记录，内存占用与页大小相关而非文件大小。
+     */
+    private static final class KeywordPage implements LogLines.LineVisitor {
+        private final List<String> keywords;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+        private final int offset;
+        private final int limit;
+        private final int capacity;
+        private final Deque<LogEntry> newest = new ArrayDeque<>();
+        private final List<LogEntry> untimed = new ArrayList<>();
+        private int totalCount;
+
+        KeywordPage(List<String> keywords, LocalDateTime startTime, LocalDateTime endTime, int offset, int limit) {
+            this.keywords = keywords;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.offset = offset;
+            this.limit = limit;
+            this.capacity = offset + limit;
+        }
 
-        List<LogEntry> pagedEntries = offset < entries.size()
-            ? entries.subList(offset, endIndex)
-            : Collections.emptyList();
+        @Override
+        public boolean visit(long lineNumber, String line) {
+            if (keywords.stream().noneMatch(line::contains)) return true;
 
-        String agentName = getAgentName(query.agentId());
+            LogLines.Parsed parsed = LogLines.parse(line);
+            if (parsed == null) return true;
 
-        return new AgentLogRecord(query.agentId(), agentName, totalCount, pagedEntries);
+            LocalDateTime timestamp = parsed.timestamp();
+            if (startTime != null && timestamp != null && timestamp.isBefore(startTime)) {
+                return true;
+            }
+            if (endTime != null && timestamp != null && timestamp.isAfter(endTime)) {
+                return false;
+            }
+
+            totalCount++;
+            if (capacity <= 0) return true;
+            if (timestamp == null) {
+                // 无时间戳的日志排在最后
+                if (untimed.size() < capacity) {
+                    untimed.add(parsed.toEntry(lineNumber));
+                }
+                return true;
+            }
+            newest.addLast(parsed.toEntry(lineNumber));
+            if (newest.size() > capacity) {
+                newest.removeFirst();
+            }
+            return true;
+        }
+
+        List<LogEntry> entries() {
+            List<LogEntry> sorted = new ArrayList<>(newest.size() + untimed.size());
+            newest.descendingIterator().forEachRemaining(sorted::add);
+            sorted.addAll(untimed);
+            if (offset >= sorted.size()) {
+                return Collections.emptyList();
+            }
+            return sorted.subList(offset, Math.min(offset + limit, sorted.size()));
+        }
     }
 
     /**
@@ -6,6 +6,7 @@ import com.easystation.agent.domain.AgentTask;
 import com.easystation.agent.domain.enums.AgentTaskStatus;
 import com.easystation.agent.record.AgentTaskRecord;
 import com.easystation.infra.socket.AgentConnectionManager;
+import com.easystation.infra.socket.AgentMessageCodec;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.quarkus.logging.Log;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -28,6 +29,9 @@ public class AgentTaskService {
     @Inject
     ObjectMapper objectMapper;
 
+    @Inject
+    AgentMessageCodec messageCodec;
+
     /**
      * Create and execute a task on an agent instance.
      */
@@ -62,15 +66,10 @@ public class AgentTaskService {
         }
 
         try {
-            Map<String, Object> execMessage = new HashMap<>();
-            execMessage.put("type", "EXEC");
-            execMessage.put("requestId", task.id.toString());
-            execMessage.put("content", Map.of(
+            AgentMessageCodec.Outbound message = messageCodec.encode("EXEC", task.id.toString(), Map.of(
                     "script", script,
                     "timeout", command.timeout != null ? command.timeout : 300
             ));
-
-            String message = objectMapper.writeValueAsString(execMessage);
             boolean sent = connectionManager.send(instance.host.id, message);
 
             if (sent) {
@@ -114,15 +113,10 @@ public class AgentTaskService {
         task.persist();
 
         try {
-            Map<String, Object> execMessage = new HashMap<>();
-            execMessage.put("type", "EXEC");
-            execMessage.put("requestId", task.id.toString());
-            execMessage.put("content", Map.of(
+            AgentMessageCodec.Outbound message = messageCodec.encode("EXEC", task.id.toString(), Map.of(
                     "script", script,
                     "timeout", timeout != null ? timeout : 300
             ));
-
-            String message = objectMapper.writeValueAsString(execMessage);
             boolean sent = connectionManager.send(instance.host.id, message);
 
             if (sent) {
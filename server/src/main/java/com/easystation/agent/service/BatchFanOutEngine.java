@@ -0,0 +1,407 @@
+package com.easystation.agent.service;
+
+import com.easystation.agent.domain.AgentInstance;
+import com.easystation.agent.domain.BatchOperation;
+import com.easystation.agent.domain.BatchOperationItem;
+import com.easystation.agent.domain.enums.BatchOperationStatus;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the items of a batch operation concurrently.
+ *
+ * Each pending item gets its own virtual thread. At most agent.batch.parallelism items of one
+ * operation run at the same time. Items targeting the same environment start no faster than
+ * agent.batch.environment-rate per second (0 disables pacing). Every item state change commits
+ * in its own short transaction. The handler runs outside any transaction, so a slow target never
+ * holds a database connection.
+ *
+ * Parent success/failed/running counts live in memory. They are flushed to the operation row every
+ * agent.batch.progress-flush-interval-ms and once more with the final status when the last item
+ * finishes, so finishing an item never recounts the whole batch. Readers of a running operation get
+ * the live counts through {@link #progress(UUID)}.
+ *
+ * On shutdown the engine waits up to agent.batch.shutdown-grace-ms for running handlers. Items still
+ * pending or running after that are marked failed, and their operations get a final status, so no
+ * operation is left RUNNING. Status writes are guarded by the expected current status, so a handler
+ * that finishes after its item was failed cannot overwrite it.
+ */
+@ApplicationScoped
+public class BatchFanOutEngine {
+
+    @ConfigProperty(name = "agent.batch.parallelism", defaultValue = "64")
+    int parallelism;
+
+    @ConfigProperty(name = "agent.batch.environment-rate", defaultValue = "0")
+    int environmentRate;
+
+    @ConfigProperty(name = "agent.batch.progress-flush-interval-ms", defaultValue = "1000")
+    long flushIntervalMs;
+
+    @ConfigProperty(name = "agent.batch.shutdown-grace-ms", defaultValue = "5000")
+    long shutdownGraceMs;
+
+    static final String SHUTDOWN_MESSAGE = "Interrupted by server shutdown";
+
+    /**
+     * Executes one item against its target. Called outside any transaction; handlers that touch the
+     * database open their own short transactions.
+     */
+    @FunctionalInterface
+    public interface ItemHandler {
+
+        /**
+         * @return true on success; false marks the item failed with the operation's failure message
+         */
+        boolean handle(UUID targetId);
+    }
+
+    /** Operations currently being executed. */
+    private final Map<UUID, Progress> running = new ConcurrentHashMap<>();
+
+    /** Next free start slot (System.nanoTime) per environment. */
+    private final Map<UUID, AtomicLong> environmentSlots = new ConcurrentHashMap<>();
+
+    private ExecutorService workers;
+    private ScheduledExecutorService flusher;
+    private volatile boolean stopped;
+
+    record ItemRef(UUID id, UUID targetId, UUID environmentId) {
+    }
+
+    @PostConstruct
+    void init() {
+        workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("batch-item-", 0).factory());
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "batch-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(100, flushIntervalMs);
+        flusher.scheduleWithFixedDelay(this::flushAll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start executing the pending items of an operation. Must be called after the transaction that
+     * created the items has committed.
+     *
+     * @param failureMessage error recorded on items whose handler returned false
+     * @return false if the operation is already running or does not exist
+     */
+    public boolean start(UUID operationId, String failureMessage, ItemHandler handler) {
+        Progress progress = QuarkusTransaction.requiringNew().call(() -> prepare(operationId));
+        if (progress == null) {
+            return false;
+        }
+        if (running.putIfAbsent(operationId, progress) != null) {
+            Log.infof("Batch operation %s is already running", operationId);
+            return false;
+        }
+
+        Log.infof("Dispatching %d items of batch operation %s (parallelism %d)",
+                progress.items.size(), operationId, progress.permits.availablePermits());
+        if (progress.items.isEmpty()) {
+            complete(progress);
+            return true;
+        }
+        for (ItemRef item : progress.items) {
+            try {
+                workers.execute(() -> runItem(progress, item, handler, failureMessage));
+            } catch (RejectedExecutionException e) {
+                Log.warnf("Executor rejected batch operation %s, %d items left pending",
+                        operationId, progress.remaining.get());
+                running.remove(operationId, progress);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Live counts of a running operation.
+     */
+    public Optional<Progress> progress(UUID operationId) {
+        return Optional.ofNullable(running.get(operationId));
+    }
+
+    private Progress prepare(UUID operationId) {
+        BatchOperation operation = BatchOperation.findById(operationId);
+        if (operation == null) {
+            Log.warnf("Batch operation not found: %s", operationId);
+            return null;
+        }
+        operation.status = BatchOperationStatus.RUNNING;
+
+        List<Object[]> rows = BatchOperationItem.getEntityManager().createQuery(
+                        "select i.id, i.targetId, i.targetType from BatchOperationItem i "
+                                + "where i.batchOperation.id = ?1 and i.status = ?2 order by i.createdAt", Object[].class)
+                .setParameter(1, operationId)
+                .setParameter(2, BatchOperationStatus.PENDING)
+                .getResultList();
+
+        Map<UUID, UUID> environments = environmentsOf(rows);
+        List<ItemRef> items = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            UUID targetId = (UUID) row[1];
+            items.add(new ItemRef((UUID) row[0], targetId, environments.get(targetId)));
+        }
+
+        // Items finished by an earlier run still count towards the final status
+        Map<BatchOperationStatus, Long> counts = BatchOperationService.countByStatus(operationId);
+        return new Progress(operationId, items, Math.max(1, parallelism),
+                counts.getOrDefault(BatchOperationStatus.SUCCESS, 0L).intValue(),
+                counts.getOrDefault(BatchOperationStatus.FAILED, 0L).intValue());
+    }
+
+    /**
+     * Resolve the environment of each target with one query per target type.
+     */
+    private Map<UUID, UUID> environmentsOf(List<Object[]> rows) {
+        List<UUID> hostIds = new ArrayList<>();
+        List<UUID> agentIds = new ArrayList<>();
+        for (Object[] row : rows) {
+            if ("Host".equals(row[2])) {
+                hostIds.add((UUID) row[1]);
+            } else if ("AgentInstance".equals(row[2])) {
+                agentIds.add((UUID) row[1]);
+            }
+        }
+        Map<UUID, UUID> environments = new HashMap<>();
+        if (!hostIds.isEmpty()) {
+            putPairs(environments, "select h.id, h.environment.id from Host h where h.id in ?1", hostIds);
+        }
+        if (!agentIds.isEmpty()) {
+            putPairs(environments, "select a.id, a.host.environment.id from AgentInstance a where a.id in ?1", agentIds);
+        }
+        return environments;
+    }
+
+    private static void putPairs(Map<UUID, UUID> target, String query, Collection<UUID> ids) {
+        AgentInstance.getEntityManager().createQuery(query, Object[].class)
+                .setParameter(1, ids)
+                .getResultList()
+                .forEach(row -> target.put((UUID) row[0], (UUID) row[1]));
+    }
+
+    private void runItem(Progress progress, ItemRef item, ItemHandler handler, String failureMessage) {
+        try {
+            pace(item.environmentId());
+            progress.permits.acquire();
+        } catch (InterruptedException e) {
+            // Shutting down: leave the item pending
+            return;
+        }
+        try {
+            int started = QuarkusTransaction.requiringNew().call(() -> BatchOperationItem.update(
+                    "status = ?1, startedAt = ?2 where id = ?3 and status = ?4",
+                    BatchOperationStatus.RUNNING, LocalDateTime.now(), item.id(), BatchOperationStatus.PENDING));
+            if (started == 0) {
+                // Already failed by shutdown
+                return;
+            }
+            progress.running.incrementAndGet();
+            progress.dirty = true;
+
+            String error;
+            try {
+                boolean success = handler.handle(item.targetId());
+                error = success ? null : failureMessage;
+            } catch (RuntimeException e) {
+                Log.errorf(e, "Batch operation %s item %s failed on target %s",
+                        progress.operationId, item.id(), item.targetId());
+                error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            }
+            progress.running.decrementAndGet();
+
+            BatchOperationStatus status = error == null ? BatchOperationStatus.SUCCESS : BatchOperationStatus.FAILED;
+            String errorMessage = error;
+            int finished = QuarkusTransaction.requiringNew().call(() -> BatchOperationItem.update(
+                    "status = ?1, errorMessage = ?2, completedAt = ?3 where id = ?4 and status = ?5",
+                    status, errorMessage, LocalDateTime.now(), item.id(), BatchOperationStatus.RUNNING));
+            if (finished > 0) {
+                (error == null ? progress.success : progress.failed).incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            // Item state could not be written; count it as failed so the operation still completes
+            Log.errorf(e, "Failed to record state of batch operation %s item %s", progress.operationId, item.id());
+            progress.failed.incrementAndGet();
+        } finally {
+            progress.permits.release();
+            progress.dirty = true;
+            if (progress.remaining.decrementAndGet() == 0) {
+                complete(progress);
+            }
+        }
+    }
+
+    /**
+     * Wait for the next start slot of the environment.
+     */
+    private void pace(UUID environmentId) throws InterruptedException {
+        if (environmentRate <= 0 || environmentId == null) {
+            return;
+        }
+        long interval = TimeUnit.SECONDS.toNanos(1) / environmentRate;
+        AtomicLong next = environmentSlots.computeIfAbsent(environmentId, id -> new AtomicLong(System.nanoTime()));
+        long now = System.nanoTime();
+        long slot;
+        while (true) {
+            long current = next.get();
+            slot = current - now > 0 ? current : now;
+            if (next.compareAndSet(current, slot + interval)) {
+                break;
+            }
+        }
+        TimeUnit.NANOSECONDS.sleep(slot - now);
+    }
+
+    private void flushAll() {
+        for (Progress progress : running.values()) {
+            if (!progress.dirty) {
+                continue;
+            }
+            progress.dirty = false;
+            try {
+                QuarkusTransaction.requiringNew().run(() -> BatchOperation.update(
+                        "successCount = ?1, failedCount = ?2, runningCount = ?3 where id = ?4",
+                        progress.success.get(), progress.failed.get(), progress.running.get(), progress.operationId));
+            } catch (RuntimeException e) {
+                progress.dirty = true;
+                Log.warnf("Failed to flush progress of batch operation %s: %s", progress.operationId, e.getMessage());
+            }
+        }
+    }
+
+    private void complete(Progress progress) {
+        if (progress.abandoned) {
+            return;
+        }
+        int success = progress.success.get();
+        int failed = progress.failed.get();
+        BatchOperationStatus status = BatchOperationService.terminalStatus(success, failed);
+        try {
+            QuarkusTransaction.requiringNew().run(() -> BatchOperation.update(
+                    "status = ?1, successCount = ?2, failedCount = ?3, runningCount = 0, completedAt = ?4 where id = ?5",
+                    status, success, failed, LocalDateTime.now(), progress.operationId));
+            Log.infof("Batch operation %s completed with status=%s, success=%d, failed=%d",
+                    progress.operationId, status, success, failed);
+        } catch (RuntimeException e) {
+            Log.errorf(e, "Failed to complete batch operation %s", progress.operationId);
+        } finally {
+            running.remove(progress.operationId, progress);
+        }
+    }
+
+    void onShutdown(@Observes ShutdownEvent event) {
+        shutdown();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        flusher.shutdownNow();
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(Math.max(0, shutdownGraceMs), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running.values().forEach(this::abandon);
+    }
+
+    /**
+     * Fail the items that did not finish before shutdown and give the operation its final status.
+     */
+    private void abandon(Progress progress) {
+        progress.abandoned = true;
+        try {
+            QuarkusTransaction.requiringNew().run(() -> {
+                int failedItems = BatchOperationItem.update(
+                        "status = ?1, errorMessage = ?2, completedAt = ?3 where batchOperation.id = ?4 and status in ?5",
+                        BatchOperationStatus.FAILED, SHUTDOWN_MESSAGE, LocalDateTime.now(), progress.operationId,
+                        List.of(BatchOperationStatus.PENDING, BatchOperationStatus.RUNNING));
+                Map<BatchOperationStatus, Long> counts = BatchOperationService.countByStatus(progress.operationId);
+                long success = counts.getOrDefault(BatchOperationStatus.SUCCESS, 0L);
+                long failed = counts.getOrDefault(BatchOperationStatus.FAILED, 0L);
+                BatchOperation.update(
+                        "status = ?1, successCount = ?2, failedCount = ?3, runningCount = 0, completedAt = ?4 "
+                                + "where id = ?5",
+                        BatchOperationService.terminalStatus(success, failed), (int) success, (int) failed,
+                        LocalDateTime.now(), progress.operationId);
+                Log.warnf("Batch operation %s stopped by shutdown, %d unfinished items marked failed",
+                        progress.operationId, failedItems);
+            });
+        } catch (RuntimeException e) {
+            Log.errorf(e, "Failed to record shutdown of batch operation %s", progress.operationId);
+        } finally {
+            running.remove(progress.operationId, progress);
+        }
+    }
+
+    /**
+     * In-memory counters of one running operation.
+     */
+    public static final class Progress {
+        final UUID operationId;
+        final List<ItemRef> items;
+        final Semaphore permits;
+        final AtomicInteger remaining;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger success;
+        final AtomicInteger failed;
+        volatile boolean dirty;
+        volatile boolean abandoned;
+
+        Progress(UUID operationId, List<ItemRef> items, int parallelism, int success, int failed) {
+            this.operationId = operationId;
+            this.items = items;
+            this.permits = new Semaphore(parallelism);
+            this.remaining = new AtomicInteger(items.size());
+            this.success = new AtomicInteger(success);
+            this.failed = new AtomicInteger(failed);
+        }
+
+        public int getRunning() {
+            return running.get();
+        }
+
+        public int getSuccess() {
+            return success.get();
+        }
+
+        public int getFailed() {
+            return failed.get();
+        }
+
+        public int getRemaining() {
+            return remaining.get();
+        }
+    }
+}
@@ -7,17 +7,25 @@ import com.easystation.agent.domain.enums.BatchOperationStatus;
 import com.easystation.agent.domain.enums.OperationType;
 import com.easystation.infra.domain.Host;
 import com.easystation.infra.socket.AgentConnectionManager;
+import com.easystation.infra.socket.AgentMessageCodec;
 import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.panache.common.Page;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.context.ManagedExecutor;
 
 import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @ApplicationScoped
@@ -29,6 +37,15 @@ public class BatchOperationService {
     @Inject
     AgentConnectionManager agentConnectionManager;
 
+    @Inject
+    AgentMessageCodec messageCodec;
+
+    @Inject
+    BatchFanOutEngine fanOutEngine;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
     private static final int DEFAULT_PAGE_SIZE = 20;
     private static final int MAX_PAGE_SIZE = 100;
 
@@ -145,13 +162,21 @@ public class BatchOperationService {
     }
 
     /**
-     * Get batch operation details by ID.
+     * Get batch operation details by ID. While the operation is running the counts come from the
+     * fan-out engine, so they are not behind by a flush interval.
      */
     public BatchOperation getBatchOperation(UUID id) {
         BatchOperation operation = BatchOperation.findById(id);
         if (operation == null) {
             throw new WebApplicationException("Batch operation not found", Response.Status.NOT_FOUND);
         }
+        fanOutEngine.progress(id).ifPresent(progress -> {
+            // Live counts are for the response only and must not be written back
+            BatchOperation.getEntityManager().detach(operation);
+            operation.successCount = progress.getSuccess();
+            operation.failedCount = progress.getFailed();
+            operation.runningCount = progress.getRunning();
+        });
         return operation;
     }
 
@@ -221,26 +246,22 @@ public class BatchOperationService {
             return null;
         }
 
-        // Count items by status
-        long pendingCount = BatchOperationItem.countByBatchOperationIdAndStatus(operationId, BatchOperationStatus.PENDING);
-        long runningCount = BatchOperationItem.countByBatchOperationIdAndStatus(operationId, BatchOperationStatus.RUNNING);
-        long successCount = BatchOperationItem.countByBatchOperationIdAndStatus(operationId, BatchOperationStatus.SUCCESS);
-        long failedCount = BatchOperationItem.countByBatchOperationIdAndStatus(operationId, BatchOperationStatus.FAILED);
+        // Count items by status in one query
+        Map<BatchOperationStatus, Long> counts = countByStatus(operationId);
+        long pendingCount = counts.getOrDefault(BatchOperationStatus.PENDING, 0L);
+        long runningCount = counts.getOrDefault(BatchOperationStatus.RUNNING, 0L);
+        long successCount = counts.getOrDefault(BatchOperationStatus.SUCCESS, 0L);
+        long failedCount = counts.getOrDefault(BatchOperationStatus.FAILED, 0L);
 
         // Update counts
         operation.successCount = (int) successCount;
         operation.failedCount = (int) failedCount;
+        operation.runningCount = (int) runningCount;
 
         // Determine if all items are complete
         if (pendingCount == 0 && runningCount == 0) {
             // All items are terminal
-            if (failedCount == 0) {
-                operation.status = BatchOperationStatus.SUCCESS;
-            } else if (successCount == 0) {
-                operation.status = BatchOperationStatus.FAILED;
-            } else {
-                operation.status = BatchOperationStatus.PARTIAL_SUCCESS;
-            }
+            operation.status = terminalStatus(successCount, failedCount);
             operation.completedAt = LocalDateTime.now();
             Log.infof("Batch operation %s completed with status=%s, success=%d, failed=%d",
                     operationId, operation.status, successCount, failedCount);
@@ -254,207 +275,65 @@ public class BatchOperationService {
     }
 
     /**
-     * Process batch command asynchronously.
+     * Run batch command items once the creating transaction has committed.
      */
     private void processBatchCommandAsync(UUID operationId, String command) {
-        managedExecutor.execute(() -> {
-            try {
-                processBatchCommand(operationId, command);
-            } catch (Exception e) {
-                Log.errorf(e, "Error processing batch command operation %s", operationId);
+        startAfterCommit(operationId, "Command execution failed", hostId -> {
+            if (!QuarkusTransaction.requiringNew().call(() -> Host.findById(hostId) != null)) {
+                throw new RuntimeException("Host not found: " + hostId);
             }
+            return executeCommandOnHost(hostId, command);
         });
     }
 
     /**
-     * Process batch command execution.
-     */
-    @Transactional
-    void processBatchCommand(UUID operationId, String command) {
-        BatchOperation operation = BatchOperation.findById(operationId);
-        if (operation == null) {
-            Log.warnf("Batch operation not found: %s", operationId);
-            return;
-        }
-
-        // Update operation status to RUNNING
-        operation.status = BatchOperationStatus.RUNNING;
-        operation.persist();
-
-        List<BatchOperationItem> items = BatchOperationItem.findByBatchOperationId(operationId);
-        for (BatchOperationItem item : items) {
-            try {
-                // Update item status to RUNNING
-                item.status = BatchOperationStatus.RUNNING;
-                item.startedAt = LocalDateTime.now();
-                item.persist();
-
-                // Execute command on host
-                Host host = Host.findById(item.targetId);
-                if (host == null) {
-                    throw new RuntimeException("Host not found: " + item.targetId);
-                }
-
-                // TODO: Implement actual command execution via WebSocket/SSH
-                // For now, simulate success
-                boolean success = executeCommandOnHost(host.id, command);
-
-                if (success) {
-                    item.status = BatchOperationStatus.SUCCESS;
-                } else {
-                    item.status = BatchOperationStatus.FAILED;
-                    item.errorMessage = "Command execution failed";
-                }
-                item.completedAt = LocalDateTime.now();
-                item.persist();
-
-            } catch (Exception e) {
-                Log.errorf(e, "Error executing command on host %s", item.targetId);
-                item.status = BatchOperationStatus.FAILED;
-                item.errorMessage = e.getMessage();
-                item.completedAt = LocalDateTime.now();
-                item.persist();
-            }
-        }
-
-        // Check completion
-        checkBatchOperationCompletion(operationId);
-    }
-
-    /**
-     * Process batch deploy asynchronously.
+     * Run batch deploy items once the creating transaction has committed.
      */
     private void processBatchDeployAsync(UUID operationId) {
-        managedExecutor.execute(() -> {
-            try {
-                processBatchDeploy(operationId);
-            } catch (Exception e) {
-                Log.errorf(e, "Error processing batch deploy operation %s", operationId);
+        startAfterCommit(operationId, "Deploy failed", agentId -> {
+            if (!QuarkusTransaction.requiringNew().call(() -> AgentInstance.findById(agentId) != null)) {
+                throw new RuntimeException("Agent instance not found: " + agentId);
             }
+            return deployAgentInstance(agentId);
         });
     }
 
     /**
-     * Process batch deploy execution.
-     */
-    @Transactional
-    void processBatchDeploy(UUID operationId) {
-        BatchOperation operation = BatchOperation.findById(operationId);
-        if (operation == null) {
-            Log.warnf("Batch operation not found: %s", operationId);
-            return;
-        }
-
-        // Update operation status to RUNNING
-        operation.status = BatchOperationStatus.RUNNING;
-        operation.persist();
-
-        List<BatchOperationItem> items = BatchOperationItem.findByBatchOperationId(operationId);
-        for (BatchOperationItem item : items) {
-            try {
-                // Update item status to RUNNING
-                item.status = BatchOperationStatus.RUNNING;
-                item.startedAt = LocalDateTime.now();
-                item.persist();
-
-                // Deploy agent instance
-                AgentInstance instance = AgentInstance.findById(item.targetId);
-                if (instance == null) {
-                    throw new RuntimeException("Agent instance not found: " + item.targetId);
-                }
-
-                // TODO: Implement actual deploy logic
-                // For now, simulate success
-                boolean success = deployAgentInstance(instance.id);
-
-                if (success) {
-                    item.status = BatchOperationStatus.SUCCESS;
-                } else {
-                    item.status = BatchOperationStatus.FAILED;
-                    item.errorMessage = "Deploy failed";
-                }
-                item.completedAt = LocalDateTime.now();
-                item.persist();
-
-            } catch (Exception e) {
-                Log.errorf(e, "Error deploying agent %s", item.targetId);
-                item.status = BatchOperationStatus.FAILED;
-                item.errorMessage = e.getMessage();
-                item.completedAt = LocalDateTime.now();
-                item.persist();
-            }
-        }
-
-        // Check completion
-        checkBatchOperationCompletion(operationId);
-    }
-
-    /**
-     * Process batch upgrade asynchronously.
+     * Run batch upgrade items once the creating transaction has committed.
      */
     private void processBatchUpgradeAsync(UUID operationId, String version) {
-        managedExecutor.execute(() -> {
-            try {
-                processBatchUpgrade(operationId, version);
-            } catch (Exception e) {
-                Log.errorf(e, "Error processing batch upgrade operation %s", operationId);
+        startAfterCommit(operationId, "Upgrade failed", agentId -> {
+            UpgradeTarget target = QuarkusTransaction.requiringNew().call(() -> upgradeTarget(agentId));
+            if (target == null) {
+                throw new RuntimeException("Agent instance not found: " + agentId);
             }
+            return upgradeAgentInstance(agentId, target, version);
         });
     }
 
     /**
-     * Process batch upgrade execution.
+     * Hand the operation to the fan-out engine after commit, so the workers see the created items.
      */
-    @Transactional
-    void processBatchUpgrade(UUID operationId, String version) {
-        BatchOperation operation = BatchOperation.findById(operationId);
-        if (operation == null) {
-            Log.warnf("Batch operation not found: %s", operationId);
-            return;
-        }
-
-        // Update operation status to RUNNING
-        operation.status = BatchOperationStatus.RUNNING;
-        operation.persist();
-
-        List<BatchOperationItem> items = BatchOperationItem.findByBatchOperationId(operationId);
-        for (BatchOperationItem item : items) {
-            try {
-                // Update item status to RUNNING
-                item.status = BatchOperationStatus.RUNNING;
-                item.startedAt = LocalDateTime.now();
-                item.persist();
-
-                // Upgrade agent instance
-                AgentInstance instance = AgentInstance.findById(item.targetId);
-                if (instance == null) {
-                    throw new RuntimeException("Agent instance not found: " + item.targetId);
-                }
-
-                // TODO: Implement actual upgrade logic
-                // For now, simulate success
-                boolean success = upgradeAgentInstance(instance.id, version);
+    private void startAfterCommit(UUID operationId, String failureMessage, BatchFanOutEngine.ItemHandler handler) {
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
 
-                if (success) {
-                    item.status = BatchOperationStatus.SUCCESS;
-                } else {
-                    item.status = BatchOperationStatus.FAILED;
-                    item.errorMessage = "Upgrade failed";
+            @Override
+            public void afterCompletion(int status) {
+                if (status != Status.STATUS_COMMITTED) {
+                    return;
                 }
-                item.completedAt = LocalDateTime.now();
-                item.persist();
-
-            } catch (Exception e) {
-                Log.errorf(e, "Error upgrading agent %s", item.targetId);
-                item.status = BatchOperationStatus.FAILED;
-                item.errorMessage = e.getMessage();
-                item.completedAt = LocalDateTime.now();
-                item.persist();
+                managedExecutor.execute(() -> {
+                    try {
+                        fanOutEngine.start(operationId, failureMessage, handler);
+                    } catch (Exception e) {
+                        Log.errorf(e, "Error starting batch operation %s", operationId);
+                    }
+                });
             }
-        }
-
-        // Check completion
-        checkBatchOperationCompletion(operationId);
+        });
     }
 
     /**
@@ -476,21 +355,29 @@ public class BatchOperationService {
     }
 
     /**
-     * Upgrade agent instance by sending UPGRADE_AGENT message via WebSocket.
+     * Host and current version of an agent instance, read before sending the upgrade.
      */
-    private boolean upgradeAgentInstance(UUID agentId, String version) {
+    private record UpgradeTarget(UUID hostId, String currentVersion) {
+    }
+
+    private static UpgradeTarget upgradeTarget(UUID agentId) {
         AgentInstance instance = AgentInstance.findById(agentId);
         if (instance == null) {
-            Log.errorf("Agent instance not found: %s", agentId);
-            return false;
+            return null;
         }
+        return new UpgradeTarget(instance.host != null ? instance.host.id : null, instance.version);
+    }
 
-        if (instance.host == null || instance.host.id == null) {
+    /**
+     * Upgrade agent instance by sending UPGRADE_AGENT message via WebSocket.
+     */
+    private boolean upgradeAgentInstance(UUID agentId, UpgradeTarget target, String version) {
+        if (target.hostId() == null) {
             Log.errorf("Agent instance %s has no associated host", agentId);
             return false;
         }
 
-        UUID hostId = instance.host.id;
+        UUID hostId = target.hostId();
         
         // Build upgrade message
         String downloadUrl = String.format(
@@ -498,7 +385,7 @@ public class BatchOperationService {
             version, version
         );
         
-        String upgradeMessage = buildUpgradeMessage(agentId, version, downloadUrl, instance.version);
+        AgentMessageCodec.Outbound upgradeMessage = buildUpgradeMessage(agentId, version, downloadUrl, target.currentVersion());
         
         Log.infof("Sending UPGRADE_AGENT message to agent %s (host %s), version: %s", 
                   agentId, hostId, version);
@@ -518,11 +405,39 @@ public class BatchOperationService {
     /**
      * Build UPGRADE_AGENT message in JSON format.
      */
-    private String buildUpgradeMessage(UUID agentId, String version, String downloadUrl, String rollbackVersion) {
-        return String.format(
-            "{\"type\":\"UPGRADE_AGENT\",\"requestId\":\"upgrade-%s\",\"content\":{\"version\":\"%s\",\"downloadUrl\":\"%s\",\"rollbackVersion\":\"%s\"}}",
-            agentId, version, downloadUrl, rollbackVersion != null ? rollbackVersion : "unknown"
-        );
+    private AgentMessageCodec.Outbound buildUpgradeMessage(UUID agentId, String version, String downloadUrl, String rollbackVersion) {
+        Map<String, Object> content = new LinkedHashMap<>();
+        content.put("version", version);
+        content.put("downloadUrl", downloadUrl);
+        content.put("rollbackVersion", rollbackVersion != null ? rollbackVersion : "unknown");
+        return messageCodec.encode("UPGRADE_AGENT", "upgrade-" + agentId, content);
+    }
+
+    /**
+     * Count the items of an operation grouped by status.
+     */
+    static Map<BatchOperationStatus, Long> countByStatus(UUID operationId) {
+        Map<BatchOperationStatus, Long> counts = new EnumMap<>(BatchOperationStatus.class);
+        BatchOperationItem.getEntityManager().createQuery(
+                        "select i.status, count(i) from BatchOperationItem i "
+                                + "where i.batchOperation.id = ?1 group by i.status", Object[].class)
+                .setParameter(1, operationId)
+                .getResultList()
+                .forEach(row -> counts.put((BatchOperationStatus) row[0], (Long) row[1]));
+        return counts;
+    }
+
+    /**
+     * Final status of an operation whose items are all terminal.
+     */
+    static BatchOperationStatus terminalStatus(long successCount, long failedCount) {
+        if (failedCount == 0) {
+            return BatchOperationStatus.SUCCESS;
+        }
+        if (successCount == 0) {
+            return BatchOperationStatus.FAILED;
+        }
+        return BatchOperationStatus.PARTIAL_SUCCESS;
     }
 
     /**
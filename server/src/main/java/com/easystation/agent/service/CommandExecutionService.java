@@ -5,14 +5,16 @@ import com.easystation.agent.domain.CommandExecution;
 import com.easystation.agent.domain.CommandTemplate;
 import com.easystation.agent.domain.enums.ExecutionStatus;
 import com.easystation.agent.dto.AgentCommandMessage;
+import com.easystation.agent.dto.ExecResultContent;
 import com.easystation.agent.record.CommandExecutionRecord;
 import com.easystation.audit.enums.AuditAction;
 import com.easystation.audit.enums.AuditResult;
 import com.easystation.audit.service.AuditLogService;
 import com.easystation.infra.domain.Host;
 import com.easystation.infra.socket.AgentConnectionManager;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.easystation.infra.socket.AgentMessageCodec;
 import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.panache.common.Page;
 import io.quarkus.panache.common.Sort;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -20,12 +22,15 @@ import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @ApplicationScoped
@@ -35,11 +40,14 @@ public class CommandExecutionService {
     AgentConnectionManager connectionManager;
 
     @Inject
-    ObjectMapper objectMapper;
+    AgentMessageCodec messageCodec;
 
     @Inject
     AuditLogService auditLogService;
 
+    @ConfigProperty(name = "agent.request.timeout-grace", defaultValue = "30s")
+    Duration timeoutGrace;
+
     private static final long DEFAULT_TIMEOUT = 300L;
     private static final int DEFAULT_PAGE_SIZE = 20;
     private static final int MAX_PAGE_SIZE = 100;
@@ -327,26 +335,49 @@ public class CommandExecutionService {
     }
 
     /**
-     * Send command to agent via WebSocket.
+     * Send a command to the agent and return a future for its EXEC_RESULT.
+     * <p>
+     * The reply is awaited for the command timeout plus {@code agent.request.timeout-grace}; if none
+     * arrives the execution is moved to TIMEOUT. The reply is still persisted through
+     * {@link #handleExecutionResult}, so the future is only needed by callers that want to wait.
+     *
+     * @param timeout command timeout in seconds, null for the default
+     * @return future completed with the agent's reply; completed exceptionally if the command could
+     *         not be sent or timed out
      */
-    private boolean sendCommandToAgent(UUID hostId, UUID executionId, String command, Long timeout) {
+    public CompletableFuture<ExecResultContent> dispatch(UUID hostId, UUID executionId, String command, Long timeout) {
+        long timeoutSeconds = timeout != null ? timeout : DEFAULT_TIMEOUT;
         try {
-            Map<String, Object> execMessage = new HashMap<>();
-            execMessage.put("type", "EXEC");
-            execMessage.put("requestId", executionId.toString());
-            execMessage.put("content", Map.of(
+            AgentMessageCodec.Outbound message = messageCodec.encode("EXEC", executionId.toString(), Map.of(
                     "script", command,
-                    "timeout", timeout != null ? timeout : DEFAULT_TIMEOUT
+                    "timeout", timeoutSeconds
             ));
-
-            String message = objectMapper.writeValueAsString(execMessage);
-            return connectionManager.send(hostId, message);
+            return connectionManager.request(hostId, message,
+                    Duration.ofSeconds(timeoutSeconds).plus(timeoutGrace),
+                    () -> markTimedOut(executionId, timeoutSeconds));
         } catch (Exception e) {
-            Log.errorf(e, "Error preparing command message for execution %s", executionId);
-            return false;
+            Log.errorf("Failed to send command execution %s to host %s: %s", executionId, hostId, e.getMessage());
+            return CompletableFuture.failedFuture(e);
         }
     }
 
+    /**
+     * Send command to agent via WebSocket.
+     */
+    private boolean sendCommandToAgent(UUID hostId, UUID executionId, String command, Long timeout) {
+        return !dispatch(hostId, executionId, command, timeout).isCompletedExceptionally();
+    }
+
+    /**
+     * Move an execution that never reported back to TIMEOUT, unless a result arrived meanwhile.
+     */
+    void markTimedOut(UUID executionId, long timeoutSeconds) {
+        QuarkusTransaction.requiringNew().run(() -> CommandExecution.update(
+                "status = ?1, errorMessage = ?2, finishedAt = ?3 where id = ?4 and status in ?5",
+                ExecutionStatus.TIMEOUT, "No result from agent within " + timeoutSeconds + "s",
+                LocalDateTime.now(), executionId, List.of(ExecutionStatus.PENDING, ExecutionStatus.RUNNING)));
+    }
+
     /**
      * Substitute parameters in command script.
      */
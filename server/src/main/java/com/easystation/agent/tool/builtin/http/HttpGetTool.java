@@ -1,14 +1,13 @@
 package com.easystation.agent.tool.builtin.http;
 
 import com.easystation.agent.tool.domain.ToolParameter;
+import com.easystation.agent.tool.http.ToolHttpClients;
 import com.easystation.agent.tool.spi.Tool;
 import com.easystation.agent.tool.spi.ToolExecutionResult;
 import io.quarkus.logging.Log;
 
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.*;
 
@@ -58,6 +57,20 @@ public class HttpGetTool implements Tool {
         timeout.required = false;
         params.add(timeout);
 
+        ToolParameter followRedirects = new ToolParameter();
+        followRedirects.name = "followRedirects";
+        followRedirects.type = "boolean";
+        followRedirects.description = "是否跟随重定向（默认 false）";
+        followRedirects.required = false;
+        params.add(followRedirects);
+
+        ToolParameter maxResponseBytes = new ToolParameter();
+        maxResponseBytes.name = "maxResponseBytes";
+        maxResponseBytes.type = "number";
+        maxResponseBytes.description = "响应体最大字节数，超出部分截断（默认取服务端配置）";
+        maxResponseBytes.required = false;
+        params.add(maxResponseBytes);
+
         return params;
     }
 
@@ -77,9 +90,9 @@ public class HttpGetTool implements Tool {
 
             Log.infof("Executing HTTP GET: %s", url);
 
-            HttpClient client = HttpClient.newBuilder()
-                    .connectTimeout(Duration.ofMillis(timeout))
-                    .build();
+            ToolHttpClients clients = ToolHttpClients.current();
+            ToolHttpClients.ClientOptions options = clients.options(
+                    Boolean.parseBoolean(getStringParam(params, "followRedirects")));
 
             HttpRequest.Builder builder = HttpRequest.newBuilder()
                     .uri(URI.create(url))
@@ -90,10 +103,9 @@ public class HttpGetTool implements Tool {
                 headers.forEach(builder::header);
             }
 
-            HttpResponse<String> response = client.send(
-                    builder.build(),
-                    HttpResponse.BodyHandlers.ofString()
-            );
+            // 共享客户端复用连接；响应体按上限截断
+            ToolHttpClients.Response response = clients.send(builder.build(), options,
+                    getLongParam(params, "maxResponseBytes", 0), null);
 
             long durationMs = System.currentTimeMillis() - startTime;
 
@@ -102,6 +114,9 @@ public class HttpGetTool implements Tool {
             result.put("headers", response.headers().map());
             result.put("body", response.body());
             result.put("durationMs", durationMs);
+            if (response.truncated()) {
+                result.put("truncated", true);
+            }
 
             if (response.statusCode() >= 400) {
                 return ToolExecutionResult.builder()
@@ -1,15 +1,14 @@
 package com.easystation.agent.tool.builtin.shell;
 
 import com.easystation.agent.tool.domain.ToolParameter;
+import com.easystation.agent.tool.process.ProcessResult;
+import com.easystation.agent.tool.process.ProcessRunner;
 import com.easystation.agent.tool.spi.Tool;
 import com.easystation.agent.tool.spi.ToolExecutionResult;
 import io.quarkus.logging.Log;
+import org.eclipse.microprofile.config.ConfigProvider;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Shell 工具
@@ -17,6 +16,11 @@ import java.util.concurrent.TimeUnit;
  */
 public class ShellTools implements Tool {
 
+    /** 输出开头和结尾各保留的字符数，超出部分截断，保证单次执行内存占用有上限 */
+    private final ProcessRunner runner = new ProcessRunner(
+            config("agent.tool.shell.output.head-size", 65536),
+            config("agent.tool.shell.output.tail-size", 65536));
+
     @Override
     public String getId() {
         return "shell.execute";
@@ -79,33 +83,23 @@ public class ShellTools implements Tool {
             if (workingDir != null && !workingDir.isEmpty()) {
                 pb.directory(new java.io.File(workingDir));
             }
-            pb.redirectErrorStream(true);
-
-            Process process = pb.start();
-
-            // 读取输出
-            StringBuilder output = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    output.append(line).append("\n");
-                }
-            }
 
-            // 等待完成
-            boolean completed = process.waitFor(timeout, TimeUnit.MILLISECONDS);
-            if (!completed) {
-                process.destroyForcibly();
-                return ToolExecutionResult.failed("Command execution timeout after " + timeout + "ms");
+            // 输出由后台线程读取并只保留头尾，超时与输出是否结束无关
+            ProcessResult processResult = runner.run(pb, timeout);
+            long durationMs = processResult.durationMs();
+            if (processResult.timedOut()) {
+                return ToolExecutionResult.timeout("Command execution timeout after " + timeout + "ms", durationMs);
             }
 
-            int exitCode = process.exitValue();
-            long durationMs = System.currentTimeMillis() - startTime;
-
+            int exitCode = processResult.exitCode();
             Map<String, Object> result = new HashMap<>();
-            result.put("stdout", output.toString());
+            result.put("stdout", processResult.output());
             result.put("exitCode", exitCode);
             result.put("durationMs", durationMs);
+            if (processResult.truncated()) {
+                result.put("truncated", true);
+                result.put("outputChars", processResult.outputChars());
+            }
 
             if (exitCode != 0) {
                 return ToolExecutionResult.builder()
@@ -149,4 +143,12 @@ public class ShellTools implements Tool {
             return defaultValue;
         }
     }
+
+    private static int config(String name, int defaultValue) {
+        try {
+            return ConfigProvider.getConfig().getOptionalValue(name, Integer.class).orElse(defaultValue);
+        } catch (RuntimeException e) {
+            return defaultValue;
+        }
+    }
 }
@@ -8,5 +8,6 @@ public enum ToolExecutionStatus {
     RUNNING,    // 执行中
     SUCCESS,    // 执行成功
     FAILED,     // 执行失败
-    TIMEOUT     // 执行超时
+    TIMEOUT,    // 执行超时
+    CANCELLED   // 已取消
 }
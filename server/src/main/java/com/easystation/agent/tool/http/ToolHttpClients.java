@@ -0,0 +1,319 @@
+package com.easystation.agent.tool.http;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.arc.Arc;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 工具共享的 HTTP 客户端
+ *
+ * HttpClient 只按固定配置（重定向策略、代理）缓存复用，连接池、TLS 会话和 HTTP/2 连接
+ * 因此在多次工具调用之间保持；所有客户端共用一个虚拟线程执行器。
+ * 超时随请求设置（{@link HttpRequest.Builder#timeout}），包括建立连接的时间，不影响客户端复用。
+ * 同一目标主机的并发请求不超过 agent.tool.http.max-connections-per-host，等待许可计入请求超时；
+ * 许可只为有在途请求的主机保留，主机数量不会无限增长。
+ * 响应体按块读取，可逐块回调给调用方；设置了上限（agent.tool.http.max-response-bytes 或调用参数）时，
+ * 超过上限的部分被丢弃并标记截断，默认不限制。
+ * 请求耗时直方图 esa.tool.http.request 按方法、状态类别和目标主机记录。主机标签有上限：
+ * agent.tool.http.metrics.hosts 中的主机总有自己的标签，其余主机中最先出现的
+ * agent.tool.http.metrics.max-hosts 个也有，之后的主机都记为 other。
+ */
+@ApplicationScoped
+public class ToolHttpClients {
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "agent.tool.http.max-connections-per-host", defaultValue = "16")
+    int maxConnectionsPerHost;
+
+    @ConfigProperty(name = "agent.tool.http.max-response-bytes", defaultValue = "0")
+    long maxResponseBytes;
+
+    @ConfigProperty(name = "agent.tool.http.proxy")
+    Optional<String> proxy;
+
+    @ConfigProperty(name = "agent.tool.http.metrics.hosts")
+    Optional<List<String>> metricHosts;
+
+    @ConfigProperty(name = "agent.tool.http.metrics.max-hosts", defaultValue = "20")
+    int maxMetricHosts;
+
+    /** 按配置缓存的客户端 */
+    private final Map<ClientOptions, HttpClient> clients = new ConcurrentHashMap<>();
+
+    /** 有在途请求的目标主机的并发许可 */
+    private final Map<String, HostPermits> hostPermits = new ConcurrentHashMap<>();
+
+    /** 不在 agent.tool.http.metrics.hosts 中、已分配了自己标签的主机 */
+    private final Set<String> taggedHosts = ConcurrentHashMap.newKeySet();
+
+    private Set<String> allowedHosts = Set.of();
+
+    private ExecutorService executor;
+
+    /** 请求未设置超时时等待主机许可的时间 */
+    private static final long DEFAULT_PERMIT_WAIT_MS = 30000;
+
+    /**
+     * 客户端配置，同一配置共享一个客户端
+     *
+     * @param redirect 重定向策略
+     * @param proxy    代理地址 host:port，为 null 时直连
+     */
+    public record ClientOptions(HttpClient.Redirect redirect, String proxy) {
+    }
+
+    /**
+     * 响应结果
+     *
+     * @param body      响应体（设置上限且超过时只含前 maxBytes 字节）
+     * @param bytes     实际读取的响应体字节数
+     * @param truncated 响应体是否超过上限
+     */
+    public record Response(int statusCode, HttpHeaders headers, String body, long bytes, boolean truncated) {
+    }
+
+    /**
+     * 供非 CDI 管理的工具（通过 SPI 加载）获取实例
+     */
+    public static ToolHttpClients current() {
+        return Arc.container().instance(ToolHttpClients.class).get();
+    }
+
+    @PostConstruct
+    void init() {
+        allowedHosts = metricHosts.orElse(List.of()).stream()
+                .map(h -> h.trim().toLowerCase(Locale.ROOT))
+                .filter(h -> !h.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("tool-http-", 0).factory());
+    }
+
+    /**
+     * 使用全局代理配置的客户端选项
+     */
+    public ClientOptions options(boolean followRedirects) {
+        return new ClientOptions(followRedirects ? HttpClient.Redirect.NORMAL : HttpClient.Redirect.NEVER,
+                proxy.filter(p -> !p.isBlank()).orElse(null));
+    }
+
+    /**
+     * 获取（必要时创建）指定配置的共享客户端
+     */
+    public HttpClient client(ClientOptions options) {
+        return clients.computeIfAbsent(options, this::build);
+    }
+
+    public Response send(HttpRequest request, ClientOptions options) throws IOException, InterruptedException {
+        return send(request, options, maxResponseBytes, null);
+    }
+
+    /**
+     * 发送请求并以流方式读取响应体
+     *
+     * @param maxBytes 保留的响应体字节上限，<= 0 时使用 agent.tool.http.max-response-bytes（其为 0 时不限制）
+     * @param onChunk  每读到一块响应体时回调，可为 null；截断后不再回调
+     */
+    public Response send(HttpRequest request, ClientOptions options, long maxBytes, Consumer<byte[]> onChunk)
+            throws IOException, InterruptedException {
+        long configured = maxBytes > 0 ? maxBytes : maxResponseBytes;
+        long limit = configured > 0 ? configured : Long.MAX_VALUE;
+        String host = hostKey(request);
+        HostPermits permits = acquireHost(host);
+        try {
+            long waitMs = request.timeout().map(Duration::toMillis).orElse(DEFAULT_PERMIT_WAIT_MS);
+            if (!permits.semaphore.tryAcquire(waitMs, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Too many concurrent requests to " + host);
+            }
+            try {
+                return exchange(request, options, limit, onChunk);
+            } finally {
+                permits.semaphore.release();
+            }
+        } finally {
+            releaseHost(host);
+        }
+    }
+
+    private Response exchange(HttpRequest request, ClientOptions options, long limit, Consumer<byte[]> onChunk)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            HttpResponse<InputStream> response = client(options).send(request, HttpResponse.BodyHandlers.ofInputStream());
+            outcome = response.statusCode() / 100 + "xx";
+            return read(response, limit, onChunk);
+        } finally {
+            Timer.builder("esa.tool.http.request")
+                    .description("Latency of HTTP requests made by tools, including the response body")
+                    .tag("method", request.method())
+                    .tag("outcome", outcome)
+                    .tag("host", hostTag(request.uri().getHost()))
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 登记对主机的使用，必要时创建其许可
+     */
+    private HostPermits acquireHost(String host) {
+        return hostPermits.compute(host, (h, existing) -> {
+            HostPermits permits = existing != null ? existing : new HostPermits(Math.max(1, maxConnectionsPerHost));
+            permits.users++;
+            return permits;
+        });
+    }
+
+    /**
+     * 注销对主机的使用，最后一个使用者离开时移除其许可
+     */
+    private void releaseHost(String host) {
+        hostPermits.computeIfPresent(host, (h, permits) -> --permits.users > 0 ? permits : null);
+    }
+
+    /**
+     * 耗时直方图的主机标签，超出上限的主机记为 other
+     */
+    String hostTag(String host) {
+        if (host == null || host.isEmpty()) {
+            return "other";
+        }
+        String key = host.toLowerCase(Locale.ROOT);
+        if (allowedHosts.contains(key) || taggedHosts.contains(key)) {
+            return key;
+        }
+        synchronized (taggedHosts) {
+            if (taggedHosts.contains(key) || taggedHosts.size() < maxMetricHosts) {
+                taggedHosts.add(key);
+                return key;
+            }
+        }
+        return "other";
+    }
+
+    /**
+     * 当前保留许可的主机数
+     */
+    int trackedHosts() {
+        return hostPermits.size();
+    }
+
+    private Response read(HttpResponse<InputStream> response, long limit, Consumer<byte[]> onChunk) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream((int) Math.min(limit, 8192));
+        long total = 0;
+        boolean truncated = false;
+        // 关闭流即放弃剩余响应体；未读完的 HTTP/1.1 连接不会回到连接池
+        try (InputStream in = response.body()) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) != -1) {
+                int keep = (int) Math.min(n, limit - total);
+                if (keep > 0) {
+                    body.write(buf, 0, keep);
+                    if (onChunk != null) {
+                        onChunk.accept(Arrays.copyOf(buf, keep));
+                    }
+                }
+                total += keep;
+                if (keep < n) {
+                    truncated = true;
+                    break;
+                }
+            }
+        }
+        Charset charset = charset(response.headers());
+        return new Response(response.statusCode(), response.headers(), body.toString(charset), total, truncated);
+    }
+
+    private HttpClient build(ClientOptions options) {
+        Log.debugf("Creating tool HTTP client %s", options);
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .executor(executor)
+                .followRedirects(options.redirect());
+        if (options.proxy() != null) {
+            int colon = options.proxy().lastIndexOf(':');
+            String proxyHost = colon > 0 ? options.proxy().substring(0, colon) : options.proxy();
+            int proxyPort = colon > 0 ? Integer.parseInt(options.proxy().substring(colon + 1)) : 80;
+            builder.proxy(ProxySelector.of(InetSocketAddress.createUnresolved(proxyHost, proxyPort)));
+        }
+        return builder.build();
+    }
+
+    private static String hostKey(HttpRequest request) {
+        String host = request.uri().getHost();
+        int port = request.uri().getPort();
+        return port > 0 ? host + ":" + port : String.valueOf(host);
+    }
+
+    private static Charset charset(HttpHeaders headers) {
+        return headers.firstValue("Content-Type")
+                .flatMap(type -> {
+                    for (String part : type.split(";")) {
+                        String p = part.trim();
+                        if (p.regionMatches(true, 0, "charset=", 0, 8)) {
+                            try {
+                                return Optional.of(Charset.forName(p.substring(8).replace("\"", "")));
+                            } catch (RuntimeException e) {
+                                return Optional.empty();
+                            }
+                        }
+                    }
+                    return Optional.empty();
+                })
+                .orElse(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 主机的并发许可及正在使用（等待或持有许可）的请求数；users 只在 hostPermits 的 compute 中修改
+     */
+    private static final class HostPermits {
+        final Semaphore semaphore;
+        int users;
+
+        HostPermits(int permits) {
+            this.semaphore = new Semaphore(permits);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        clients.values().forEach(HttpClient::shutdownNow);
+        clients.clear();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,245 @@
+package com.easystation.agent.tool.impl;
+
+import com.easystation.agent.tool.domain.ToolExecutionLog;
+import com.easystation.agent.tool.domain.ToolExecutionStatus;
+import com.easystation.agent.tool.spi.ToolExecutionResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 工具执行日志的异步批量写入器
+ *
+ * 调用方在入队前完成序列化，并将超过 agent.tool.log.max-field-length 的输入、输出和错误信息截断，
+ * 队列中只保留有界长度的字符串，不持有工具返回的对象；调用方不开事务。单个写入线程在攒满
+ * agent.tool.log.batch-size 条或距上次写入超过 agent.tool.log.flush-interval-ms 时，
+ * 以一次 JDBC 批量插入写入数据库。队列满时丢弃并计数；写入线程停止后的记录改为同步写入。
+ */
+@ApplicationScoped
+public class ToolExecutionLogWriter {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO agent_tool_execution_log (id, toolId, task_id, input, output, error, status, durationMs, executedAt) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "agent.tool.log.async.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "agent.tool.log.queue-capacity", defaultValue = "10000")
+    int queueCapacity;
+
+    @ConfigProperty(name = "agent.tool.log.batch-size", defaultValue = "200")
+    int batchSize;
+
+    @ConfigProperty(name = "agent.tool.log.flush-interval-ms", defaultValue = "500")
+    long flushIntervalMs;
+
+    @ConfigProperty(name = "agent.tool.log.max-field-length", defaultValue = "65536")
+    int maxFieldLength;
+
+    private BlockingQueue<Entry> queue;
+    private volatile boolean running;
+    private Thread writer;
+
+    private Counter writtenCounter;
+    private Counter droppedCounter;
+    private Counter failedCounter;
+    private Counter truncatedCounter;
+    private DistributionSummary batchSummary;
+
+    /**
+     * 待写入的日志条目；input/output 已序列化并截断
+     */
+    record Entry(String toolId, String taskId, String input, String output, String error,
+                 ToolExecutionStatus status, long durationMs, LocalDateTime executedAt) {
+    }
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        Gauge.builder("esa.tool.log.queued", queue, BlockingQueue::size)
+                .description("Tool execution logs waiting to be written")
+                .register(registry);
+        writtenCounter = Counter.builder("esa.tool.log.written.total")
+                .description("Tool execution logs written")
+                .register(registry);
+        droppedCounter = Counter.builder("esa.tool.log.dropped.total")
+                .description("Tool execution logs dropped because the queue was full")
+                .register(registry);
+        failedCounter = Counter.builder("esa.tool.log.failed.total")
+                .description("Tool execution logs lost because of write errors")
+                .register(registry);
+        truncatedCounter = Counter.builder("esa.tool.log.truncated.total")
+                .description("Tool execution log fields truncated to the configured length")
+                .register(registry);
+        batchSummary = DistributionSummary.builder("esa.tool.log.batch.size")
+                .description("Tool execution logs written per batch")
+                .register(registry);
+
+        if (enabled) {
+            running = true;
+            writer = new Thread(this::runWriter, "tool-log-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * 记录一次工具执行。写入线程运行时从不阻塞；未启用异步或写入线程已停止时同步写入。
+     *
+     * @return false 表示队列已满，日志被丢弃
+     */
+    public boolean record(String toolId, String taskId, Object input, ToolExecutionResult result) {
+        Entry entry = new Entry(toolId, taskId, limit(toJson(input), ""), limit(toJson(result.getOutput()), null),
+                limit(result.getError(), null), result.getStatus(), result.getDurationMs(), LocalDateTime.now());
+        if (!running) {
+            write(List.of(entry));
+            return true;
+        }
+        if (!queue.offer(entry)) {
+            droppedCounter.increment();
+            return false;
+        }
+        // 入队时写入线程可能已完成最后一次排空，此时由调用方取回并同步写入
+        if (!running && !writer.isAlive() && queue.remove(entry)) {
+            write(List.of(entry));
+        }
+        return true;
+    }
+
+    private void runWriter() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                long waitNanos = deadline - System.nanoTime();
+                Entry entry = waitNanos > 0 ? queue.poll(waitNanos, TimeUnit.NANOSECONDS) : queue.poll();
+                if (entry != null) {
+                    batch.add(entry);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                if (batch.size() >= batchSize || System.nanoTime() - deadline >= 0) {
+                    write(batch);
+                    batch.clear();
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                Log.errorf(e, "Tool log writer iteration failed");
+            }
+        }
+        // 关闭时写完剩余条目
+        queue.drainTo(batch);
+        write(batch);
+    }
+
+    void write(List<Entry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            QuarkusTransaction.requiringNew().run(() -> {
+                Session session = ToolExecutionLog.getEntityManager().unwrap(Session.class);
+                session.doWork(connection -> {
+                    try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL)) {
+                        for (Entry entry : batch) {
+                            ps.setObject(1, UUID.randomUUID());
+                            ps.setString(2, entry.toolId());
+                            ps.setString(3, entry.taskId());
+                            ps.setString(4, entry.input());
+                            ps.setString(5, entry.output());
+                            ps.setString(6, entry.error());
+                            ps.setString(7, entry.status() != null ? entry.status().name() : ToolExecutionStatus.FAILED.name());
+                            ps.setLong(8, entry.durationMs());
+                            ps.setTimestamp(9, Timestamp.valueOf(entry.executedAt()));
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                });
+            });
+            writtenCounter.increment(batch.size());
+            batchSummary.record(batch.size());
+        } catch (Exception e) {
+            failedCounter.increment(batch.size());
+            Log.errorf("Failed to write %d tool execution logs: %s", batch.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 对象转 JSON 字符串
+     */
+    private String toJson(Object obj) {
+        if (obj == null) {
+            return null;
+        }
+        if (obj instanceof String s) {
+            return s;
+        }
+        try {
+            return objectMapper.writeValueAsString(obj);
+        } catch (Exception e) {
+            return obj.toString();
+        }
+    }
+
+    private String limit(String value, String fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        if (maxFieldLength <= 0 || value.length() <= maxFieldLength) {
+            return value;
+        }
+        truncatedCounter.increment();
+        return value.substring(0, maxFieldLength) + "...(truncated " + (value.length() - maxFieldLength) + " chars)";
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 写入线程最后一次排空之后入队的条目
+        List<Entry> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        write(rest);
+    }
+
+    int queued() {
+        return queue.size();
+    }
+}
@@ -1,28 +1,43 @@
 package com.easystation.agent.tool.impl;
 
-import com.easystation.agent.tool.domain.ToolExecutionLog;
-import com.easystation.agent.tool.domain.ToolExecutionStatus;
-import com.easystation.agent.tool.repository.ToolExecutionLogRepository;
 import com.easystation.agent.tool.spi.Tool;
+import com.easystation.agent.tool.spi.ToolCancellation;
 import com.easystation.agent.tool.spi.ToolExecutionResult;
 import com.easystation.agent.tool.spi.ToolExecutor;
 import com.easystation.agent.tool.spi.ToolRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 工具执行器实现
  * 支持同步和异步执行，带超时控制和日志记录
+ *
+ * 每次执行都在独立的虚拟线程上运行，并受所属工具的隔离舱限制：
+ * 同一工具最多 agent.tool.max-concurrent 个并发执行，另有 agent.tool.queue-size 个排队名额，
+ * 超出时立即拒绝。超时从提交时开始计算（包括排队时间），到期时返回 TIMEOUT，
+ * 运行工具注册的取消回调（见 {@link ToolCancellation}）并中断工具线程；取消执行同理。
  */
 @ApplicationScoped
 public class ToolExecutorImpl implements ToolExecutor {
@@ -31,51 +46,48 @@ public class ToolExecutorImpl implements ToolExecutor {
     ToolRegistry toolRegistry;
 
     @Inject
-    ToolExecutionLogRepository executionLogRepository;
+    ToolExecutionLogWriter logWriter;
 
-    /** 执行中的任务：executionId -> CompletableFuture */
-    private final Map<String, CompletableFuture<ToolExecutionResult>> runningExecutions = new ConcurrentHashMap<>();
-
-    /** 异步执行线程池 */
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
-
-    @Override
-    public ToolExecutionResult execute(String toolId, Map<String, Object> params) {
-        return execute(toolId, params, getDefaultTimeout(toolId));
-    }
+    @Inject
+    MeterRegistry registry;
 
-    @Override
-    public ToolExecutionResult execute(String toolId, Map<String, Object> params, long timeoutMs) {
-        String executionId = UUID.randomUUID().toString();
-        long startTime = System.currentTimeMillis();
+    @ConfigProperty(name = "agent.tool.max-concurrent", defaultValue = "8")
+    int maxConcurrent;
 
-        try {
-            Log.infof("Executing tool %s (executionId: %s)", toolId, executionId);
+    @ConfigProperty(name = "agent.tool.queue-size", defaultValue = "32")
+    int queueSize;
 
-            // 获取工具
-            Tool tool = toolRegistry.getTool(toolId)
-                    .orElseThrow(() -> new IllegalArgumentException("Tool not found: " + toolId));
+    /** 执行中的任务：executionId -> 执行 */
+    private final Map<String, Execution> runningExecutions = new ConcurrentHashMap<>();
 
-            // 执行工具
-            ToolExecutionResult result = tool.execute(params);
+    /** 每个工具的隔离舱 */
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
 
-            // 记录日志
-            long durationMs = System.currentTimeMillis() - startTime;
-            logExecution(executionId, toolId, null, params, result, durationMs);
+    /** 工具执行线程（每次执行一个虚拟线程） */
+    private ExecutorService executorService;
 
-            Log.infof("Tool %s executed successfully in %dms", toolId, durationMs);
-            return result;
+    /** 超时计时线程 */
+    private ScheduledExecutorService deadlines;
 
-        } catch (Exception e) {
-            long durationMs = System.currentTimeMillis() - startTime;
-            Log.errorf(e, "Tool %s execution failed", toolId);
+    @PostConstruct
+    void init() {
+        executorService = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("tool-exec-", 0).factory());
+        deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tool-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
-            // 记录错误日志
-            logExecution(executionId, toolId, null, params,
-                    ToolExecutionResult.failed(e.getMessage(), durationMs), durationMs);
+    @Override
+    public ToolExecutionResult execute(String toolId, Map<String, Object> params) {
+        return execute(toolId, params, getDefaultTimeout(toolId));
+    }
 
-            return ToolExecutionResult.failed(e.getMessage(), durationMs);
-        }
+    @Override
+    public ToolExecutionResult execute(String toolId, Map<String, Object> params, long timeoutMs) {
+        // 超时由计时线程保证，结果一定会在截止时间前后完成
+        return start(UUID.randomUUID().toString(), toolId, params, timeoutMs).join();
     }
 
     @Override
@@ -85,31 +97,20 @@ public class ToolExecutorImpl implements ToolExecutor {
 
     @Override
     public CompletionStage<ToolExecutionResult> executeAsync(String toolId, Map<String, Object> params, long timeoutMs) {
-        String executionId = UUID.randomUUID().toString();
-        CompletableFuture<ToolExecutionResult> future = new CompletableFuture<>();
-
-        runningExecutions.put(executionId, future);
-
-        CompletableFuture.runAsync(() -> {
-            try {
-                ToolExecutionResult result = execute(toolId, params, timeoutMs);
-                future.complete(result);
-            } catch (Exception e) {
-                future.completeExceptionally(e);
-            } finally {
-                runningExecutions.remove(executionId);
-            }
-        }, executorService);
+        return executeAsync(UUID.randomUUID().toString(), toolId, params, timeoutMs);
+    }
 
-        return future;
+    @Override
+    public CompletionStage<ToolExecutionResult> executeAsync(String executionId, String toolId,
+                                                             Map<String, Object> params, long timeoutMs) {
+        return start(executionId, toolId, params, timeoutMs);
     }
 
     @Override
-    @Transactional
     public boolean cancelExecution(String executionId) {
-        CompletableFuture<ToolExecutionResult> future = runningExecutions.get(executionId);
-        if (future != null && !future.isDone()) {
-            future.cancel(true);
+        Execution execution = runningExecutions.get(executionId);
+        if (execution != null && execution.abort(ToolExecutionResult.cancelled(
+                "Execution cancelled", execution.elapsedMs()))) {
             Log.infof("Execution %s cancelled", executionId);
             return true;
         }
@@ -118,25 +119,100 @@ public class ToolExecutorImpl implements ToolExecutor {
 
     @Override
     public boolean isRunning(String executionId) {
-        CompletableFuture<ToolExecutionResult> future = runningExecutions.get(executionId);
-        return future != null && !future.isDone();
+        Execution execution = runningExecutions.get(executionId);
+        return execution != null && !execution.result.isDone();
     }
 
-    /**
-     * 记录执行日志
-     */
-    @Transactional
-    protected void logExecution(String executionId, String toolId, String taskId,
-                                Map<String, Object> input, ToolExecutionResult result, long durationMs) {
-        ToolExecutionLog log = new ToolExecutionLog();
-        log.toolId = toolId;
-        log.taskId = taskId;
-        log.input = toJson(input);
-        log.output = result.getOutput() != null ? toJson(result.getOutput()) : null;
-        log.error = result.getError();
-        log.status = result.getStatus();
-        log.durationMs = durationMs;
-        executionLogRepository.persist(log);
+    private CompletableFuture<ToolExecutionResult> start(String executionId, String toolId,
+                                                         Map<String, Object> params, long timeoutMs) {
+        Log.infof("Executing tool %s (executionId: %s)", toolId, executionId);
+
+        Execution execution = new Execution(executionId, toolId);
+        execution.result.whenComplete((result, error) -> finish(execution, params, result));
+
+        Optional<Tool> tool = toolRegistry.getTool(toolId);
+        if (tool.isEmpty()) {
+            execution.result.complete(ToolExecutionResult.failed("Tool not found: " + toolId, 0));
+            return execution.result;
+        }
+
+        Bulkhead bulkhead = bulkhead(toolId);
+        if (!bulkhead.tryEnter()) {
+            bulkhead.rejected.increment();
+            Log.warnf("Tool %s rejected execution %s: %d running, queue full", toolId, executionId,
+                    bulkhead.active.get());
+            execution.result.complete(ToolExecutionResult.failed(
+                    "Tool " + toolId + " is busy, execution rejected", 0));
+            return execution.result;
+        }
+
+        long effectiveTimeout = timeoutMs > 0 ? timeoutMs : tool.get().getDefaultTimeout();
+        runningExecutions.put(executionId, execution);
+        try {
+            executorService.execute(() -> run(execution, tool.get(), params, bulkhead));
+        } catch (RejectedExecutionException e) {
+            bulkhead.exit();
+            execution.result.complete(ToolExecutionResult.failed("Tool executor is shut down", 0));
+            return execution.result;
+        }
+
+        ScheduledFuture<?> deadline = deadlines.schedule(() -> {
+            if (execution.abort(ToolExecutionResult.timeout(
+                    "Tool execution timeout after " + effectiveTimeout + "ms", execution.elapsedMs()))) {
+                bulkhead.timeouts.increment();
+                Log.warnf("Tool %s execution %s timed out after %dms", toolId, executionId, effectiveTimeout);
+            }
+        }, effectiveTimeout, TimeUnit.MILLISECONDS);
+        execution.result.whenComplete((result, error) -> deadline.cancel(false));
+        return execution.result;
+    }
+
+    private void run(Execution execution, Tool tool, Map<String, Object> params, Bulkhead bulkhead) {
+        boolean acquired = false;
+        try {
+            if (!execution.attach(Thread.currentThread())) {
+                return;
+            }
+            bulkhead.permits.acquire();
+            acquired = true;
+            bulkhead.active.incrementAndGet();
+
+            execution.cancellation.bind();
+            ToolExecutionResult result = tool.execute(params);
+            long durationMs = execution.elapsedMs();
+            if (result == null) {
+                result = ToolExecutionResult.failed("Tool returned no result", durationMs);
+            } else if (result.getDurationMs() <= 0) {
+                result.setDurationMs(durationMs);
+            }
+            execution.result.complete(result);
+        } catch (InterruptedException e) {
+            // 超时或取消时已由 abort 写入结果
+            execution.result.complete(ToolExecutionResult.cancelled("Execution interrupted", execution.elapsedMs()));
+        } catch (Exception e) {
+            Log.errorf(e, "Tool %s execution failed", execution.toolId);
+            execution.result.complete(ToolExecutionResult.failed(e.getMessage(), execution.elapsedMs()));
+        } finally {
+            ToolCancellation.unbind();
+            execution.detach();
+            if (acquired) {
+                bulkhead.active.decrementAndGet();
+                bulkhead.permits.release();
+            }
+            bulkhead.exit();
+        }
+    }
+
+    private void finish(Execution execution, Map<String, Object> params, ToolExecutionResult result) {
+        runningExecutions.remove(execution.id);
+        if (result.isSuccess()) {
+            Log.infof("Tool %s executed successfully in %dms", execution.toolId, result.getDurationMs());
+        }
+        logWriter.record(execution.toolId, null, params, result);
+    }
+
+    private Bulkhead bulkhead(String toolId) {
+        return bulkheads.computeIfAbsent(toolId, Bulkhead::new);
     }
 
     /**
@@ -148,21 +224,112 @@ public class ToolExecutorImpl implements ToolExecutor {
                 .orElse(30000L);
     }
 
+    @PreDestroy
+    void shutdown() {
+        runningExecutions.values().forEach(execution ->
+                execution.abort(ToolExecutionResult.cancelled("Executor shutting down", execution.elapsedMs())));
+        deadlines.shutdownNow();
+        executorService.shutdownNow();
+    }
+
     /**
-     * 对象转 JSON 字符串
+     * 单次工具执行。结果只写入一次：正常完成、超时和取消以先到者为准。
      */
-    protected String toJson(Object obj) {
-        if (obj == null) {
-            return null;
+    private static final class Execution {
+        final String id;
+        final String toolId;
+        final long startTime = System.currentTimeMillis();
+        final CompletableFuture<ToolExecutionResult> result = new CompletableFuture<>();
+        final ToolCancellation cancellation = new ToolCancellation();
+        private Thread thread;
+
+        Execution(String id, String toolId) {
+            this.id = id;
+            this.toolId = toolId;
         }
-        if (obj instanceof String) {
-            return (String) obj;
+
+        long elapsedMs() {
+            return System.currentTimeMillis() - startTime;
         }
-        try {
-            com.fasterxml.jackson.databind.ObjectMapper mapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            return mapper.writeValueAsString(obj);
-        } catch (Exception e) {
-            return obj.toString();
+
+        /**
+         * 绑定执行线程；已结束（超时或取消）时返回 false
+         */
+        synchronized boolean attach(Thread current) {
+            if (result.isDone()) {
+                return false;
+            }
+            thread = current;
+            return true;
+        }
+
+        synchronized void detach() {
+            thread = null;
+        }
+
+        /**
+         * 以给定结果结束执行，运行取消回调并中断工具线程
+         *
+         * @return 本次调用是否结束了执行
+         */
+        boolean abort(ToolExecutionResult outcome) {
+            if (!result.complete(outcome)) {
+                return false;
+            }
+            cancellation.cancel();
+            synchronized (this) {
+                if (thread != null) {
+                    thread.interrupt();
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 单个工具的隔离舱：并发许可加有界排队名额
+     */
+    private final class Bulkhead {
+        final Semaphore permits = new Semaphore(Math.max(1, maxConcurrent));
+        final AtomicInteger admitted = new AtomicInteger();
+        final AtomicInteger active = new AtomicInteger();
+        final Counter rejected;
+        final Counter timeouts;
+
+        Bulkhead(String toolId) {
+            Gauge.builder("esa.tool.executions.active", active, AtomicInteger::get)
+                    .description("Tool executions currently running")
+                    .tag("tool", toolId)
+                    .register(registry);
+            Gauge.builder("esa.tool.executions.queued", this, b -> b.admitted.get() - b.active.get())
+                    .description("Tool executions waiting for a bulkhead permit")
+                    .tag("tool", toolId)
+                    .register(registry);
+            rejected = Counter.builder("esa.tool.executions.rejected.total")
+                    .description("Tool executions rejected because the bulkhead queue was full")
+                    .tag("tool", toolId)
+                    .register(registry);
+            timeouts = Counter.builder("esa.tool.executions.timeout.total")
+                    .description("Tool executions that hit their deadline")
+                    .tag("tool", toolId)
+                    .register(registry);
+        }
+
+        boolean tryEnter() {
+            int limit = Math.max(1, maxConcurrent) + Math.max(0, queueSize);
+            while (true) {
+                int current = admitted.get();
+                if (current >= limit) {
+                    return false;
+                }
+                if (admitted.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void exit() {
+            admitted.decrementAndGet();
         }
     }
 }
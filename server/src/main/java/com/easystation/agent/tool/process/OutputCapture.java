@@ -0,0 +1,96 @@
+package com.easystation.agent.tool.process;
+
+/**
+ * 有界的输出捕获缓冲区
+ *
+ * 保留输出开头 headSize 个字符和结尾 tailSize 个字符（环形缓冲），中间部分只计数不保存，
+ * 因此无论进程输出多少，占用内存都不超过 headSize + tailSize 个字符。
+ * 写入由输出泵线程完成，读取可在任意线程进行。
+ */
+public final class OutputCapture {
+
+    private final int headSize;
+    private final int tailSize;
+
+    private final StringBuilder head;
+    private final char[] tail;
+
+    /** 环形缓冲下一个写入位置 */
+    private int tailPos;
+
+    /** 环形缓冲中已有的字符数 */
+    private int tailCount;
+
+    /** 累计写入的字符数 */
+    private long total;
+
+    public OutputCapture(int headSize, int tailSize) {
+        this.headSize = Math.max(0, headSize);
+        this.tailSize = Math.max(0, tailSize);
+        this.head = new StringBuilder(Math.min(this.headSize, 8192));
+        this.tail = new char[this.tailSize];
+    }
+
+    public synchronized void write(char[] buf, int off, int len) {
+        total += len;
+
+        int toHead = Math.min(len, headSize - head.length());
+        if (toHead > 0) {
+            head.append(buf, off, toHead);
+            off += toHead;
+            len -= toHead;
+        }
+        if (len <= 0 || tailSize == 0) {
+            return;
+        }
+
+        // 只有最后 tailSize 个字符有机会留下
+        if (len > tailSize) {
+            off += len - tailSize;
+            len = tailSize;
+        }
+        int first = Math.min(len, tailSize - tailPos);
+        System.arraycopy(buf, off, tail, tailPos, first);
+        if (len > first) {
+            System.arraycopy(buf, off + first, tail, 0, len - first);
+        }
+        tailPos = (tailPos + len) % tailSize;
+        tailCount = Math.min(tailSize, tailCount + len);
+    }
+
+    /**
+     * 累计写入的字符数
+     */
+    public synchronized long total() {
+        return total;
+    }
+
+    /**
+     * 未被保留的字符数
+     */
+    public synchronized long dropped() {
+        return total - head.length() - tailCount;
+    }
+
+    public boolean isTruncated() {
+        return dropped() > 0;
+    }
+
+    /**
+     * 捕获的输出；有内容被丢弃时在头尾之间插入省略标记
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder(head.length() + tailCount + 48);
+        sb.append(head);
+        long dropped = total - head.length() - tailCount;
+        if (dropped > 0) {
+            sb.append("\n...(truncated ").append(dropped).append(" chars)...\n");
+        }
+        int start = (tailPos - tailCount + tailSize) % Math.max(1, tailSize);
+        int first = Math.min(tailCount, tailSize - start);
+        sb.append(tail, start, first);
+        sb.append(tail, 0, tailCount - first);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,15 @@
+package com.easystation.agent.tool.process;
+
+/**
+ * 子进程执行结果
+ *
+ * @param exitCode    退出码，超时时为 -1
+ * @param output      捕获的输出（头尾保留，中间可能被截断）
+ * @param outputChars 进程实际输出的字符数
+ * @param truncated   输出是否超出捕获上限
+ * @param timedOut    是否因超时被终止
+ * @param durationMs  执行耗时
+ */
+public record ProcessResult(int exitCode, String output, long outputChars, boolean truncated,
+                            boolean timedOut, long durationMs) {
+}
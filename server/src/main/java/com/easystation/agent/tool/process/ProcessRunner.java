@@ -0,0 +1,184 @@
+package com.easystation.agent.tool.process;
+
+import com.easystation.agent.tool.spi.ToolCancellation;
+import io.quarkus.logging.Log;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 工具使用的子进程执行器
+ *
+ * 进程输出由独立的虚拟线程持续读取，写入有界的 {@link OutputCapture}，并可逐块回调给调用方；
+ * 超时只由 waitFor 计时，与输出是否结束无关。超时或工具被取消时终止整个进程树
+ * （进程本身及其子孙进程），避免后台子进程继续占用输出管道。
+ * 系统提供 setsid 时进程在独立的进程组中启动，终止时向整个进程组发送 SIGKILL，
+ * 父进程已退出、后台子进程已被过继时同样有效；否则退回到按父子关系查找子孙进程。
+ * 进程退出后仍有后台进程持有输出管道时，最多等到截止时间，之后按超时处理并返回已捕获的输出。
+ */
+public final class ProcessRunner {
+
+    /** 超时终止进程树后，等待输出泵读完剩余输出的时间 */
+    private static final long DRAIN_GRACE_MS = 1000;
+
+    /** 用于在独立进程组中启动子进程的 setsid 路径，不可用时为 null */
+    private static final String SETSID = findSetsid();
+
+    private final int headSize;
+    private final int tailSize;
+    private final Charset charset;
+
+    /**
+     * @param headSize 保留输出开头的字符数
+     * @param tailSize 保留输出结尾的字符数
+     */
+    public ProcessRunner(int headSize, int tailSize) {
+        this(headSize, tailSize, Charset.defaultCharset());
+    }
+
+    public ProcessRunner(int headSize, int tailSize, Charset charset) {
+        this.headSize = headSize;
+        this.tailSize = tailSize;
+        this.charset = charset;
+    }
+
+    public ProcessResult run(ProcessBuilder builder, long timeoutMs) throws IOException, InterruptedException {
+        return run(builder, timeoutMs, null);
+    }
+
+    /**
+     * 启动进程并等待其结束或超时；标准错误合并到标准输出
+     *
+     * @param onChunk 每读到一块输出时回调（在输出泵线程上调用），可为 null
+     */
+    public ProcessResult run(ProcessBuilder builder, long timeoutMs, Consumer<String> onChunk)
+            throws IOException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, timeoutMs));
+
+        builder.redirectErrorStream(true);
+        boolean processGroup = SETSID != null;
+        Process process = processGroup ? startInProcessGroup(builder) : builder.start();
+        ToolCancellation.onCancel(() -> destroyTree(process, processGroup));
+        // 不提供标准输入，读取 stdin 的命令立即得到 EOF
+        process.getOutputStream().close();
+
+        OutputCapture capture = new OutputCapture(headSize, tailSize);
+        Thread pump = Thread.ofVirtual()
+                .name("process-output-" + process.pid())
+                .start(() -> pump(process, capture, onChunk));
+
+        boolean timedOut = false;
+        try {
+            if (!process.waitFor(remaining(deadline), TimeUnit.NANOSECONDS)
+                    || !pump.join(Duration.ofNanos(Math.max(1, remaining(deadline))))) {
+                timedOut = true;
+                destroyTree(process, processGroup);
+                pump.join(DRAIN_GRACE_MS);
+            }
+        } catch (InterruptedException e) {
+            destroyTree(process, processGroup);
+            throw e;
+        }
+
+        long durationMs = System.currentTimeMillis() - startTime;
+        return new ProcessResult(timedOut ? -1 : process.exitValue(), capture.toString(), capture.total(),
+                capture.isTruncated(), timedOut, durationMs);
+    }
+
+    private void pump(Process process, OutputCapture capture, Consumer<String> onChunk) {
+        char[] buf = new char[8192];
+        try (Reader reader = new InputStreamReader(process.getInputStream(), charset)) {
+            int n;
+            while ((n = reader.read(buf)) != -1) {
+                capture.write(buf, 0, n);
+                if (onChunk != null) {
+                    try {
+                        onChunk.accept(new String(buf, 0, n));
+                    } catch (RuntimeException e) {
+                        Log.debugf("Process output callback failed: %s", e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // 进程被终止时管道关闭，属正常情况
+            Log.debugf("Process %d output stream closed: %s", process.pid(), e.getMessage());
+        }
+    }
+
+    /**
+     * 通过 setsid 启动，使进程成为新进程组的组长（进程组号即其 pid）；不修改调用方的命令
+     */
+    private static Process startInProcessGroup(ProcessBuilder builder) throws IOException {
+        List<String> command = builder.command();
+        List<String> wrapped = new ArrayList<>(command.size() + 1);
+        wrapped.add(SETSID);
+        wrapped.addAll(command);
+        builder.command(wrapped);
+        try {
+            return builder.start();
+        } finally {
+            builder.command(command);
+        }
+    }
+
+    /**
+     * 强制终止进程及其所有子孙进程
+     *
+     * @param processGroup 进程是否以 setsid 在独立进程组中启动
+     */
+    public static void destroyTree(Process process, boolean processGroup) {
+        // 先收集子孙进程：父进程退出后它们会被过继，无法再通过父进程找到
+        List<ProcessHandle> descendants = process.descendants().toList();
+        if (processGroup) {
+            killProcessGroup(process.pid());
+        }
+        process.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+    }
+
+    /**
+     * 向整个进程组发送 SIGKILL；组长已退出时只要组内仍有进程即可生效
+     */
+    private static void killProcessGroup(long pgid) {
+        try {
+            Process kill = new ProcessBuilder("kill", "-KILL", "--", "-" + pgid)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!kill.waitFor(DRAIN_GRACE_MS, TimeUnit.MILLISECONDS)) {
+                kill.destroyForcibly();
+            }
+        } catch (IOException e) {
+            Log.debugf("Failed to kill process group %d: %s", pgid, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String findSetsid() {
+        if (System.getProperty("os.name", "").toLowerCase().startsWith("windows")) {
+            return null;
+        }
+        for (String dir : List.of("/usr/bin", "/bin")) {
+            Path setsid = Path.of(dir, "setsid");
+            if (Files.isExecutable(setsid)) {
+                return setsid.toString();
+            }
+        }
+        return null;
+    }
+
+    private static long remaining(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+}
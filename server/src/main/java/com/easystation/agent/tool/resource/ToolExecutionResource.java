@@ -71,6 +71,7 @@ public class ToolExecutionResource {
 
         // 启动异步执行
         toolExecutor.executeAsync(
+                executionId,
                 request.getToolId(),
                 request.getParameters() != null ? request.getParameters() : Collections.emptyMap(),
                 request.getTimeout() != null ? request.getTimeout() : 30000L
@@ -0,0 +1,90 @@
+package com.easystation.agent.tool.spi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 工具执行的取消通知
+ *
+ * 执行器在工具线程上绑定当前执行的取消句柄；超时或取消时先运行已注册的回调，再中断工具线程。
+ * 阻塞在不可中断操作上的工具（如读取子进程输出）应注册回调来终止底层工作，例如
+ * {@code ToolCancellation.onCancel(process::destroyForcibly)}。
+ * 不经执行器直接调用工具时没有绑定句柄，注册为空操作。
+ */
+public final class ToolCancellation {
+
+    private static final ThreadLocal<ToolCancellation> CURRENT = new ThreadLocal<>();
+
+    private final List<Runnable> hooks = new ArrayList<>();
+    private boolean cancelled;
+
+    /**
+     * 为当前线程上的工具执行注册取消回调；若已取消则立即执行
+     */
+    public static void onCancel(Runnable hook) {
+        ToolCancellation current = CURRENT.get();
+        if (current != null) {
+            current.register(hook);
+        }
+    }
+
+    /**
+     * 当前线程上的工具执行是否已被取消
+     */
+    public static boolean isCancelled() {
+        ToolCancellation current = CURRENT.get();
+        return current != null && current.cancelled();
+    }
+
+    /**
+     * 将句柄绑定到当前线程，由执行器调用
+     */
+    public void bind() {
+        CURRENT.set(this);
+    }
+
+    /**
+     * 解除当前线程的绑定，由执行器调用
+     */
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 标记取消并运行所有回调，由执行器调用
+     */
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toRun = new ArrayList<>(hooks);
+            hooks.clear();
+        }
+        toRun.forEach(ToolCancellation::runQuietly);
+    }
+
+    private void register(Runnable hook) {
+        synchronized (this) {
+            if (!cancelled) {
+                hooks.add(hook);
+                return;
+            }
+        }
+        runQuietly(hook);
+    }
+
+    private synchronized boolean cancelled() {
+        return cancelled;
+    }
+
+    private static void runQuietly(Runnable hook) {
+        try {
+            hook.run();
+        } catch (RuntimeException ignored) {
+            // 回调失败不影响取消流程
+        }
+    }
+}
@@ -74,6 +74,28 @@ public class ToolExecutionResult {
                 .build();
     }
 
+    /**
+     * 创建超时结果
+     */
+    public static ToolExecutionResult timeout(String error, long durationMs) {
+        return ToolExecutionResult.builder()
+                .status(ToolExecutionStatus.TIMEOUT)
+                .error(error)
+                .durationMs(durationMs)
+                .build();
+    }
+
+    /**
+     * 创建取消结果
+     */
+    public static ToolExecutionResult cancelled(String error, long durationMs) {
+        return ToolExecutionResult.builder()
+                .status(ToolExecutionStatus.CANCELLED)
+                .error(error)
+                .durationMs(durationMs)
+                .build();
+    }
+
     /**
      * 是否成功
      */
@@ -43,6 +43,17 @@ public interface ToolExecutor {
      */
     CompletionStage<ToolExecutionResult> executeAsync(String toolId, Map<String, Object> params, long timeoutMs);
 
+    /**
+     * 异步执行工具（指定执行 ID，便于之后取消或查询）
+     * @param executionId 执行 ID
+     * @param toolId 工具 ID
+     * @param params 参数键值对
+     * @param timeoutMs 超时时间（毫秒）
+     * @return 异步执行结果
+     */
+    CompletionStage<ToolExecutionResult> executeAsync(String executionId, String toolId,
+                                                      Map<String, Object> params, long timeoutMs);
+
     /**
      * 取消执行
      * @param executionId 执行 ID
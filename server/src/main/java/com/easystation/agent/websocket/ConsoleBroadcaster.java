@@ -0,0 +1,369 @@
+package com.easystation.agent.websocket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fan-out of agent frames to console sessions.
+ * <p>
+ * Each connected agent has a ring buffer of its most recent frames, created when the agent
+ * connects and released when it disconnects, which is replayed to a console when it opens the
+ * agent, whether or not another console was already watching. Consoles watching an agent are
+ * tracked in a channel that is removed when its last console leaves. Each console session has a
+ * bounded outbound queue with at most one async send in flight: heartbeat frames replace a
+ * heartbeat still waiting in the queue, and when the queue is full the oldest frame is dropped, so
+ * a slow browser tab only loses its own backlog.
+ * <p>
+ * Lock order is replay ring, then channel, then outbox.
+ */
+@ApplicationScoped
+public class ConsoleBroadcaster {
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "agent.console.replay-size", defaultValue = "200")
+    int replaySize;
+
+    @ConfigProperty(name = "agent.console.session-queue-size", defaultValue = "256")
+    int sessionQueueSize;
+
+    private final Map<String, ReplayRing> rings = new ConcurrentHashMap<>();
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final Map<String, Outbox> outboxes = new ConcurrentHashMap<>();
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private final AtomicInteger queuedFrames = new AtomicInteger();
+
+    private Counter overflowCounter;
+    private Counter coalescedCounter;
+    private Counter failedCounter;
+    private Timer lagTimer;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("esa.console.sessions", sessionCount, AtomicInteger::get)
+                .description("Open console sessions")
+                .register(registry);
+        Gauge.builder("esa.console.queued", queuedFrames, AtomicInteger::get)
+                .description("Frames waiting in console session queues")
+                .register(registry);
+        overflowCounter = Counter.builder("esa.console.frames.dropped.total")
+                .description("Frames dropped for console sessions")
+                .tag("reason", "overflow")
+                .register(registry);
+        coalescedCounter = Counter.builder("esa.console.frames.dropped.total")
+                .description("Frames dropped for console sessions")
+                .tag("reason", "coalesced")
+                .register(registry);
+        failedCounter = Counter.builder("esa.console.frames.failed.total")
+                .description("Frames whose async send failed")
+                .register(registry);
+        lagTimer = Timer.builder("esa.console.session.lag")
+                .description("Time from enqueue to completed send per console frame")
+                .register(registry);
+    }
+
+    /**
+     * Start buffering frames of a connected agent for replay. Calling it again for an agent that
+     * is already buffered keeps the existing frames.
+     */
+    public void agentConnected(String agentId) {
+        rings.computeIfAbsent(agentId, id -> new ReplayRing(Math.max(1, replaySize)));
+    }
+
+    /**
+     * Release the replay buffer of an agent that disconnected. Open consoles stay subscribed.
+     */
+    public void agentDisconnected(String agentId) {
+        rings.remove(agentId);
+    }
+
+    /**
+     * Register a console session and replay the agent's recent frames to it.
+     */
+    public void open(String agentId, Session session) {
+        Outbox outbox = new Outbox(session);
+        outboxes.put(session.getId(), outbox);
+        ReplayRing ring = rings.get(agentId);
+        if (ring == null) {
+            subscribe(agentId, outbox, List.of());
+            return;
+        }
+        // Holding the ring keeps publishes out between the snapshot and the subscription
+        synchronized (ring) {
+            subscribe(agentId, outbox, ring.replay());
+        }
+    }
+
+    private void subscribe(String agentId, Outbox outbox, List<String> replay) {
+        while (true) {
+            Channel channel = channels.computeIfAbsent(agentId, id -> new Channel());
+            synchronized (channel) {
+                if (channel.removed) {
+                    // The last console left between lookup and lock; retry with a fresh channel
+                    continue;
+                }
+                channel.outboxes.put(outbox.session.getId(), outbox);
+                sessionCount.incrementAndGet();
+                for (String frame : replay) {
+                    outbox.offer(frame, false);
+                }
+                return;
+            }
+        }
+    }
+
+    public void close(String agentId, Session session) {
+        outboxes.remove(session.getId());
+        Channel channel = channels.get(agentId);
+        if (channel == null) {
+            return;
+        }
+        Outbox outbox;
+        synchronized (channel) {
+            outbox = channel.outboxes.remove(session.getId());
+            if (channel.outboxes.isEmpty() && !channel.removed) {
+                channel.removed = true;
+                channels.remove(agentId, channel);
+            }
+        }
+        if (outbox != null) {
+            sessionCount.decrementAndGet();
+            outbox.discard();
+        }
+    }
+
+    /**
+     * Send a frame to a single console through its queue, so it never overlaps an in-flight send.
+     */
+    public void send(Session session, String frame) {
+        Outbox outbox = outboxes.get(session.getId());
+        if (outbox != null) {
+            outbox.offer(frame, false);
+        } else if (session.isOpen()) {
+            session.getAsyncRemote().sendText(frame);
+        }
+    }
+
+    /**
+     * Send a frame to every console of the agent and keep it for replay.
+     */
+    public void broadcast(String agentId, String frame) {
+        publish(agentId, frame, false);
+    }
+
+    /**
+     * Send a heartbeat frame. Heartbeats are not replayed and a queued heartbeat is replaced by
+     * the newer one.
+     */
+    public void broadcastHeartbeat(String agentId, String frame) {
+        publish(agentId, frame, true);
+    }
+
+    private void publish(String agentId, String frame, boolean heartbeat) {
+        ReplayRing ring = rings.get(agentId);
+        if (ring == null) {
+            fanOut(agentId, frame, heartbeat);
+            return;
+        }
+        synchronized (ring) {
+            if (!heartbeat) {
+                ring.remember(frame);
+            }
+            fanOut(agentId, frame, heartbeat);
+        }
+    }
+
+    private void fanOut(String agentId, String frame, boolean heartbeat) {
+        Channel channel = channels.get(agentId);
+        if (channel == null) {
+            return;
+        }
+        synchronized (channel) {
+            for (Outbox outbox : channel.outboxes.values()) {
+                outbox.offer(frame, heartbeat);
+            }
+        }
+    }
+
+    boolean hasChannel(String agentId) {
+        return channels.containsKey(agentId);
+    }
+
+    boolean hasReplay(String agentId) {
+        return rings.containsKey(agentId);
+    }
+
+    /**
+     * Open consoles of one agent. Guarded by its own monitor.
+     */
+    static final class Channel {
+        final Map<String, Outbox> outboxes = new ConcurrentHashMap<>();
+        /** Set once the channel has left {@code channels}; a removed channel is never reused */
+        boolean removed;
+    }
+
+    /**
+     * Most recent frames of one connected agent. Guarded by its own monitor.
+     */
+    static final class ReplayRing {
+        private final String[] ring;
+        private int next;
+        private int size;
+
+        ReplayRing(int capacity) {
+            this.ring = new String[capacity];
+        }
+
+        void remember(String frame) {
+            ring[next] = frame;
+            next = (next + 1) % ring.length;
+            if (size < ring.length) {
+                size++;
+            }
+        }
+
+        /**
+         * Buffered frames, oldest first.
+         */
+        List<String> replay() {
+            List<String> frames = new ArrayList<>(size);
+            int start = (next - size + ring.length) % ring.length;
+            for (int i = 0; i < size; i++) {
+                frames.add(ring[(start + i) % ring.length]);
+            }
+            return frames;
+        }
+    }
+
+    private static final class Frame {
+        String text;
+        long enqueuedNanos;
+
+        Frame(String text) {
+            this.text = text;
+            this.enqueuedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Outbound queue of one console session with a single send in flight.
+     */
+    final class Outbox implements SendHandler {
+        private final Session session;
+        private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+        private Frame pendingHeartbeat;
+        private Frame inFlight;
+        private boolean closed;
+
+        Outbox(Session session) {
+            this.session = session;
+        }
+
+        void offer(String text, boolean heartbeat) {
+            Frame toSend;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (heartbeat && pendingHeartbeat != null) {
+                    pendingHeartbeat.text = text;
+                    pendingHeartbeat.enqueuedNanos = System.nanoTime();
+                    coalescedCounter.increment();
+                    return;
+                }
+                if (queue.size() >= sessionQueueSize) {
+                    Frame dropped = queue.pollFirst();
+                    if (dropped == pendingHeartbeat) {
+                        pendingHeartbeat = null;
+                    }
+                    queuedFrames.decrementAndGet();
+                    overflowCounter.increment();
+                }
+                Frame frame = new Frame(text);
+                queue.addLast(frame);
+                queuedFrames.incrementAndGet();
+                if (heartbeat) {
+                    pendingHeartbeat = frame;
+                }
+                if (inFlight != null) {
+                    return;
+                }
+                toSend = takeNext();
+            }
+            transmit(toSend);
+        }
+
+        /**
+         * Called when the in-flight send completes; starts the next one.
+         */
+        @Override
+        public void onResult(SendResult result) {
+            Frame toSend;
+            synchronized (this) {
+                if (inFlight != null) {
+                    lagTimer.record(System.nanoTime() - inFlight.enqueuedNanos, TimeUnit.NANOSECONDS);
+                }
+                if (!result.isOK()) {
+                    failedCounter.increment();
+                    Log.debugf("Console send failed for session %s: %s", session.getId(),
+                            result.getException() != null ? result.getException().getMessage() : "unknown");
+                }
+                inFlight = null;
+                if (closed || queue.isEmpty()) {
+                    return;
+                }
+                toSend = takeNext();
+            }
+            transmit(toSend);
+        }
+
+        private Frame takeNext() {
+            Frame frame = queue.pollFirst();
+            if (frame == pendingHeartbeat) {
+                pendingHeartbeat = null;
+            }
+            queuedFrames.decrementAndGet();
+            inFlight = frame;
+            return frame;
+        }
+
+        private void transmit(Frame frame) {
+            if (!session.isOpen()) {
+                discard();
+                return;
+            }
+            try {
+                session.getAsyncRemote().sendText(frame.text, this);
+            } catch (RuntimeException e) {
+                onResult(new SendResult(e));
+            }
+        }
+
+        synchronized void discard() {
+            closed = true;
+            queuedFrames.addAndGet(-queue.size());
+            queue.clear();
+            pendingHeartbeat = null;
+            inFlight = null;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.easystation.agent.websocket;
 
 import com.easystation.agent.service.AgentLogService;
 import com.easystation.infra.socket.AgentConnectionManager;
+import com.easystation.infra.socket.AgentMessageCodec;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.quarkus.logging.Log;
@@ -14,9 +15,7 @@ import jakarta.websocket.server.ServerEndpoint;
 
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 @ServerEndpoint("/ws/console/{agentId}")
 @ApplicationScoped
@@ -31,11 +30,13 @@ public class ConsoleWebSocket {
     @Inject
     ObjectMapper objectMapper;
 
-    private static final Map<String, Set<Session>> sessions = new ConcurrentHashMap<>();
+    @Inject
+    ConsoleBroadcaster broadcaster;
 
     @OnOpen
     public void onOpen(Session session, @PathParam("agentId") String agentId) {
-        sessions.computeIfAbsent(agentId, k -> ConcurrentHashMap.newKeySet()).add(session);
+        // Replays the agent's recent frames to the new console
+        broadcaster.open(agentId, session);
         Log.infof("Console connected to agent %s", agentId);
     }
 
@@ -59,11 +60,14 @@ public class ConsoleWebSocket {
                         "type", "LOG_HISTORY",
                         "content", logs
                 ));
-                session.getAsyncRemote().sendText(historyMsg);
+                broadcaster.send(session, historyMsg);
                 return;
             }
 
-            boolean sent = agentConnectionManager.get().send(hostId, message);
+            // Already parsed for routing; pass the metadata along so it is not parsed again
+            AgentMessageCodec.Outbound outbound = new AgentMessageCodec.Outbound(
+                    type, root.path("requestId").asText(null), message);
+            boolean sent = agentConnectionManager.get().send(hostId, outbound);
             if (!sent) {
                 sendSystemMessage(session, "ERROR", "Agent connection unavailable");
             }
@@ -85,13 +89,7 @@ public class ConsoleWebSocket {
 
     @OnClose
     public void onClose(Session session, @PathParam("agentId") String agentId) {
-        Set<Session> agentSessions = sessions.get(agentId);
-        if (agentSessions != null) {
-            agentSessions.remove(session);
-            if (agentSessions.isEmpty()) {
-                sessions.remove(agentId);
-            }
-        }
+        broadcaster.close(agentId, session);
         Log.infof("Console disconnected from agent %s", agentId);
     }
 
@@ -101,15 +99,20 @@ public class ConsoleWebSocket {
         Log.errorf(throwable, "Console error for agent %s", agentId);
     }
 
+    public void agentConnected(String agentId) {
+        broadcaster.agentConnected(agentId);
+    }
+
+    public void agentDisconnected(String agentId) {
+        broadcaster.agentDisconnected(agentId);
+    }
+
     public void broadcastLog(String agentId, String logMessage) {
-        Set<Session> agentSessions = sessions.get(agentId);
-        if (agentSessions != null) {
-            agentSessions.forEach(s -> {
-                if (s.isOpen()) {
-                    s.getAsyncRemote().sendText(logMessage);
-                }
-            });
-        }
+        broadcaster.broadcast(agentId, logMessage);
+    }
+
+    public void broadcastHeartbeat(String agentId, String heartbeatMessage) {
+        broadcaster.broadcastHeartbeat(agentId, heartbeatMessage);
     }
 
     private void sendSystemMessage(Session session, String type, String content) {
@@ -118,7 +121,7 @@ public class ConsoleWebSocket {
                     "type", type,
                     "content", content
             ));
-            session.getAsyncRemote().sendText(payload);
+            broadcaster.send(session, payload);
         } catch (Exception e) {
             Log.warnf("Failed to send system message: %s", e.getMessage());
         }
@@ -0,0 +1,78 @@
+package com.easystation.audit.archive;
+
+import com.easystation.audit.enums.AuditResult;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 审计归档清单（manifest.json）
+ *
+ * 每写完一个分段、每删除一个分段对应的数据库记录后都会落盘一次，
+ * 中断后据此从游标处继续，并补删已写出但尚未删除的分段。
+ */
+public class ArchiveManifest {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    public String archiveId;
+
+    /** 归档此时间之前的日志 */
+    public LocalDateTime beforeDate;
+
+    /** 只归档这些结果的日志，为 null 时不限 */
+    public List<AuditResult> results;
+
+    public int chunkSize;
+
+    public String status;
+
+    public String error;
+
+    public LocalDateTime startedAt;
+
+    public LocalDateTime updatedAt;
+
+    public LocalDateTime completedAt;
+
+    /** 已归档的最后一条记录，下一块从其后开始 */
+    public LocalDateTime cursorCreatedAt;
+
+    public UUID cursorId;
+
+    public long recordCount;
+
+    public long totalBytes;
+
+    public List<Segment> segments = new ArrayList<>();
+
+    /**
+     * 一个 gzip 压缩的 NDJSON 分段文件，覆盖 (createdAt, id) 从 first 到 last 的闭区间
+     */
+    public static class Segment {
+
+        public String file;
+
+        public int records;
+
+        public long bytes;
+
+        /** 压缩后文件内容的 SHA-256 */
+        public String sha256;
+
+        public LocalDateTime firstCreatedAt;
+
+        public UUID firstId;
+
+        public LocalDateTime lastCreatedAt;
+
+        public UUID lastId;
+
+        /** 对应的数据库记录是否已删除 */
+        public boolean deleted;
+    }
+}
@@ -0,0 +1,69 @@
+package com.easystation.audit.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 读取 {@link ArchiveSegmentWriter} 写出的分段文件
+ *
+ * 逐行解析，边读边计算校验和，不把整个分段读入内存。
+ */
+public final class ArchiveSegmentReader {
+
+    private final ObjectMapper mapper;
+
+    public ArchiveSegmentReader(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * 返回分段中各条记录的主键；文件的校验和或记录数与分段信息不一致时抛出
+     */
+    public List<UUID> ids(Path file, ArchiveManifest.Segment segment) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        List<UUID> ids = new ArrayList<>(segment.records);
+        try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(in, 65536),
+                     StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    ids.add(UUID.fromString(mapper.readTree(line).path("id").asText()));
+                }
+            }
+            // gzip 尾部之后的字节也计入校验和
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("分段文件包含无效的记录主键: " + file, e);
+        }
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        if (!sha256.equals(segment.sha256)) {
+            throw new IOException("分段文件校验和不一致: " + file);
+        }
+        if (ids.size() != segment.records) {
+            throw new IOException("分段文件记录数不一致: " + file + " 应为 " + segment.records + "，实际 " + ids.size());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,64 @@
+package com.easystation.audit.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 把一块记录写成 gzip 压缩的 NDJSON 分段文件
+ *
+ * 先写入 .part 临时文件并刷盘，再原子改名，已存在的分段文件总是完整的。
+ */
+public final class ArchiveSegmentWriter {
+
+    private final ObjectMapper mapper;
+
+    public ArchiveSegmentWriter(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * 写出分段，返回填好文件名、记录数、大小和校验和的分段信息（区间由调用方填写）
+     */
+    public ArchiveManifest.Segment write(Path file, List<?> records) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        try (FileOutputStream fos = new FileOutputStream(part.toFile());
+             GZIPOutputStream gzip = new GZIPOutputStream(new DigestOutputStream(fos, digest), 65536);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8))) {
+            for (Object record : records) {
+                writer.write(mapper.writeValueAsString(record));
+                writer.write('\n');
+            }
+            writer.flush();
+            gzip.finish();
+            fos.getChannel().force(true);
+        }
+        Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        ArchiveManifest.Segment segment = new ArchiveManifest.Segment();
+        segment.file = file.getFileName().toString();
+        segment.records = records.size();
+        segment.bytes = Files.size(file);
+        segment.sha256 = HexFormat.of().formatHex(digest.digest());
+        return segment;
+    }
+}
@@ -0,0 +1,76 @@
+package com.easystation.audit.domain;
+
+import com.easystation.audit.enums.AuditAction;
+import com.easystation.audit.enums.AuditResult;
+import com.easystation.audit.enums.AuditStatsGranularity;
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 审计日志统计汇总
+ *
+ * 按小时和按天两种粒度，记录每个时间桶内每个用户、操作类型、操作结果的日志条数。
+ * 随审计日志写入在同一事务内累加，删除或归档审计日志后按时间范围重建。
+ * 列名显式指定，维护语句直接使用这些列名。
+ */
+@Entity
+@Table(name = "audit_stats_bucket", uniqueConstraints = @UniqueConstraint(
+        name = "uk_audit_stats_bucket", columnNames = {"granularity", "bucket_start", "username", "action", "result"}))
+@Getter
+@Setter
+public class AuditStatsBucket extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    public UUID id;
+
+    /**
+     * 汇总粒度
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "granularity", nullable = false, length = 10)
+    public AuditStatsGranularity granularity;
+
+    /**
+     * 时间桶起点
+     */
+    @Column(name = "bucket_start", nullable = false)
+    public LocalDateTime bucketStart;
+
+    /**
+     * 操作人用户名
+     */
+    @Column(name = "username", nullable = false)
+    public String username;
+
+    /**
+     * 操作人 ID
+     */
+    @Column(name = "user_id")
+    public UUID userId;
+
+    /**
+     * 操作类型
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "action", nullable = false, length = 100)
+    public AuditAction action;
+
+    /**
+     * 操作结果
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "result", nullable = false, length = 50)
+    public AuditResult result;
+
+    /**
+     * 日志条数
+     */
+    @Column(name = "total", nullable = false)
+    public long total;
+}
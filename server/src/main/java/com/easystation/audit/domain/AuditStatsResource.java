@@ -0,0 +1,44 @@
+package com.easystation.audit.domain;
+
+import com.easystation.audit.enums.AuditStatsGranularity;
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 审计日志统计汇总：每个时间桶内出现过的资源，用于统计不同资源数
+ */
+@Entity
+@Table(name = "audit_stats_resource", uniqueConstraints = @UniqueConstraint(
+        name = "uk_audit_stats_resource", columnNames = {"granularity", "bucket_start", "resource_id"}))
+@Getter
+@Setter
+public class AuditStatsResource extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    public UUID id;
+
+    /**
+     * 汇总粒度
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "granularity", nullable = false, length = 10)
+    public AuditStatsGranularity granularity;
+
+    /**
+     * 时间桶起点
+     */
+    @Column(name = "bucket_start", nullable = false)
+    public LocalDateTime bucketStart;
+
+    /**
+     * 操作资源 ID
+     */
+    @Column(name = "resource_id", nullable = false)
+    public UUID resourceId;
+}
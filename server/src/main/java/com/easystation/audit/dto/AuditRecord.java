@@ -142,12 +142,6 @@ public class AuditRecord {
             Boolean includeFailed
     ) {}
 
-    public record ArchiveResult(
-            Integer archivedCount,
-            String archiveFile,
-            Long archiveSize
-    ) {}
-
     public record ArchiveInfo(
             String archiveId,
             String filename,
@@ -155,7 +149,8 @@ public class AuditRecord {
             Integer recordCount,
             LocalDateTime startTime,
             LocalDateTime endTime,
-            LocalDateTime archivedAt
+            LocalDateTime archivedAt,
+            String status
     ) {}
 
     // ==================== 清理相关 ====================
@@ -0,0 +1,43 @@
+package com.easystation.audit.enums;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 审计统计汇总粒度
+ */
+public enum AuditStatsGranularity {
+    HOUR("小时", ChronoUnit.HOURS),
+    DAY("天", ChronoUnit.DAYS);
+
+    private final String description;
+    private final ChronoUnit unit;
+
+    AuditStatsGranularity(String description, ChronoUnit unit) {
+        this.description = description;
+        this.unit = unit;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * 时间所在桶的起点
+     */
+    public LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    /**
+     * 不早于该时间的第一个桶起点
+     */
+    public LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plus(1, unit);
+    }
+
+    public LocalDateTime next(LocalDateTime bucketStart) {
+        return bucketStart.plus(1, unit);
+    }
+}
@@ -0,0 +1,26 @@
+package com.easystation.audit.ingest;
+
+import java.util.List;
+
+/**
+ * 某类审计实体在写入管道中的扩展点
+ *
+ * 实现为 CDI Bean 即自动生效；没有绑定的实体按原样写入。两个回调都在写入线程上按写入顺序调用。
+ */
+public interface AuditIngestBinding<T> {
+
+    Class<T> type();
+
+    /**
+     * 写入前在批事务内调用，可计算依赖前一条记录的字段（如哈希链）。
+     * 事务回滚后同一批记录会再次传入，因此只能依赖已提交的状态。
+     */
+    default void beforeWrite(List<T> batch) {
+    }
+
+    /**
+     * 批事务提交后调用
+     */
+    default void afterWrite(List<T> batch) {
+    }
+}
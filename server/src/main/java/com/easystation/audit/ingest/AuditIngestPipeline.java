@@ -0,0 +1,560 @@
+package com.easystation.audit.ingest;
+
+import com.easystation.audit.domain.AuditLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 审计记录的异步写入管道
+ *
+ * 各服务把已填好主键和时间的审计实体交给管道，不在请求线程上开事务；生产者只做一次无锁入队。
+ * 单个写入线程攒批（最多 audit.ingest.batch-size 条，最多等待 audit.ingest.max-wait-ms），
+ * 在一个事务中按实体类型以 JDBC 批量插入写入，INSERT 语句由 Hibernate 映射生成。
+ *
+ * 持久化策略 audit.ingest.durability：
+ * sync  调用方等待所在批次提交（组提交），写入失败时抛出；队列满时调用方最多等待 audit.ingest.sync-timeout
+ *       让出空间（背压），超时则写入失败。所有写入都在写入线程上进行，哈希链等批内状态只有一个写者。
+ * async 调用方立即返回；队列满或数据库不可用时记录落盘到 audit.ingest.wal-dir，之后由写入线程重放。
+ *
+ * 违反约束或数据错误的记录会被逐条隔离并丢弃（重放时转存到 .rejected 文件），不影响同批其他记录。
+ */
+@ApplicationScoped
+public class AuditIngestPipeline {
+
+    /** 写入线程空闲时的最长休眠，兼作溢出文件的检查周期 */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    /** sync 模式队列满时调用方重试入队的间隔 */
+    private static final long BACKPRESSURE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    public enum Durability {
+        SYNC, ASYNC
+    }
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    Instance<AuditIngestBinding<?>> bindingBeans;
+
+    @ConfigProperty(name = "audit.ingest.durability", defaultValue = "async")
+    Durability durability;
+
+    @ConfigProperty(name = "audit.ingest.queue-capacity", defaultValue = "20000")
+    int queueCapacity;
+
+    @ConfigProperty(name = "audit.ingest.batch-size", defaultValue = "500")
+    int batchSize;
+
+    @ConfigProperty(name = "audit.ingest.max-wait-ms", defaultValue = "20")
+    long maxWaitMs;
+
+    @ConfigProperty(name = "audit.ingest.sync-timeout", defaultValue = "5s")
+    Duration syncTimeout;
+
+    @ConfigProperty(name = "audit.ingest.wal-dir", defaultValue = "work/audit-wal")
+    String walDir;
+
+    @ConfigProperty(name = "audit.ingest.wal-replay-interval", defaultValue = "30s")
+    Duration walReplayInterval;
+
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Map<Class<?>, AuditIngestBinding<?>> bindings = new HashMap<>();
+    private final Map<Class<?>, InsertStatement> statements = new ConcurrentHashMap<>();
+
+    private AuditWal wal;
+    private Thread writer;
+    private volatile boolean running;
+    private volatile boolean idle;
+    private long nextReplay;
+
+    private Counter writtenCounter;
+    private Counter spilledCounter;
+    private Counter rejectedCounter;
+    private Counter replayedCounter;
+    private DistributionSummary batchSummary;
+
+    private record Pending(Object entity, CompletableFuture<Void> written) {
+    }
+
+    /**
+     * 一次写入的结果
+     *
+     * @param unwritten 因数据库不可用而未写入的记录
+     * @param error     未写入的原因
+     */
+    private record WriteOutcome(List<Object> written, List<Object> rejected, List<Object> unwritten, Exception error) {
+    }
+
+    /**
+     * 按 Hibernate 映射生成的插入语句
+     */
+    private record InsertStatement(String sql, AbstractEntityPersister persister, int[] properties) {
+
+        void bind(PreparedStatement ps, Object entity) throws SQLException {
+            ps.setObject(1, persister.getIdentifierMapping().getIdentifier(entity));
+            Object[] values = persister.getValues(entity);
+            for (int i = 0; i < properties.length; i++) {
+                Object value = values[properties[i]];
+                // 审计实体的枚举均按名称映射
+                ps.setObject(i + 2, value instanceof Enum<?> e ? e.name() : value);
+            }
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        for (AuditIngestBinding<?> binding : bindingBeans) {
+            bindings.put(binding.type(), binding);
+        }
+        wal = new AuditWal(Path.of(walDir), objectMapper);
+
+        Gauge.builder("esa.audit.ingest.queued", size, AtomicInteger::get)
+                .description("Audit records waiting to be written")
+                .register(registry);
+        writtenCounter = Counter.builder("esa.audit.ingest.written.total")
+                .description("Audit records written to the database")
+                .register(registry);
+        spilledCounter = Counter.builder("esa.audit.ingest.spilled.total")
+                .description("Audit records spilled to the local WAL")
+                .register(registry);
+        rejectedCounter = Counter.builder("esa.audit.ingest.rejected.total")
+                .description("Audit records rejected by the database")
+                .register(registry);
+        replayedCounter = Counter.builder("esa.audit.ingest.replayed.total")
+                .description("Audit records replayed from the local WAL")
+                .register(registry);
+        batchSummary = DistributionSummary.builder("esa.audit.ingest.batch.size")
+                .description("Audit records written per batch")
+                .register(registry);
+
+        running = true;
+        writer = new Thread(this::runWriter, "audit-ingest-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 按持久化策略写入：sync 时等待写入提交，async 时立即返回
+     */
+    public void ingest(Object entity) {
+        if (durability == Durability.SYNC) {
+            await(submit(entity));
+        } else {
+            submit(entity);
+        }
+    }
+
+    /**
+     * 写入并等待提交，不受持久化策略影响
+     */
+    public void ingestAndWait(Object entity) {
+        await(submit(entity));
+    }
+
+    /**
+     * 入队一条审计实体；实体的主键必须已经赋值
+     *
+     * @return 记录提交（或 async 模式下落盘）后完成
+     */
+    public CompletableFuture<Void> submit(Object entity) {
+        Pending pending = new Pending(entity, new CompletableFuture<>());
+        if (!running || !(reserve() || durability == Durability.SYNC && awaitCapacity())) {
+            overflow(pending);
+            return pending.written();
+        }
+        queue.offer(pending);
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+        return pending.written();
+    }
+
+    private boolean reserve() {
+        while (true) {
+            int current = size.get();
+            if (current >= queueCapacity) {
+                return false;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * sync 模式的背压：在 sync-timeout 内等待写入线程腾出队列空间
+     */
+    private boolean awaitCapacity() {
+        long deadline = System.nanoTime() + syncTimeout.toNanos();
+        while (running && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(BACKPRESSURE_PARK_NANOS);
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            if (reserve()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 无法入队：管道已停止时落盘，下次启动由写入线程重放；
+     * 否则 sync 模式写入失败（背压超时），async 模式落盘
+     */
+    private void overflow(Pending pending) {
+        if (running && durability == Durability.SYNC) {
+            pending.written().completeExceptionally(new IllegalStateException("审计写入队列已满"));
+        } else {
+            spill(List.of(pending));
+        }
+    }
+
+    private void await(CompletableFuture<Void> written) {
+        try {
+            written.get(syncTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            Log.warnf("Audit record not acknowledged within %s, continuing", syncTimeout);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("审计日志写入失败: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void runWriter() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || size.get() > 0) {
+            try {
+                if (size.get() == 0) {
+                    replayIfDue();
+                    idle = true;
+                    if (size.get() == 0 && running) {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                    idle = false;
+                    continue;
+                }
+                if (size.get() < batchSize && maxWaitMs > 0 && running) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(maxWaitMs));
+                }
+                Pending pending;
+                while (batch.size() < batchSize && (pending = queue.poll()) != null) {
+                    size.decrementAndGet();
+                    batch.add(pending);
+                }
+                settle(batch, write(batch.stream().map(Pending::entity).toList()));
+            } catch (RuntimeException e) {
+                Log.errorf(e, "Audit ingest writer iteration failed");
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 根据写入结果完成各条记录的 future
+     */
+    private void settle(List<Pending> batch, WriteOutcome outcome) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Pending> unwritten = new ArrayList<>();
+        for (Pending pending : batch) {
+            if (containsSame(outcome.rejected(), pending.entity())) {
+                pending.written().completeExceptionally(new IllegalArgumentException("审计记录被数据库拒绝"));
+            } else if (containsSame(outcome.unwritten(), pending.entity())) {
+                unwritten.add(pending);
+            } else {
+                pending.written().complete(null);
+            }
+        }
+        if (unwritten.isEmpty()) {
+            return;
+        }
+        if (durability == Durability.ASYNC) {
+            spill(unwritten);
+        } else {
+            unwritten.forEach(p -> p.written().completeExceptionally(outcome.error()));
+        }
+    }
+
+    private static boolean containsSame(List<Object> entities, Object entity) {
+        for (Object candidate : entities) {
+            if (candidate == entity) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void spill(List<Pending> pendings) {
+        try {
+            wal.append(pendings.stream().map(Pending::entity).toList());
+            spilledCounter.increment(pendings.size());
+            pendings.forEach(p -> p.written().complete(null));
+        } catch (IOException e) {
+            Log.errorf(e, "Failed to spill %d audit records to %s, records are lost", pendings.size(), walDir);
+            pendings.forEach(p -> p.written().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * 写入一批实体；批量失败且属于数据错误时逐条重试以隔离坏记录
+     */
+    private WriteOutcome write(List<Object> entities) {
+        if (entities.isEmpty()) {
+            return new WriteOutcome(List.of(), List.of(), List.of(), null);
+        }
+        try {
+            writeBatch(entities);
+            return new WriteOutcome(entities, List.of(), List.of(), null);
+        } catch (Exception e) {
+            if (!isDataError(e)) {
+                Log.warnf("Failed to write %d audit records: %s", entities.size(), e.getMessage());
+                return new WriteOutcome(List.of(), List.of(), entities, e);
+            }
+        }
+
+        List<Object> written = new ArrayList<>();
+        List<Object> rejected = new ArrayList<>();
+        for (int i = 0; i < entities.size(); i++) {
+            Object entity = entities.get(i);
+            try {
+                writeBatch(List.of(entity));
+                written.add(entity);
+            } catch (Exception e) {
+                if (!isDataError(e)) {
+                    return new WriteOutcome(written, rejected, entities.subList(i, entities.size()), e);
+                }
+                rejectedCounter.increment();
+                Log.errorf("Audit record %s rejected by the database: %s", entity.getClass().getSimpleName(), e.getMessage());
+                rejected.add(entity);
+            }
+        }
+        return new WriteOutcome(written, rejected, List.of(), null);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void writeBatch(List<Object> entities) {
+        Map<Class<?>, List<Object>> byType = new LinkedHashMap<>();
+        for (Object entity : entities) {
+            byType.computeIfAbsent(entity.getClass(), t -> new ArrayList<>()).add(entity);
+        }
+        QuarkusTransaction.requiringNew().run(() -> {
+            byType.forEach((type, list) -> {
+                AuditIngestBinding binding = bindings.get(type);
+                if (binding != null) {
+                    binding.beforeWrite(list);
+                }
+            });
+            Session session = AuditLog.getEntityManager().unwrap(Session.class);
+            session.doWork(connection -> {
+                for (Map.Entry<Class<?>, List<Object>> entry : byType.entrySet()) {
+                    InsertStatement statement = statement(entry.getKey());
+                    try (PreparedStatement ps = connection.prepareStatement(statement.sql())) {
+                        for (Object entity : entry.getValue()) {
+                            statement.bind(ps, entity);
+                            ps.addBatch();
+                        }
+                        ps.executeBatch();
+                    }
+                }
+            });
+        });
+        writtenCounter.increment(entities.size());
+        batchSummary.record(entities.size());
+        byType.forEach((type, list) -> {
+            AuditIngestBinding binding = bindings.get(type);
+            if (binding != null) {
+                try {
+                    binding.afterWrite(list);
+                } catch (RuntimeException e) {
+                    Log.errorf(e, "Audit ingest callback for %s failed", type.getSimpleName());
+                }
+            }
+        });
+    }
+
+    private InsertStatement statement(Class<?> type) {
+        return statements.computeIfAbsent(type, t -> {
+            AbstractEntityPersister persister = (AbstractEntityPersister) sessionFactory
+                    .unwrap(SessionFactoryImplementor.class)
+                    .getMappingMetamodel()
+                    .getEntityDescriptor(t);
+            StringBuilder columns = new StringBuilder(persister.getIdentifierColumnNames()[0]);
+            List<Integer> properties = new ArrayList<>();
+            boolean[] insertable = persister.getPropertyInsertability();
+            for (int i = 0; i < persister.getPropertyNames().length; i++) {
+                String[] names = persister.getPropertyColumnNames(i);
+                // 集合属性不在本表
+                if (!insertable[i] || names.length != 1) {
+                    continue;
+                }
+                columns.append(", ").append(names[0]);
+                properties.add(i);
+            }
+            String sql = "INSERT INTO " + persister.getTableName() + " (" + columns + ") VALUES ("
+                    + "?, ".repeat(properties.size()) + "?)";
+            return new InsertStatement(sql, persister, properties.stream().mapToInt(Integer::intValue).toArray());
+        });
+    }
+
+    /**
+     * 约束冲突（SQLState 23）或数据错误（22）：记录本身有问题，重试无用
+     */
+    private static boolean isDataError(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                for (SQLException e = sql; e != null; e = e.getNextException()) {
+                    String state = e.getSQLState();
+                    if (state != null && (state.startsWith("22") || state.startsWith("23"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 重放溢出文件；数据库仍不可用时保留剩余记录，下个周期再试
+     */
+    private void replayIfDue() {
+        long now = System.nanoTime();
+        if (now - nextReplay < 0) {
+            return;
+        }
+        nextReplay = now + walReplayInterval.toNanos();
+        try {
+            for (Path file : wal.sealed()) {
+                if (!replay(file)) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            Log.errorf(e, "Failed to replay audit WAL in %s", walDir);
+        }
+    }
+
+    private boolean replay(Path file) throws IOException {
+        List<String> rejectedLines = new ArrayList<>();
+        int replayed = 0;
+        try (AuditWal.Reader reader = wal.open(file, this::resolveType)) {
+            List<AuditWal.Entry> chunk;
+            while (!(chunk = reader.next(batchSize)).isEmpty()) {
+                List<Object> entities = new ArrayList<>();
+                for (AuditWal.Entry entry : chunk) {
+                    if (entry.entity() == null) {
+                        rejectedLines.add(entry.line());
+                    } else {
+                        entities.add(entry.entity());
+                    }
+                }
+                WriteOutcome outcome = write(entities);
+                replayed += outcome.written().size();
+                for (Object entity : outcome.rejected()) {
+                    rejectedLines.add(wal.toLine(entity));
+                }
+                if (!outcome.unwritten().isEmpty()) {
+                    List<String> unwritten = new ArrayList<>();
+                    for (Object entity : outcome.unwritten()) {
+                        unwritten.add(wal.toLine(entity));
+                    }
+                    wal.reject(file, rejectedLines);
+                    int remaining = wal.rewrite(file, unwritten, reader);
+                    replayedCounter.increment(replayed);
+                    Log.warnf("Audit WAL replay of %s paused, %d records left: %s",
+                            file.getFileName(), remaining, outcome.error().getMessage());
+                    return false;
+                }
+            }
+        }
+        wal.reject(file, rejectedLines);
+        wal.delete(file);
+        replayedCounter.increment(replayed);
+        Log.infof("Replayed %d audit records from %s (%d rejected)", replayed, file.getFileName(), rejectedLines.size());
+        return true;
+    }
+
+    /**
+     * 只接受已映射的实体类型
+     */
+    private Class<?> resolveType(String name) {
+        try {
+            Class<?> type = Class.forName(name, false, Thread.currentThread().getContextClassLoader());
+            sessionFactory.unwrap(SessionFactoryImplementor.class).getMappingMetamodel().getEntityDescriptor(type);
+            return type;
+        } catch (ClassNotFoundException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 写入线程未能写完的记录落盘，下次启动时重放
+        List<Pending> remaining = new ArrayList<>();
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            size.decrementAndGet();
+            remaining.add(pending);
+        }
+        if (!remaining.isEmpty()) {
+            spill(remaining);
+        }
+        try {
+            wal.close();
+        } catch (IOException e) {
+            Log.warnf("Failed to close audit WAL: %s", e.getMessage());
+        }
+    }
+}
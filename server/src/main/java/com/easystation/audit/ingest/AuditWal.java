@@ -0,0 +1,202 @@
+package com.easystation.audit.ingest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 审计写入管道的本地溢出文件
+ *
+ * 每行一条 JSON：{"type": 实体类名, "entity": 实体字段}。追加后立即 fsync。
+ * 正在追加的文件在 {@link #sealed()} 时关闭，之后只读；重放完成的文件被删除，
+ * 无法写入数据库的记录转存到同名 .rejected 文件留待人工处理。
+ */
+final class AuditWal {
+
+    private static final String SUFFIX = ".ndjson";
+
+    private final Path dir;
+    private final ObjectMapper mapper;
+
+    private FileOutputStream activeStream;
+    private BufferedWriter active;
+    private int sequence;
+
+    /**
+     * 解析出的一行；无法解析时 entity 为 null
+     */
+    record Entry(String line, Object entity) {
+    }
+
+    AuditWal(Path dir, ObjectMapper mapper) {
+        this.dir = dir;
+        this.mapper = mapper;
+    }
+
+    /**
+     * 追加实体并刷盘
+     */
+    synchronized void append(List<?> entities) throws IOException {
+        if (entities.isEmpty()) {
+            return;
+        }
+        if (active == null) {
+            Files.createDirectories(dir);
+            Path path = dir.resolve(String.format("audit-%013d-%04d%s", System.currentTimeMillis(), sequence++ % 10000, SUFFIX));
+            activeStream = new FileOutputStream(path.toFile(), true);
+            active = new BufferedWriter(new OutputStreamWriter(activeStream, StandardCharsets.UTF_8));
+        }
+        for (Object entity : entities) {
+            active.write(toLine(entity));
+            active.newLine();
+        }
+        active.flush();
+        activeStream.getChannel().force(false);
+    }
+
+    /**
+     * 关闭当前追加的文件，返回所有可重放的文件（按创建顺序）
+     */
+    synchronized List<Path> sealed() throws IOException {
+        closeActive();
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+    }
+
+    /**
+     * 打开文件逐块读取，不把整个文件读入内存
+     *
+     * @param resolver 按类名解析实体类型，不允许的类型返回 null
+     */
+    Reader open(Path file, Function<String, Class<?>> resolver) throws IOException {
+        return new Reader(Files.newBufferedReader(file, StandardCharsets.UTF_8), resolver);
+    }
+
+    /**
+     * 用剩余记录替换文件内容：先写 head，再写 rest 中尚未读取的行
+     *
+     * @return 写入的行数
+     */
+    int rewrite(Path file, List<String> head, Reader rest) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        int count = 0;
+        try (rest; BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (String line : head) {
+                out.write(line);
+                out.newLine();
+                count++;
+            }
+            String line;
+            while ((line = rest.in.readLine()) != null) {
+                if (!line.isBlank()) {
+                    out.write(line);
+                    out.newLine();
+                    count++;
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    void reject(Path file, List<String> lines) throws IOException {
+        if (lines.isEmpty()) {
+            return;
+        }
+        Files.write(file.resolveSibling(file.getFileName() + ".rejected"), lines, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    void delete(Path file) throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    String toLine(Object entity) throws IOException {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("type", entity.getClass().getName());
+        node.set("entity", mapper.valueToTree(entity));
+        return mapper.writeValueAsString(node);
+    }
+
+    /**
+     * 逐行读取的溢出文件
+     */
+    final class Reader implements Closeable {
+
+        private final BufferedReader in;
+        private final Function<String, Class<?>> resolver;
+
+        private Reader(BufferedReader in, Function<String, Class<?>> resolver) {
+            this.in = in;
+            this.resolver = resolver;
+        }
+
+        /**
+         * 读取最多 max 条记录，到达文件末尾时返回空列表
+         */
+        List<Entry> next(int max) throws IOException {
+            List<Entry> entries = new ArrayList<>();
+            String line;
+            while (entries.size() < max && (line = in.readLine()) != null) {
+                if (!line.isBlank()) {
+                    entries.add(parse(line));
+                }
+            }
+            return entries;
+        }
+
+        private Entry parse(String line) {
+            Object entity = null;
+            try {
+                JsonNode node = mapper.readTree(line);
+                Class<?> type = resolver.apply(node.path("type").asText());
+                if (type != null) {
+                    entity = mapper.treeToValue(node.get("entity"), type);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                // 半行或损坏的行按无法解析处理
+            }
+            return new Entry(line, entity);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    synchronized void close() throws IOException {
+        closeActive();
+    }
+
+    private void closeActive() throws IOException {
+        if (active != null) {
+            try {
+                active.close();
+            } finally {
+                active = null;
+                activeStream = null;
+            }
+        }
+    }
+}
@@ -4,12 +4,15 @@ import com.easystation.auth.annotation.RequiresPermission;
 import com.easystation.audit.dto.AuditRecord;
 import com.easystation.audit.enums.AuditAction;
 import com.easystation.audit.enums.AuditResult;
+import com.easystation.audit.service.AuditArchiveService;
 import com.easystation.audit.service.AuditLogService;
+import com.easystation.audit.service.AuditLogStreamExporter;
 import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
@@ -30,6 +33,12 @@ public class AuditLogResource {
     @Inject
     AuditLogService auditLogService;
 
+    @Inject
+    AuditArchiveService auditArchiveService;
+
+    @Inject
+    AuditLogStreamExporter auditLogStreamExporter;
+
     @GET
     @Operation(summary = "列出审计日志", description = "分页查询审计日志列表")
     @APIResponses({
@@ -182,8 +191,7 @@ public class AuditLogResource {
     @Produces(MediaType.APPLICATION_OCTET_STREAM)
     @RequiresPermission("audit:export")
     public Response exportJson(@Valid AuditRecord.ExportRequest request) {
-        byte[] data = auditLogService.exportToJson(request);
-        return Response.ok(data)
+        return Response.ok(auditLogStreamExporter.export(request, "json", null, false))
                 .header("Content-Disposition", "attachment; filename=audit_logs.json")
                 .build();
     }
@@ -199,12 +207,50 @@ public class AuditLogResource {
     @Produces("text/csv")
     @RequiresPermission("audit:export")
     public Response exportCsv(@Valid AuditRecord.ExportRequest request) {
-        byte[] data = auditLogService.exportToCsv(request);
-        return Response.ok(data)
+        return Response.ok(auditLogStreamExporter.export(request, "csv", null, false))
                 .header("Content-Disposition", "attachment; filename=audit_logs.csv")
                 .build();
     }
 
+    @POST
+    @Path("/export/stream")
+    @Operation(summary = "流式导出", description = "按时间顺序边查询边输出审计日志，支持 gzip 压缩和从游标续传")
+    @APIResponses({
+        @APIResponse(responseCode = "200", description = "开始输出"),
+        @APIResponse(responseCode = "400", description = "格式或游标无效"),
+        @APIResponse(responseCode = "401", description = "未授权访问")
+    })
+    @Parameter(name = "cursor", description = "续传游标：已收到的最后一条记录的 createdAt,id", required = false)
+    @Parameter(name = "gzip", description = "是否以 gzip 压缩传输", required = false)
+    @Produces({"text/csv", MediaType.APPLICATION_JSON, "application/x-ndjson"})
+    @RequiresPermission("audit:export")
+    public Response exportStream(
+            @Valid AuditRecord.ExportRequest request,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("gzip") @DefaultValue("false") boolean gzip) {
+        String format = request.format() != null ? request.format().toLowerCase() : "csv";
+        StreamingOutput body;
+        try {
+            body = auditLogStreamExporter.export(request, format, cursor, gzip);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .type(MediaType.APPLICATION_JSON)
+                    .entity(Map.of("error", e.getMessage()))
+                    .build();
+        }
+        String type = switch (format) {
+            case "csv" -> "text/csv; charset=UTF-8";
+            case "json" -> MediaType.APPLICATION_JSON;
+            default -> "application/x-ndjson";
+        };
+        Response.ResponseBuilder response = Response.ok(body, type)
+                .header("Content-Disposition", "attachment; filename=audit_logs." + format);
+        if (gzip) {
+            response.header("Content-Encoding", "gzip");
+        }
+        return response.build();
+    }
+
     // ==================== 统计接口 ====================
 
     @GET
@@ -313,9 +359,9 @@ public class AuditLogResource {
 
     @POST
     @Path("/archive")
-    @Operation(summary = "归档日志", description = "归档指定时间前的审计日志")
+    @Operation(summary = "归档日志", description = "在后台分块归档指定时间前的审计日志到压缩文件，并删除已归档的记录")
     @APIResponses({
-        @APIResponse(responseCode = "200", description = "归档成功"),
+        @APIResponse(responseCode = "202", description = "归档任务已开始"),
         @APIResponse(responseCode = "400", description = "请求参数无效"),
         @APIResponse(responseCode = "401", description = "未授权访问")
     })
@@ -328,9 +374,49 @@ public class AuditLogResource {
         Boolean includeFailed = request.includeFailed() != null ? 
                 request.includeFailed() : true;
 
-        AuditRecord.ArchiveResult result = auditLogService.archiveLogs(
+        AuditRecord.ArchiveInfo info = auditArchiveService.start(
                 beforeDate, includeSuccess, includeFailed);
-        return Response.ok(result).build();
+        return Response.accepted(info).build();
+    }
+
+    @GET
+    @Path("/archive")
+    @Operation(summary = "列出归档任务", description = "列出所有归档任务及其进度")
+    @RequiresPermission("audit:admin")
+    public Response listArchives() {
+        return Response.ok(auditArchiveService.list()).build();
+    }
+
+    @GET
+    @Path("/archive/{archiveId}")
+    @Operation(summary = "获取归档任务", description = "查询归档任务进度")
+    @APIResponses({
+        @APIResponse(responseCode = "200", description = "成功返回归档任务"),
+        @APIResponse(responseCode = "404", description = "归档任务不存在")
+    })
+    @RequiresPermission("audit:admin")
+    public Response getArchive(@PathParam("archiveId") String archiveId) {
+        return auditArchiveService.get(archiveId)
+                .map(info -> Response.ok(info).build())
+                .orElseGet(() -> Response.status(Response.Status.NOT_FOUND)
+                        .entity(Map.of("error", "Archive not found"))
+                        .build());
+    }
+
+    @POST
+    @Path("/archive/{archiveId}/resume")
+    @Operation(summary = "继续归档", description = "从上次中断的位置继续失败或中断的归档任务")
+    @APIResponses({
+        @APIResponse(responseCode = "202", description = "归档任务已继续"),
+        @APIResponse(responseCode = "404", description = "归档任务不存在")
+    })
+    @RequiresPermission("audit:admin")
+    public Response resumeArchive(@PathParam("archiveId") String archiveId) {
+        return auditArchiveService.resume(archiveId)
+                .map(info -> Response.accepted(info).build())
+                .orElseGet(() -> Response.status(Response.Status.NOT_FOUND)
+                        .entity(Map.of("error", "Archive not found"))
+                        .build());
     }
 
     // ==================== 清理接口 ====================
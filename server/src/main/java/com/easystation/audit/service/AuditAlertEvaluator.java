@@ -0,0 +1,272 @@
+package com.easystation.audit.service;
+
+import com.easystation.audit.domain.AuditAlertConfig;
+import com.easystation.audit.enums.AuditAction;
+import com.easystation.audit.enums.AuditResult;
+import com.easystation.audit.stream.AuditEvent;
+import com.easystation.audit.stream.AuditEventStream;
+import com.easystation.audit.stream.SlidingWindowCounter;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 审计告警流式评估器
+ *
+ * 订阅审计事件流，为每个启用的告警配置按用户、IP 或操作维护滑动窗口计数器，
+ * 每条事件只更新相关计数器，达到阈值即触发告警，不再定期扫描审计日志表。
+ * 同一配置同一对象触发后在一个窗口（至少 5 分钟）内不再重复触发。
+ * 告警配置在变更提交后以及每隔 audit.alert.config-refresh 重新加载，未变化的配置保留计数。
+ */
+@Slf4j
+@ApplicationScoped
+public class AuditAlertEvaluator {
+
+    /** 告警关联的最近审计记录数 */
+    private static final int RELATED_RECORDS = 10;
+
+    /** 同一对象重复告警的最短间隔 */
+    private static final long MIN_COOLDOWN_MS = TimeUnit.MINUTES.toMillis(5);
+
+    /** 清理空闲计数器的间隔 */
+    private static final long SWEEP_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    @Inject
+    AuditEventStream eventStream;
+
+    @Inject
+    AuditAlertService alertService;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    @ConfigProperty(name = "audit.alert.window-buckets", defaultValue = "60")
+    int windowBuckets;
+
+    /** 当前生效的规则；规则内的计数状态只由事件分发线程访问 */
+    private volatile List<Rule> rules = List.of();
+
+    private ExecutorService alertExecutor;
+    private long lastSweep;
+
+    /**
+     * 告警配置快照，字段相同的配置视为未变化
+     */
+    record RuleConfig(UUID id, String name, String alertType, Set<AuditAction> sensitiveActions,
+                      Set<String> whitelistUsers, int threshold, int windowMinutes) {
+
+        static RuleConfig of(AuditAlertConfig config) {
+            int defaultThreshold = switch (config.alertType) {
+                case "FREQUENT_ACCESS" -> 100;
+                case "ABNORMAL_IP" -> 10;
+                default -> 5;
+            };
+            int defaultWindow = "FREQUENT_ACCESS".equals(config.alertType) ? 1 : 5;
+            return new RuleConfig(config.id, config.name, config.alertType,
+                    config.sensitiveActions != null ? new HashSet<>(config.sensitiveActions) : new HashSet<>(),
+                    config.whitelistUsers != null ? new HashSet<>(config.whitelistUsers) : new HashSet<>(),
+                    config.failureThreshold != null ? config.failureThreshold : defaultThreshold,
+                    config.timeWindowMinutes != null ? config.timeWindowMinutes : defaultWindow);
+        }
+    }
+
+    static final class Rule {
+        final RuleConfig config;
+        final long windowMillis;
+        final long cooldownMillis;
+        final Map<String, SlidingWindowCounter> windows = new HashMap<>();
+        final Map<String, Long> cooldowns = new HashMap<>();
+
+        Rule(RuleConfig config) {
+            this.config = config;
+            this.windowMillis = TimeUnit.MINUTES.toMillis(Math.max(1, config.windowMinutes()));
+            this.cooldownMillis = Math.max(MIN_COOLDOWN_MS, windowMillis);
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        alertExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("audit-alert-", 0).factory());
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        eventStream.subscribe(this::onEvent);
+        refresh();
+    }
+
+    /**
+     * 定期重新加载，兜底其他节点上的配置变更
+     */
+    @Scheduled(every = "{audit.alert.config-refresh:30s}", delayed = "30s")
+    void scheduledRefresh() {
+        refresh();
+    }
+
+    /**
+     * 当前事务提交后重新加载告警配置
+     */
+    public void refreshAfterCommit() {
+        if (transactionRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            refresh();
+            return;
+        }
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    alertExecutor.execute(AuditAlertEvaluator.this::refresh);
+                }
+            }
+        });
+    }
+
+    /**
+     * 重新加载启用的告警配置
+     */
+    public synchronized void refresh() {
+        List<RuleConfig> configs;
+        try {
+            configs = QuarkusTransaction.requiringNew().call(() -> AuditAlertConfig.<AuditAlertConfig>list("enabled", true)
+                    .stream()
+                    .map(RuleConfig::of)
+                    .toList());
+        } catch (RuntimeException e) {
+            log.error("加载审计告警配置失败", e);
+            return;
+        }
+
+        Map<UUID, Rule> current = new HashMap<>();
+        for (Rule rule : rules) {
+            current.put(rule.config.id(), rule);
+        }
+        List<Rule> next = new ArrayList<>(configs.size());
+        for (RuleConfig config : configs) {
+            Rule existing = current.get(config.id());
+            if (existing != null && existing.config.equals(config)) {
+                next.add(existing);
+                continue;
+            }
+            if (!Set.of("SENSITIVE_OPERATION", "FAILED_OPERATION", "ABNORMAL_IP", "FREQUENT_ACCESS")
+                    .contains(config.alertType())) {
+                log.warn("未知的告警类型: {}", config.alertType());
+            }
+            next.add(new Rule(config));
+        }
+        rules = List.copyOf(next);
+        log.debug("审计告警规则已加载: {} 条", next.size());
+    }
+
+    /**
+     * 处理一条审计事件（在事件分发线程上执行）
+     */
+    void onEvent(AuditEvent event) {
+        long now = event.createdAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        for (Rule rule : rules) {
+            if (rule.config.whitelistUsers().contains(event.username())) {
+                continue;
+            }
+            switch (rule.config.alertType()) {
+                case "SENSITIVE_OPERATION" -> evaluateSensitive(rule, event, now);
+                case "FAILED_OPERATION" -> {
+                    if (event.result() == AuditResult.FAILED) {
+                        evaluateCount(rule, "用户", event.username(), event, now, "失败操作次数");
+                    }
+                }
+                case "ABNORMAL_IP" -> {
+                    if (event.result() == AuditResult.FAILED && event.clientIp() != null) {
+                        evaluateCount(rule, "IP", event.clientIp(), event, now, "失败操作次数");
+                    }
+                }
+                case "FREQUENT_ACCESS" -> evaluateCount(rule, "用户", event.username(), event, now, "访问次数");
+                default -> {
+                }
+            }
+        }
+        if (now - lastSweep >= SWEEP_INTERVAL_MS) {
+            sweep(now);
+        }
+    }
+
+    private void evaluateSensitive(Rule rule, AuditEvent event, long now) {
+        if (event.result() != AuditResult.SUCCESS || !rule.config.sensitiveActions().contains(event.action())) {
+            return;
+        }
+        if (acquireCooldown(rule, event.username() + "|" + event.action(), now)) {
+            fire(rule, event, "检测到敏感操作: " + event.action().getDescription(), List.of(event.id()));
+        }
+    }
+
+    private void evaluateCount(Rule rule, String subject, String key, AuditEvent event, long now, String measure) {
+        SlidingWindowCounter window = rule.windows.computeIfAbsent(key,
+                k -> new SlidingWindowCounter(rule.windowMillis, windowBuckets, RELATED_RECORDS));
+        long count = window.add(now, event.id());
+        if (count >= rule.config.threshold() && acquireCooldown(rule, key, now)) {
+            fire(rule, event, subject + "[" + key + "]在" + rule.config.windowMinutes() + "分钟内" + measure
+                    + "达到" + count + "次", window.recent());
+        }
+    }
+
+    private boolean acquireCooldown(Rule rule, String key, long now) {
+        Long until = rule.cooldowns.get(key);
+        if (until != null && until > now) {
+            return false;
+        }
+        rule.cooldowns.put(key, now + rule.cooldownMillis);
+        return true;
+    }
+
+    private void fire(Rule rule, AuditEvent event, String detail, List<UUID> relatedRecordIds) {
+        RuleConfig config = rule.config;
+        log.info("触发审计告警: config={}, user={}, detail={}", config.name(), event.username(), detail);
+        alertExecutor.execute(() -> {
+            try {
+                alertService.raiseAlert(config.id(), config.alertType(), event.username(), event.clientIp(),
+                        detail, relatedRecordIds);
+            } catch (RuntimeException e) {
+                log.error("记录审计告警[{}]失败", config.name(), e);
+            }
+        });
+    }
+
+    /**
+     * 回收窗口内已无事件的计数器和过期的冷却记录
+     */
+    private void sweep(long now) {
+        lastSweep = now;
+        for (Rule rule : rules) {
+            rule.windows.values().removeIf(window -> window.isIdle(now));
+            rule.cooldowns.values().removeIf(until -> until <= now);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        alertExecutor.shutdown();
+    }
+}
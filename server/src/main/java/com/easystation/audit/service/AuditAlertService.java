@@ -2,13 +2,9 @@ package com.easystation.audit.service;
 
 import com.easystation.audit.domain.AuditAlertConfig;
 import com.easystation.audit.domain.AuditAlertHistory;
-import com.easystation.audit.domain.AuditLog;
-import com.easystation.audit.enums.AuditAction;
-import com.easystation.audit.enums.AuditResult;
 import io.quarkus.hibernate.orm.panache.PanacheQuery;
 import io.quarkus.panache.common.Page;
 import io.quarkus.panache.common.Sort;
-import io.quarkus.scheduler.Scheduled;
 import io.vertx.ext.web.RoutingContext;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -17,7 +13,6 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * 审计告警服务
@@ -29,6 +24,9 @@ public class AuditAlertService {
     @Inject
     RoutingContext routingContext;
 
+    @Inject
+    AuditAlertEvaluator alertEvaluator;
+
     /**
      * 创建告警配置
      */
@@ -39,6 +37,7 @@ public class AuditAlertService {
             throw new IllegalArgumentException("告警配置名称已存在: " + config.name);
         }
         config.persist();
+        alertEvaluator.refreshAfterCommit();
         return config;
     }
 
@@ -68,6 +67,7 @@ public class AuditAlertService {
         config.timeWindowMinutes = update.timeWindowMinutes;
         config.notifyChannels = update.notifyChannels;
         config.enabled = update.enabled;
+        alertEvaluator.refreshAfterCommit();
 
         return config;
     }
@@ -82,6 +82,7 @@ public class AuditAlertService {
             throw new IllegalArgumentException("告警配置不存在: " + id);
         }
         config.delete();
+        alertEvaluator.refreshAfterCommit();
     }
 
     /**
@@ -130,6 +131,7 @@ public class AuditAlertService {
             throw new IllegalArgumentException("告警配置不存在: " + id);
         }
         config.enabled = enabled;
+        alertEvaluator.refreshAfterCommit();
     }
 
     /**
@@ -202,148 +204,23 @@ public class AuditAlertService {
     }
 
     /**
-     * 定时检查告警条件
+     * 由流式评估器触发告警；配置已删除或已禁用时忽略
      */
-    @Scheduled(every = "5m")
     @Transactional
-    public void checkAlerts() {
-        log.info("开始检查审计告警...");
-
-        // 获取所有启用的告警配置
-        List<AuditAlertConfig> configs = AuditAlertConfig.list("enabled", true);
-
-        for (AuditAlertConfig config : configs) {
-            try {
-                switch (config.alertType) {
-                    case "SENSITIVE_OPERATION":
-                        checkSensitiveOperation(config);
-                        break;
-                    case "FAILED_OPERATION":
-                        checkFailedOperation(config);
-                        break;
-                    case "ABNORMAL_IP":
-                        checkAbnormalIp(config);
-                        break;
-                    case "FREQUENT_ACCESS":
-                        checkFrequentAccess(config);
-                        break;
-                    default:
-                        log.warn("未知的告警类型: {}", config.alertType);
-                }
-            } catch (Exception e) {
-                log.error("检查告警配置[{}]时发生错误", config.name, e);
-            }
-        }
-
-        log.info("审计告警检查完成");
-    }
-
-    /**
-     * 检查敏感操作
-     */
-    private void checkSensitiveOperation(AuditAlertConfig config) {
-        if (config.sensitiveActions == null || config.sensitiveActions.isEmpty()) {
+    public void raiseAlert(UUID configId, String alertType, String triggerUser, String triggerIp,
+                           String detail, List<UUID> relatedRecordIds) {
+        AuditAlertConfig config = AuditAlertConfig.findById(configId);
+        if (config == null || !Boolean.TRUE.equals(config.enabled)) {
             return;
         }
-
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime checkTime = now.minusMinutes(config.timeWindowMinutes != null ? config.timeWindowMinutes : 5);
-
-        // 查询敏感操作
-        for (AuditAction action : config.sensitiveActions) {
-            List<AuditLog> logs = AuditLog.list(
-                    "action = ?1 and createdAt >= ?2 and result = ?3",
-                    Sort.by("createdAt", Sort.Direction.Descending),
-                    action, checkTime, AuditResult.SUCCESS
-            );
-
-            // 过滤白名单用户
-            logs = logs.stream()
-                    .filter(log -> config.whitelistUsers == null || !config.whitelistUsers.contains(log.username))
-                    .toList();
-
-            if (!logs.isEmpty()) {
-                // 创建告警历史
-                createAlertHistory(config, "SENSITIVE_OPERATION", logs.get(0).username, logs.get(0).clientIp,
-                        "检测到敏感操作: " + action.getDescription(), logs);
-            }
-        }
-    }
-
-    /**
-     * 检查失败操作
-     */
-    private void checkFailedOperation(AuditAlertConfig config) {
-        Integer threshold = config.failureThreshold != null ? config.failureThreshold : 5;
-        Integer windowMinutes = config.timeWindowMinutes != null ? config.timeWindowMinutes : 5;
-
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime checkTime = now.minusMinutes(windowMinutes);
-
-        // 按用户分组统计失败操作
-        List<AuditLog> failedLogs = AuditLog.list(
-                "result = ?1 and createdAt >= ?2",
-                Sort.by("createdAt", Sort.Direction.Descending),
-                AuditResult.FAILED, checkTime
-        );
-
-        Map<String, List<AuditLog>> byUser = failedLogs.stream()
-                .filter(log -> config.whitelistUsers == null || !config.whitelistUsers.contains(log.username))
-                .collect(Collectors.groupingBy(log -> log.username));
-
-        for (Map.Entry<String, List<AuditLog>> entry : byUser.entrySet()) {
-            if (entry.getValue().size() >= threshold) {
-                createAlertHistory(config, "FAILED_OPERATION", entry.getKey(), entry.getValue().get(0).clientIp,
-                        "用户[" + entry.getKey() + "]在" + windowMinutes + "分钟内失败操作次数达到" + entry.getValue().size() + "次",
-                        entry.getValue());
-            }
-        }
-    }
-
-    /**
-     * 检查异常IP
-     */
-    private void checkAbnormalIp(AuditAlertConfig config) {
-        // 这里可以实现更复杂的IP异常检测逻辑
-        // 例如：检测新IP、检测来自特定地区的IP等
-        log.debug("检查异常IP告警: {}", config.name);
-    }
-
-    /**
-     * 检查频繁访问
-     */
-    private void checkFrequentAccess(AuditAlertConfig config) {
-        Integer threshold = config.failureThreshold != null ? config.failureThreshold : 100;
-        Integer windowMinutes = config.timeWindowMinutes != null ? config.timeWindowMinutes : 1;
-
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime checkTime = now.minusMinutes(windowMinutes);
-
-        // 按用户分组统计访问次数
-        List<AuditLog> logs = AuditLog.list(
-                "createdAt >= ?1",
-                Sort.by("createdAt", Sort.Direction.Descending),
-                checkTime
-        );
-
-        Map<String, List<AuditLog>> byUser = logs.stream()
-                .filter(log -> config.whitelistUsers == null || !config.whitelistUsers.contains(log.username))
-                .collect(Collectors.groupingBy(log -> log.username));
-
-        for (Map.Entry<String, List<AuditLog>> entry : byUser.entrySet()) {
-            if (entry.getValue().size() >= threshold) {
-                createAlertHistory(config, "FREQUENT_ACCESS", entry.getKey(), entry.getValue().get(0).clientIp,
-                        "用户[" + entry.getKey() + "]在" + windowMinutes + "分钟内访问次数达到" + entry.getValue().size() + "次",
-                        entry.getValue().subList(0, Math.min(10, entry.getValue().size())));
-            }
-        }
+        createAlertHistory(config, alertType, triggerUser, triggerIp, detail, relatedRecordIds);
     }
 
     /**
      * 创建告警历史
      */
     private void createAlertHistory(AuditAlertConfig config, String alertType, String triggerUser,
-                                    String triggerIp, String detail, List<AuditLog> relatedLogs) {
+                                    String triggerIp, String detail, List<UUID> relatedRecordIds) {
         // 检查是否已存在相同的告警（5分钟内）
         LocalDateTime fiveMinutesAgo = LocalDateTime.now().minusMinutes(5);
         long existingCount = AuditAlertHistory.count(
@@ -363,7 +240,7 @@ public class AuditAlertService {
         history.triggerUser = triggerUser;
         history.triggerIp = triggerIp;
         history.detail = detail;
-        history.relatedRecordIds = relatedLogs.stream().map(log -> log.id).toList();
+        history.relatedRecordIds = new ArrayList<>(relatedRecordIds);
         history.notifyChannel = config.notifyChannels != null && !config.notifyChannels.isEmpty() 
                 ? String.join(",", config.notifyChannels) : null;
         history.notifyStatus = "PENDING";
@@ -0,0 +1,348 @@
+package com.easystation.audit.service;
+
+import com.easystation.audit.archive.ArchiveManifest;
+import com.easystation.audit.archive.ArchiveSegmentReader;
+import com.easystation.audit.archive.ArchiveSegmentWriter;
+import com.easystation.audit.domain.AuditLog;
+import com.easystation.audit.dto.AuditRecord;
+import com.easystation.audit.enums.AuditResult;
+import com.easystation.audit.stats.AuditStatsRollup;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.jpa.HibernateHints;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * 审计日志归档任务
+ *
+ * 按 (createdAt, id) 键集分页，每次在一个短事务中读取 audit.archive.chunk-size 条，
+ * 写成 gzip 压缩的 NDJSON 分段文件并记录校验和，再按主键删除写入分段的记录，
+ * 内存占用和锁持有时间都与总量无关。每一步之后更新 manifest.json，任务中断后可从游标处继续；
+ * 已写出但未删除的分段先校验文件，再按文件中的主键补删。
+ * 归档文件位于 audit.archive.dir/&lt;archiveId&gt;/。任务在后台单线程依次执行。
+ */
+@ApplicationScoped
+public class AuditArchiveService {
+
+    private static final String MANIFEST = "manifest.json";
+    private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+
+    /** 每条 DELETE 的主键个数上限 */
+    private static final int DELETE_BATCH = 1000;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    AuditLogService auditLogService;
+
+    @Inject
+    AuditStatsRollup statsRollup;
+
+    @ConfigProperty(name = "audit.archive.dir", defaultValue = "work/audit-archive")
+    String archiveDir;
+
+    @ConfigProperty(name = "audit.archive.chunk-size", defaultValue = "5000")
+    int chunkSize;
+
+    @ConfigProperty(name = "audit.archive.resume-on-startup", defaultValue = "true")
+    boolean resumeOnStartup;
+
+    /** 已提交或正在执行的归档任务 */
+    private final Set<String> active = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService executor;
+    private ArchiveSegmentWriter segmentWriter;
+    private ArchiveSegmentReader segmentReader;
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "audit-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        segmentWriter = new ArchiveSegmentWriter(objectMapper);
+        segmentReader = new ArchiveSegmentReader(objectMapper);
+    }
+
+    /**
+     * 继续上次进程退出时未完成的归档
+     */
+    void onStart(@Observes StartupEvent event) {
+        if (!resumeOnStartup) {
+            return;
+        }
+        for (ArchiveManifest manifest : manifests()) {
+            if (ArchiveManifest.RUNNING.equals(manifest.status)) {
+                Log.infof("Resuming interrupted audit archive %s", manifest.archiveId);
+                submit(manifest);
+            }
+        }
+    }
+
+    /**
+     * 创建并开始一个归档任务
+     */
+    public AuditRecord.ArchiveInfo start(LocalDateTime beforeDate, Boolean includeSuccess, Boolean includeFailed) {
+        ArchiveManifest manifest = new ArchiveManifest();
+        LocalDateTime now = LocalDateTime.now();
+        // 同一秒内的多次归档以随机后缀区分
+        manifest.archiveId = "audit_archive_" + ID_FORMAT.format(now) + "_" + UUID.randomUUID().toString().substring(0, 8);
+        manifest.beforeDate = beforeDate;
+        if (Boolean.TRUE.equals(includeSuccess) && !Boolean.TRUE.equals(includeFailed)) {
+            manifest.results = List.of(AuditResult.SUCCESS);
+        } else if (!Boolean.TRUE.equals(includeSuccess) && Boolean.TRUE.equals(includeFailed)) {
+            manifest.results = List.of(AuditResult.FAILED);
+        }
+        // 如果都不指定或都指定，则不按结果过滤
+        manifest.chunkSize = Math.max(1, chunkSize);
+        manifest.status = ArchiveManifest.RUNNING;
+        manifest.startedAt = now;
+
+        Path dir = directory(manifest.archiveId);
+        if (Files.exists(dir)) {
+            throw new IllegalStateException("归档任务已存在: " + manifest.archiveId);
+        }
+        try {
+            Files.createDirectories(dir);
+            save(manifest);
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建归档目录失败: " + dir, e);
+        }
+        submit(manifest);
+        return toInfo(manifest);
+    }
+
+    /**
+     * 继续一个失败或中断的归档任务
+     */
+    public Optional<AuditRecord.ArchiveInfo> resume(String archiveId) {
+        Optional<ArchiveManifest> manifest = load(archiveId);
+        manifest.filter(m -> !ArchiveManifest.COMPLETED.equals(m.status)).ifPresent(m -> {
+            m.status = ArchiveManifest.RUNNING;
+            m.error = null;
+            submit(m);
+        });
+        return manifest.map(this::toInfo);
+    }
+
+    public Optional<AuditRecord.ArchiveInfo> get(String archiveId) {
+        return load(archiveId).map(this::toInfo);
+    }
+
+    public List<AuditRecord.ArchiveInfo> list() {
+        return manifests().stream().map(this::toInfo).toList();
+    }
+
+    private void submit(ArchiveManifest manifest) {
+        if (!active.add(manifest.archiveId)) {
+            Log.infof("Audit archive %s is already running", manifest.archiveId);
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                run(manifest);
+            } finally {
+                active.remove(manifest.archiveId);
+            }
+        });
+    }
+
+    private void run(ArchiveManifest manifest) {
+        try {
+            // 上次中断时已写出但未删除的分段先补删
+            for (ArchiveManifest.Segment segment : manifest.segments) {
+                if (!segment.deleted) {
+                    deleteSegment(manifest, segment,
+                            segmentReader.ids(directory(manifest.archiveId).resolve(segment.file), segment));
+                }
+            }
+
+            while (true) {
+                List<AuditLog> chunk = QuarkusTransaction.requiringNew().call(() -> fetch(manifest));
+                if (chunk.isEmpty()) {
+                    break;
+                }
+                AuditLog first = chunk.get(0);
+                AuditLog last = chunk.get(chunk.size() - 1);
+                String file = String.format("segment-%05d.ndjson.gz", manifest.segments.size() + 1);
+                ArchiveManifest.Segment segment = segmentWriter.write(directory(manifest.archiveId).resolve(file),
+                        chunk.stream().map(auditLogService::toDetail).toList());
+                segment.firstCreatedAt = first.createdAt;
+                segment.firstId = first.id;
+                segment.lastCreatedAt = last.createdAt;
+                segment.lastId = last.id;
+
+                manifest.segments.add(segment);
+                manifest.cursorCreatedAt = last.createdAt;
+                manifest.cursorId = last.id;
+                manifest.recordCount += segment.records;
+                manifest.totalBytes += segment.bytes;
+                save(manifest);
+
+                deleteSegment(manifest, segment, chunk.stream().map(log -> log.id).toList());
+            }
+
+            manifest.status = ArchiveManifest.COMPLETED;
+            manifest.completedAt = LocalDateTime.now();
+            save(manifest);
+            Log.infof("Audit archive %s completed: %d records in %d segments, %d bytes",
+                    manifest.archiveId, manifest.recordCount, manifest.segments.size(), manifest.totalBytes);
+        } catch (Exception e) {
+            Log.errorf(e, "Audit archive %s failed after %d records", manifest.archiveId, manifest.recordCount);
+            manifest.status = ArchiveManifest.FAILED;
+            manifest.error = e.getMessage();
+            try {
+                save(manifest);
+            } catch (IOException ex) {
+                Log.errorf(ex, "Failed to save manifest of audit archive %s", manifest.archiveId);
+            }
+        }
+    }
+
+    /**
+     * 读取游标之后的下一块
+     */
+    private List<AuditLog> fetch(ArchiveManifest manifest) {
+        StringBuilder jpql = new StringBuilder("from AuditLog a where ").append(filter(manifest));
+        if (manifest.cursorCreatedAt != null) {
+            jpql.append(" and (a.createdAt > :cursorTime or (a.createdAt = :cursorTime and a.id > :cursorId))");
+        }
+        jpql.append(" order by a.createdAt, a.id");
+
+        TypedQuery<AuditLog> query = AuditLog.getEntityManager().createQuery(jpql.toString(), AuditLog.class)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setMaxResults(manifest.chunkSize);
+        bindFilter(query, manifest);
+        if (manifest.cursorCreatedAt != null) {
+            query.setParameter("cursorTime", manifest.cursorCreatedAt);
+            query.setParameter("cursorId", manifest.cursorId);
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * 按主键删除写入分段的记录，并在同一事务内重算该区间的统计汇总
+     *
+     * 区间内在读取之后才提交的记录不在分段中，不会被删除。
+     */
+    private void deleteSegment(ArchiveManifest manifest, ArchiveManifest.Segment segment, List<UUID> ids)
+            throws IOException {
+        int deleted = QuarkusTransaction.requiringNew().call(() -> {
+            int count = 0;
+            for (int from = 0; from < ids.size(); from += DELETE_BATCH) {
+                count += AuditLog.getEntityManager().createQuery("delete from AuditLog a where a.id in :ids")
+                        .setParameter("ids", ids.subList(from, Math.min(ids.size(), from + DELETE_BATCH)))
+                        .executeUpdate();
+            }
+            statsRollup.rebuild(segment.firstCreatedAt, segment.lastCreatedAt);
+            return count;
+        });
+        if (deleted != segment.records) {
+            // 按主键删除不会多删；少删的记录已不在库中，但已保存在分段里
+            Log.warnf("Audit archive %s segment %s: archived %d records, %d were already gone",
+                    manifest.archiveId, segment.file, segment.records, segment.records - deleted);
+        }
+        segment.deleted = true;
+        save(manifest);
+    }
+
+    private static String filter(ArchiveManifest manifest) {
+        return manifest.results != null ? "a.createdAt < :beforeDate and a.result in :results" : "a.createdAt < :beforeDate";
+    }
+
+    private static void bindFilter(Query query, ArchiveManifest manifest) {
+        query.setParameter("beforeDate", manifest.beforeDate);
+        if (manifest.results != null) {
+            query.setParameter("results", manifest.results);
+        }
+    }
+
+    private void save(ArchiveManifest manifest) throws IOException {
+        manifest.updatedAt = LocalDateTime.now();
+        Path file = directory(manifest.archiveId).resolve(MANIFEST);
+        Path tmp = file.resolveSibling(MANIFEST + ".tmp");
+        Files.write(tmp, objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(manifest));
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Optional<ArchiveManifest> load(String archiveId) {
+        if (archiveId == null || !archiveId.matches("[A-Za-z0-9_-]+")) {
+            return Optional.empty();
+        }
+        Path file = directory(archiveId).resolve(MANIFEST);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(file.toFile(), ArchiveManifest.class));
+        } catch (IOException e) {
+            Log.warnf("Unreadable audit archive manifest %s: %s", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private List<ArchiveManifest> manifests() {
+        Path root = Path.of(archiveDir);
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        List<ArchiveManifest> result = new ArrayList<>();
+        try (Stream<Path> dirs = Files.list(root)) {
+            dirs.sorted().forEach(dir -> load(dir.getFileName().toString()).ifPresent(result::add));
+        } catch (IOException e) {
+            Log.warnf("Failed to list audit archives in %s: %s", root, e.getMessage());
+        }
+        return result;
+    }
+
+    private Path directory(String archiveId) {
+        return Path.of(archiveDir, archiveId);
+    }
+
+    private AuditRecord.ArchiveInfo toInfo(ArchiveManifest manifest) {
+        return new AuditRecord.ArchiveInfo(
+                manifest.archiveId,
+                manifest.archiveId + "/" + MANIFEST,
+                manifest.totalBytes,
+                (int) Math.min(Integer.MAX_VALUE, manifest.recordCount),
+                manifest.segments.isEmpty() ? null : manifest.segments.get(0).firstCreatedAt,
+                manifest.cursorCreatedAt,
+                manifest.completedAt,
+                manifest.status
+        );
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // 正在执行的块在下次启动时从 manifest 继续
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,41 @@
+package com.easystation.audit.service;
+
+import com.easystation.audit.domain.AuditLog;
+import com.easystation.audit.ingest.AuditIngestBinding;
+import com.easystation.audit.stats.AuditStatsRollup;
+import com.easystation.audit.stream.AuditEvent;
+import com.easystation.audit.stream.AuditEventStream;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.List;
+
+/**
+ * 审计日志写入时在同一事务内累加统计汇总，提交后发布到审计事件流
+ */
+@ApplicationScoped
+public class AuditLogIngestBinding implements AuditIngestBinding<AuditLog> {
+
+    @Inject
+    AuditEventStream eventStream;
+
+    @Inject
+    AuditStatsRollup statsRollup;
+
+    @Override
+    public Class<AuditLog> type() {
+        return AuditLog.class;
+    }
+
+    @Override
+    public void beforeWrite(List<AuditLog> batch) {
+        statsRollup.apply(batch);
+    }
+
+    @Override
+    public void afterWrite(List<AuditLog> batch) {
+        for (AuditLog log : batch) {
+            eventStream.publish(AuditEvent.of(log));
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.easystation.audit.service;
+
+import com.easystation.audit.domain.AuditLog;
+import com.easystation.audit.dto.AuditRecord;
+import com.easystation.export.writer.CsvRowWriter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.jpa.HibernateHints;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 审计日志流式导出
+ *
+ * 按 (createdAt, id) 键集分页，每块 audit.export.fetch-size 行在一个短的只读事务中读出后再写入响应，
+ * 写响应时不占用数据库连接，慢客户端不会长时间持有连接，内存占用与导出行数无关。
+ * 游标为最后收到的一行的 "createdAt,id"，从游标续传时只导出其后的记录。
+ *
+ * 分块和续传都只按 (createdAt, id) 向后读取：在读取之后才提交、createdAt 却早于当前位置的记录
+ * （长事务或各节点时钟偏差）不会被导出。需要完整快照时应以 endTime 限定到已稳定的时间段。
+ */
+@ApplicationScoped
+public class AuditLogStreamExporter {
+
+    public static final Set<String> FORMATS = Set.of("csv", "json", "ndjson");
+
+    private static final String[] CSV_HEADERS = {
+            "ID", "用户名", "操作类型", "操作结果", "描述", "资源类型", "资源ID",
+            "客户端IP", "请求路径", "请求方法", "耗时(ms)", "创建时间"
+    };
+
+    @Inject
+    AuditLogService auditLogService;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @ConfigProperty(name = "audit.export.fetch-size", defaultValue = "500")
+    int fetchSize;
+
+    @ConfigProperty(name = "audit.export.chunk-timeout", defaultValue = "30s")
+    Duration chunkTimeout;
+
+    /**
+     * 导出游标：上次导出的最后一条记录
+     */
+    public record Cursor(LocalDateTime createdAt, UUID id) {
+
+        /**
+         * @throws IllegalArgumentException 格式不是 "createdAt,id"
+         */
+        public static Cursor parse(String value) {
+            int comma = value.lastIndexOf(',');
+            if (comma < 0) {
+                throw new IllegalArgumentException("游标格式应为 createdAt,id");
+            }
+            try {
+                return new Cursor(LocalDateTime.parse(value.substring(0, comma).trim()),
+                        UUID.fromString(value.substring(comma + 1).trim()));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("游标时间无效: " + value.substring(0, comma));
+            }
+        }
+    }
+
+    /**
+     * 构造导出响应体；格式和游标在此校验，查询在写出响应时才执行
+     *
+     * @param format csv、json（JSON 数组）或 ndjson（每行一个 JSON 对象）
+     * @param cursor 续传游标，可为空
+     * @param gzip   是否以 gzip 压缩输出
+     * @throws IllegalArgumentException 格式或游标无效
+     */
+    public StreamingOutput export(AuditRecord.ExportRequest request, String format, String cursor, boolean gzip) {
+        if (!FORMATS.contains(format)) {
+            throw new IllegalArgumentException("不支持的导出格式: " + format);
+        }
+        Cursor after = cursor != null && !cursor.isBlank() ? Cursor.parse(cursor) : null;
+        return output -> {
+            GZIPOutputStream compressed = gzip ? new GZIPOutputStream(output, 64 * 1024, true) : null;
+            // 写出器关闭时只刷新，不关闭容器的响应流
+            OutputStream out = new FilterOutputStream(compressed != null ? compressed : output) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    this.out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+            Iterator<AuditLog> rows = new ChunkedRows(request, after);
+            switch (format) {
+                case "csv" -> writeCsv(rows, out);
+                case "json" -> writeJson(rows, out, true);
+                default -> writeJson(rows, out, false);
+            }
+            if (compressed != null) {
+                compressed.finish();
+            }
+        };
+    }
+
+    /**
+     * 逐块读取游标之后的记录，每块在一个新事务中查询，读出的实体已脱离持久化上下文
+     */
+    private final class ChunkedRows implements Iterator<AuditLog> {
+
+        private final AuditRecord.ExportRequest request;
+        private Cursor position;
+        private Iterator<AuditLog> chunk = Collections.emptyIterator();
+        private boolean exhausted;
+
+        ChunkedRows(AuditRecord.ExportRequest request, Cursor after) {
+            this.request = request;
+            this.position = after;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!chunk.hasNext() && !exhausted) {
+                List<AuditLog> rows = QuarkusTransaction.requiringNew()
+                        .timeout((int) Math.max(1, chunkTimeout.toSeconds()))
+                        .call(() -> query(AuditLog.getEntityManager(), request, position).getResultList());
+                exhausted = rows.size() < chunkSize();
+                if (!rows.isEmpty()) {
+                    AuditLog last = rows.get(rows.size() - 1);
+                    position = new Cursor(last.createdAt, last.id);
+                }
+                chunk = rows.iterator();
+            }
+            return chunk.hasNext();
+        }
+
+        @Override
+        public AuditLog next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return chunk.next();
+        }
+    }
+
+    private void writeCsv(Iterator<AuditLog> rows, OutputStream out) throws IOException {
+        try (CsvRowWriter writer = new CsvRowWriter(out)) {
+            writer.writeHeader(CSV_HEADERS);
+            writer.flush();
+            while (rows.hasNext()) {
+                AuditLog log = rows.next();
+                writer.writeRow(new Object[]{
+                        log.id,
+                        log.username,
+                        log.action != null ? log.action.name() : null,
+                        log.result != null ? log.result.name() : null,
+                        log.description,
+                        log.resourceType,
+                        log.resourceId,
+                        log.clientIp,
+                        log.requestPath,
+                        log.requestMethod,
+                        log.duration != null ? log.duration : 0L,
+                        log.createdAt
+                });
+            }
+        }
+    }
+
+    private void writeJson(Iterator<AuditLog> rows, OutputStream out, boolean array) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(AuditRecord.Detail.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            if (array) {
+                generator.writeStartArray();
+            }
+            generator.flush();
+            while (rows.hasNext()) {
+                writer.writeValue(generator, auditLogService.toDetail(rows.next()));
+                if (!array) {
+                    generator.writeRaw('\n');
+                }
+            }
+            if (array) {
+                generator.writeEndArray();
+            }
+        }
+    }
+
+    private int chunkSize() {
+        return Math.max(1, fetchSize);
+    }
+
+    private TypedQuery<AuditLog> query(EntityManager em, AuditRecord.ExportRequest request, Cursor after) {
+        StringBuilder jpql = new StringBuilder("from AuditLog a where 1=1");
+        Map<String, Object> params = new HashMap<>();
+        if (request.username() != null && !request.username().isBlank()) {
+            jpql.append(" and a.username = :username");
+            params.put("username", request.username());
+        }
+        if (request.userId() != null) {
+            jpql.append(" and a.userId = :userId");
+            params.put("userId", request.userId());
+        }
+        if (request.action() != null) {
+            jpql.append(" and a.action = :action");
+            params.put("action", request.action());
+        }
+        if (request.result() != null) {
+            jpql.append(" and a.result = :result");
+            params.put("result", request.result());
+        }
+        if (request.resourceType() != null && !request.resourceType().isBlank()) {
+            jpql.append(" and a.resourceType = :resourceType");
+            params.put("resourceType", request.resourceType());
+        }
+        if (request.startTime() != null) {
+            jpql.append(" and a.createdAt >= :startTime");
+            params.put("startTime", request.startTime());
+        }
+        if (request.endTime() != null) {
+            jpql.append(" and a.createdAt <= :endTime");
+            params.put("endTime", request.endTime());
+        }
+        if (request.keyword() != null && !request.keyword().isBlank()) {
+            jpql.append(" and (a.description like :keyword or a.details like :keyword)");
+            params.put("keyword", "%" + request.keyword() + "%");
+        }
+        if (after != null) {
+            jpql.append(" and (a.createdAt > :cursorTime or (a.createdAt = :cursorTime and a.id > :cursorId))");
+            params.put("cursorTime", after.createdAt());
+            params.put("cursorId", after.id());
+        }
+        jpql.append(" order by a.createdAt, a.id");
+
+        TypedQuery<AuditLog> query = em.createQuery(jpql.toString(), AuditLog.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, chunkSize())
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setMaxResults(chunkSize());
+        params.forEach(query::setParameter);
+        return query;
+    }
+}
@@ -0,0 +1,208 @@
+package com.easystation.audit.service;
+
+import com.easystation.audit.domain.AuditLog;
+import com.easystation.audit.dto.AuditRecord;
+import com.easystation.audit.enums.AuditAction;
+import com.easystation.audit.enums.AuditResult;
+import com.easystation.audit.enums.AuditStatsGranularity;
+import com.easystation.audit.stats.AuditStatsPlan;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.Query;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * 审计日志统计
+ *
+ * 查询范围按 {@link AuditStatsPlan} 切分：整天、整小时读统计汇总表，首尾不足一小时的部分读明细，
+ * 各段结果在内存中合并。开始和结束时间均包含在内。
+ */
+@ApplicationScoped
+public class AuditStatsService {
+
+    /**
+     * 某一段的一行分组结果；明细段的 bucket 为该段所在小时
+     */
+    private record Row(LocalDateTime bucket, Object[] keys, AuditResult result, long count) {
+    }
+
+    private static final class Counts {
+        long total;
+        long success;
+        long failed;
+
+        void add(AuditResult result, long count) {
+            total += count;
+            if (result == AuditResult.SUCCESS) {
+                success += count;
+            } else if (result == AuditResult.FAILED) {
+                failed += count;
+            }
+        }
+    }
+
+    private static final class UserCounts {
+        final String username;
+        UUID userId;
+        final Counts counts = new Counts();
+
+        UserCounts(String username) {
+            this.username = username;
+        }
+    }
+
+    public List<AuditRecord.StatisticsByUser> byUser(LocalDateTime startTime, LocalDateTime endTime, Integer limit) {
+        Map<String, UserCounts> users = new LinkedHashMap<>();
+        for (Row row : rows(plan(startTime, endTime, AuditStatsGranularity.DAY), false, "username", "userId")) {
+            UserCounts user = users.computeIfAbsent((String) row.keys()[0], UserCounts::new);
+            if (user.userId == null) {
+                user.userId = (UUID) row.keys()[1];
+            }
+            user.counts.add(row.result(), row.count());
+        }
+        return users.values().stream()
+                .sorted(Comparator.comparingLong((UserCounts user) -> user.counts.total).reversed())
+                .limit(limit != null && limit > 0 ? limit : Long.MAX_VALUE)
+                .map(user -> new AuditRecord.StatisticsByUser(
+                        user.username,
+                        user.userId,
+                        user.counts.total,
+                        user.counts.success,
+                        user.counts.failed,
+                        user.counts.failed * 100 / Math.max(1, user.counts.total)
+                ))
+                .toList();
+    }
+
+    public List<AuditRecord.StatisticsByAction> byAction(LocalDateTime startTime, LocalDateTime endTime) {
+        Map<AuditAction, Counts> actions = group(plan(startTime, endTime, AuditStatsGranularity.DAY), false,
+                row -> (AuditAction) row.keys()[0], new LinkedHashMap<>(), "action");
+        return actions.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<AuditAction, Counts> e) -> e.getValue().total).reversed())
+                .map(e -> new AuditRecord.StatisticsByAction(e.getKey(), e.getValue().total, e.getValue().success,
+                        e.getValue().failed))
+                .toList();
+    }
+
+    public List<AuditRecord.StatisticsByDate> byDate(LocalDateTime startTime, LocalDateTime endTime) {
+        Map<LocalDateTime, Counts> dates = group(plan(startTime, endTime, AuditStatsGranularity.DAY), true,
+                row -> AuditStatsGranularity.DAY.floor(row.bucket()), new TreeMap<>());
+        return dates.entrySet().stream()
+                .map(e -> new AuditRecord.StatisticsByDate(e.getKey(), e.getValue().total, e.getValue().success,
+                        e.getValue().failed))
+                .toList();
+    }
+
+    public List<AuditRecord.StatisticsByHour> byHour(LocalDateTime startTime, LocalDateTime endTime) {
+        Map<Integer, Counts> hours = group(plan(startTime, endTime, AuditStatsGranularity.HOUR), true,
+                row -> row.bucket().getHour(), new TreeMap<>());
+        return hours.entrySet().stream()
+                .map(e -> new AuditRecord.StatisticsByHour(e.getKey(), e.getValue().total, e.getValue().success,
+                        e.getValue().failed))
+                .toList();
+    }
+
+    public AuditRecord.StatisticsSummary summary(LocalDateTime startTime, LocalDateTime endTime) {
+        AuditStatsPlan plan = plan(startTime, endTime, AuditStatsGranularity.DAY);
+        Counts counts = new Counts();
+        for (Row row : rows(plan, false)) {
+            counts.add(row.result(), row.count());
+        }
+        Set<Object> users = new HashSet<>();
+        Set<Object> resources = new HashSet<>();
+        for (AuditStatsPlan.Segment segment : plan.segments()) {
+            if (segment.raw()) {
+                users.addAll(query(segment, "select distinct a.username from AuditLog a where "
+                        + "a.createdAt >= :from and a.createdAt < :to").getResultList());
+                resources.addAll(query(segment, "select distinct a.resourceId from AuditLog a where "
+                        + "a.resourceId is not null and a.createdAt >= :from and a.createdAt < :to").getResultList());
+            } else {
+                users.addAll(query(segment, "select distinct b.username from AuditStatsBucket b where "
+                        + "b.granularity = :granularity and b.bucketStart >= :from and b.bucketStart < :to").getResultList());
+                resources.addAll(query(segment, "select distinct r.resourceId from AuditStatsResource r where "
+                        + "r.granularity = :granularity and r.bucketStart >= :from and r.bucketStart < :to").getResultList());
+            }
+        }
+
+        double successRate = counts.total > 0 ? (counts.success * 100.0 / counts.total) : 0.0;
+        return new AuditRecord.StatisticsSummary(
+                counts.total,
+                counts.success,
+                counts.failed,
+                successRate,
+                (long) users.size(),
+                (long) resources.size()
+        );
+    }
+
+    private static AuditStatsPlan plan(LocalDateTime startTime, LocalDateTime endTime, AuditStatsGranularity coarsest) {
+        // 结束时间包含在内，转换为左闭右开
+        return AuditStatsPlan.of(startTime, endTime.plusNanos(1), coarsest);
+    }
+
+    private <K> Map<K, Counts> group(AuditStatsPlan plan, boolean byBucket, Function<Row, K> key,
+                                     Map<K, Counts> target, String... dimensions) {
+        for (Row row : rows(plan, byBucket, dimensions)) {
+            target.computeIfAbsent(key.apply(row), k -> new Counts()).add(row.result(), row.count());
+        }
+        return target;
+    }
+
+    /**
+     * 对计划中的每一段按维度和操作结果分组计数
+     *
+     * @param byBucket 汇总段是否同时按时间桶分组
+     */
+    private List<Row> rows(AuditStatsPlan plan, boolean byBucket, String... dimensions) {
+        List<Row> rows = new ArrayList<>();
+        for (AuditStatsPlan.Segment segment : plan.segments()) {
+            String alias = segment.raw() ? "a" : "b";
+            StringBuilder columns = new StringBuilder();
+            if (byBucket && !segment.raw()) {
+                columns.append("b.bucketStart, ");
+            }
+            for (String dimension : dimensions) {
+                columns.append(alias).append('.').append(dimension).append(", ");
+            }
+            columns.append(alias).append(".result");
+
+            String jpql = segment.raw()
+                    ? "select " + columns + ", count(a) from AuditLog a"
+                    + " where a.createdAt >= :from and a.createdAt < :to group by " + columns
+                    : "select " + columns + ", sum(b.total) from AuditStatsBucket b"
+                    + " where b.granularity = :granularity and b.bucketStart >= :from and b.bucketStart < :to"
+                    + " group by " + columns;
+
+            int offset = byBucket && !segment.raw() ? 1 : 0;
+            for (Object result : query(segment, jpql).getResultList()) {
+                Object[] row = (Object[]) result;
+                LocalDateTime bucket = offset > 0 ? (LocalDateTime) row[0] : AuditStatsGranularity.HOUR.floor(segment.from());
+                Object[] keys = new Object[dimensions.length];
+                System.arraycopy(row, offset, keys, 0, dimensions.length);
+                rows.add(new Row(bucket, keys, (AuditResult) row[offset + dimensions.length],
+                        ((Number) row[offset + dimensions.length + 1]).longValue()));
+            }
+        }
+        return rows;
+    }
+
+    private static Query query(AuditStatsPlan.Segment segment, String jpql) {
+        Query query = AuditLog.getEntityManager().createQuery(jpql)
+                .setParameter("from", segment.from())
+                .setParameter("to", segment.to());
+        if (!segment.raw()) {
+            query.setParameter("granularity", segment.granularity());
+        }
+        return query;
+    }
+}
@@ -0,0 +1,65 @@
+package com.easystation.audit.stats;
+
+import com.easystation.audit.enums.AuditStatsGranularity;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 统计查询计划
+ *
+ * 把左闭右开的时间范围切成若干段：范围内的整天读按天汇总，其余整小时读按小时汇总，
+ * 首尾不足一小时的部分读审计日志明细。明细段总在同一个小时内。
+ */
+public record AuditStatsPlan(List<Segment> segments) {
+
+    /**
+     * 计划中的一段，granularity 为 null 表示读明细
+     */
+    public record Segment(AuditStatsGranularity granularity, LocalDateTime from, LocalDateTime to) {
+
+        public boolean raw() {
+            return granularity == null;
+        }
+    }
+
+    /**
+     * @param from    起始时间（含）
+     * @param to      结束时间（不含）
+     * @param coarsest 可使用的最粗粒度；按小时分布统计无法使用按天汇总
+     */
+    public static AuditStatsPlan of(LocalDateTime from, LocalDateTime to, AuditStatsGranularity coarsest) {
+        List<Segment> segments = new ArrayList<>();
+        if (!from.isBefore(to)) {
+            return new AuditStatsPlan(segments);
+        }
+        LocalDateTime hourFrom = AuditStatsGranularity.HOUR.ceil(from);
+        if (!hourFrom.isBefore(to)) {
+            segments.add(new Segment(null, from, to));
+            return new AuditStatsPlan(segments);
+        }
+        LocalDateTime hourTo = AuditStatsGranularity.HOUR.floor(to);
+        add(segments, null, from, hourFrom);
+
+        LocalDateTime dayFrom = AuditStatsGranularity.DAY.ceil(hourFrom);
+        LocalDateTime dayTo = AuditStatsGranularity.DAY.floor(hourTo);
+        if (coarsest == AuditStatsGranularity.DAY && dayFrom.isBefore(dayTo)) {
+            add(segments, AuditStatsGranularity.HOUR, hourFrom, dayFrom);
+            add(segments, AuditStatsGranularity.DAY, dayFrom, dayTo);
+            add(segments, AuditStatsGranularity.HOUR, dayTo, hourTo);
+        } else {
+            add(segments, AuditStatsGranularity.HOUR, hourFrom, hourTo);
+        }
+
+        add(segments, null, hourTo, to);
+        return new AuditStatsPlan(segments);
+    }
+
+    private static void add(List<Segment> segments, AuditStatsGranularity granularity,
+                            LocalDateTime from, LocalDateTime to) {
+        if (from.isBefore(to)) {
+            segments.add(new Segment(granularity, from, to));
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.easystation.audit.stats;
+
+import com.easystation.audit.domain.AuditLog;
+import com.easystation.audit.domain.AuditStatsBucket;
+import com.easystation.audit.enums.AuditAction;
+import com.easystation.audit.enums.AuditResult;
+import com.easystation.audit.enums.AuditStatsGranularity;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.transaction.Transactional;
+import org.hibernate.Session;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * 审计统计汇总表维护
+ *
+ * 审计日志写入时在同一事务内累加对应的小时桶和天桶，与明细同时提交或回滚。
+ * 先 UPDATE，不存在时 INSERT ... ON CONFLICT DO NOTHING，被其他节点抢先插入时再 UPDATE 一次；
+ * 键按固定顺序处理，避免多个节点互相等待行锁。
+ * 删除审计日志后调用 {@link #rebuild}，小时桶从明细重算，天桶从小时桶重算。
+ */
+@ApplicationScoped
+public class AuditStatsRollup {
+
+    private static final String UPDATE_BUCKET = "UPDATE audit_stats_bucket SET total = total + ?, user_id = COALESCE(user_id, ?)"
+            + " WHERE granularity = ? AND bucket_start = ? AND username = ? AND action = ? AND result = ?";
+
+    private static final String INSERT_BUCKET = "INSERT INTO audit_stats_bucket"
+            + " (id, granularity, bucket_start, username, user_id, action, result, total)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+    private static final String INSERT_RESOURCE = "INSERT INTO audit_stats_resource"
+            + " (id, granularity, bucket_start, resource_id) VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+    record BucketKey(AuditStatsGranularity granularity, LocalDateTime bucketStart, String username,
+                     AuditAction action, AuditResult result) implements Comparable<BucketKey> {
+
+        private static final Comparator<BucketKey> ORDER = Comparator.comparing(BucketKey::granularity)
+                .thenComparing(BucketKey::bucketStart)
+                .thenComparing(BucketKey::username)
+                .thenComparing(BucketKey::action)
+                .thenComparing(BucketKey::result);
+
+        @Override
+        public int compareTo(BucketKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    record ResourceKey(AuditStatsGranularity granularity, LocalDateTime bucketStart, UUID resourceId)
+            implements Comparable<ResourceKey> {
+
+        private static final Comparator<ResourceKey> ORDER = Comparator.comparing(ResourceKey::granularity)
+                .thenComparing(ResourceKey::bucketStart)
+                .thenComparing(ResourceKey::resourceId);
+
+        @Override
+        public int compareTo(ResourceKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    static final class Cell {
+        long total;
+        UUID userId;
+
+        void add(long count, UUID user) {
+            total += count;
+            if (userId == null) {
+                userId = user;
+            }
+        }
+    }
+
+    /**
+     * 累加一批新写入的审计日志，必须在写入这批日志的事务内调用
+     */
+    public void apply(List<AuditLog> logs) {
+        Map<BucketKey, Cell> buckets = new TreeMap<>();
+        Set<ResourceKey> resources = new TreeSet<>();
+        for (AuditLog log : logs) {
+            for (AuditStatsGranularity granularity : AuditStatsGranularity.values()) {
+                LocalDateTime bucketStart = granularity.floor(log.createdAt);
+                buckets.computeIfAbsent(new BucketKey(granularity, bucketStart, log.username, log.action, log.result),
+                        k -> new Cell()).add(1, log.userId);
+                if (log.resourceId != null) {
+                    resources.add(new ResourceKey(granularity, bucketStart, log.resourceId));
+                }
+            }
+        }
+        write(buckets, resources);
+    }
+
+    /**
+     * 删除审计日志后重算覆盖 [from, to] 的汇总桶
+     *
+     * @param from 最早受影响的日志时间，null 表示此前全部
+     * @param to   最晚受影响的日志时间
+     */
+    @Transactional
+    public void rebuild(LocalDateTime from, LocalDateTime to) {
+        AuditStatsGranularity hour = AuditStatsGranularity.HOUR;
+        LocalDateTime hourFrom = from != null ? hour.floor(from) : null;
+        LocalDateTime hourTo = hour.next(hour.floor(to));
+        clear(hour, hourFrom, hourTo);
+        write(hourBucketsFromLogs(hourFrom, hourTo), hourResourcesFromLogs(hourFrom, hourTo));
+
+        AuditStatsGranularity day = AuditStatsGranularity.DAY;
+        LocalDateTime dayFrom = from != null ? day.floor(from) : null;
+        LocalDateTime dayTo = day.next(day.floor(to));
+        clear(day, dayFrom, dayTo);
+        write(dayBucketsFromHours(dayFrom, dayTo), dayResourcesFromHours(dayFrom, dayTo));
+    }
+
+    private void clear(AuditStatsGranularity granularity, LocalDateTime from, LocalDateTime to) {
+        for (String entity : List.of("AuditStatsBucket", "AuditStatsResource")) {
+            Query query = entityManager().createQuery("delete from " + entity + " b where b.granularity = :granularity"
+                    + " and b.bucketStart < :to" + (from != null ? " and b.bucketStart >= :from" : ""));
+            bindRange(query, from, to);
+            query.setParameter("granularity", granularity).executeUpdate();
+        }
+    }
+
+    private Map<BucketKey, Cell> hourBucketsFromLogs(LocalDateTime from, LocalDateTime to) {
+        String hourOf = "year(a.createdAt), month(a.createdAt), day(a.createdAt), hour(a.createdAt)";
+        Query query = entityManager().createQuery("select " + hourOf + ", a.username, a.userId, a.action, a.result, count(a)"
+                + " from AuditLog a where a.createdAt < :to" + (from != null ? " and a.createdAt >= :from" : "")
+                + " group by " + hourOf + ", a.username, a.userId, a.action, a.result");
+        bindRange(query, from, to);
+        Map<BucketKey, Cell> buckets = new TreeMap<>();
+        for (Object row : query.getResultList()) {
+            Object[] columns = (Object[]) row;
+            BucketKey key = new BucketKey(AuditStatsGranularity.HOUR, hourOf(columns), (String) columns[4],
+                    (AuditAction) columns[6], (AuditResult) columns[7]);
+            buckets.computeIfAbsent(key, k -> new Cell()).add(((Number) columns[8]).longValue(), (UUID) columns[5]);
+        }
+        return buckets;
+    }
+
+    private Set<ResourceKey> hourResourcesFromLogs(LocalDateTime from, LocalDateTime to) {
+        Query query = entityManager().createQuery("select distinct year(a.createdAt), month(a.createdAt),"
+                + " day(a.createdAt), hour(a.createdAt), a.resourceId from AuditLog a"
+                + " where a.resourceId is not null and a.createdAt < :to" + (from != null ? " and a.createdAt >= :from" : ""));
+        bindRange(query, from, to);
+        Set<ResourceKey> resources = new TreeSet<>();
+        for (Object row : query.getResultList()) {
+            Object[] columns = (Object[]) row;
+            resources.add(new ResourceKey(AuditStatsGranularity.HOUR, hourOf(columns), (UUID) columns[4]));
+        }
+        return resources;
+    }
+
+    private Map<BucketKey, Cell> dayBucketsFromHours(LocalDateTime from, LocalDateTime to) {
+        Query query = entityManager().createQuery("select b from AuditStatsBucket b where b.granularity = :granularity"
+                + " and b.bucketStart < :to" + (from != null ? " and b.bucketStart >= :from" : ""));
+        bindRange(query, from, to);
+        query.setParameter("granularity", AuditStatsGranularity.HOUR);
+        Map<BucketKey, Cell> buckets = new TreeMap<>();
+        for (Object row : query.getResultList()) {
+            AuditStatsBucket bucket = (AuditStatsBucket) row;
+            BucketKey key = new BucketKey(AuditStatsGranularity.DAY, AuditStatsGranularity.DAY.floor(bucket.bucketStart),
+                    bucket.username, bucket.action, bucket.result);
+            buckets.computeIfAbsent(key, k -> new Cell()).add(bucket.total, bucket.userId);
+        }
+        return buckets;
+    }
+
+    private Set<ResourceKey> dayResourcesFromHours(LocalDateTime from, LocalDateTime to) {
+        Query query = entityManager().createQuery("select r.bucketStart, r.resourceId from AuditStatsResource r"
+                + " where r.granularity = :granularity and r.bucketStart < :to" + (from != null ? " and r.bucketStart >= :from" : ""));
+        bindRange(query, from, to);
+        query.setParameter("granularity", AuditStatsGranularity.HOUR);
+        Set<ResourceKey> resources = new TreeSet<>();
+        for (Object row : query.getResultList()) {
+            Object[] columns = (Object[]) row;
+            resources.add(new ResourceKey(AuditStatsGranularity.DAY,
+                    AuditStatsGranularity.DAY.floor((LocalDateTime) columns[0]), (UUID) columns[1]));
+        }
+        return resources;
+    }
+
+    private static LocalDateTime hourOf(Object[] columns) {
+        return LocalDateTime.of(((Number) columns[0]).intValue(), ((Number) columns[1]).intValue(),
+                ((Number) columns[2]).intValue(), ((Number) columns[3]).intValue(), 0);
+    }
+
+    private static void bindRange(Query query, LocalDateTime from, LocalDateTime to) {
+        query.setParameter("to", to);
+        if (from != null) {
+            query.setParameter("from", from);
+        }
+    }
+
+    private void write(Map<BucketKey, Cell> buckets, Set<ResourceKey> resources) {
+        if (buckets.isEmpty() && resources.isEmpty()) {
+            return;
+        }
+        entityManager().unwrap(Session.class).doWork(connection -> {
+            writeBuckets(connection, buckets);
+            writeResources(connection, resources);
+        });
+    }
+
+    private static void writeBuckets(Connection connection, Map<BucketKey, Cell> buckets) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(UPDATE_BUCKET);
+             PreparedStatement insert = connection.prepareStatement(INSERT_BUCKET)) {
+            for (Map.Entry<BucketKey, Cell> entry : buckets.entrySet()) {
+                BucketKey key = entry.getKey();
+                Cell cell = entry.getValue();
+                if (update(update, key, cell) > 0) {
+                    continue;
+                }
+                insert.setObject(1, UUID.randomUUID());
+                insert.setString(2, key.granularity().name());
+                insert.setObject(3, key.bucketStart());
+                insert.setString(4, key.username());
+                insert.setObject(5, cell.userId);
+                insert.setString(6, key.action().name());
+                insert.setString(7, key.result().name());
+                insert.setLong(8, cell.total);
+                if (insert.executeUpdate() == 0) {
+                    // 其他节点刚插入了同一个桶
+                    update(update, key, cell);
+                }
+            }
+        }
+    }
+
+    private static int update(PreparedStatement update, BucketKey key, Cell cell) throws SQLException {
+        update.setLong(1, cell.total);
+        update.setObject(2, cell.userId);
+        update.setString(3, key.granularity().name());
+        update.setObject(4, key.bucketStart());
+        update.setString(5, key.username());
+        update.setString(6, key.action().name());
+        update.setString(7, key.result().name());
+        return update.executeUpdate();
+    }
+
+    private static void writeResources(Connection connection, Set<ResourceKey> resources) throws SQLException {
+        if (resources.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement insert = connection.prepareStatement(INSERT_RESOURCE)) {
+            for (ResourceKey key : resources) {
+                insert.setObject(1, UUID.randomUUID());
+                insert.setString(2, key.granularity().name());
+                insert.setObject(3, key.bucketStart());
+                insert.setObject(4, key.resourceId());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    private static EntityManager entityManager() {
+        return AuditLog.getEntityManager();
+    }
+}
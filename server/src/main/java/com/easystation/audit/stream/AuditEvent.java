@@ -0,0 +1,20 @@
+package com.easystation.audit.stream;
+
+import com.easystation.audit.domain.AuditLog;
+import com.easystation.audit.enums.AuditAction;
+import com.easystation.audit.enums.AuditResult;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 已提交的审计日志事件，只携带告警和统计需要的字段
+ */
+public record AuditEvent(UUID id, String username, UUID userId, AuditAction action, AuditResult result,
+                         String clientIp, LocalDateTime createdAt) {
+
+    public static AuditEvent of(AuditLog log) {
+        return new AuditEvent(log.id, log.username, log.userId, log.action, log.result, log.clientIp,
+                log.createdAt != null ? log.createdAt : LocalDateTime.now());
+    }
+}
@@ -0,0 +1,142 @@
+package com.easystation.audit.stream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 进程内审计事件流
+ *
+ * 审计日志提交后发布到有界队列，由单个分发线程按发布顺序依次交给各订阅者，
+ * 订阅者因此无需自行加锁，但不应在回调中做耗时操作。发布从不阻塞，队列满时丢弃并计数。
+ */
+@ApplicationScoped
+public class AuditEventStream {
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    @ConfigProperty(name = "audit.stream.queue-capacity", defaultValue = "10000")
+    int queueCapacity;
+
+    private final List<Consumer<AuditEvent>> subscribers = new CopyOnWriteArrayList<>();
+
+    private BlockingQueue<AuditEvent> queue;
+    private volatile boolean running;
+    private Thread dispatcher;
+
+    private Counter publishedCounter;
+    private Counter droppedCounter;
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        Gauge.builder("esa.audit.stream.queued", queue, BlockingQueue::size)
+                .description("Audit events waiting to be dispatched")
+                .register(registry);
+        publishedCounter = Counter.builder("esa.audit.stream.published.total")
+                .description("Audit events published")
+                .register(registry);
+        droppedCounter = Counter.builder("esa.audit.stream.dropped.total")
+                .description("Audit events dropped because the queue was full")
+                .register(registry);
+
+        running = true;
+        dispatcher = new Thread(this::dispatch, "audit-event-stream");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * 订阅事件，回调在分发线程上执行
+     */
+    public void subscribe(Consumer<AuditEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * 发布事件；当前有活动事务时等事务提交后再发布，回滚则不发布
+     *
+     * @return false 表示事件被丢弃
+     */
+    public boolean publish(AuditEvent event) {
+        if (transactionRegistry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        offer(event);
+                    }
+                }
+            });
+            return true;
+        }
+        return offer(event);
+    }
+
+    private boolean offer(AuditEvent event) {
+        if (!queue.offer(event)) {
+            droppedCounter.increment();
+            return false;
+        }
+        publishedCounter.increment();
+        return true;
+    }
+
+    private void dispatch() {
+        while (running || !queue.isEmpty()) {
+            AuditEvent event;
+            try {
+                event = queue.poll(500, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (event == null) {
+                continue;
+            }
+            for (Consumer<AuditEvent> subscriber : subscribers) {
+                try {
+                    subscriber.accept(event);
+                } catch (RuntimeException e) {
+                    Log.errorf(e, "Audit event subscriber failed on event %s", event.id());
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        if (dispatcher != null) {
+            try {
+                dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
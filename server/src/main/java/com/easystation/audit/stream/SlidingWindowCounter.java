@@ -0,0 +1,98 @@
+package com.easystation.audit.stream;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 分桶滑动窗口计数器
+ *
+ * 窗口被切成固定数量的桶，计数时只清理自上次计数以来过期的桶，并维护窗口内总数，
+ * 因此每次计数的开销与窗口内事件数无关。窗口边界精度为一个桶宽。
+ * 同时保留最近若干个事件 ID，作为告警的关联记录。非线程安全，由单个线程使用。
+ */
+public final class SlidingWindowCounter {
+
+    private final long bucketMillis;
+    private final long[] counts;
+    private final int maxRecent;
+    private final Deque<UUID> recent = new ArrayDeque<>();
+
+    private long total;
+    private long lastBucket = Long.MIN_VALUE;
+
+    /**
+     * @param windowMillis 窗口长度
+     * @param buckets      桶数量
+     * @param maxRecent    保留的最近事件 ID 数
+     */
+    public SlidingWindowCounter(long windowMillis, int buckets, int maxRecent) {
+        int n = Math.max(1, buckets);
+        this.bucketMillis = Math.max(1, windowMillis / n);
+        this.counts = new long[n];
+        this.maxRecent = maxRecent;
+    }
+
+    /**
+     * 计入一个事件
+     *
+     * @return 计入后窗口内的事件数
+     */
+    public long add(long timeMillis, UUID eventId) {
+        advance(timeMillis / bucketMillis);
+        counts[(int) Math.floorMod(lastBucket, (long) counts.length)]++;
+        total++;
+        if (eventId != null && maxRecent > 0) {
+            if (recent.size() >= maxRecent) {
+                recent.removeLast();
+            }
+            recent.addFirst(eventId);
+        }
+        return total;
+    }
+
+    /**
+     * 截至指定时间窗口内的事件数
+     */
+    public long count(long timeMillis) {
+        advance(timeMillis / bucketMillis);
+        return total;
+    }
+
+    /**
+     * 最近的事件 ID，最新的在前
+     */
+    public List<UUID> recent() {
+        return new ArrayList<>(recent);
+    }
+
+    /**
+     * 窗口内没有事件时可以被回收
+     */
+    public boolean isIdle(long timeMillis) {
+        return count(timeMillis) == 0;
+    }
+
+    private void advance(long bucket) {
+        if (lastBucket == Long.MIN_VALUE) {
+            lastBucket = bucket;
+            return;
+        }
+        // 迟到的事件计入当前桶
+        if (bucket <= lastBucket) {
+            return;
+        }
+        long steps = Math.min(bucket - lastBucket, counts.length);
+        for (long i = 1; i <= steps; i++) {
+            int idx = (int) Math.floorMod(lastBucket + i, (long) counts.length);
+            total -= counts[idx];
+            counts[idx] = 0;
+        }
+        if (total == 0) {
+            recent.clear();
+        }
+        lastBucket = bucket;
+    }
+}
@@ -1,11 +1,13 @@
 package com.easystation.auth.service;
 
+import com.easystation.audit.ingest.AuditIngestPipeline;
 import com.easystation.auth.domain.ApiKey;
 import com.easystation.auth.domain.ApiKeyUsageLog;
 import com.easystation.auth.dto.ApiKeyRecord;
 import io.quarkus.logging.Log;
 import io.smallrye.jwt.build.Jwt;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.Response;
@@ -16,6 +18,7 @@ import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -26,6 +29,9 @@ public class ApiKeyService {
     private static final int SECRET_LENGTH = 32;
     private static final SecureRandom RANDOM = new SecureRandom();
 
+    @Inject
+    AuditIngestPipeline ingestPipeline;
+
     @ConfigProperty(name = "auth.jwt.issuer", defaultValue = "https://easystation.com/issuer")
     String issuer;
 
@@ -244,12 +250,13 @@ public class ApiKeyService {
         return new ApiKeyRecord.ValidationResult(true, key.id, key.name, permissions, "API Key is valid");
     }
 
-    @Transactional
     public void logUsage(UUID keyId, String clientIp, String method, String path,
                          Integer status, Long responseTime, String permission, String errorMessage) {
         ApiKeyUsageLog log = new ApiKeyUsageLog();
+        log.id = UUID.randomUUID();
         log.keyId = keyId;
-        log.usageTime = LocalDateTime.now();
+        log.usageTime = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        log.createdAt = log.usageTime;
         log.clientIp = clientIp;
         log.requestMethod = method;
         log.requestPath = path;
@@ -257,7 +264,7 @@ public class ApiKeyService {
         log.responseTimeMs = responseTime;
         log.permissionUsed = permission;
         log.errorMessage = errorMessage;
-        log.persist();
+        ingestPipeline.ingest(log);
     }
 
     public List<ApiKeyRecord.UsageLogDetail> getUsageLogs(ApiKeyRecord.UsageLogQuery query) {
@@ -0,0 +1,177 @@
+package com.easystation.auth.service;
+
+import com.easystation.common.cache.CacheService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 进程内权限判定缓存
+ *
+ * 按 (userId, resource, action) 缓存判定结果，并缓存用户的权限编码集合。
+ * 每个用户在 Redis 中有一个版本号（user:permissions:version:{userId}），通过 {@link CacheService} 读取，
+ * 因此命中其本地缓存时无需访问 Redis；权限变更时写入新的随机版本号，
+ * 缓存服务会通知所有节点丢弃旧版本号，各节点下次检查时发现版本不一致即丢弃该用户的判定缓存。
+ * 版本号的过期时间为判定缓存 TTL 的两倍：过期前按旧版本号缓存的判定已全部过期，
+ * 随机取值也保证过期后重新写入的版本号不会与仍在缓存中的旧版本号相同。
+ */
+@ApplicationScoped
+public class PermissionDecisionCache {
+
+    private static final String VERSION_KEY_PREFIX = "user:permissions:version:";
+
+    @Inject
+    CacheService cacheService;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "auth.permission.decision-cache.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "auth.permission.decision-cache.max-users", defaultValue = "10000")
+    long maxUsers;
+
+    @ConfigProperty(name = "auth.permission.decision-cache.ttl-seconds", defaultValue = "300")
+    long ttlSeconds;
+
+    private Cache<UUID, UserDecisions> users;
+
+    /**
+     * 每个资源的 [命中, 未命中] 计数器
+     */
+    private final Map<String, Counter[]> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 单个用户在某一版本下的权限集合与判定结果
+     */
+    static final class UserDecisions {
+        final long version;
+        final Set<String> permissions;
+        final Map<String, Boolean> decisions = new ConcurrentHashMap<>();
+
+        UserDecisions(long version, Set<String> permissions) {
+            this.version = version;
+            this.permissions = permissions;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        users = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 判断用户是否拥有 resource:action 或 resource:manage 权限
+     *
+     * @param loader 缓存未命中时加载用户权限编码集合
+     */
+    public boolean hasPermission(UUID userId, String resource, String action,
+                                 Function<UUID, Set<String>> loader) {
+        if (!enabled) {
+            return decide(loader.apply(userId), resource, action);
+        }
+        UserDecisions entry = current(userId, loader);
+        String key = resource + ":" + action;
+        Boolean decision = entry.decisions.get(key);
+        Counter[] resourceCounters = counters(resource);
+        if (decision != null) {
+            resourceCounters[0].increment();
+            return decision;
+        }
+        resourceCounters[1].increment();
+        boolean allowed = decide(entry.permissions, resource, action);
+        entry.decisions.put(key, allowed);
+        return allowed;
+    }
+
+    /**
+     * 获取用户当前版本的权限编码集合
+     */
+    public Set<String> getPermissions(UUID userId, Function<UUID, Set<String>> loader) {
+        if (!enabled) {
+            return loader.apply(userId);
+        }
+        return current(userId, loader).permissions;
+    }
+
+    /**
+     * 为用户写入新的随机权限版本号（带 TTL），使所有节点上该用户的判定缓存失效
+     */
+    public void invalidate(UUID userId) {
+        if (users != null) {
+            users.invalidate(userId);
+        }
+        try {
+            // 0 表示版本号不存在，-1 表示读取失败，均不作为版本号
+            long version = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+            cacheService.set(VERSION_KEY_PREFIX + userId, version, versionTtlSeconds(), TimeUnit.SECONDS);
+        } catch (Exception e) {
+            Log.warnf("Failed to reset permission version for user %s: %s", userId, e.getMessage());
+        }
+    }
+
+    long versionTtlSeconds() {
+        return Math.max(ttlSeconds, 1) * 2;
+    }
+
+    private UserDecisions current(UUID userId, Function<UUID, Set<String>> loader) {
+        // 先读版本号再加载权限：加载期间发生的变更会使版本号改变，下次检查时重新加载
+        long version = version(userId);
+        UserDecisions entry = users.getIfPresent(userId);
+        if (entry != null && entry.version == version) {
+            return entry;
+        }
+        entry = new UserDecisions(version, Set.copyOf(loader.apply(userId)));
+        users.put(userId, entry);
+        return entry;
+    }
+
+    private long version(UUID userId) {
+        try {
+            Long version = cacheService.get(VERSION_KEY_PREFIX + userId, Long.class);
+            return version != null ? version : 0L;
+        } catch (Exception e) {
+            // 读取失败时返回无法匹配的版本号，本次按未命中处理
+            Log.debugf("Failed to read permission version for user %s: %s", userId, e.getMessage());
+            return -1L;
+        }
+    }
+
+    private static boolean decide(Set<String> permissions, String resource, String action) {
+        return permissions.contains(resource + ":" + action)
+                || permissions.contains(resource + ":manage");
+    }
+
+    private Counter[] counters(String resource) {
+        return counters.computeIfAbsent(resource, r -> new Counter[] {
+                Counter.builder("esa.permission.cache.requests")
+                        .description("Permission decision cache lookups")
+                        .tag("resource", r)
+                        .tag("result", "hit")
+                        .register(registry),
+                Counter.builder("esa.permission.cache.requests")
+                        .description("Permission decision cache lookups")
+                        .tag("resource", r)
+                        .tag("result", "miss")
+                        .register(registry)
+        });
+    }
+}
@@ -28,6 +28,9 @@ public class PermissionService {
     @Inject
     RedisDataSource redis;
 
+    @Inject
+    PermissionDecisionCache decisionCache;
+
     /**
      * 检查用户是否有指定权限
      * 
@@ -37,15 +40,8 @@ public class PermissionService {
      * @return 是否有权限
      */
     public boolean hasPermission(UUID userId, String resource, String action) {
-        String permissionCode = resource + ":" + action;
-        String manageCode = resource + ":manage";
-        
-        // 从缓存获取用户权限
-        Set<String> userPermissions = getUserPermissionsFromCache(userId);
-        
-        // 检查是否有指定权限或 manage 权限
-        return userPermissions.contains(permissionCode) || 
-               userPermissions.contains(manageCode);
+        // 优先使用本地判定缓存，未命中时从 Redis / 数据库加载用户权限
+        return decisionCache.hasPermission(userId, resource, action, this::getUserPermissionsFromCache);
     }
 
     /**
@@ -55,7 +51,7 @@ public class PermissionService {
      * @return 权限编码集合
      */
     public Set<String> getUserPermissions(UUID userId) {
-        return getUserPermissionsFromCache(userId);
+        return decisionCache.getPermissions(userId, this::getUserPermissionsFromCache);
     }
 
     /**
@@ -129,6 +125,8 @@ public class PermissionService {
     public void clearUserPermissionCache(UUID userId) {
         String cacheKey = "user:permissions:" + userId;
         redis.key(String.class).del(cacheKey);
+        // 为该用户写入新的随机版本号（带 TTL），各节点发现版本号变化后丢弃本地判定缓存
+        decisionCache.invalidate(userId);
         LOG.debug("清除用户权限缓存：{}", userId);
     }
 
@@ -1,6 +1,6 @@
 package com.easystation.auth.service;
 
-import com.easystation.common.cache.RedisCacheService;
+import com.easystation.common.cache.CacheService;
 import io.quarkus.logging.Log;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -19,7 +19,7 @@ public class TokenBlacklistService {
     private static final String BLACKLIST_KEY_PREFIX = "token:blacklist:";
 
     @Inject
-    RedisCacheService redisCacheService;
+    CacheService cacheService;
 
     @ConfigProperty(name = "auth.jwt.blacklist.enabled", defaultValue = "true")
     boolean blacklistEnabled;
@@ -40,7 +40,7 @@ public class TokenBlacklistService {
         }
 
         String key = BLACKLIST_KEY_PREFIX + tokenHash;
-        redisCacheService.set(key, "blacklisted", ttlSeconds, TimeUnit.SECONDS);
+        cacheService.set(key, "blacklisted", ttlSeconds, TimeUnit.SECONDS);
         Log.debugf("Token added to blacklist: %s (TTL: %ds)", tokenHash, ttlSeconds);
     }
 
@@ -66,7 +66,7 @@ public class TokenBlacklistService {
         }
 
         String key = BLACKLIST_KEY_PREFIX + tokenHash;
-        String value = redisCacheService.get(key, String.class);
+        String value = cacheService.get(key, String.class);
         boolean blacklisted = "blacklisted".equals(value);
         
         if (blacklisted) {
@@ -87,7 +87,7 @@ public class TokenBlacklistService {
         }
 
         String key = BLACKLIST_KEY_PREFIX + tokenHash;
-        redisCacheService.delete(key);
+        cacheService.delete(key);
         Log.debugf("Token removed from blacklist: %s", tokenHash);
     }
 
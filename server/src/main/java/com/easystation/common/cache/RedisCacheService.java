@@ -1,11 +1,19 @@
 package com.easystation.common.cache;
 
+import com.easystation.common.redis.RedisScript;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
 import io.quarkus.redis.datasource.RedisDataSource;
 import io.quarkus.redis.datasource.value.SetArgs;
 import io.quarkus.redis.datasource.value.ValueCommands;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Response;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -21,19 +29,86 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 @ApplicationScoped
 public class RedisCacheService implements CacheService {
 
+    /**
+     * 一次往返读取值及其剩余 TTL（毫秒）
+     */
+    private static final RedisScript GET_WITH_TTL = new RedisScript("""
+            local value = redis.call('GET', KEYS[1])
+            if not value then
+              return {}
+            end
+            return {value, redis.call('PTTL', KEYS[1])}
+            """);
+
     @Inject
     RedisDataSource redisDataSource;
 
     @Inject
     ObjectMapper objectMapper;
 
+    @ConfigProperty(name = "quarkus.redis.timeout", defaultValue = "10s")
+    Duration timeout;
+
     private ValueCommands<String, String> getValueCommands() {
         return redisDataSource.value(String.class, String.class);
     }
 
+    /**
+     * 原始 JSON 值及剩余 TTL，TTL 为负表示未设置过期时间
+     */
+    record RawValue(String json, long ttlMillis) {
+    }
+
     @Override
     public <T> T get(String key, Class<T> clazz) {
-        String json = getValueCommands().get(key);
+        return fromJson(key, getValueCommands().get(key), clazz);
+    }
+
+    RawValue getRawWithTtl(String key) {
+        return toRawValue(GET_WITH_TTL.execute(redisDataSource, "1", key));
+    }
+
+    private static RawValue toRawValue(Response response) {
+        if (response == null || response.size() == 0) {
+            return null;
+        }
+        return new RawValue(response.get(0).toString(), response.get(1).toLong());
+    }
+
+    Map<String, String> multiGetRaw(List<String> keys) {
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
+        return getValueCommands().mget(keys.toArray(new String[0]));
+    }
+
+    /**
+     * 批量读取原始值及剩余 TTL，结果只包含存在的键
+     *
+     * 每个键一次单键脚本调用，同时发出、在连接上流水线执行；
+     * 各键按自身的槽位路由，Redis Cluster 下不要求所有键在同一槽位
+     */
+    Map<String, RawValue> multiGetRawWithTtl(List<String> keys) {
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
+        ReactiveRedisDataSource reactive = redisDataSource.getReactive();
+        List<Uni<Response>> calls = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            calls.add(GET_WITH_TTL.execute(reactive, "1", key));
+        }
+        List<Response> responses = Uni.join().all(calls).andFailFast().await().atMost(timeout);
+        Map<String, RawValue> result = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            RawValue value = toRawValue(responses.get(i));
+            if (value != null) {
+                result.put(keys.get(i), value);
+            }
+        }
+        return result;
+    }
+
+    <T> T fromJson(String key, String json, Class<T> clazz) {
         if (json == null) {
             return null;
         }
@@ -44,6 +119,14 @@ public class RedisCacheService implements CacheService {
         }
     }
 
+    String toJson(String key, Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize cache value for key: " + key, e);
+        }
+    }
+
     @Override
     public void set(String key, Object value) {
         set(key, value, 3600, TimeUnit.SECONDS);
@@ -51,13 +134,12 @@ public class RedisCacheService implements CacheService {
 
     @Override
     public void set(String key, Object value, long ttl, TimeUnit unit) {
-        try {
-            String json = objectMapper.writeValueAsString(value);
-            SetArgs setArgs = new SetArgs().ex(unit.toSeconds(ttl));
-            getValueCommands().set(key, json, setArgs);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("Failed to serialize cache value for key: " + key, e);
-        }
+        setRaw(key, toJson(key, value), ttl, unit);
+    }
+
+    void setRaw(String key, String json, long ttl, TimeUnit unit) {
+        SetArgs setArgs = new SetArgs().ex(unit.toSeconds(ttl));
+        getValueCommands().set(key, json, setArgs);
     }
 
     @Override
@@ -67,13 +149,19 @@ public class RedisCacheService implements CacheService {
 
     @Override
     public boolean exists(String key) {
-        return getValueCommands().get(key) != null;
+        return redisDataSource.key(String.class).exists(key);
     }
 
     @Override
     public <T> Map<String, T> multiGet(List<String> keys, Class<T> clazz) {
-        // TODO: 实现批量获取
-        throw new UnsupportedOperationException("multiGet not implemented yet");
+        Map<String, T> result = new LinkedHashMap<>();
+        multiGetRaw(keys).forEach((key, json) -> {
+            T value = fromJson(key, json, clazz);
+            if (value != null) {
+                result.put(key, value);
+            }
+        });
+        return result;
     }
 
     @Override
@@ -83,20 +171,40 @@ public class RedisCacheService implements CacheService {
 
     @Override
     public void multiSet(Map<String, Object> map, long ttl, TimeUnit unit) {
-        // TODO: 实现批量设置
-        throw new UnsupportedOperationException("multiSet not implemented yet");
+        Map<String, String> jsonMap = new LinkedHashMap<>();
+        map.forEach((key, value) -> jsonMap.put(key, toJson(key, value)));
+        multiSetRaw(jsonMap, ttl, unit);
+    }
+
+    /**
+     * 批量写入并设置统一 TTL：各键一条 SET PX，同时发出、流水线执行
+     */
+    void multiSetRaw(Map<String, String> jsonMap, long ttl, TimeUnit unit) {
+        if (jsonMap.isEmpty()) {
+            return;
+        }
+        ReactiveRedisDataSource reactive = redisDataSource.getReactive();
+        String ttlMillis = String.valueOf(unit.toMillis(ttl));
+        List<Uni<Response>> calls = new ArrayList<>(jsonMap.size());
+        jsonMap.forEach((key, json) -> calls.add(reactive.execute("SET", key, json, "PX", ttlMillis)));
+        Uni.join().all(calls).andFailFast().await().atMost(timeout);
     }
 
     @Override
     public long increment(String key) {
-        // TODO: 使用 Redis Lua 脚本实现原子自增
-        throw new UnsupportedOperationException("increment not implemented yet");
+        return incrementBy(key, 1);
     }
 
     @Override
     public long decrement(String key) {
-        // TODO: 使用 Redis Lua 脚本实现原子自减
-        throw new UnsupportedOperationException("decrement not implemented yet");
+        return incrementBy(key, -1);
+    }
+
+    /**
+     * 原子增加指定值（INCRBY）
+     */
+    public long incrementBy(String key, long delta) {
+        return getValueCommands().incrby(key, delta);
     }
 
     @Override
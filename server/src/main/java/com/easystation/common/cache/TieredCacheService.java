@@ -0,0 +1,341 @@
+package com.easystation.common.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.quarkus.logging.Log;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Alternative;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 两级缓存服务实现
+ *
+ * L1 为进程内 Caffeine 缓存（按容量和 TTL 淘汰），L2 为 Redis（{@link RedisCacheService}）。
+ * 写操作先写 Redis，再更新本地缓存，并通过 Redis pub/sub 广播失效消息，使其他节点丢弃 L1 中的旧值。
+ * L1 条目的过期时间取 Redis 剩余 TTL 与 app.cache.l1.ttl-seconds 的较小值；
+ * 不存在的键会以 app.cache.l1.negative-ttl-ms 短暂缓存，用于黑名单等大多数查询都未命中的场景。
+ * 订阅失效频道失败时退化为只使用 Redis，以保证多节点一致性。
+ *
+ * 注意：L1 命中时直接返回缓存的对象实例，调用方不应修改返回值。
+ */
+@Alternative
+@Priority(1)
+@ApplicationScoped
+public class TieredCacheService implements CacheService {
+
+    @Inject
+    RedisCacheService redis;
+
+    @Inject
+    RedisDataSource redisDataSource;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "app.cache.l1.enabled", defaultValue = "true")
+    boolean l1Enabled;
+
+    @ConfigProperty(name = "app.cache.l1.max-size", defaultValue = "10000")
+    long maxSize;
+
+    @ConfigProperty(name = "app.cache.l1.ttl-seconds", defaultValue = "60")
+    long l1TtlSeconds;
+
+    @ConfigProperty(name = "app.cache.l1.negative-ttl-ms", defaultValue = "1000")
+    long negativeTtlMillis;
+
+    @ConfigProperty(name = "app.cache.invalidation-channel", defaultValue = "cache:invalidate")
+    String invalidationChannel;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 每次失效递增；加载前后版本不一致时不回填 L1，避免并发写入后回填旧值
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private Cache<String, Entry> local;
+    private PubSubCommands<String> pubSub;
+    private PubSubCommands.RedisSubscriber subscriber;
+    private volatile boolean active;
+
+    /**
+     * L1 条目；value 为 null 表示键不存在（负缓存）
+     */
+    record Entry(String json, Object value, long ttlNanos) {
+        boolean absent() {
+            return json == null;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        if (!l1Enabled) {
+            return;
+        }
+        local = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return entry.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, local, "esa.cache.l1");
+
+        try {
+            pubSub = redisDataSource.pubsub(String.class);
+            subscriber = pubSub.subscribe(invalidationChannel, this::onInvalidation);
+            active = true;
+        } catch (Exception e) {
+            Log.warnf("Failed to subscribe to cache invalidation channel, near cache disabled: %s", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void destroy() {
+        active = false;
+        if (subscriber != null) {
+            try {
+                subscriber.unsubscribe();
+            } catch (Exception e) {
+                Log.debugf("Ignore unsubscribe error: %s", e.getMessage());
+            }
+        }
+    }
+
+    private void onInvalidation(String message) {
+        int separator = message.indexOf('|');
+        if (separator < 0 || message.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        invalidateLocal(message.substring(separator + 1));
+    }
+
+    private void invalidateLocal(String key) {
+        invalidations.incrementAndGet();
+        local.invalidate(key);
+    }
+
+    private void broadcast(String key) {
+        try {
+            pubSub.publish(invalidationChannel, nodeId + "|" + key);
+        } catch (Exception e) {
+            Log.warnf("Failed to publish cache invalidation for key %s: %s", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 本地失效并通知其他节点
+     */
+    private void invalidate(String key) {
+        if (active) {
+            invalidateLocal(key);
+            broadcast(key);
+        }
+    }
+
+    private long l1TtlNanos(long redisTtlMillis) {
+        long ttl = TimeUnit.SECONDS.toNanos(l1TtlSeconds);
+        if (redisTtlMillis > 0) {
+            ttl = Math.min(ttl, TimeUnit.MILLISECONDS.toNanos(redisTtlMillis));
+        }
+        return ttl;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T valueOf(String key, Entry entry, Class<T> clazz) {
+        if (entry.absent()) {
+            return null;
+        }
+        if (clazz.isInstance(entry.value())) {
+            return (T) entry.value();
+        }
+        return redis.fromJson(key, entry.json(), clazz);
+    }
+
+    @Override
+    public <T> T get(String key, Class<T> clazz) {
+        if (!active) {
+            return redis.get(key, clazz);
+        }
+        Entry entry = local.getIfPresent(key);
+        if (entry == null) {
+            entry = load(key, clazz);
+        }
+        return valueOf(key, entry, clazz);
+    }
+
+    /**
+     * 从 Redis 读取并回填 L1
+     */
+    private Entry load(String key, Class<?> clazz) {
+        long version = invalidations.get();
+        RedisCacheService.RawValue raw = redis.getRawWithTtl(key);
+        Entry entry = raw == null ? absent() : new Entry(raw.json(), redis.fromJson(key, raw.json(), clazz),
+                l1TtlNanos(raw.ttlMillis()));
+        if (entry.ttlNanos() > 0 && invalidations.get() == version) {
+            local.put(key, entry);
+        }
+        return entry;
+    }
+
+    private Entry absent() {
+        return new Entry(null, null, TimeUnit.MILLISECONDS.toNanos(negativeTtlMillis));
+    }
+
+    Entry cached(String key) {
+        return local.getIfPresent(key);
+    }
+
+    @Override
+    public void set(String key, Object value) {
+        set(key, value, 3600, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void set(String key, Object value, long ttl, TimeUnit unit) {
+        String json = redis.toJson(key, value);
+        redis.setRaw(key, json, ttl, unit);
+        if (active) {
+            invalidate(key);
+            local.put(key, new Entry(json, value, l1TtlNanos(unit.toMillis(ttl))));
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        redis.delete(key);
+        invalidate(key);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        if (!active) {
+            return redis.exists(key);
+        }
+        Entry entry = local.getIfPresent(key);
+        if (entry != null) {
+            return !entry.absent();
+        }
+        // 只做存在性判断时不读取值；只缓存不存在的结果，存在的键留给 get 回填带值的条目
+        long version = invalidations.get();
+        if (redis.exists(key)) {
+            return true;
+        }
+        Entry absent = absent();
+        if (absent.ttlNanos() > 0 && invalidations.get() == version) {
+            local.put(key, absent);
+        }
+        return false;
+    }
+
+    @Override
+    public <T> Map<String, T> multiGet(List<String> keys, Class<T> clazz) {
+        if (!active) {
+            return redis.multiGet(keys, clazz);
+        }
+        Map<String, T> result = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            Entry entry = local.getIfPresent(key);
+            if (entry == null) {
+                missing.add(key);
+            } else if (!entry.absent()) {
+                result.put(key, valueOf(key, entry, clazz));
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        long version = invalidations.get();
+        Map<String, RedisCacheService.RawValue> loaded = redis.multiGetRawWithTtl(missing);
+        boolean fill = invalidations.get() == version;
+        for (String key : missing) {
+            RedisCacheService.RawValue raw = loaded.get(key);
+            if (raw == null) {
+                continue;
+            }
+            T value = redis.fromJson(key, raw.json(), clazz);
+            result.put(key, value);
+            if (fill) {
+                local.put(key, new Entry(raw.json(), value, l1TtlNanos(raw.ttlMillis())));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void multiSet(Map<String, Object> map) {
+        multiSet(map, 3600, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void multiSet(Map<String, Object> map, long ttl, TimeUnit unit) {
+        Map<String, String> jsonMap = new LinkedHashMap<>();
+        map.forEach((key, value) -> jsonMap.put(key, redis.toJson(key, value)));
+        redis.multiSetRaw(jsonMap, ttl, unit);
+        if (active) {
+            long ttlNanos = l1TtlNanos(unit.toMillis(ttl));
+            map.forEach((key, value) -> {
+                invalidate(key);
+                local.put(key, new Entry(jsonMap.get(key), value, ttlNanos));
+            });
+        }
+    }
+
+    @Override
+    public long increment(String key) {
+        long value = redis.increment(key);
+        invalidate(key);
+        return value;
+    }
+
+    @Override
+    public long decrement(String key) {
+        long value = redis.decrement(key);
+        invalidate(key);
+        return value;
+    }
+
+    @Override
+    public void expire(String key, long ttl, TimeUnit unit) {
+        redis.expire(key, ttl, unit);
+        invalidate(key);
+    }
+
+    @Override
+    public long getTTL(String key, TimeUnit unit) {
+        return redis.getTTL(key, unit);
+    }
+}
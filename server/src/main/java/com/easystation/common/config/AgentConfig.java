@@ -11,4 +11,16 @@ public interface AgentConfig {
 
     @WithDefault("5000")
     long retryInterval();
+
+    /**
+     * Upper bound for the exponential retry backoff in milliseconds.
+     */
+    @WithDefault("60000")
+    long maxRetryInterval();
+
+    /**
+     * Maximum number of concurrent WebSocket handshakes.
+     */
+    @WithDefault("64")
+    int maxConcurrent();
 }
@@ -10,7 +10,8 @@ import java.util.concurrent.Executors;
 @ApplicationScoped
 public class ThreadPoolProducer {
 
-    private final ExecutorService agentConnectionExecutor = Executors.newCachedThreadPool();
+    private final ExecutorService agentConnectionExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("agent-conn-", 0).factory());
 
     @Produces
     @ApplicationScoped
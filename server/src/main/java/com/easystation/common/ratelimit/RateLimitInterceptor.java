@@ -1,8 +1,6 @@
 package com.easystation.common.ratelimit;
 
 import io.quarkus.logging.Log;
-import io.quarkus.redis.datasource.RedisDataSource;
-import io.quarkus.redis.datasource.value.ValueCommands;
 import jakarta.annotation.Priority;
 import jakarta.inject.Inject;
 import jakarta.interceptor.AroundInvoke;
@@ -13,6 +11,8 @@ import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.SecurityContext;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.lang.reflect.Method;
+
 /**
  * 限流拦截器
  * 
@@ -24,7 +24,7 @@ import org.eclipse.microprofile.config.inject.ConfigProperty;
 public class RateLimitInterceptor {
 
     @Inject
-    RedisDataSource redisDataSource;
+    SlidingWindowRateLimiter rateLimiter;
 
     @Inject
     SecurityContext securityContext;
@@ -58,11 +58,11 @@ public class RateLimitInterceptor {
             return context.proceed();
         }
 
-        String limitKey = buildLimitKey(rateLimit);
+        String limitKey = buildLimitKey(rateLimit, context.getMethod());
         int maxRequests = rateLimit.maxRequests() > 0 ? rateLimit.maxRequests() : defaultMaxRequests;
         int windowSeconds = rateLimit.windowSeconds() > 0 ? rateLimit.windowSeconds() : defaultWindowSeconds;
 
-        if (isRateLimitExceeded(limitKey, maxRequests, windowSeconds)) {
+        if (!rateLimiter.tryAcquire(limitKey, maxRequests, windowSeconds)) {
             Log.warnf("Rate limit exceeded for key: %s, max: %d, window: %ds", limitKey, maxRequests, windowSeconds);
             throw new RateLimitException(limitKey, maxRequests, windowSeconds);
         }
@@ -70,7 +70,7 @@ public class RateLimitInterceptor {
         return context.proceed();
     }
 
-    private String buildLimitKey(RateLimit rateLimit) {
+    private String buildLimitKey(RateLimit rateLimit, Method method) {
         StringBuilder keyBuilder = new StringBuilder(RATE_LIMIT_KEY_PREFIX);
         keyBuilder.append(rateLimit.key());
         keyBuilder.append(":");
@@ -80,6 +80,16 @@ public class RateLimitInterceptor {
         String identifier = getIdentifier(rateLimit.limitType());
         keyBuilder.append(identifier);
 
+        // API 维度的限流按具体接口区分，避免默认 key 下所有接口共用一个计数
+        switch (rateLimit.limitType()) {
+            case API, IP_API, USER_API -> keyBuilder.append(":")
+                    .append(method.getDeclaringClass().getSimpleName())
+                    .append(".")
+                    .append(method.getName());
+            default -> {
+            }
+        }
+
         return keyBuilder.toString();
     }
 
@@ -91,7 +101,7 @@ public class RateLimitInterceptor {
             case IP -> ip;
             case USER -> username != null ? username : "anonymous";
             case API -> "global";
-            case IP_API -> ip + ":" + "api";
+            case IP_API -> ip;
             case USER_API -> username != null ? username : ip;
         };
     }
@@ -116,32 +126,4 @@ public class RateLimitInterceptor {
         }
         return null;
     }
-
-    private boolean isRateLimitExceeded(String key, int maxRequests, int windowSeconds) {
-        try {
-            ValueCommands<String, String> valueCommands = redisDataSource.value(String.class, String.class);
-
-            String currentValue = valueCommands.get(key);
-            long count = currentValue != null ? Long.parseLong(currentValue) : 0;
-            count++;
-
-            if (count == 1) {
-                valueCommands.set(key, "1");
-                redisDataSource.key(String.class).expire(key, windowSeconds);
-            } else {
-                valueCommands.set(key, String.valueOf(count));
-            }
-
-            boolean exceeded = count > maxRequests;
-
-            if (exceeded) {
-                Log.warnf("Rate limit exceeded: key=%s, count=%d, max=%d", key, count, maxRequests);
-            }
-
-            return exceeded;
-        } catch (Exception e) {
-            Log.warnf("Failed to check rate limit, allowing request: %s", e.getMessage());
-            return false;
-        }
-    }
 }
@@ -0,0 +1,30 @@
+package com.easystation.common.ratelimit;
+
+/**
+ * 限流计数存储
+ *
+ * 以滑动窗口（当前窗口 + 按权重折算的上一窗口）统计请求数，一次调用完成判断与计数
+ */
+public interface RateLimitStore {
+
+    /**
+     * 原子地判断并累加计数
+     *
+     * @param currentKey     当前窗口计数键
+     * @param previousKey    上一窗口计数键
+     * @param maxRequests    窗口内最大请求数
+     * @param previousWeight 上一窗口计数的权重（0-1）
+     * @param permits        本次申请的请求数
+     * @param ttlMillis      计数键过期时间
+     * @param force          为 true 时无论是否超限都累加（用于本地令牌桶批量同步已放行的请求）
+     */
+    Result acquire(String currentKey, String previousKey, int maxRequests, double previousWeight,
+                   int permits, long ttlMillis, boolean force);
+
+    /**
+     * @param allowed  是否放行
+     * @param estimate 滑动窗口内的估算请求数
+     */
+    record Result(boolean allowed, long estimate) {
+    }
+}
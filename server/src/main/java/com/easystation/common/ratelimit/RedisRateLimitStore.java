@@ -0,0 +1,49 @@
+package com.easystation.common.ratelimit;
+
+import com.easystation.common.redis.RedisScript;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+/**
+ * 基于 Redis Lua 脚本的滑动窗口计数
+ *
+ * 判断与累加在一次脚本调用中完成，不存在 GET/SET/EXPIRE 之间的竞态，每次请求只需一次往返。
+ * 脚本以 EVALSHA 发送，见 {@link RedisScript}
+ */
+@ApplicationScoped
+public class RedisRateLimitStore implements RateLimitStore {
+
+    static final String SCRIPT = """
+            local limit = tonumber(ARGV[1])
+            local weight = tonumber(ARGV[2])
+            local permits = tonumber(ARGV[3])
+            local ttl = tonumber(ARGV[4])
+            local current = tonumber(redis.call('GET', KEYS[1]) or '0')
+            local previous = tonumber(redis.call('GET', KEYS[2]) or '0')
+            local estimate = previous * weight + current
+            if ARGV[5] ~= '1' and estimate + permits > limit then
+              return {0, math.floor(estimate)}
+            end
+            current = redis.call('INCRBY', KEYS[1], permits)
+            if current == permits then
+              redis.call('PEXPIRE', KEYS[1], ttl)
+            end
+            return {1, math.floor(previous * weight + current)}
+            """;
+
+    private static final RedisScript ACQUIRE = new RedisScript(SCRIPT);
+
+    @Inject
+    RedisDataSource redisDataSource;
+
+    @Override
+    public Result acquire(String currentKey, String previousKey, int maxRequests, double previousWeight,
+                          int permits, long ttlMillis, boolean force) {
+        String[] args = {"2", currentKey, previousKey, String.valueOf(maxRequests), String.valueOf(previousWeight),
+                String.valueOf(permits), String.valueOf(ttlMillis), force ? "1" : "0"};
+        Response response = ACQUIRE.execute(redisDataSource, args);
+        return new Result(response.get(0).toLong() == 1L, response.get(1).toLong());
+    }
+}
@@ -0,0 +1,146 @@
+package com.easystation.common.ratelimit;
+
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 滑动窗口限流器
+ *
+ * 默认每次请求通过 {@link RateLimitStore} 一次往返完成判断与计数。
+ * 开启本地令牌桶（rate.limit.local.enabled）后，每个限流键在本进程内维护一个令牌桶：
+ * 本地令牌耗尽时直接拒绝，放行的请求累计后按批次同步到 Redis，
+ * 接近上限或 Redis 报告超限时退回逐次同步，超限后在当前窗口结束前本地直接拒绝。
+ */
+@ApplicationScoped
+public class SlidingWindowRateLimiter {
+
+    @Inject
+    RateLimitStore store;
+
+    @ConfigProperty(name = "rate.limit.local.enabled", defaultValue = "false")
+    boolean localEnabled;
+
+    @ConfigProperty(name = "rate.limit.local.sync-batch", defaultValue = "10")
+    int syncBatch;
+
+    @ConfigProperty(name = "rate.limit.local.sync-interval-ms", defaultValue = "200")
+    long syncIntervalMs;
+
+    private final Map<String, LocalBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * 尝试获取一次请求许可
+     *
+     * @return true 表示放行
+     */
+    public boolean tryAcquire(String key, int maxRequests, int windowSeconds) {
+        long windowMillis = TimeUnit.SECONDS.toMillis(windowSeconds);
+        try {
+            if (localEnabled) {
+                return tryAcquireLocal(key, maxRequests, windowMillis);
+            }
+            return acquire(key, maxRequests, windowMillis, 1, false).allowed();
+        } catch (Exception e) {
+            Log.warnf("Failed to check rate limit, allowing request: %s", e.getMessage());
+            return true;
+        }
+    }
+
+    private RateLimitStore.Result acquire(String key, int maxRequests, long windowMillis, int permits, boolean force) {
+        long now = System.currentTimeMillis();
+        long windowId = now / windowMillis;
+        double previousWeight = 1.0 - (double) (now % windowMillis) / windowMillis;
+        // Hash tag keeps both windows of a key in the same cluster slot
+        String base = "{" + key + "}:";
+        return store.acquire(base + windowId, base + (windowId - 1), maxRequests, previousWeight,
+                permits, windowMillis * 2, force);
+    }
+
+    private boolean tryAcquireLocal(String key, int maxRequests, long windowMillis) {
+        LocalBucket bucket = buckets.computeIfAbsent(key, k -> new LocalBucket(maxRequests, windowMillis));
+        int permits;
+        synchronized (bucket) {
+            long nowNanos = System.nanoTime();
+            long nowMillis = System.currentTimeMillis();
+            bucket.refill(nowNanos);
+            bucket.lastUsedMillis = nowMillis;
+            if (nowMillis < bucket.blockedUntilMillis || bucket.tokens < 1.0) {
+                return false;
+            }
+            bucket.tokens -= 1.0;
+            bucket.pending++;
+
+            boolean nearLimit = bucket.lastEstimate + bucket.pending + syncBatch > maxRequests;
+            boolean due = bucket.pending >= syncBatch
+                    || nowNanos - bucket.lastSyncNanos >= TimeUnit.MILLISECONDS.toNanos(syncIntervalMs);
+            if (!nearLimit && !due) {
+                return true;
+            }
+            permits = bucket.pending;
+            bucket.pending = 0;
+            bucket.lastSyncNanos = nowNanos;
+        }
+
+        RateLimitStore.Result result = acquire(key, maxRequests, windowMillis, permits, true);
+        boolean allowed = result.estimate() <= maxRequests;
+        synchronized (bucket) {
+            bucket.lastEstimate = result.estimate();
+            if (!allowed) {
+                long now = System.currentTimeMillis();
+                bucket.blockedUntilMillis = (now / windowMillis + 1) * windowMillis;
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * 清理长时间未使用的本地令牌桶
+     */
+    @Scheduled(every = "1m", identity = "rate-limit-bucket-cleanup")
+    void evictIdleBuckets() {
+        long now = System.currentTimeMillis();
+        buckets.entrySet().removeIf(entry -> {
+            LocalBucket bucket = entry.getValue();
+            synchronized (bucket) {
+                return bucket.pending == 0 && now - bucket.lastUsedMillis > bucket.windowMillis * 2;
+            }
+        });
+    }
+
+    /**
+     * 单个限流键的本地令牌桶，容量为窗口上限，按 maxRequests / window 匀速补充
+     */
+    static final class LocalBucket {
+        final int capacity;
+        final long windowMillis;
+        final double tokensPerNano;
+        double tokens;
+        long lastRefillNanos;
+        int pending;
+        long lastSyncNanos;
+        long lastEstimate;
+        long blockedUntilMillis;
+        long lastUsedMillis;
+
+        LocalBucket(int capacity, long windowMillis) {
+            this.capacity = capacity;
+            this.windowMillis = windowMillis;
+            this.tokensPerNano = (double) capacity / TimeUnit.MILLISECONDS.toNanos(windowMillis);
+            this.tokens = capacity;
+            this.lastRefillNanos = System.nanoTime();
+            this.lastSyncNanos = lastRefillNanos;
+        }
+
+        void refill(long nowNanos) {
+            tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.easystation.common.redis;
+
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Response;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 以 EVALSHA 执行的 Lua 脚本
+ *
+ * 平时只发送脚本摘要；Redis 未缓存该脚本（重启或 SCRIPT FLUSH 后）返回 NOSCRIPT 时
+ * 改用 EVAL 发送全文，Redis 随之重新缓存
+ */
+public final class RedisScript {
+
+    private final String script;
+    private final String sha;
+
+    public RedisScript(String script) {
+        this.script = script;
+        this.sha = sha1(script);
+    }
+
+    public String sha() {
+        return sha;
+    }
+
+    /**
+     * 执行脚本
+     *
+     * @param args 键数量、各个键和脚本参数，与 EVAL 的参数相同
+     */
+    public Response execute(RedisDataSource redis, String... args) {
+        try {
+            return redis.execute("EVALSHA", prepend(sha, args));
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            return redis.execute("EVAL", prepend(script, args));
+        }
+    }
+
+    /**
+     * 异步执行脚本；同时订阅的多次调用在连接上流水线发送
+     */
+    public Uni<Response> execute(ReactiveRedisDataSource redis, String... args) {
+        return redis.execute("EVALSHA", prepend(sha, args))
+                .onFailure(RedisScript::isNoScript)
+                .recoverWithUni(() -> redis.execute("EVAL", prepend(script, args)));
+    }
+
+    static boolean isNoScript(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().startsWith("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String[] prepend(String first, String[] rest) {
+        String[] args = new String[rest.length + 1];
+        args[0] = first;
+        System.arraycopy(rest, 0, args, 1, rest.length);
+        return args;
+    }
+
+    private static String sha1(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return HexFormat.of().formatHex(digest.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
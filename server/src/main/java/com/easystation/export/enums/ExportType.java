@@ -2,5 +2,6 @@ package com.easystation.export.enums;
 
 public enum ExportType {
     EXCEL,
-    PDF
-}
\ No newline at end of file
+    PDF,
+    CSV
+}
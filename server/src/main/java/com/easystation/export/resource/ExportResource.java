@@ -12,6 +12,7 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
@@ -19,6 +20,11 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
 import java.io.FileNotFoundException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.UUID;
 
 @Path("/api/v1/export")
@@ -138,11 +144,24 @@ public class ExportResource {
         }
 
         try {
-            byte[] fileContent = exportService.getExportFile(taskId);
+            java.nio.file.Path file = exportService.getExportFile(taskId);
             String fileName = task.fileName() != null ? task.fileName() : "export.xlsx";
 
-            return Response.ok(fileContent)
+            // Stream the file channel straight to the response instead of loading it into memory
+            StreamingOutput body = output -> {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    WritableByteChannel target = Channels.newChannel(output);
+                    long position = 0;
+                    long size = channel.size();
+                    while (position < size) {
+                        position += channel.transferTo(position, size - position, target);
+                    }
+                }
+            };
+
+            return Response.ok(body)
                 .header("Content-Disposition", "attachment; filename=\"" + fileName + "\"")
+                .header("Content-Length", Files.size(file))
                 .build();
         } catch (FileNotFoundException e) {
             return Response.status(Response.Status.NOT_FOUND)
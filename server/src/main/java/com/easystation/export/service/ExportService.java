@@ -7,27 +7,52 @@ import com.easystation.export.dto.ExportTaskListResponse;
 import com.easystation.export.enums.ExportStatus;
 import com.easystation.export.enums.ExportType;
 import com.easystation.export.repository.ExportTaskRepository;
+import com.easystation.export.writer.CsvRowWriter;
+import com.easystation.export.writer.ExcelRowWriter;
+import com.easystation.export.writer.ExportRowWriter;
+import com.easystation.export.writer.PdfRowWriter;
 import com.easystation.agent.domain.CommandExecution;
 import com.easystation.agent.domain.DeploymentHistory;
 import com.easystation.audit.domain.AuditLog;
 import com.easystation.alert.domain.AlertEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.persistence.TypedQuery;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 import jakarta.transaction.Transactional;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.jpa.HibernateHints;
 import org.jboss.logging.Logger;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+/**
+ * Export tasks are queued on a bounded worker pool and written as a stream: rows are read in keyset
+ * chunks of export.fetch-size, each chunk in its own short read-only transaction, and handed one at a
+ * time to a row writer (SXSSF for Excel, direct CSV, page-by-page PDF), so memory stays flat and no
+ * transaction stays open for the length of the export. The file is written under a temporary name
+ * and renamed when complete.
+ */
 @ApplicationScoped
 public class ExportService {
 
@@ -35,6 +60,7 @@ public class ExportService {
     private static final String EXPORT_DIR = "exports";
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final DateTimeFormatter FILE_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    private static final int DEFAULT_LIMIT = 1000;
 
     @Inject
     ExportTaskRepository exportTaskRepository;
@@ -42,6 +68,46 @@ public class ExportService {
     @Inject
     ObjectMapper objectMapper;
 
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    @ConfigProperty(name = "export.workers", defaultValue = "2")
+    int workers;
+
+    @ConfigProperty(name = "export.queue-size", defaultValue = "50")
+    int queueSize;
+
+    @ConfigProperty(name = "export.max-rows", defaultValue = "1000000")
+    int maxRows;
+
+    @ConfigProperty(name = "export.fetch-size", defaultValue = "500")
+    int fetchSize;
+
+    @ConfigProperty(name = "export.excel.window-size", defaultValue = "200")
+    int excelWindowSize;
+
+    @ConfigProperty(name = "export.chunk-timeout", defaultValue = "30s")
+    Duration chunkTimeout;
+
+    ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        int size = Math.max(1, workers);
+        executor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), r -> {
+            Thread thread = new Thread(r, "export-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
     /**
      * Create a new export task
      */
@@ -70,25 +136,51 @@ public class ExportService {
     }
 
     /**
-     * Process export task asynchronously
+     * Queue an export task; when called inside a transaction the task is queued after commit
      */
     public void processExportAsync(UUID taskId) {
-        new Thread(() -> {
-            try {
-                processExport(taskId);
-            } catch (Exception e) {
-                LOG.errorf("Export task %s failed: %s", taskId, e.getMessage());
-                updateTaskStatus(taskId, ExportStatus.FAILED, null, null, e.getMessage());
+        if (transactionRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            submit(taskId);
+            return;
+        }
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    submit(taskId);
+                }
             }
-        }).start();
+        });
+    }
+
+    private void submit(UUID taskId) {
+        try {
+            executor.execute(() -> {
+                try {
+                    processExport(taskId);
+                } catch (Exception e) {
+                    LOG.errorf("Export task %s failed: %s", taskId, e.getMessage());
+                    updateTaskStatus(taskId, ExportStatus.FAILED, null, null, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOG.warnf("Export queue is full, rejecting task %s", taskId);
+            // May run in afterCompletion, where this thread cannot start another transaction
+            Thread.ofVirtual().start(() -> updateTaskStatus(taskId, ExportStatus.FAILED, null, null,
+                    "Export queue is full, please retry later"));
+        }
     }
 
     /**
-     * Process export task
+     * Process export task. Status changes commit on their own; the rows are read chunk by chunk, each
+     * chunk in a new transaction bounded by export.chunk-timeout.
      */
-    @Transactional
     public void processExport(UUID taskId) throws Exception {
-        ExportTask task = exportTaskRepository.findById(taskId);
+        ExportTask task = QuarkusTransaction.requiringNew().call(() -> exportTaskRepository.findById(taskId));
         if (task == null) {
             throw new IllegalArgumentException("Export task not found: " + taskId);
         }
@@ -96,47 +188,58 @@ public class ExportService {
         updateTaskStatus(taskId, ExportStatus.PROCESSING, null, null, null);
 
         ExportRequest request = parseRequest(task.queryParams);
-        List<?> data = fetchData(task.dataType, request);
-        task.totalRecords = data.size();
-
         String fileName = generateFileName(task.dataType, task.exportType);
         String filePath = getExportFilePath(fileName);
+        Path target = Paths.get(filePath);
+        Path partial = Paths.get(filePath + ".part");
 
-        if (ExportType.EXCEL.name().equals(task.exportType)) {
-            exportToExcel(data, task.dataType, filePath);
-        } else if (ExportType.PDF.name().equals(task.exportType)) {
-            exportToPdf(data, task.dataType, filePath);
-        } else {
-            throw new IllegalArgumentException("Unsupported export type: " + task.exportType);
+        int total;
+        try {
+            total = writeExport(task.dataType, task.exportType, request, partial);
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (Exception e) {
+            Files.deleteIfExists(partial);
+            throw e;
         }
 
-        task.fileName = fileName;
-        updateTaskStatus(taskId, ExportStatus.COMPLETED, filePath, fileName, null);
-        LOG.infof("Export task %s completed, file: %s", taskId, fileName);
+        updateTaskStatus(taskId, ExportStatus.COMPLETED, filePath, fileName, null, total);
+        LOG.infof("Export task %s completed, file: %s, %d records", taskId, fileName, total);
     }
 
     /**
      * Update task status
      */
-    @Transactional
     public void updateTaskStatus(UUID taskId, ExportStatus status, String filePath, String fileName, String errorMessage) {
-        ExportTask task = exportTaskRepository.findById(taskId);
-        if (task != null) {
-            task.status = status.name();
-            if (filePath != null) {
-                task.filePath = filePath;
-            }
-            if (fileName != null) {
-                task.fileName = fileName;
-            }
-            if (errorMessage != null) {
-                task.errorMessage = errorMessage;
-            }
-            if (status == ExportStatus.COMPLETED || status == ExportStatus.FAILED) {
-                task.completedAt = LocalDateTime.now();
+        updateTaskStatus(taskId, status, filePath, fileName, errorMessage, null);
+    }
+
+    /**
+     * Update task status and record count
+     */
+    public void updateTaskStatus(UUID taskId, ExportStatus status, String filePath, String fileName, String errorMessage,
+                                 Integer totalRecords) {
+        QuarkusTransaction.joiningExisting().run(() -> {
+            ExportTask task = exportTaskRepository.findById(taskId);
+            if (task != null) {
+                task.status = status.name();
+                if (totalRecords != null) {
+                    task.totalRecords = totalRecords;
+                }
+                if (filePath != null) {
+                    task.filePath = filePath;
+                }
+                if (fileName != null) {
+                    task.fileName = fileName;
+                }
+                if (errorMessage != null) {
+                    task.errorMessage = errorMessage;
+                }
+                if (status == ExportStatus.COMPLETED || status == ExportStatus.FAILED) {
+                    task.completedAt = LocalDateTime.now();
+                }
+                exportTaskRepository.persist(task);
             }
-            exportTaskRepository.persist(task);
-        }
+        });
     }
 
     /**
@@ -169,9 +272,9 @@ public class ExportService {
     }
 
     /**
-     * Get export file content
+     * Get export file path; the caller streams it to the client
      */
-    public byte[] getExportFile(UUID taskId) throws IOException {
+    public Path getExportFile(UUID taskId) throws IOException {
         ExportTask task = exportTaskRepository.findById(taskId);
         if (task == null || task.filePath == null) {
             throw new FileNotFoundException("Export file not found");
@@ -182,7 +285,7 @@ public class ExportService {
             throw new FileNotFoundException("Export file not found: " + task.filePath);
         }
 
-        return Files.readAllBytes(path);
+        return path;
     }
 
     /**
@@ -218,131 +321,178 @@ public class ExportService {
     }
 
     /**
-     * Fetch data based on type
+     * Stream rows into the export file
+     *
+     * @return number of records written
      */
-    private List<?> fetchData(String dataType, ExportRequest request) {
-        LocalDateTime startTime = request.startTime();
-        LocalDateTime endTime = request.endTime();
-        String status = request.status();
-        int limit = request.limit() != null ? request.limit() : 1000;
-
-        LocalDateTime defaultStart = LocalDateTime.now().minusDays(30);
-        LocalDateTime defaultEnd = LocalDateTime.now();
-
-        switch (dataType) {
-            case "DEPLOYMENT_HISTORY":
-                return DeploymentHistory.find("createdAt >= ?1 AND createdAt <= ?2 ORDER BY createdAt DESC",
-                    startTime != null ? startTime : defaultStart,
-                    endTime != null ? endTime : defaultEnd)
-                    .page(0, limit).list();
+    private int writeExport(String dataType, String exportType, ExportRequest request, Path file) throws IOException {
+        int limit = Math.min(request.limit() != null && request.limit() > 0 ? request.limit() : DEFAULT_LIMIT,
+                Math.max(1, maxRows));
+        LocalDateTime startTime = request.startTime() != null ? request.startTime() : LocalDateTime.now().minusDays(30);
+        LocalDateTime endTime = request.endTime() != null ? request.endTime() : LocalDateTime.now();
+        Class<?> type = entityType(dataType);
+
+        int count = 0;
+        try (ExportRowWriter writer = openWriter(type, dataType, exportType, startTime, endTime, limit,
+                new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+            writer.writeHeader(getHeaders(dataType));
+            Iterator<Object> rows = new ChunkedRows(type, startTime, endTime, limit);
+            while (rows.hasNext()) {
+                writer.writeRow(toCells(rows.next()));
+                count++;
+            }
+        }
+        return count;
+    }
 
-            case "COMMAND_LOG":
-                return CommandExecution.find("createdAt >= ?1 AND createdAt <= ?2 ORDER BY createdAt DESC",
-                    startTime != null ? startTime : defaultStart,
-                    endTime != null ? endTime : defaultEnd)
-                    .page(0, limit).list();
+    private ExportRowWriter openWriter(Class<?> type, String dataType, String exportType, LocalDateTime startTime,
+                                       LocalDateTime endTime, int limit, OutputStream out) throws IOException {
+        if (ExportType.EXCEL.name().equals(exportType)) {
+            return new ExcelRowWriter(out, getSheetName(dataType), Math.max(1, excelWindowSize));
+        }
+        if (ExportType.CSV.name().equals(exportType)) {
+            return new CsvRowWriter(out);
+        }
+        if (ExportType.PDF.name().equals(exportType)) {
+            // The record count is printed before the rows, so it is counted up front
+            long total = Math.min(limit, QuarkusTransaction.requiringNew()
+                    .timeout(chunkTimeoutSeconds())
+                    .call(() -> countData(type, startTime, endTime)));
+            return new PdfRowWriter(out, getReportTitle(dataType),
+                    "生成时间: " + LocalDateTime.now().format(DATE_FORMATTER) + "\n记录数量: " + total);
+        }
+        out.close();
+        throw new IllegalArgumentException("Unsupported export type: " + exportType);
+    }
 
-            case "AUDIT_LOG":
-                List<AuditLog> auditLogs = AuditLog.find("createdAt >= ?1 AND createdAt <= ?2 ORDER BY createdAt DESC",
-                    startTime != null ? startTime : defaultStart,
-                    endTime != null ? endTime : defaultEnd)
-                    .page(0, limit).list();
-                return auditLogs;
+    /**
+     * Reads the rows newest first in keyset chunks on (createdAt, id). Each chunk is queried in a new
+     * read-only transaction, so the entities handed out are already detached.
+     */
+    private final class ChunkedRows implements Iterator<Object> {
+
+        private final Class<?> type;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+        private int remaining;
+        private LocalDateTime cursorTime;
+        private UUID cursorId;
+        private Iterator<?> chunk = Collections.emptyIterator();
+        private boolean exhausted;
+
+        ChunkedRows(Class<?> type, LocalDateTime startTime, LocalDateTime endTime, int limit) {
+            this.type = type;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.remaining = limit;
+        }
 
-            case "ALERT":
-                List<AlertEvent> alertEvents = AlertEvent.find("createdAt >= ?1 AND createdAt <= ?2 ORDER BY createdAt DESC",
-                    startTime != null ? startTime : defaultStart,
-                    endTime != null ? endTime : defaultEnd)
-                    .page(0, limit).list();
-                return alertEvents;
+        @Override
+        public boolean hasNext() {
+            if (!chunk.hasNext() && !exhausted) {
+                int size = Math.min(Math.max(1, fetchSize), remaining);
+                List<?> rows = QuarkusTransaction.requiringNew()
+                        .timeout(chunkTimeoutSeconds())
+                        .call(() -> queryChunk(type, startTime, endTime, cursorTime, cursorId, size));
+                remaining -= rows.size();
+                exhausted = rows.size() < size || remaining <= 0;
+                if (!rows.isEmpty()) {
+                    Object last = rows.get(rows.size() - 1);
+                    cursorTime = createdAt(last);
+                    cursorId = id(last);
+                }
+                chunk = rows.iterator();
+            }
+            return chunk.hasNext();
+        }
 
-            default:
-                throw new IllegalArgumentException("Unsupported data type: " + dataType);
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return chunk.next();
         }
     }
 
     /**
-     * Export data to Excel
+     * One chunk of rows for the data type, newest first, after the (createdAt, id) cursor when given
      */
-    private void exportToExcel(List<?> data, String dataType, String filePath) throws IOException {
-        Workbook workbook = new XSSFWorkbook();
-        Sheet sheet = workbook.createSheet(getSheetName(dataType));
-
-        // Create header style
-        CellStyle headerStyle = workbook.createCellStyle();
-        headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-        headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-        org.apache.poi.ss.usermodel.Font headerFont = workbook.createFont();
-        headerFont.setBold(true);
-        headerStyle.setFont(headerFont);
-
-        // Create headers based on data type
-        Row headerRow = sheet.createRow(0);
-        String[] headers = getHeaders(dataType);
-        for (int i = 0; i < headers.length; i++) {
-            Cell cell = headerRow.createCell(i);
-            cell.setCellValue(headers[i]);
-            cell.setCellStyle(headerStyle);
+    private List<?> queryChunk(Class<?> type, LocalDateTime startTime, LocalDateTime endTime,
+                               LocalDateTime cursorTime, UUID cursorId, int size) {
+        StringBuilder query = new StringBuilder("SELECT e FROM ").append(type.getSimpleName()).append(" e");
+        if (type == DeploymentHistory.class) {
+            query.append(" LEFT JOIN FETCH e.agentInstance ai LEFT JOIN FETCH ai.template");
         }
-
-        // Fill data rows
-        int rowNum = 1;
-        for (Object item : data) {
-            Row row = sheet.createRow(rowNum++);
-            fillRow(row, item, dataType);
+        query.append(" WHERE e.createdAt >= :startTime AND e.createdAt <= :endTime");
+        if (cursorTime != null) {
+            query.append(" AND (e.createdAt < :cursorTime OR (e.createdAt = :cursorTime AND e.id < :cursorId))");
         }
+        query.append(" ORDER BY e.createdAt DESC, e.id DESC");
 
-        // Auto-size columns
-        for (int i = 0; i < headers.length; i++) {
-            sheet.autoSizeColumn(i);
+        TypedQuery<?> typed = exportTaskRepository.getEntityManager().createQuery(query.toString(), type)
+                .setParameter("startTime", startTime)
+                .setParameter("endTime", endTime);
+        if (cursorTime != null) {
+            typed.setParameter("cursorTime", cursorTime).setParameter("cursorId", cursorId);
         }
+        return typed.setMaxResults(size)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, size)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultList();
+    }
 
-        // Write to file
-        try (OutputStream out = new FileOutputStream(filePath)) {
-            workbook.write(out);
-        }
-        workbook.close();
+    private long countData(Class<?> type, LocalDateTime startTime, LocalDateTime endTime) {
+        return exportTaskRepository.getEntityManager()
+                .createQuery("SELECT count(e) FROM " + type.getSimpleName()
+                        + " e WHERE e.createdAt >= ?1 AND e.createdAt <= ?2", Long.class)
+                .setParameter(1, startTime)
+                .setParameter(2, endTime)
+                .getSingleResult();
+    }
+
+    private int chunkTimeoutSeconds() {
+        return (int) Math.max(1, chunkTimeout.toSeconds());
     }
 
     /**
-     * Export data to PDF (simplified text-based format)
+     * Entity class exported for the data type
      */
-    private void exportToPdf(List<?> data, String dataType, String filePath) throws Exception {
-        StringBuilder content = new StringBuilder();
-        content.append(getReportTitle(dataType)).append("\n");
-        content.append("生成时间: ").append(LocalDateTime.now().format(DATE_FORMATTER)).append("\n");
-        content.append("记录数量: ").append(data.size()).append("\n\n");
-        content.append("========================================\n\n");
-
-        for (Object item : data) {
-            content.append(formatPdfContent(item, dataType)).append("\n");
-            content.append("----------------------------------------\n");
+    private Class<?> entityType(String dataType) {
+        switch (dataType) {
+            case "DEPLOYMENT_HISTORY":
+                return DeploymentHistory.class;
+            case "COMMAND_LOG":
+                return CommandExecution.class;
+            case "AUDIT_LOG":
+                return AuditLog.class;
+            case "ALERT":
+                return AlertEvent.class;
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataType);
         }
+    }
 
-        // Write plain text as PDF (simplified approach using OpenPDF)
-        com.lowagie.text.Document document = new com.lowagie.text.Document();
-        com.lowagie.text.pdf.PdfWriter.getInstance(document, new FileOutputStream(filePath));
-        document.open();
-
-        com.lowagie.text.Font titleFont = new com.lowagie.text.Font(com.lowagie.text.Font.HELVETICA, 16, com.lowagie.text.Font.BOLD);
-        com.lowagie.text.Paragraph title = new com.lowagie.text.Paragraph(getReportTitle(dataType), titleFont);
-        title.setAlignment(com.lowagie.text.Paragraph.ALIGN_CENTER);
-        document.add(title);
-
-        com.lowagie.text.Font normalFont = new com.lowagie.text.Font(com.lowagie.text.Font.HELVETICA, 10);
-        com.lowagie.text.Paragraph meta = new com.lowagie.text.Paragraph(
-            "生成时间: " + LocalDateTime.now().format(DATE_FORMATTER) + "\n记录数量: " + data.size(),
-            normalFont);
-        document.add(meta);
-        document.add(new com.lowagie.text.Paragraph("\n"));
-
-        for (Object item : data) {
-            com.lowagie.text.Paragraph para = new com.lowagie.text.Paragraph(formatPdfContent(item, dataType), normalFont);
-            document.add(para);
-            document.add(new com.lowagie.text.Paragraph("------------------------------------------------"));
+    private static LocalDateTime createdAt(Object item) {
+        if (item instanceof DeploymentHistory dh) {
+            return dh.createdAt;
+        } else if (item instanceof CommandExecution ce) {
+            return ce.createdAt;
+        } else if (item instanceof AuditLog al) {
+            return al.createdAt;
         }
+        return ((AlertEvent) item).createdAt;
+    }
 
-        document.close();
+    private static UUID id(Object item) {
+        if (item instanceof DeploymentHistory dh) {
+            return dh.id;
+        } else if (item instanceof CommandExecution ce) {
+            return ce.id;
+        } else if (item instanceof AuditLog al) {
+            return al.id;
+        }
+        return ((AlertEvent) item).id;
     }
 
     /**
@@ -382,60 +532,69 @@ public class ExportService {
     }
 
     /**
-     * Fill Excel row with data
+     * Convert an entity to export cells, in the order of {@link #getHeaders(String)}
      */
-    private void fillRow(Row row, Object item, String dataType) {
+    private Object[] toCells(Object item) {
         if (item instanceof DeploymentHistory) {
             DeploymentHistory dh = (DeploymentHistory) item;
-            row.createCell(0).setCellValue(dh.id != null ? dh.id.toString() : "");
             String agentName = "";
             if (dh.agentInstance != null && dh.agentInstance.template != null) {
                 agentName = dh.agentInstance.template.name != null ? dh.agentInstance.template.name : "";
             }
-            row.createCell(1).setCellValue(agentName);
-            row.createCell(2).setCellValue(dh.version != null ? dh.version : "");
-            row.createCell(3).setCellValue(dh.status != null ? dh.status.name() : "");
-            row.createCell(4).setCellValue(dh.description != null ? dh.description : "");
-            row.createCell(5).setCellValue(dh.startedAt != null ? dh.startedAt.format(DATE_FORMATTER) : "");
-            row.createCell(6).setCellValue(dh.finishedAt != null ? dh.finishedAt.format(DATE_FORMATTER) : "");
-            row.createCell(7).setCellValue(dh.createdBy != null ? dh.createdBy : "");
-            row.createCell(8).setCellValue(dh.createdAt != null ? dh.createdAt.format(DATE_FORMATTER) : "");
+            return new Object[]{
+                dh.id != null ? dh.id.toString() : "",
+                agentName,
+                dh.version != null ? dh.version : "",
+                dh.status != null ? dh.status.name() : "",
+                dh.description != null ? dh.description : "",
+                dh.startedAt != null ? dh.startedAt.format(DATE_FORMATTER) : "",
+                dh.finishedAt != null ? dh.finishedAt.format(DATE_FORMATTER) : "",
+                dh.createdBy != null ? dh.createdBy : "",
+                dh.createdAt != null ? dh.createdAt.format(DATE_FORMATTER) : ""
+            };
         } else if (item instanceof CommandExecution) {
             CommandExecution ce = (CommandExecution) item;
-            row.createCell(0).setCellValue(ce.id != null ? ce.id.toString() : "");
-            row.createCell(1).setCellValue(ce.command != null ? ce.command : "");
-            row.createCell(2).setCellValue(ce.status != null ? ce.status.name() : "");
-            row.createCell(3).setCellValue(ce.output != null ? truncate(ce.output, 500) : "");
-            row.createCell(4).setCellValue(ce.errorMessage != null ? truncate(ce.errorMessage, 500) : "");
-            row.createCell(5).setCellValue(ce.startedAt != null ? ce.startedAt.format(DATE_FORMATTER) : "");
-            row.createCell(6).setCellValue(ce.finishedAt != null ? ce.finishedAt.format(DATE_FORMATTER) : "");
-            row.createCell(7).setCellValue(ce.executedBy != null ? ce.executedBy : "");
-            row.createCell(8).setCellValue(ce.createdAt != null ? ce.createdAt.format(DATE_FORMATTER) : "");
+            return new Object[]{
+                ce.id != null ? ce.id.toString() : "",
+                ce.command != null ? ce.command : "",
+                ce.status != null ? ce.status.name() : "",
+                ce.output != null ? truncate(ce.output, 500) : "",
+                ce.errorMessage != null ? truncate(ce.errorMessage, 500) : "",
+                ce.startedAt != null ? ce.startedAt.format(DATE_FORMATTER) : "",
+                ce.finishedAt != null ? ce.finishedAt.format(DATE_FORMATTER) : "",
+                ce.executedBy != null ? ce.executedBy : "",
+                ce.createdAt != null ? ce.createdAt.format(DATE_FORMATTER) : ""
+            };
         } else if (item instanceof AuditLog) {
             AuditLog al = (AuditLog) item;
-            row.createCell(0).setCellValue(al.id != null ? al.id.toString() : "");
-            row.createCell(1).setCellValue(al.username != null ? al.username : "");
-            row.createCell(2).setCellValue(al.action != null ? al.action.name() : "");
-            row.createCell(3).setCellValue(al.result != null ? al.result.name() : "");
-            row.createCell(4).setCellValue(al.description != null ? al.description : "");
-            row.createCell(5).setCellValue(al.resourceType != null ? al.resourceType : "");
-            row.createCell(6).setCellValue(al.clientIp != null ? al.clientIp : "");
-            row.createCell(7).setCellValue(al.requestPath != null ? al.requestPath : "");
-            row.createCell(8).setCellValue(al.duration != null ? al.duration : 0);
-            row.createCell(9).setCellValue(al.createdAt != null ? al.createdAt.format(DATE_FORMATTER) : "");
+            return new Object[]{
+                al.id != null ? al.id.toString() : "",
+                al.username != null ? al.username : "",
+                al.action != null ? al.action.name() : "",
+                al.result != null ? al.result.name() : "",
+                al.description != null ? al.description : "",
+                al.resourceType != null ? al.resourceType : "",
+                al.clientIp != null ? al.clientIp : "",
+                al.requestPath != null ? al.requestPath : "",
+                al.duration != null ? al.duration : 0,
+                al.createdAt != null ? al.createdAt.format(DATE_FORMATTER) : ""
+            };
         } else if (item instanceof AlertEvent) {
             AlertEvent ae = (AlertEvent) item;
-            row.createCell(0).setCellValue(ae.id != null ? ae.id.toString() : "");
-            row.createCell(1).setCellValue(ae.eventType != null ? ae.eventType.name() : "");
-            row.createCell(2).setCellValue(ae.level != null ? ae.level.name() : "");
-            row.createCell(3).setCellValue(ae.status != null ? ae.status.name() : "");
-            row.createCell(4).setCellValue(ae.title != null ? ae.title : "");
-            row.createCell(5).setCellValue(ae.message != null ? truncate(ae.message, 500) : "");
-            row.createCell(6).setCellValue(ae.resourceType != null ? ae.resourceType : "");
-            row.createCell(7).setCellValue(ae.acknowledgedBy != null ? ae.acknowledgedBy : "");
-            row.createCell(8).setCellValue(ae.resolvedBy != null ? ae.resolvedBy : "");
-            row.createCell(9).setCellValue(ae.createdAt != null ? ae.createdAt.format(DATE_FORMATTER) : "");
+            return new Object[]{
+                ae.id != null ? ae.id.toString() : "",
+                ae.eventType != null ? ae.eventType.name() : "",
+                ae.level != null ? ae.level.name() : "",
+                ae.status != null ? ae.status.name() : "",
+                ae.title != null ? ae.title : "",
+                ae.message != null ? truncate(ae.message, 500) : "",
+                ae.resourceType != null ? ae.resourceType : "",
+                ae.acknowledgedBy != null ? ae.acknowledgedBy : "",
+                ae.resolvedBy != null ? ae.resolvedBy : "",
+                ae.createdAt != null ? ae.createdAt.format(DATE_FORMATTER) : ""
+            };
         }
+        return new Object[]{"", item.toString()};
     }
 
     /**
@@ -456,48 +615,12 @@ public class ExportService {
         }
     }
 
-    /**
-     * Format content for PDF
-     */
-    private String formatPdfContent(Object item, String dataType) {
-        if (item instanceof DeploymentHistory) {
-            DeploymentHistory dh = (DeploymentHistory) item;
-            String agentName = "";
-            if (dh.agentInstance != null && dh.agentInstance.template != null) {
-                agentName = dh.agentInstance.template.name != null ? dh.agentInstance.template.name : "";
-            }
-            return String.format("ID: %s\nAgent模板: %s\n版本: %s\n状态: %s\n描述: %s\n开始时间: %s\n结束时间: %s\n创建人: %s",
-                dh.id, agentName, dh.version, dh.status, dh.description,
-                dh.startedAt != null ? dh.startedAt.format(DATE_FORMATTER) : "",
-                dh.finishedAt != null ? dh.finishedAt.format(DATE_FORMATTER) : "",
-                dh.createdBy);
-        } else if (item instanceof CommandExecution) {
-            CommandExecution ce = (CommandExecution) item;
-            return String.format("ID: %s\n命令: %s\n状态: %s\n开始时间: %s\n结束时间: %s\n执行人: %s",
-                ce.id, truncate(ce.command, 200), ce.status,
-                ce.startedAt != null ? ce.startedAt.format(DATE_FORMATTER) : "",
-                ce.finishedAt != null ? ce.finishedAt.format(DATE_FORMATTER) : "",
-                ce.executedBy);
-        } else if (item instanceof AuditLog) {
-            AuditLog al = (AuditLog) item;
-            return String.format("ID: %s\n用户: %s\n操作: %s\n结果: %s\n描述: %s\nIP: %s\n时间: %s",
-                al.id, al.username, al.action, al.result, al.description, al.clientIp,
-                al.createdAt != null ? al.createdAt.format(DATE_FORMATTER) : "");
-        } else if (item instanceof AlertEvent) {
-            AlertEvent ae = (AlertEvent) item;
-            return String.format("ID: %s\n类型: %s\n级别: %s\n状态: %s\n标题: %s\n消息: %s\n时间: %s",
-                ae.id, ae.eventType, ae.level, ae.status, ae.title,
-                truncate(ae.message, 200),
-                ae.createdAt != null ? ae.createdAt.format(DATE_FORMATTER) : "");
-        }
-        return item.toString();
-    }
-
     /**
      * Generate file name
      */
     private String generateFileName(String dataType, String exportType) {
-        String extension = ExportType.EXCEL.name().equals(exportType) ? ".xlsx" : ".pdf";
+        String extension = ExportType.EXCEL.name().equals(exportType) ? ".xlsx"
+                : ExportType.CSV.name().equals(exportType) ? ".csv" : ".pdf";
         String typePrefix = dataType.toLowerCase().replace("_", "-");
         return typePrefix + "_" + LocalDateTime.now().format(FILE_DATE_FORMATTER) + extension;
     }
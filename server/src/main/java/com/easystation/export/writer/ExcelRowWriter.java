@@ -0,0 +1,101 @@
+package com.easystation.export.writer;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FillPatternType;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.IndexedColors;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Excel writer backed by {@link SXSSFWorkbook}: only the last {@code windowSize} rows stay in memory,
+ * older rows are flushed to a compressed temporary file. Rows beyond the sheet limit continue on a
+ * new sheet. Columns get a fixed width, since auto-sizing would need every row in memory.
+ */
+public class ExcelRowWriter implements ExportRowWriter {
+
+    private static final int COLUMN_WIDTH = 24 * 256;
+    private static final int MAX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+
+    private final OutputStream out;
+    private final SXSSFWorkbook workbook;
+    private final String sheetName;
+    private final CellStyle headerStyle;
+
+    private String[] headers;
+    private Sheet sheet;
+    private int sheetCount;
+    private int rowNum;
+
+    public ExcelRowWriter(OutputStream out, String sheetName, int windowSize) {
+        this.out = out;
+        this.sheetName = sheetName;
+        this.workbook = new SXSSFWorkbook(windowSize);
+        workbook.setCompressTempFiles(true);
+
+        headerStyle = workbook.createCellStyle();
+        headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+        headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+        Font headerFont = workbook.createFont();
+        headerFont.setBold(true);
+        headerStyle.setFont(headerFont);
+    }
+
+    @Override
+    public void writeHeader(String[] headers) {
+        this.headers = headers;
+        newSheet();
+    }
+
+    @Override
+    public void writeRow(Object[] cells) {
+        if (sheet == null || rowNum >= MAX_ROWS) {
+            newSheet();
+        }
+        Row row = sheet.createRow(rowNum++);
+        for (int i = 0; i < cells.length; i++) {
+            Object value = cells[i];
+            Cell cell = row.createCell(i);
+            if (value instanceof Number number) {
+                cell.setCellValue(number.doubleValue());
+            } else {
+                cell.setCellValue(value != null ? value.toString() : "");
+            }
+        }
+    }
+
+    private void newSheet() {
+        sheetCount++;
+        sheet = workbook.createSheet(sheetCount == 1 ? sheetName : sheetName + " (" + sheetCount + ")");
+        rowNum = 0;
+        if (headers == null) {
+            return;
+        }
+        Row headerRow = sheet.createRow(rowNum++);
+        for (int i = 0; i < headers.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(headers[i]);
+            cell.setCellStyle(headerStyle);
+            sheet.setColumnWidth(i, COLUMN_WIDTH);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (out) {
+            if (sheet == null) {
+                newSheet();
+            }
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.easystation.export.writer;
+
+import java.io.IOException;
+
+/**
+ * Writes export rows one at a time to an output stream, so memory does not grow with the row count.
+ * Cells are {@link String} or {@link Number} values; null is written as an empty cell.
+ */
+public interface ExportRowWriter extends AutoCloseable {
+
+    void writeHeader(String[] headers) throws IOException;
+
+    void writeRow(Object[] cells) throws IOException;
+
+    /**
+     * Finish the document and close the underlying stream.
+     */
+    @Override
+    void close() throws IOException;
+}
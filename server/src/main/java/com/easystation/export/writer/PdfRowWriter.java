@@ -0,0 +1,70 @@
+package com.easystation.export.writer;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Font;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * PDF writer that adds one paragraph per record; OpenPDF writes each page to the stream as soon as
+ * it is full, so only the current page is held in memory.
+ */
+public class PdfRowWriter implements ExportRowWriter {
+
+    private static final String SEPARATOR = "------------------------------------------------";
+
+    private final Document document;
+    private final Font normalFont = new Font(Font.HELVETICA, 10);
+    private String[] headers = new String[0];
+
+    /**
+     * @param meta lines printed under the title
+     */
+    public PdfRowWriter(OutputStream out, String title, String meta) throws IOException {
+        document = new Document();
+        try {
+            PdfWriter.getInstance(document, out);
+            document.open();
+            Paragraph titleParagraph = new Paragraph(title, new Font(Font.HELVETICA, 16, Font.BOLD));
+            titleParagraph.setAlignment(Paragraph.ALIGN_CENTER);
+            document.add(titleParagraph);
+            document.add(new Paragraph(meta, normalFont));
+            document.add(new Paragraph("\n"));
+        } catch (DocumentException e) {
+            throw new IOException("Failed to start PDF document", e);
+        }
+    }
+
+    @Override
+    public void writeHeader(String[] headers) {
+        this.headers = headers;
+    }
+
+    @Override
+    public void writeRow(Object[] cells) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < cells.length; i++) {
+            if (i > 0) {
+                text.append('\n');
+            }
+            text.append(i < headers.length ? headers[i] : "").append(": ")
+                    .append(cells[i] != null ? cells[i] : "");
+        }
+        try {
+            document.add(new Paragraph(text.toString(), normalFont));
+            document.add(new Paragraph(SEPARATOR));
+        } catch (DocumentException e) {
+            throw new IOException("Failed to write PDF row", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        // Closing the document also closes the output stream
+        document.close();
+    }
+}
@@ -13,6 +13,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Entity
 @Table(name = "infra_host", uniqueConstraints = @UniqueConstraint(columnNames = "identifier"))
@@ -20,6 +21,11 @@ import java.util.UUID;
 @Setter
 public class Host extends PanacheEntityBase {
 
+    /**
+     * Number of reconnect buckets; see {@link #reconnectBucket}
+     */
+    public static final int RECONNECT_BUCKETS = 1024;
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     public UUID id;
@@ -121,6 +127,13 @@ public class Host extends PanacheEntityBase {
 
     public LocalDateTime lastHeartbeat;
 
+    /**
+     * Fixed random bucket in [0, {@link #RECONNECT_BUCKETS}); the staggered reconnect visits one
+     * contiguous range of buckets per tick
+     */
+    @Column(name = "reconnect_bucket", nullable = false, columnDefinition = "integer default 0")
+    public int reconnectBucket = ThreadLocalRandom.current().nextInt(RECONNECT_BUCKETS);
+
     /**
      * Associated agent instances
      */
@@ -0,0 +1,180 @@
+package com.easystation.infra.socket;
+
+import com.easystation.common.config.AgentConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs agent connect attempts on virtual threads.
+ * <p>
+ * At most {@code agent.connect.max-concurrent} handshakes run at once; further attempts park on a
+ * semaphore (cheap on a virtual thread) and are reported as queued. Retries are not slept inside a
+ * worker: a failed attempt releases its permit and the next one is scheduled on a single timer thread
+ * after a jittered exponential backoff, so a mass reconnect holds neither threads nor permits while
+ * waiting.
+ */
+@ApplicationScoped
+public class AgentConnectExecutor {
+
+    @Inject
+    AgentConfig agentConfig;
+
+    @Inject
+    MeterRegistry registry;
+
+    private ExecutorService workers;
+    private ScheduledExecutorService timer;
+    private Semaphore permits;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger backingOff = new AtomicInteger();
+
+    /**
+     * A single connect attempt; returns true on success, false or an exception on failure.
+     */
+    @FunctionalInterface
+    public interface Attempt {
+        boolean run() throws Exception;
+    }
+
+    @PostConstruct
+    void init() {
+        workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("agent-connect-", 0).factory());
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "agent-connect-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        permits = new Semaphore(Math.max(1, agentConfig.maxConcurrent()));
+
+        Gauge.builder("esa.agent.connect.inflight", inFlight, AtomicInteger::get)
+                .description("Agent handshakes currently in progress")
+                .register(registry);
+        Gauge.builder("esa.agent.connect.queued", queued, AtomicInteger::get)
+                .description("Agent connect attempts waiting for a concurrency permit")
+                .register(registry);
+        Gauge.builder("esa.agent.connect.backoff", backingOff, AtomicInteger::get)
+                .description("Agent connect retries waiting for their backoff delay")
+                .register(registry);
+    }
+
+    /**
+     * Run a task on a virtual thread once a concurrency permit is available.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            workers.execute(() -> runLimited(task, result));
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Run {@code attempt} up to {@code maxRetries + 1} times with jittered exponential backoff
+     * starting at {@code baseDelayMs}.
+     *
+     * @return completes with true once an attempt succeeds, false when all attempts failed
+     */
+    public CompletableFuture<Boolean> submitWithRetry(String name, Attempt attempt, int maxRetries, long baseDelayMs) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        schedule(name, attempt, 0, maxRetries, baseDelayMs, result);
+        return result;
+    }
+
+    private void schedule(String name, Attempt attempt, int attemptNo, int maxRetries, long baseDelayMs,
+                          CompletableFuture<Boolean> result) {
+        submit(() -> {
+            Log.debugf("Connect attempt %d/%d for %s", attemptNo + 1, maxRetries + 1, name);
+            return attempt.run();
+        }).whenComplete((success, error) -> {
+            if (error == null && Boolean.TRUE.equals(success)) {
+                result.complete(true);
+                return;
+            }
+            if (error != null) {
+                Log.errorf("Connect attempt %d/%d for %s failed: %s", attemptNo + 1, maxRetries + 1, name,
+                        rootMessage(error));
+            }
+            if (attemptNo >= maxRetries || result.isDone()) {
+                result.complete(false);
+                return;
+            }
+            long delay = backoff(attemptNo, baseDelayMs, agentConfig.maxRetryInterval());
+            backingOff.incrementAndGet();
+            try {
+                timer.schedule(() -> {
+                    backingOff.decrementAndGet();
+                    schedule(name, attempt, attemptNo + 1, maxRetries, baseDelayMs, result);
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                backingOff.decrementAndGet();
+                result.complete(false);
+            }
+        });
+    }
+
+    private <T> void runLimited(Callable<T> task, CompletableFuture<T> result) {
+        queued.incrementAndGet();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+            return;
+        } finally {
+            queued.decrementAndGet();
+        }
+        inFlight.incrementAndGet();
+        try {
+            result.complete(task.call());
+        } catch (Throwable t) {
+            result.completeExceptionally(t);
+        } finally {
+            inFlight.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    /**
+     * Equal-jitter exponential backoff: half of the capped delay is fixed, the other half random,
+     * which keeps retries of hosts that failed together from lining up again.
+     */
+    static long backoff(int attemptNo, long baseDelayMs, long maxDelayMs) {
+        long capped = Math.min(maxDelayMs, baseDelayMs << Math.min(attemptNo, 20));
+        long half = Math.max(1, capped / 2);
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    private static String rootMessage(Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+}
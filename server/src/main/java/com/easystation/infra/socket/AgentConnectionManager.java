@@ -1,5 +1,6 @@
 package com.easystation.infra.socket;
 
+import com.easystation.agent.dto.ExecResultContent;
 import com.easystation.agent.dto.HeartbeatRequest;
 import com.easystation.agent.event.TaskResultEvent;
 import com.easystation.agent.service.AgentLogService;
@@ -7,9 +8,6 @@ import com.easystation.agent.websocket.ConsoleWebSocket;
 import com.easystation.common.config.AgentConfig;
 import com.easystation.infra.domain.Host;
 import com.easystation.infra.domain.enums.HostStatus;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.quarkus.logging.Log;
 import io.quarkus.runtime.StartupEvent;
 import io.quarkus.scheduler.Scheduled;
@@ -20,25 +18,34 @@ import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.enterprise.event.Event;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 import jakarta.transaction.Transactional;
 import jakarta.websocket.ClientEndpointConfig;
 import jakarta.websocket.ContainerProvider;
 import jakarta.websocket.Endpoint;
 import jakarta.websocket.Session;
 import jakarta.websocket.WebSocketContainer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 @ApplicationScoped
 public class AgentConnectionManager {
@@ -49,9 +56,6 @@ public class AgentConnectionManager {
     @Inject
     AgentLogService agentLogService;
 
-    @Inject
-    ObjectMapper objectMapper;
-
     @Inject
     AgentConfig agentConfig;
 
@@ -62,8 +66,36 @@ public class AgentConnectionManager {
     @Inject
     Event<TaskResultEvent> taskResultEvent;
 
+    @Inject
+    HeartbeatWriteBehindBuffer heartbeatBuffer;
+
+    @Inject
+    AgentConnectExecutor connectExecutor;
+
+    @Inject
+    AgentMessageCodec messageCodec;
+
+    @Inject
+    PendingRequests pendingRequests;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
     private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
     private final Set<UUID> connecting = ConcurrentHashMap.newKeySet();
+    /** Wall-clock time of the last frame received per host, used to detect stale sessions */
+    private final Map<UUID, Long> lastFrame = new ConcurrentHashMap<>();
+    /** Number of reconnect ticks run so far; selects the slot of the next tick */
+    private final AtomicLong reconnectTicks = new AtomicLong();
+
+    @ConfigProperty(name = "agent.reconnect.interval", defaultValue = "30m")
+    Duration reconnectInterval;
+
+    @ConfigProperty(name = "agent.reconnect.tick", defaultValue = "1m")
+    Duration reconnectTick;
+
+    @ConfigProperty(name = "agent.reconnect.stale-threshold", defaultValue = "3m")
+    Duration staleThreshold;
 
     void onStart(@Observes StartupEvent ev) {
         Log.info("Starting Agent connection check...");
@@ -83,6 +115,9 @@ public class AgentConnectionManager {
 
     @PostConstruct
     void init() {
+        messageCodec.register("LOG", String.class, this::onLog);
+        messageCodec.register("HEARTBEAT", HeartbeatRequest.class, this::onHeartbeat);
+        messageCodec.register("EXEC_RESULT", ExecResultContent.class, this::onExecResult);
         Log.info("AgentConnectionManager initialized");
     }
 
@@ -153,127 +188,124 @@ public class AgentConnectionManager {
             return;
         }
 
-        executor.submit(() -> {
-            try {
-                doConnectWithRetry(host);
-            } finally {
-                connecting.remove(host.getId());
-            }
-        });
+        doConnectWithRetry(host).whenComplete((connected, error) -> connecting.remove(host.getId()));
     }
 
+    /**
+     * Single connect attempt bounded by {@code timeoutMs}. The handshake runs on the connect executor;
+     * it is skipped if the caller gave up while it was queued, and a session that completes after the
+     * caller gave up is closed instead of registered.
+     */
     @ActivateRequestContext
     public boolean doConnectWithRetryAndWait(Host host, long timeoutMs) {
+        UUID hostId = host.getId();
         String wsUrl = buildWsUrl(host.getGatewayUrl());
-        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-        ClientEndpointConfig config = buildConfig(host);
+        Log.infof("Connecting to Agent at %s (timeout: %dms)", wsUrl, timeoutMs);
 
-        long startTime = System.currentTimeMillis();
-        long remainingTimeout = timeoutMs;
-        
-        // Try to connect with timeout
+        // Whoever flips the flag first owns the outcome
+        AtomicBoolean settled = new AtomicBoolean(false);
+        CompletableFuture<Session> attempt = connectExecutor.submit(() -> {
+            if (settled.get()) {
+                // The caller gave up while this attempt was still queued
+                return null;
+            }
+            Session session = openSession(host, wsUrl, false);
+            if (!settled.compareAndSet(false, true)) {
+                closeQuietly(hostId, session);
+                return null;
+            }
+            registerSession(hostId, session);
+            return session;
+        });
+
+        Session session;
         try {
-            Log.infof("Connecting to Agent at %s (timeout: %dms)", wsUrl, timeoutMs);
-            
-            CountDownLatch connectionLatch = new CountDownLatch(1);
-            AtomicBoolean connectionSuccess = new AtomicBoolean(false);
-            
-            AgentClientEndpoint endpoint = new AgentClientEndpoint(
-                    msg -> handleMessage(host.getId(), msg),
-                    session -> handleClose(host.getId(), session),
-                    (session, success) -> {
-                        connectionSuccess.set(success);
-                        connectionLatch.countDown();
-                    }
-            );
-            
-            // Connect in a separate thread to enforce timeout
-            Thread connectThread = new Thread(() -> {
-                try {
-                    Session session = container.connectToServer((Endpoint) endpoint, config, URI.create(wsUrl));
-                    sessions.put(host.getId(), session);
-                    connectionSuccess.set(true);
-                    Log.infof("Connected to host %s (Session: %s)", host.getId(), session.getId());
-                } catch (Exception e) {
-                    Log.errorf("Failed to connect to host %s: %s", host.getId(), e.getMessage());
-                    connectionSuccess.set(false);
-                } finally {
-                    connectionLatch.countDown();
-                }
-            });
-            
-            connectThread.start();
-            
-            // Wait for connection with timeout
-            if (!connectionLatch.await(timeoutMs, TimeUnit.MILLISECONDS)) {
-                connectThread.interrupt();
-                Log.errorf("Connection to host %s timed out after %dms", host.getId(), timeoutMs);
-                updateHostStatus(host.getId(), HostStatus.EXCEPTION);
+            session = attempt.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (settled.compareAndSet(false, true)) {
+                Log.errorf("Connection to host %s timed out after %dms", hostId, timeoutMs);
+                updateHostStatus(hostId, HostStatus.EXCEPTION);
                 return false;
             }
-            
-            if (connectionSuccess.get()) {
-                updateHostStatus(host.getId(), HostStatus.ONLINE);
-                return true;
-            } else {
-                updateHostStatus(host.getId(), HostStatus.EXCEPTION);
-                return false;
+            // The handshake finished right at the deadline and already registered its session
+            session = attempt.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!settled.compareAndSet(false, true)) {
+                // The handshake already registered its session, but nobody will mark the host online
+                attempt.thenAccept(late -> {
+                    if (late != null) {
+                        if (sessions.remove(hostId, late)) {
+                            lastFrame.remove(hostId);
+                        }
+                        closeQuietly(hostId, late);
+                    }
+                });
             }
-            
-        } catch (Exception e) {
-            Log.errorf("Failed to connect to host %s: %s", host.getId(), e.getMessage());
-            updateHostStatus(host.getId(), HostStatus.EXCEPTION);
+            return false;
+        } catch (ExecutionException e) {
+            Log.errorf("Failed to connect to host %s: %s", hostId, e.getCause().getMessage());
+            updateHostStatus(hostId, HostStatus.EXCEPTION);
             return false;
         }
+
+        Log.infof("Connected to host %s (Session: %s)", hostId, session.getId());
+        updateHostStatus(hostId, HostStatus.ONLINE);
+        return true;
     }
 
-    @ActivateRequestContext
-    public void doConnectWithRetry(Host host) {
+    /**
+     * Connect in the background, retrying with jittered exponential backoff.
+     *
+     * @return completes with true once connected, false after all attempts failed
+     */
+    public CompletableFuture<Boolean> doConnectWithRetry(Host host) {
+        UUID hostId = host.getId();
         String wsUrl = buildWsUrl(host.getGatewayUrl());
-        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-        ClientEndpointConfig config = buildConfig(host);
 
-        int maxRetries = agentConfig.retryCount();
-        long interval = agentConfig.retryInterval();
+        return connectExecutor.submitWithRetry("host " + hostId, () -> {
+            Log.infof("Connecting to Agent at %s", wsUrl);
+            Session session = openSession(host, wsUrl, true);
+            // onOpen normally registers the session first; cover containers that skip the callback
+            if (!sessions.containsKey(hostId)) {
+                registerSession(hostId, session);
+                updateHostStatus(hostId, HostStatus.ONLINE);
+                Log.infof("Connected to host %s (Session: %s)", hostId, session.getId());
+            }
+            return true;
+        }, agentConfig.retryCount(), agentConfig.retryInterval()).thenApply(connected -> {
+            if (!connected) {
+                updateHostStatus(hostId, HostStatus.EXCEPTION);
+                Log.infof("Marking host %s as EXCEPTION after failed connection attempts.", hostId);
+            }
+            return connected;
+        });
+    }
 
-        for (int i = 0; i <= maxRetries; i++) {
-            try {
-                Log.infof("Connecting to Agent at %s (Attempt %d/%d)", wsUrl, i + 1, maxRetries + 1);
-                AgentClientEndpoint endpoint = new AgentClientEndpoint(
-                        msg -> handleMessage(host.getId(), msg),
-                        session -> handleClose(host.getId(), session),
-                        (session, success) -> {
-                            if (success) {
-                                sessions.put(host.getId(), session);
-                                updateHostStatus(host.getId(), HostStatus.ONLINE);
-                                Log.infof("Connected to host %s (Session: %s)", host.getId(), session.getId());
-                            }
-                        }
-                );
-                Session session = container.connectToServer((Endpoint) endpoint, config, URI.create(wsUrl));
-                
-                // For async connect, we put session here too
-                if (!sessions.containsKey(host.getId())) {
-                    sessions.put(host.getId(), session);
-                    updateHostStatus(host.getId(), HostStatus.ONLINE);
-                    Log.infof("Connected to host %s (Session: %s)", host.getId(), session.getId());
-                }
-                return;
-            } catch (Exception e) {
-                Log.errorf("Failed to connect to host %s: %s", host.getId(), e.getMessage());
-                if (i < maxRetries) {
-                    try {
-                        Thread.sleep(interval);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        return;
-                    }
-                }
+    private Session openSession(Host host, String wsUrl, boolean registerOnOpen) throws Exception {
+        UUID hostId = host.getId();
+        BiConsumer<Session, Boolean> onConnect = registerOnOpen ? (session, success) -> {
+            if (success) {
+                registerSession(hostId, session);
+                updateHostStatus(hostId, HostStatus.ONLINE);
+                Log.infof("Connected to host %s (Session: %s)", hostId, session.getId());
             }
-        }
+        } : null;
+        AgentClientEndpoint endpoint = new AgentClientEndpoint(
+                msg -> handleMessage(hostId, msg),
+                session -> handleClose(hostId, session),
+                onConnect
+        );
+        WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+        return container.connectToServer((Endpoint) endpoint, buildConfig(host), URI.create(wsUrl));
+    }
 
-        updateHostStatus(host.getId(), HostStatus.EXCEPTION);
-        Log.infof("Marking host %s as EXCEPTION after failed connection attempts.", host.getId());
+    private void closeQuietly(UUID hostId, Session session) {
+        try {
+            session.close();
+        } catch (Exception e) {
+            Log.debugf("ignore close error for host %s: %s", hostId, e.getMessage());
+        }
     }
 
     private String buildWsUrl(String url) {
@@ -305,7 +337,16 @@ public class AgentConnectionManager {
         return ClientEndpointConfig.Builder.create().configurator(configurator).build();
     }
 
+    private void registerSession(UUID hostId, Session session) {
+        lastFrame.put(hostId, System.currentTimeMillis());
+        consoleWebSocket.agentConnected(hostId.toString());
+        sessions.put(hostId, session);
+    }
+
     public void disconnect(UUID hostId) {
+        lastFrame.remove(hostId);
+        agentLogService.releaseLogs(hostId);
+        consoleWebSocket.agentDisconnected(hostId.toString());
         Session session = sessions.remove(hostId);
         if (session != null && session.isOpen()) {
             try {
@@ -317,15 +358,50 @@ public class AgentConnectionManager {
     }
 
     public boolean send(UUID hostId, String message) {
+        return send(hostId, message, null, null);
+    }
+
+    /**
+     * Send a frame produced by {@link AgentMessageCodec#encode}; its metadata is logged as is.
+     */
+    public boolean send(UUID hostId, AgentMessageCodec.Outbound message) {
+        return send(hostId, message.json(), message.type(), message.requestId());
+    }
+
+    /**
+     * Send a frame and await the agent's EXEC_RESULT for the same requestId.
+     * <p>
+     * The request is registered before the frame goes out, so a fast reply cannot be missed.
+     *
+     * @param onTimeout run once if no reply arrives within {@code timeout}; may be null
+     * @return future completed with the reply, or exceptionally with a {@link TimeoutException}
+     * @throws IllegalStateException if the host has no open session, the requestId is missing or
+     *                               already pending, or too many requests are pending
+     */
+    public CompletableFuture<ExecResultContent> request(UUID hostId, AgentMessageCodec.Outbound message,
+                                                        Duration timeout, Runnable onTimeout) {
+        String requestId = message.requestId();
+        if (requestId == null || requestId.isBlank()) {
+            throw new IllegalStateException("Request frame " + message.type() + " has no requestId");
+        }
+        CompletableFuture<ExecResultContent> reply =
+                pendingRequests.register(requestId, hostId, ExecResultContent.class, timeout, onTimeout);
+        if (!send(hostId, message)) {
+            IllegalStateException error = new IllegalStateException("No active session for host " + hostId);
+            pendingRequests.fail(requestId, error);
+            throw error;
+        }
+        return reply;
+    }
+
+    private boolean send(UUID hostId, String json, String type, String requestId) {
         Session session = sessions.get(hostId);
         if (session != null && session.isOpen()) {
-            session.getAsyncRemote().sendText(message);
-            try {
-                JsonNode root = objectMapper.readTree(message);
-                String requestId = root.path("requestId").asText("");
-                String type = root.path("type").asText("UNKNOWN");
-                Log.infof("Dispatched message to host=%s type=%s requestId=%s", hostId, type, requestId);
-            } catch (Exception ignored) {
+            session.getAsyncRemote().sendText(json);
+            if (type != null) {
+                Log.infof("Dispatched message to host=%s type=%s requestId=%s", hostId, type,
+                        requestId != null ? requestId : "");
+            } else {
                 Log.infof("Dispatched raw message to host=%s", hostId);
             }
             return true;
@@ -337,66 +413,71 @@ public class AgentConnectionManager {
 
     private void handleMessage(UUID hostId, String message) {
         Log.debugf("Received from %s: %s", hostId, message);
+        lastFrame.put(hostId, System.currentTimeMillis());
 
-        try {
-            JsonNode root = objectMapper.readTree(message);
-            String type = root.path("type").asText();
-
-            String requestId = root.path("requestId").asText("");
-            if ("LOG".equals(type)) {
-                String content = root.path("content").asText();
-                agentLogService.appendLog(hostId, content);
-                if (!requestId.isBlank()) {
-                    Log.debugf("Log message host=%s requestId=%s", hostId, requestId);
-                }
-            } else if ("HEARTBEAT".equals(type)) {
-                JsonNode content = root.path("content");
-                try {
-                    HeartbeatRequest hb = objectMapper.treeToValue(content, HeartbeatRequest.class);
-                    updateHostStatus(hostId, HostStatus.ONLINE, hb.osType());
-                } catch (Exception e) {
-                    Log.errorf("Failed to parse heartbeat from %s: %s", hostId, e.getMessage());
-                    updateHostStatus(hostId, HostStatus.ONLINE);
-                }
-                consoleWebSocket.broadcastLog(hostId.toString(), message);
-                return;
-            } else if ("EXEC_RESULT".equals(type)) {
-                JsonNode content = root.path("content");
-                String status = content.path("status").asText("UNKNOWN");
-                int exitCode = content.path("exitCode").asInt(-1);
-                long durationMs = content.path("durationMs").asLong(-1);
-                String output = content.path("output").asText(null);
-                String summary = String.format("EXEC_RESULT requestId=%s status=%s exitCode=%d durationMs=%d", requestId, status, exitCode, durationMs);
-                agentLogService.appendLog(hostId, summary);
-                Log.infof("Exec result received host=%s requestId=%s status=%s exitCode=%d durationMs=%d", hostId, requestId, status, exitCode, durationMs);
-                
-                // Fire event to update task status
-                try {
-                    UUID taskId = UUID.fromString(requestId);
-                    taskResultEvent.fire(new TaskResultEvent(taskId, status, exitCode, durationMs, output));
-                } catch (IllegalArgumentException e) {
-                    Log.warnf("Invalid requestId format: %s", requestId);
-                }
-                
-                consoleWebSocket.broadcastLog(hostId.toString(), message);
-                return;
-            }
-        } catch (JsonProcessingException e) {
-            // ignore parse errors for backward compatibility
+        if (messageCodec.dispatch(hostId, message)) {
+            return;
         }
 
         if ("HEARTBEAT".equals(message)) {
-            updateHostStatus(hostId, HostStatus.ONLINE);
-            consoleWebSocket.broadcastLog(hostId.toString(), "{\"type\":\"HEARTBEAT\",\"content\":\"" + LocalDateTime.now() + "\"}");
+            recordHeartbeat(hostId, null);
+            consoleWebSocket.broadcastHeartbeat(hostId.toString(), "{\"type\":\"HEARTBEAT\",\"content\":\"" + LocalDateTime.now() + "\"}");
         } else {
             consoleWebSocket.broadcastLog(hostId.toString(), message);
         }
     }
 
+    private void onLog(UUID hostId, String requestId, String content, String raw) {
+        agentLogService.appendLog(hostId, content != null ? content : "");
+        if (requestId != null && !requestId.isBlank()) {
+            Log.debugf("Log message host=%s requestId=%s", hostId, requestId);
+        }
+        consoleWebSocket.broadcastLog(hostId.toString(), raw);
+    }
+
+    private void onHeartbeat(UUID hostId, String requestId, HeartbeatRequest heartbeat, String raw) {
+        if (heartbeat == null) {
+            Log.errorf("Failed to parse heartbeat from %s", hostId);
+            recordHeartbeat(hostId, null);
+        } else {
+            recordHeartbeat(hostId, heartbeat.osType());
+        }
+        consoleWebSocket.broadcastHeartbeat(hostId.toString(), raw);
+    }
+
+    private void onExecResult(UUID hostId, String requestId, ExecResultContent result, String raw) {
+        String status = result != null && result.status() != null ? result.status() : "UNKNOWN";
+        int exitCode = result != null && result.exitCode() != null ? result.exitCode() : -1;
+        long durationMs = result != null && result.durationMs() != null ? result.durationMs() : -1;
+        String output = result != null ? result.output() : null;
+        String id = requestId != null ? requestId : "";
+
+        String summary = String.format("EXEC_RESULT requestId=%s status=%s exitCode=%d durationMs=%d", id, status, exitCode, durationMs);
+        agentLogService.appendLog(hostId, summary);
+        Log.infof("Exec result received host=%s requestId=%s status=%s exitCode=%d durationMs=%d", hostId, id, status, exitCode, durationMs);
+
+        // Wake up callers awaiting this request; the event below still persists the result
+        pendingRequests.complete(requestId, hostId, result != null
+                ? result : new ExecResultContent(status, exitCode, durationMs, output));
+
+        // Fire event to update task status
+        try {
+            UUID taskId = UUID.fromString(id);
+            taskResultEvent.fire(new TaskResultEvent(taskId, status, exitCode, durationMs, output));
+        } catch (IllegalArgumentException e) {
+            Log.warnf("Invalid requestId format: %s", id);
+        }
+
+        consoleWebSocket.broadcastLog(hostId.toString(), raw);
+    }
+
     private void handleClose(UUID hostId, Session closedSession) {
         sessions.computeIfPresent(hostId, (id, currentSession) -> {
             if (currentSession.getId().equals(closedSession.getId())) {
                 Log.infof("Session closed for host %s (Session: %s)", hostId, closedSession.getId());
+                lastFrame.remove(hostId);
+                agentLogService.releaseLogs(hostId);
+                consoleWebSocket.agentDisconnected(hostId.toString());
                 updateHostStatus(hostId, HostStatus.OFFLINE);
                 return null;
             }
@@ -405,10 +486,22 @@ public class AgentConnectionManager {
         });
     }
 
+    /**
+     * Heartbeats of hosts already ONLINE are coalesced by the write-behind buffer;
+     * only status transitions are written through immediately.
+     */
+    private void recordHeartbeat(UUID hostId, String osType) {
+        if (!heartbeatBuffer.offer(hostId, HostStatus.ONLINE, osType)) {
+            updateHostStatus(hostId, HostStatus.ONLINE, osType);
+        }
+    }
+
     @Transactional
     public void updateHostStatus(UUID hostId, HostStatus status, String osType) {
         Host host = Host.findById(hostId);
-        if (host != null) {
+        if (host == null) {
+            heartbeatBuffer.forget(hostId);
+        } else {
             host.setStatus(status);
             if (status == HostStatus.ONLINE) {
                 host.setLastHeartbeat(LocalDateTime.now());
@@ -417,6 +510,20 @@ public class AgentConnectionManager {
                 }
             }
             host.persist();
+            // The buffer may only rely on the status once it is committed; after a rollback the
+            // next heartbeat has to be written through again
+            transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int txStatus) {
+                    if (txStatus == Status.STATUS_COMMITTED) {
+                        heartbeatBuffer.statusPersisted(hostId, status);
+                    }
+                }
+            });
         }
     }
 
@@ -425,18 +532,52 @@ public class AgentConnectionManager {
         updateHostStatus(hostId, status, null);
     }
 
-    @Scheduled(every = "30m")
+    /**
+     * Health-driven, staggered reconnect. Every host owns one slot of the reconnect interval
+     * (by its {@link Host#reconnectBucket}), and each tick only loads hosts in the current slot: open
+     * sessions that received a frame within the stale threshold are left alone, stale sessions are
+     * recycled and missing ones re-established. Slots advance with a tick counter rather than the
+     * wall clock, so a late or skipped trigger still visits every slot in turn. Handshakes are
+     * further capped by {@link AgentConnectExecutor}.
+     */
+    @Scheduled(every = "${agent.reconnect.tick:1m}", identity = "agent-staggered-reconnect")
     @Transactional
     public void scheduledReconnect() {
-        Log.info("Starting scheduled reconnection...");
-        List<Host> hosts = Host.listAll();
-
+        long tickMs = Math.max(1, reconnectTick.toMillis());
+        int slots = (int) Math.min(Host.RECONNECT_BUCKETS, Math.max(1, reconnectInterval.toMillis() / tickMs));
+        int slot = (int) (reconnectTicks.getAndIncrement() % slots);
+        long now = System.currentTimeMillis();
+
+        List<Host> hosts = Host.list("status not in ?1 and reconnectBucket >= ?2 and reconnectBucket < ?3",
+                List.of(HostStatus.UNCONNECTED, HostStatus.EXCEPTION),
+                bucketStart(slot, slots), bucketStart(slot + 1, slots));
+        int recycled = 0;
+        int reconnected = 0;
         for (Host host : hosts) {
-            if (host.getStatus() == HostStatus.UNCONNECTED || host.getStatus() == HostStatus.EXCEPTION) {
-                continue;
+            Session session = sessions.get(host.getId());
+            if (session != null && session.isOpen()) {
+                Long last = lastFrame.get(host.getId());
+                if (last != null && now - last < staleThreshold.toMillis()) {
+                    continue;
+                }
+                Log.infof("Session for host %s is stale, recycling", host.getId());
+                disconnect(host.getId());
+                recycled++;
+            } else {
+                reconnected++;
             }
-            disconnect(host.getId());
             connect(host);
         }
+        if (recycled + reconnected > 0) {
+            Log.infof("Reconnect slot %d/%d: recycled %d stale sessions, reconnected %d hosts",
+                    slot + 1, slots, recycled, reconnected);
+        }
+    }
+
+    /**
+     * First bucket of {@code slot}; slots split the buckets into contiguous, near-equal ranges
+     */
+    static int bucketStart(int slot, int slots) {
+        return (int) (((long) slot * Host.RECONNECT_BUCKETS + slots - 1) / slots);
     }
 }
@@ -0,0 +1,171 @@
+package com.easystation.infra.socket;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Codec for the agent WebSocket protocol: {@code {"type": ..., "requestId": ..., "content": ...}}.
+ * <p>
+ * Inbound frames are read with a streaming {@link JsonParser}; once {@code type} is known the
+ * {@code content} value is bound straight to the record registered for that type, without building a
+ * {@code JsonNode} tree. If {@code content} precedes {@code type} it is buffered in a
+ * {@link TokenBuffer} first. Outbound frames are encoded together with their metadata so senders can
+ * log type and requestId without parsing the JSON again.
+ */
+@ApplicationScoped
+public class AgentMessageCodec {
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    private JsonFactory jsonFactory;
+
+    private final Map<String, Registration<?>> handlers = new ConcurrentHashMap<>();
+
+    /**
+     * Handler for one message type. {@code content} is null when the frame has no content or it
+     * could not be bound to the registered type.
+     */
+    @FunctionalInterface
+    public interface Handler<T> {
+        void handle(UUID hostId, String requestId, T content, String raw);
+    }
+
+    private record Registration<T>(Class<T> contentType, Handler<T> handler) {
+        void invoke(UUID hostId, String requestId, Object content, String raw) {
+            handler.handle(hostId, requestId, contentType.cast(content), raw);
+        }
+    }
+
+    /**
+     * Encoded outbound frame with its metadata.
+     */
+    public record Outbound(String type, String requestId, String json) {
+    }
+
+    @PostConstruct
+    void init() {
+        jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Register the handler for a message type, replacing any previous one.
+     */
+    public <T> void register(String type, Class<T> contentType, Handler<T> handler) {
+        handlers.put(type, new Registration<>(contentType, handler));
+    }
+
+    /**
+     * Decode a frame and invoke the handler registered for its type.
+     *
+     * @return false if the frame is not a JSON object or no handler is registered for its type
+     */
+    public boolean dispatch(UUID hostId, String raw) {
+        String type = null;
+        String requestId = null;
+        Registration<?> registration = null;
+        Object content = null;
+        TokenBuffer pendingContent = null;
+
+        try (JsonParser parser = jsonFactory.createParser(raw)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "type" -> {
+                        type = parser.getValueAsString();
+                        registration = type != null ? handlers.get(type) : null;
+                        if (registration == null) {
+                            return false;
+                        }
+                    }
+                    case "requestId" -> requestId = parser.getValueAsString();
+                    case "content" -> {
+                        if (registration != null) {
+                            content = bind(parser, registration.contentType());
+                        } else {
+                            pendingContent = new TokenBuffer(parser);
+                            pendingContent.copyCurrentStructure(parser);
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (JsonParseException e) {
+            // Not a (well-formed) JSON frame, e.g. the legacy plain "HEARTBEAT" text
+            return false;
+        } catch (IOException e) {
+            if (registration == null) {
+                return false;
+            }
+            // Content could not be bound; dispatch with what was read so far
+            Log.debugf("Failed to decode %s content from %s: %s", type, hostId, e.getMessage());
+        }
+
+        if (registration == null) {
+            return false;
+        }
+        if (pendingContent != null) {
+            try (JsonParser buffered = pendingContent.asParser(objectMapper)) {
+                buffered.nextToken();
+                content = bind(buffered, registration.contentType());
+            } catch (IOException e) {
+                Log.debugf("Failed to decode %s content from %s: %s", type, hostId, e.getMessage());
+            }
+        }
+        registration.invoke(hostId, requestId, content, raw);
+        return true;
+    }
+
+    private Object bind(JsonParser parser, Class<?> contentType) throws IOException {
+        if (contentType == String.class) {
+            // Same leniency as JsonNode.asText(): scalars become text, structures become empty
+            String text = parser.getValueAsString("");
+            parser.skipChildren();
+            return text;
+        }
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return objectMapper.readValue(parser, contentType);
+    }
+
+    /**
+     * Encode an outbound frame.
+     */
+    public Outbound encode(String type, String requestId, Object content) {
+        StringWriter writer = new StringWriter(128);
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeStringField("type", type);
+            if (requestId != null) {
+                generator.writeStringField("requestId", requestId);
+            }
+            generator.writeFieldName("content");
+            objectMapper.writeValue(generator, content);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode " + type + " message", e);
+        }
+        return new Outbound(type, requestId, writer.toString());
+    }
+}
@@ -0,0 +1,188 @@
+package com.easystation.infra.socket;
+
+import com.easystation.infra.domain.Host;
+import com.easystation.infra.domain.enums.HostStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for host heartbeats.
+ * <p>
+ * Heartbeats for hosts that are already ONLINE only refresh {@code lastHeartbeat} and {@code os},
+ * so they are coalesced in memory (latest value wins) and flushed periodically as a single JDBC batch.
+ * Real status transitions (e.g. OFFLINE -> ONLINE) are never buffered; the caller writes them through.
+ */
+@ApplicationScoped
+public class HeartbeatWriteBehindBuffer {
+
+    private static final String FLUSH_SQL =
+            "UPDATE infra_host SET status = ?, lastHeartbeat = ?, os = COALESCE(?, os) WHERE id = ? AND status = ?";
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "agent.heartbeat.buffer.enabled", defaultValue = "true")
+    boolean enabled;
+
+    private final Map<UUID, PendingHeartbeat> pending = new ConcurrentHashMap<>();
+    private final Map<UUID, HostStatus> persistedStatus = new ConcurrentHashMap<>();
+
+    private Timer flushTimer;
+    private Counter coalescedCounter;
+    private Counter writeThroughCounter;
+    private Counter flushedCounter;
+    private Counter staleCounter;
+
+    record PendingHeartbeat(HostStatus status, LocalDateTime lastHeartbeat, String osType) {
+    }
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("esa.heartbeat.buffer.pending", pending, Map::size)
+                .description("Heartbeats waiting to be flushed")
+                .register(registry);
+        flushTimer = Timer.builder("esa.heartbeat.buffer.flush.latency")
+                .description("Latency of batched heartbeat flushes")
+                .register(registry);
+        coalescedCounter = Counter.builder("esa.heartbeat.buffer.coalesced.total")
+                .description("Heartbeats absorbed by the write-behind buffer")
+                .register(registry);
+        writeThroughCounter = Counter.builder("esa.heartbeat.buffer.write-through.total")
+                .description("Heartbeats written through because of a status transition")
+                .register(registry);
+        flushedCounter = Counter.builder("esa.heartbeat.buffer.flushed.total")
+                .description("Host rows updated by batched flushes")
+                .register(registry);
+        staleCounter = Counter.builder("esa.heartbeat.buffer.stale.total")
+                .description("Buffered heartbeats dropped because the host status changed underneath")
+                .register(registry);
+    }
+
+    /**
+     * Try to absorb a heartbeat.
+     *
+     * @return true if the heartbeat was buffered, false if the caller must write it through
+     */
+    public boolean offer(UUID hostId, HostStatus status, String osType) {
+        if (!enabled || persistedStatus.get(hostId) != status) {
+            writeThroughCounter.increment();
+            return false;
+        }
+        pending.merge(hostId, new PendingHeartbeat(status, LocalDateTime.now(), osType),
+                (previous, next) -> next.osType() != null ? next
+                        : new PendingHeartbeat(next.status(), next.lastHeartbeat(), previous.osType()));
+        coalescedCounter.increment();
+        return true;
+    }
+
+    /**
+     * Record a status that has just been committed to the database.
+     * Any buffered heartbeat that no longer matches the status is discarded.
+     */
+    public void statusPersisted(UUID hostId, HostStatus status) {
+        persistedStatus.put(hostId, status);
+        pending.computeIfPresent(hostId, (id, entry) -> entry.status() == status ? entry : null);
+    }
+
+    PendingHeartbeat pending(UUID hostId) {
+        return pending.get(hostId);
+    }
+
+    public void forget(UUID hostId) {
+        persistedStatus.remove(hostId);
+        pending.remove(hostId);
+    }
+
+    @Scheduled(every = "${agent.heartbeat.buffer.flush-interval:5s}", identity = "heartbeat-buffer-flush",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void scheduledFlush() {
+        flush();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    /**
+     * Flush all buffered heartbeats in one batched UPDATE.
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<UUID> hostIds = new ArrayList<>(pending.size());
+        List<PendingHeartbeat> entries = new ArrayList<>(pending.size());
+        for (UUID hostId : List.copyOf(pending.keySet())) {
+            PendingHeartbeat entry = pending.remove(hostId);
+            if (entry != null) {
+                hostIds.add(hostId);
+                entries.add(entry);
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            int[] results = QuarkusTransaction.requiringNew().call(() -> {
+                Session session = Host.getEntityManager().unwrap(Session.class);
+                return session.doReturningWork(connection -> {
+                    try (PreparedStatement ps = connection.prepareStatement(FLUSH_SQL)) {
+                        for (int i = 0; i < entries.size(); i++) {
+                            PendingHeartbeat entry = entries.get(i);
+                            ps.setString(1, entry.status().name());
+                            ps.setTimestamp(2, Timestamp.valueOf(entry.lastHeartbeat()));
+                            ps.setString(3, entry.osType());
+                            ps.setObject(4, hostIds.get(i));
+                            ps.setString(5, entry.status().name());
+                            ps.addBatch();
+                        }
+                        return ps.executeBatch();
+                    }
+                });
+            });
+            int updated = 0;
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == 0) {
+                    // Status changed outside this buffer; next heartbeat must write through
+                    persistedStatus.remove(hostIds.get(i));
+                    staleCounter.increment();
+                } else {
+                    updated++;
+                }
+            }
+            flushedCounter.increment(updated);
+            Log.debugf("Flushed %d buffered heartbeats (%d stale)", updated, results.length - updated);
+        } catch (Exception e) {
+            Log.errorf("Failed to flush %d buffered heartbeats: %s", entries.size(), e.getMessage());
+            for (int i = 0; i < entries.size(); i++) {
+                pending.putIfAbsent(hostIds.get(i), entries.get(i));
+            }
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
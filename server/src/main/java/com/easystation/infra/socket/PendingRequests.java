@@ -0,0 +1,170 @@
+package com.easystation.infra.socket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * In-memory registry of requests sent to agents that are waiting for a reply, keyed by requestId.
+ * <p>
+ * Each entry holds a future and a deadline on a shared timer thread. The first of reply, deadline
+ * or cancellation settles the future and removes the entry; a late reply for a settled request is
+ * ignored. Futures are completed on the WebSocket or timer thread, so dependent stages should be
+ * short or use the async variants.
+ */
+@ApplicationScoped
+public class PendingRequests {
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "agent.request.max-pending", defaultValue = "10000")
+    int maxPending;
+
+    private final Map<String, Pending<?>> pending = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService deadlines;
+    private Counter completedCounter;
+    private Counter timeoutCounter;
+
+    private static final class Pending<T> {
+        final UUID hostId;
+        final Class<T> type;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        volatile ScheduledFuture<?> deadline;
+
+        Pending(UUID hostId, Class<T> type) {
+            this.hostId = hostId;
+            this.type = type;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        deadlines = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "agent-request-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("esa.agent.requests.pending", pending, Map::size)
+                .description("Agent requests waiting for a reply")
+                .register(registry);
+        completedCounter = Counter.builder("esa.agent.requests.completed.total")
+                .description("Agent requests completed by a reply")
+                .register(registry);
+        timeoutCounter = Counter.builder("esa.agent.requests.timeout.total")
+                .description("Agent requests that reached their deadline without a reply")
+                .register(registry);
+    }
+
+    /**
+     * Register a request before its frame is sent.
+     *
+     * @param onTimeout run on the timer thread when the deadline passes without a reply; may be null
+     * @return future completed with the reply, or exceptionally with {@link TimeoutException}
+     * @throws IllegalStateException if the requestId is already pending or the registry is full
+     */
+    public <T> CompletableFuture<T> register(String requestId, UUID hostId, Class<T> replyType,
+                                             Duration timeout, Runnable onTimeout) {
+        if (pending.size() >= maxPending) {
+            throw new IllegalStateException("Too many pending agent requests (" + maxPending + ")");
+        }
+        Pending<T> entry = new Pending<>(hostId, replyType);
+        if (pending.putIfAbsent(requestId, entry) != null) {
+            throw new IllegalStateException("Request " + requestId + " is already pending");
+        }
+        entry.future.whenComplete((reply, error) -> {
+            pending.remove(requestId, entry);
+            ScheduledFuture<?> deadline = entry.deadline;
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+        });
+        entry.deadline = deadlines.schedule(() -> {
+            if (entry.future.completeExceptionally(new TimeoutException(
+                    "No reply from host " + hostId + " for request " + requestId + " within " + timeout))) {
+                timeoutCounter.increment();
+                Log.warnf("Agent request %s to host %s timed out after %s", requestId, hostId, timeout);
+                if (onTimeout != null) {
+                    try {
+                        onTimeout.run();
+                    } catch (RuntimeException e) {
+                        Log.errorf(e, "Timeout handler for request %s failed", requestId);
+                    }
+                }
+            }
+        }, timeout.toMillis(), TimeUnit.MILLISECONDS);
+        if (entry.future.isDone()) {
+            entry.deadline.cancel(false);
+        }
+        return entry.future;
+    }
+
+    /**
+     * Complete a pending request with the agent's reply.
+     *
+     * @return false if no request with this id is pending from this host or the reply has the wrong type
+     */
+    public boolean complete(String requestId, UUID hostId, Object reply) {
+        if (requestId == null) {
+            return false;
+        }
+        Pending<?> entry = pending.get(requestId);
+        if (entry == null || !entry.hostId.equals(hostId)) {
+            return false;
+        }
+        return settle(entry, reply);
+    }
+
+    private <T> boolean settle(Pending<T> entry, Object reply) {
+        if (reply != null && !entry.type.isInstance(reply)) {
+            return false;
+        }
+        if (entry.future.complete(entry.type.cast(reply))) {
+            completedCounter.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Fail a pending request, e.g. when its frame could not be sent.
+     */
+    public void fail(String requestId, Throwable error) {
+        Pending<?> entry = pending.get(requestId);
+        if (entry != null) {
+            entry.future.completeExceptionally(error);
+        }
+    }
+
+    public boolean isPending(String requestId) {
+        return pending.containsKey(requestId);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        deadlines.shutdownNow();
+        pending.values().forEach(entry -> entry.future.cancel(false));
+    }
+}
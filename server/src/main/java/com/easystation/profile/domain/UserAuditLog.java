@@ -100,6 +100,12 @@ public class UserAuditLog extends PanacheEntityBase {
     @Column(name = "content_hash", length = 64)
     public String contentHash;
 
+    /**
+     * 前一条日志的内容哈希 - 与本条内容一起参与哈希，形成哈希链
+     */
+    @Column(name = "previous_hash", length = 64)
+    public String previousHash;
+
     /**
      * 关联的会话 ID
      */
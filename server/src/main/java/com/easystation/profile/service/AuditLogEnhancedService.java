@@ -1,5 +1,6 @@
 package com.easystation.profile.service;
 
+import com.easystation.audit.ingest.AuditIngestPipeline;
 import com.easystation.profile.domain.UserAuditLog;
 import com.easystation.profile.dto.AuditLogRecord;
 import com.easystation.profile.mapper.AuditLogMapper;
@@ -7,13 +8,13 @@ import com.easystation.profile.repository.AuditLogRepository;
 import io.quarkus.logging.Log;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 /**
@@ -21,7 +22,7 @@ import java.util.*;
  * 
  * 功能：
  * - 敏感操作自动标记
- * - 防篡改签名生成
+ * - 防篡改签名生成（哈希链，见 {@link UserAuditLogIngestBinding}）
  * - 异常行为检测
  */
 @ApplicationScoped
@@ -33,16 +34,29 @@ public class AuditLogEnhancedService {
     @Inject
     AuditLogMapper auditLogMapper;
 
+    @Inject
+    AuditIngestPipeline ingestPipeline;
+
     // 签名密钥（生产环境应从配置中心获取）
     private static final String SIGNING_KEY = "esa-audit-signing-key-2026";
 
     /**
      * 记录审计日志（增强版）
-     * 自动标记敏感操作、生成防篡改签名
+     * 自动标记敏感操作；内容哈希和防篡改签名由写入管道在批内按写入顺序计算
+     *
+     * 返回值在交给写入管道前生成，只包含调用方可见的字段（主键、补齐的时间等），
+     * 不含哈希链和签名；需要这些值时按主键从数据库回读。async 模式下返回时记录可能尚未提交。
      */
-    @Transactional
     public AuditLogRecord logEnhanced(AuditLogRecord record) {
         UserAuditLog log = auditLogMapper.toEntity(record);
+        if (log.id == null) {
+            log.id = UUID.randomUUID();
+        }
+        if (log.createdAt == null) {
+            log.createdAt = LocalDateTime.now();
+        }
+        // 与数据库精度一致，保证回读后哈希不变
+        log.createdAt = log.createdAt.truncatedTo(ChronoUnit.MICROS);
 
         // 1. 标记敏感操作
         log.isSensitive = UserAuditLog.isSensitiveAction(record.action(), record.resourceType());
@@ -60,19 +74,23 @@ public class AuditLogEnhancedService {
             log.reviewStatus = "PENDING";
         }
 
-        // 4. 生成内容哈希
-        log.contentHash = generateContentHash(log);
-
-        // 5. 生成防篡改签名
-        log.integritySignature = generateIntegritySignature(log);
-
-        // 6. 保存日志
-        auditLogRepository.persist(log);
+        // 4. 交给写入管道；写入线程之后会填写哈希链字段
+        AuditLogRecord created = auditLogMapper.toRecord(log);
+        ingestPipeline.ingest(log);
 
         Log.infof("Audit log created: userId=%s, action=%s, sensitive=%s, riskLevel=%s",
             log.userId, log.action, log.isSensitive, log.riskLevel);
 
-        return auditLogMapper.toRecord(log);
+        return created;
+    }
+
+    /**
+     * 接在前一条日志之后生成内容哈希和防篡改签名
+     */
+    void seal(UserAuditLog log, String previousHash) {
+        log.previousHash = previousHash;
+        log.contentHash = generateContentHash(log);
+        log.integritySignature = generateIntegritySignature(log);
     }
 
     /**
@@ -264,6 +282,10 @@ public class AuditLogEnhancedService {
                 log.status,
                 log.createdAt
             );
+            // 哈希链之前写入的日志没有前序哈希
+            if (log.previousHash != null) {
+                content = log.previousHash + "|" + content;
+            }
             
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
             byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
@@ -0,0 +1,52 @@
+package com.easystation.profile.service;
+
+import com.easystation.audit.ingest.AuditIngestBinding;
+import com.easystation.profile.domain.UserAuditLog;
+import io.quarkus.panache.common.Sort;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import java.util.List;
+
+/**
+ * 用户审计日志的哈希链
+ *
+ * 写入管道在批内按写入顺序为每条日志计算内容哈希和签名，内容哈希包含前一条已提交日志的哈希，
+ * 删除或篡改中间任意一条都会使后续记录的 previousHash 对不上。链头在首次写入时从数据库读取；
+ * 多个节点各自维护自己的链。
+ */
+@ApplicationScoped
+public class UserAuditLogIngestBinding implements AuditIngestBinding<UserAuditLog> {
+
+    @Inject
+    AuditLogEnhancedService auditLogEnhancedService;
+
+    /** 最后一条已提交日志的内容哈希，只由写入线程访问 */
+    private String lastHash;
+    private boolean initialized;
+
+    @Override
+    public Class<UserAuditLog> type() {
+        return UserAuditLog.class;
+    }
+
+    @Override
+    public void beforeWrite(List<UserAuditLog> batch) {
+        if (!initialized) {
+            UserAuditLog last = UserAuditLog.<UserAuditLog>find("contentHash is not null", Sort.descending("createdAt"))
+                    .firstResult();
+            lastHash = last != null ? last.contentHash : null;
+            initialized = true;
+        }
+        String previous = lastHash;
+        for (UserAuditLog log : batch) {
+            auditLogEnhancedService.seal(log, previous);
+            previous = log.contentHash;
+        }
+    }
+
+    @Override
+    public void afterWrite(List<UserAuditLog> batch) {
+        lastHash = batch.get(batch.size() - 1).contentHash;
+    }
+}
@@ -0,0 +1,4 @@
+-- V202603300600__audit_log_hash_chain.sql
+-- 用户审计日志哈希链：记录前一条日志的内容哈希
+
+ALTER TABLE user_audit_log ADD COLUMN IF NOT EXISTS previous_hash VARCHAR(64);
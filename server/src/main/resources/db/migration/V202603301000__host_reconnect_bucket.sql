@@ -0,0 +1,8 @@
+-- V202603301000__host_reconnect_bucket.sql
+-- 主机重连分桶：定时重连每个周期只查询当前时间片对应的桶区间
+
+ALTER TABLE infra_host ADD COLUMN IF NOT EXISTS reconnect_bucket INTEGER NOT NULL DEFAULT 0;
+
+UPDATE infra_host SET reconnect_bucket = floor(random() * 1024)::INTEGER;
+
+CREATE INDEX IF NOT EXISTS idx_infra_host_reconnect_bucket ON infra_host (reconnect_bucket);
@@ -0,0 +1,4 @@
+-- V202603301200__batch_operation_running_count.sql
+-- 批量操作运行中条目数：执行引擎与成功、失败数一起定期写入
+
+ALTER TABLE batch_operation ADD COLUMN IF NOT EXISTS running_count INTEGER DEFAULT 0;
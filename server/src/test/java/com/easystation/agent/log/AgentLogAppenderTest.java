@@ -0,0 +1,93 @@
+package com.easystation.agent.log;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentLogAppenderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AgentLogStore store;
+    private AgentLogAppender appender;
+    private final UUID agentId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        store = new AgentLogStore();
+        store.logDir = tempDir.toString();
+        store.segmentMaxBytes = 1 << 20;
+        store.indexInterval = 16;
+
+        appender = new AgentLogAppender();
+        appender.logStore = store;
+        appender.registry = new SimpleMeterRegistry();
+        appender.enabled = true;
+        appender.queueCapacity = 1000;
+        appender.batchSize = 64;
+        appender.fsyncIntervalMs = 50;
+        appender.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        appender.shutdown();
+        store.closeAll();
+    }
+
+    private static String line(int i) {
+        return "2024-01-01 00:00:00 INFO line-" + i;
+    }
+
+    @Test
+    @DisplayName("首条日志到达时才创建队列")
+    void testQueueCreatedLazily() {
+        assertFalse(appender.hasQueue(agentId));
+        assertTrue(appender.append(agentId, line(0)));
+        assertTrue(appender.hasQueue(agentId));
+    }
+
+    @Test
+    @DisplayName("断开连接后队列写完即移除，日志不丢失")
+    void testReleasedQueueRemovedAfterDrain() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            expected.add(line(i));
+            assertTrue(appender.append(agentId, line(i)));
+        }
+        appender.release(agentId);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (appender.hasQueue(agentId) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertFalse(appender.hasQueue(agentId));
+        assertEquals(expected, store.tail(agentId, 1000));
+    }
+
+    @Test
+    @DisplayName("关闭时先写完队列中的日志")
+    void testShutdownDrainsQueuedLines() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            assertTrue(appender.append(agentId, line(i)));
+        }
+
+        appender.shutdown();
+
+        List<String> tail = store.tail(agentId, 1000);
+        assertEquals(500, tail.size());
+        assertEquals(line(499), tail.get(499));
+    }
+}
@@ -0,0 +1,139 @@
+package com.easystation.agent.log;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentLogStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AgentLogStore store;
+    private final UUID agentId = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        store = newStore();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.closeAll();
+    }
+
+    private AgentLogStore newStore() {
+        AgentLogStore s = new AgentLogStore();
+        s.logDir = tempDir.toString();
+        s.segmentMaxBytes = 4096;
+        s.indexInterval = 16;
+        return s;
+    }
+
+    private static String line(int i, String level) {
+        LocalDateTime ts = LocalDateTime.of(2026, 1, 1, 0, 0).plusSeconds(i);
+        return ts.format(LogLines.DEFAULT_FORMATTER) + " " + level + " message-" + i;
+    }
+
+    private void appendLines(int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            store.append(agentId, List.of(line(i, i % 10 == 0 ? "ERROR" : "INFO")));
+        }
+    }
+
+    @Test
+    @DisplayName("未知 Agent 返回空结果且不创建目录")
+    void testUnknownAgent() throws Exception {
+        assertTrue(store.tail(agentId, 10).isEmpty());
+        assertArrayEquals(new long[4], store.levelCounts(agentId));
+        assertFalse(Files.exists(tempDir.resolve(agentId.toString())));
+    }
+
+    @Test
+    @DisplayName("Tail 跨分段返回最后 N 行")
+    void testTailAcrossSegments() throws Exception {
+        appendLines(500);
+
+        try (var files = Files.list(tempDir.resolve(agentId.toString()))) {
+            assertTrue(files.filter(p -> p.toString().endsWith(".log")).count() > 1);
+        }
+
+        List<String> tail = store.tail(agentId, 120);
+        assertEquals(120, tail.size());
+        assertEquals(line(380, "ERROR"), tail.get(0));
+        assertEquals(line(499, "INFO"), tail.get(119));
+    }
+
+    @Test
+    @DisplayName("级别计数在追加时维护并在重启后恢复")
+    void testLevelCountsSurviveReopen() throws Exception {
+        appendLines(333);
+        long[] counts = store.levelCounts(agentId);
+        assertEquals(34, counts[3]);
+        assertEquals(299, counts[1]);
+
+        store.closeAll();
+        store = newStore();
+        assertArrayEquals(counts, store.levelCounts(agentId));
+        assertEquals(line(332, "INFO"), store.tail(agentId, 1).get(0));
+    }
+
+    @Test
+    @DisplayName("时间范围扫描从索引定位起点")
+    void testScanFromTime() throws Exception {
+        appendLines(400);
+        LocalDateTime start = LocalDateTime.of(2026, 1, 1, 0, 0).plusSeconds(250);
+
+        List<Long> visited = new ArrayList<>();
+        List<String> matched = new ArrayList<>();
+        store.scan(agentId, start, null, (lineNumber, text) -> {
+            visited.add(lineNumber);
+            LogLines.Parsed parsed = LogLines.parse(text);
+            if (!parsed.timestamp().isBefore(start)) {
+                matched.add(text);
+            }
+            return matched.size() < 5;
+        });
+
+        assertEquals(line(250, "ERROR"), matched.get(0));
+        assertEquals(5, matched.size());
+        assertTrue(visited.size() < 5 + 16, "scan should start near the requested time");
+    }
+
+    @Test
+    @DisplayName("旧版单文件日志被接管为第一个分段")
+    void testLegacyFileAdopted() throws Exception {
+        Files.writeString(tempDir.resolve(agentId + ".log"),
+                line(0, "WARN") + "\n" + line(1, "INFO") + "\nplain text\n");
+
+        assertEquals(List.of(line(1, "INFO"), "plain text"), store.tail(agentId, 2));
+        long[] counts = store.levelCounts(agentId);
+        assertEquals(1, counts[2]);
+        assertEquals(2, counts[1]);
+        assertFalse(Files.exists(tempDir.resolve(agentId + ".log")));
+    }
+
+    @Test
+    @DisplayName("旧版日志末尾缺少换行时追加内容另起一行")
+    void testLegacyFileWithoutTrailingNewline() throws Exception {
+        Files.writeString(tempDir.resolve(agentId + ".log"), line(0, "INFO") + "\n" + line(1, "WARN"));
+
+        store.append(agentId, List.of(line(2, "ERROR")));
+
+        assertEquals(List.of(line(0, "INFO"), line(1, "WARN"), line(2, "ERROR")), store.tail(agentId, 10));
+        store.closeAll();
+        store = newStore();
+        assertEquals(List.of(line(1, "WARN"), line(2, "ERROR")), store.tail(agentId, 2));
+    }
+}
@@ -295,6 +295,46 @@ class TaskDecompositionEngineTest {
         assertTrue(task2Index < task1Index);
     }
 
+    /**
+     * 测试关键路径长度与增量就绪更新
+     */
+    @Test
+    void testCriticalPathAndMarkCompleted() {
+        PlanningTask task1 = createTestTask("Task 1", 0);
+        PlanningTask task2 = createTestTask("Task 2", 1);
+        PlanningTask task3 = createTestTask("Task 3", 1);
+        PlanningTask task4 = createTestTask("Task 4", 2);
+
+        task1.id = UUID.randomUUID();
+        task2.id = UUID.randomUUID();
+        task3.id = UUID.randomUUID();
+        task4.id = UUID.randomUUID();
+        task1.estimatedDurationSeconds = 10L;
+        task2.estimatedDurationSeconds = 30L;
+        task3.estimatedDurationSeconds = 5L;
+        task4.estimatedDurationSeconds = 20L;
+
+        // 菱形依赖：task1 -> task2/task3 -> task4
+        TaskGraph graph = new TaskGraph(List.of(task1, task2, task3, task4), List.of(
+                createDependency(task2, task1),
+                createDependency(task3, task1),
+                createDependency(task4, task2),
+                createDependency(task4, task3)));
+
+        assertEquals(2, graph.getTaskLevel(task4.id));
+        assertEquals(60L, graph.getCriticalPathLength(task1.id));
+        assertEquals(25L, graph.getCriticalPathLength(task3.id));
+        assertEquals(60L, graph.getCriticalPathLength());
+
+        assertEquals(List.of(task1), graph.getReadyTasks());
+        assertEquals(List.of(task2, task3), graph.markCompleted(task1.id));
+        assertTrue(graph.markCompleted(task2.id).isEmpty());
+        assertEquals(List.of(task4), graph.markCompleted(task3.id));
+
+        graph.markIncomplete(task3.id);
+        assertFalse(graph.isReady(task4.id));
+    }
+
     // Helper methods
 
     private PlanningTask createTestTask(String description, int depth) {
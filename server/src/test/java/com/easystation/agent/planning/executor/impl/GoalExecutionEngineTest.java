@@ -0,0 +1,137 @@
+package com.easystation.agent.planning.executor.impl;
+
+import com.easystation.agent.planning.domain.PlanningTask;
+import com.easystation.agent.planning.domain.enums.PlanningTaskStatus;
+import com.easystation.agent.planning.domain.enums.TaskPriority;
+import com.easystation.agent.planning.engine.TaskGraph;
+import com.easystation.agent.planning.executor.TaskExecutor.ExecutionResult;
+import com.easystation.agent.planning.executor.TaskExecutor.HandlerResult;
+import com.easystation.agent.planning.scheduler.ScheduleSnapshot;
+import com.easystation.agent.planning.scheduler.TaskScheduler;
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.junit.mockito.InjectMock;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * 目标级并行执行引擎单元测试
+ */
+@QuarkusTest
+class GoalExecutionEngineTest {
+
+    @Inject
+    GoalExecutionEngine engine;
+
+    @InjectMock
+    TaskExecutorImpl taskExecutor;
+
+    @InjectMock
+    TaskScheduler taskScheduler;
+
+    private final UUID goalId = UUID.randomUUID();
+
+    @BeforeEach
+    void setup() {
+        Mockito.reset(taskExecutor, taskScheduler);
+        when(taskExecutor.beginTask(any())).thenAnswer(invocation -> {
+            PlanningTask task = new PlanningTask();
+            task.id = invocation.getArgument(0);
+            task.status = PlanningTaskStatus.RUNNING;
+            return task;
+        });
+        when(taskExecutor.finishTask(any(), any(), anyLong())).thenAnswer(invocation ->
+                ExecutionResult.success(invocation.getArgument(0), "done", invocation.getArgument(2)));
+    }
+
+    @Test
+    @DisplayName("同时运行的任务数不超过目标并发上限")
+    void testRespectsMaxConcurrency() throws Exception {
+        givenIndependentTasks(6);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        when(taskExecutor.runHandler(any())).thenAnswer(invocation -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            running.decrementAndGet();
+            return HandlerResult.success("ok");
+        });
+
+        List<ExecutionResult> results = engine.execute(goalId, 2).get(10, TimeUnit.SECONDS);
+
+        assertEquals(6, results.size());
+        assertTrue(results.stream().allMatch(ExecutionResult::isSuccess));
+        assertEquals(2, peak.get());
+        assertFalse(engine.isRunning(goalId));
+    }
+
+    @Test
+    @DisplayName("取消时中断在途处理器，任务状态在未中断的事务中置为取消")
+    void testCancelInterruptsHandlersOnly() throws Exception {
+        givenIndependentTasks(4);
+        CountDownLatch started = new CountDownLatch(2);
+        AtomicInteger interruptedDuringCancel = new AtomicInteger();
+        when(taskExecutor.runHandler(any())).thenAnswer(invocation -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+                return HandlerResult.success("ok");
+            } catch (InterruptedException e) {
+                return HandlerResult.failure("interrupted");
+            }
+        });
+        doAnswer(invocation -> {
+            if (Thread.currentThread().isInterrupted()) {
+                interruptedDuringCancel.incrementAndGet();
+            }
+            return null;
+        }).when(taskExecutor).cancelTask(any());
+
+        var future = engine.execute(goalId, 2);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertTrue(engine.cancel(goalId));
+
+        List<ExecutionResult> results = future.get(10, TimeUnit.SECONDS);
+
+        assertEquals(2, results.size());
+        assertTrue(results.stream().noneMatch(ExecutionResult::isSuccess));
+        verify(taskExecutor, times(2)).cancelTask(any());
+        verify(taskExecutor, never()).finishTask(any(), any(), anyLong());
+        // 未分派的任务不会开始
+        verify(taskExecutor, times(2)).beginTask(any());
+        assertEquals(0, interruptedDuringCancel.get());
+        assertFalse(engine.cancel(goalId));
+    }
+
+    private void givenIndependentTasks(int count) {
+        List<PlanningTask> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            PlanningTask task = new PlanningTask();
+            task.id = UUID.randomUUID();
+            task.description = "Task " + i;
+            task.priority = TaskPriority.NORMAL;
+            task.status = PlanningTaskStatus.SCHEDULED;
+            task.depth = 0;
+            task.retryCount = 0;
+            task.maxRetryCount = 3;
+            tasks.add(task);
+        }
+        TaskGraph graph = new TaskGraph(tasks, Collections.emptyList());
+        when(taskScheduler.createSnapshot(goalId)).thenReturn(new ScheduleSnapshot(goalId, graph, new int[count]));
+    }
+}
@@ -239,6 +239,47 @@ class TaskSchedulerTest {
         assertEquals(0, status.getTotalTasks());
     }
 
+    /**
+     * 测试下一个可执行任务 - 未完成的硬依赖阻塞，软依赖不阻塞
+     */
+    @Test
+    void testNextExecutableTaskRespectsHardAndSoftDependencies() {
+        UUID goalId = UUID.randomUUID();
+        PlanningTask pending = createGoalTask(goalId, "Pending", TaskPriority.LOW, PlanningTaskStatus.RUNNING);
+        PlanningTask hard = createGoalTask(goalId, "Hard", TaskPriority.URGENT, PlanningTaskStatus.SCHEDULED);
+        PlanningTask soft = createGoalTask(goalId, "Soft", TaskPriority.HIGH, PlanningTaskStatus.SCHEDULED);
+        PlanningTask free = createGoalTask(goalId, "Free", TaskPriority.NORMAL, PlanningTaskStatus.SCHEDULED);
+
+        when(taskRepository.findExecutableTasksByGoalId(goalId)).thenReturn(List.of(hard, soft, free));
+        when(dependencyRepository.findByTaskIds(any())).thenReturn(List.of(
+                dependency(hard, pending, "HARD"), dependency(soft, pending, "SOFT")));
+        when(dependencyRepository.countByDependsOnTaskIds(any())).thenReturn(new HashMap<>());
+
+        Optional<PlanningTask> next = taskScheduler.getNextExecutableTask(goalId);
+
+        assertTrue(next.isPresent());
+        assertEquals(soft.id, next.get().id);
+    }
+
+    /**
+     * 测试执行顺序 - 被依赖任务在前，同层按优先级排序，软依赖同样决定先后
+     */
+    @Test
+    void testExecutionOrderWithHardAndSoftDependencies() {
+        UUID goalId = UUID.randomUUID();
+        PlanningTask base = createGoalTask(goalId, "Base", TaskPriority.LOW, PlanningTaskStatus.SCHEDULED);
+        PlanningTask hard = createGoalTask(goalId, "Hard", TaskPriority.HIGH, PlanningTaskStatus.SCHEDULED);
+        PlanningTask soft = createGoalTask(goalId, "Soft", TaskPriority.URGENT, PlanningTaskStatus.SCHEDULED);
+
+        when(taskRepository.findByGoalId(goalId)).thenReturn(List.of(hard, soft, base));
+        when(dependencyRepository.findByGoalId(goalId)).thenReturn(List.of(
+                dependency(hard, base, "HARD"), dependency(soft, base, "SOFT")));
+
+        List<PlanningTask> order = taskScheduler.getExecutionOrder(goalId);
+
+        assertEquals(List.of(base.id, soft.id, hard.id), order.stream().map(t -> t.id).toList());
+    }
+
     // Helper methods
 
     private PlanningTask createTestTask(String description, TaskPriority priority, PlanningTaskStatus status) {
@@ -251,4 +292,20 @@ class TaskSchedulerTest {
         task.maxRetryCount = 3;
         return task;
     }
-}
\ No newline at end of file
+
+    private PlanningTask createGoalTask(UUID goalId, String description, TaskPriority priority,
+                                        PlanningTaskStatus status) {
+        PlanningTask task = createTestTask(description, priority, status);
+        task.id = UUID.randomUUID();
+        task.goalId = goalId;
+        return task;
+    }
+
+    private PlanningTaskDependency dependency(PlanningTask task, PlanningTask dependsOn, String type) {
+        PlanningTaskDependency dep = new PlanningTaskDependency();
+        dep.task = task;
+        dep.dependsOnTask = dependsOn;
+        dep.dependencyType = type;
+        return dep;
+    }
+}
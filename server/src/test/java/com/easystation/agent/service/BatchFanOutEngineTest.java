@@ -0,0 +1,183 @@
+package com.easystation.agent.service;
+
+import com.easystation.agent.domain.BatchOperation;
+import com.easystation.agent.domain.BatchOperationItem;
+import com.easystation.agent.domain.enums.BatchOperationStatus;
+import com.easystation.agent.domain.enums.OperationType;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Batch fan-out engine tests against the test database.
+ */
+@QuarkusTest
+class BatchFanOutEngineTest {
+
+    private BatchFanOutEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new BatchFanOutEngine();
+        engine.parallelism = 1;
+        engine.environmentRate = 0;
+        engine.flushIntervalMs = 100;
+        engine.shutdownGraceMs = 200;
+        engine.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    @DisplayName("处理器在事务外运行，条目写入最终状态")
+    void testHandlerRunsOutsideTransaction() throws Exception {
+        UUID operationId = createOperation(3);
+        AtomicBoolean sawTransaction = new AtomicBoolean();
+
+        assertTrue(engine.start(operationId, "failed", targetId -> {
+            if (QuarkusTransaction.isActive()) {
+                sawTransaction.set(true);
+            }
+            return true;
+        }));
+        awaitFinished(operationId);
+
+        assertFalse(sawTransaction.get());
+        BatchOperation operation = load(operationId);
+        assertEquals(BatchOperationStatus.SUCCESS, operation.status);
+        assertEquals(3, operation.successCount);
+        assertEquals(List.of(BatchOperationStatus.SUCCESS), itemStatuses(operationId));
+    }
+
+    @Test
+    @DisplayName("处理器返回失败时条目标记为失败")
+    void testFailedHandler() throws Exception {
+        UUID operationId = createOperation(2);
+
+        engine.start(operationId, "boom", targetId -> false);
+        awaitFinished(operationId);
+
+        BatchOperation operation = load(operationId);
+        assertEquals(BatchOperationStatus.FAILED, operation.status);
+        assertEquals(2, operation.failedCount);
+    }
+
+    @Test
+    @DisplayName("关闭时未完成的条目标记为失败，之后结束的处理器不会覆盖")
+    void testShutdownFailsUnfinishedItems() throws Exception {
+        UUID operationId = createOperation(2);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        engine.start(operationId, "failed", targetId -> {
+            entered.countDown();
+            // Ignores interrupts, like a handler stuck in a blocking call
+            while (true) {
+                try {
+                    release.await();
+                    return true;
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        engine.shutdown();
+        release.countDown();
+        Thread.sleep(200);
+
+        BatchOperation operation = load(operationId);
+        assertEquals(BatchOperationStatus.FAILED, operation.status);
+        assertEquals(2, operation.failedCount);
+        assertNotNull(operation.completedAt);
+        assertEquals(List.of(BatchOperationStatus.FAILED), itemStatuses(operationId));
+        assertTrue(engine.progress(operationId).isEmpty());
+    }
+
+    @Test
+    @DisplayName("运行中条目数定期写入，查询运行中的操作返回实时计数")
+    void testRunningCountFlushedAndLive() throws Exception {
+        UUID operationId = createOperation(2);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BatchOperationService service = new BatchOperationService();
+        service.fanOutEngine = engine;
+
+        engine.start(operationId, "failed", targetId -> {
+            entered.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        });
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        try {
+            Thread.sleep(300);
+            assertEquals(1, load(operationId).runningCount);
+
+            BatchOperation live = QuarkusTransaction.requiringNew().call(() -> service.getBatchOperation(operationId));
+            assertEquals(1, live.runningCount);
+            assertEquals(0, live.successCount);
+        } finally {
+            release.countDown();
+        }
+        awaitFinished(operationId);
+
+        BatchOperation operation = load(operationId);
+        assertEquals(0, operation.runningCount);
+        assertEquals(2, operation.successCount);
+    }
+
+    private UUID createOperation(int items) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            BatchOperation operation = new BatchOperation();
+            operation.operationType = OperationType.BATCH_COMMAND;
+            operation.operatorId = UUID.randomUUID();
+            operation.totalItems = items;
+            operation.persist();
+            for (int i = 0; i < items; i++) {
+                BatchOperationItem item = new BatchOperationItem();
+                item.batchOperation = operation;
+                item.targetId = UUID.randomUUID();
+                item.targetType = "Host";
+                item.persist();
+            }
+            return operation.id;
+        });
+    }
+
+    private static BatchOperation load(UUID operationId) {
+        return QuarkusTransaction.requiringNew().call(() -> BatchOperation.findById(operationId));
+    }
+
+    private static List<BatchOperationStatus> itemStatuses(UUID operationId) {
+        return QuarkusTransaction.requiringNew().call(() -> BatchOperationItem.findByBatchOperationId(operationId)
+                .stream()
+                .map(item -> item.status)
+                .distinct()
+                .toList());
+    }
+
+    private void awaitFinished(UUID operationId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (engine.progress(operationId).isPresent() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(engine.progress(operationId).isEmpty());
+    }
+}
@@ -0,0 +1,119 @@
+package com.easystation.agent.tool.http;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 工具共享 HTTP 客户端测试，使用本地 HTTP 服务
+ */
+class ToolHttpClientsTest {
+
+    private static final String BODY = "x".repeat(10_000);
+
+    private HttpServer server;
+    private ToolHttpClients clients;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] bytes = BODY.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+
+        clients = new ToolHttpClients();
+        clients.registry = new SimpleMeterRegistry();
+        clients.maxConnectionsPerHost = 2;
+        clients.maxResponseBytes = 0;
+        clients.proxy = Optional.empty();
+        clients.metricHosts = Optional.of(List.of("API.example.com"));
+        clients.maxMetricHosts = 1;
+        clients.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        clients.shutdown();
+        server.stop(0);
+    }
+
+    private HttpRequest request(long timeoutMs) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/"))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .GET()
+                .build();
+    }
+
+    @Test
+    @DisplayName("不同超时的请求共享同一客户端")
+    void testClientNotKeyedOnTimeout() throws Exception {
+        ToolHttpClients.ClientOptions options = clients.options(false);
+
+        clients.send(request(1000), options);
+        clients.send(request(5000), options);
+
+        assertSame(clients.client(options), clients.client(clients.options(false)));
+        assertNotSame(clients.client(options), clients.client(clients.options(true)));
+    }
+
+    @Test
+    @DisplayName("默认不截断响应体，调用方可指定上限")
+    void testResponseCapIsOptIn() throws Exception {
+        ToolHttpClients.Response full = clients.send(request(5000), clients.options(false));
+        assertFalse(full.truncated());
+        assertEquals(BODY.length(), full.bytes());
+
+        ToolHttpClients.Response capped = clients.send(request(5000), clients.options(false), 100, null);
+        assertTrue(capped.truncated());
+        assertEquals(100, capped.body().length());
+    }
+
+    @Test
+    @DisplayName("请求结束后不保留主机许可")
+    void testHostPermitsReleasedAfterRequest() throws Exception {
+        clients.send(request(5000), clients.options(false));
+
+        assertEquals(0, clients.trackedHosts());
+    }
+
+    @Test
+    @DisplayName("耗时直方图按目标主机打标签")
+    void testLatencyTaggedByHost() throws Exception {
+        clients.send(request(5000), clients.options(false));
+
+        Timer timer = clients.registry.find("esa.tool.http.request").tag("host", "127.0.0.1").timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+    }
+
+    @Test
+    @DisplayName("主机标签有上限，白名单中的主机不占名额，其余记为 other")
+    void testHostTagIsBounded() {
+        assertEquals("a.example.com", clients.hostTag("A.example.com"));
+        assertEquals("other", clients.hostTag("b.example.com"));
+        assertEquals("a.example.com", clients.hostTag("a.example.com"));
+        assertEquals("api.example.com", clients.hostTag("api.example.com"));
+        assertEquals("other", clients.hostTag(null));
+    }
+}
@@ -0,0 +1,99 @@
+package com.easystation.agent.tool.impl;
+
+import com.easystation.agent.tool.domain.ToolExecutionStatus;
+import com.easystation.agent.tool.spi.ToolExecutionResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 工具执行日志写入器单元测试，数据库写入以内存列表代替
+ */
+class ToolExecutionLogWriterTest {
+
+    private final List<ToolExecutionLogWriter.Entry> written = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ToolExecutionLogWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        writer = new ToolExecutionLogWriter() {
+            @Override
+            void write(List<Entry> batch) {
+                written.addAll(batch);
+            }
+        };
+        writer.objectMapper = new ObjectMapper();
+        writer.registry = registry;
+        writer.enabled = true;
+        writer.queueCapacity = 100;
+        writer.batchSize = 10;
+        writer.flushIntervalMs = 20;
+        writer.maxFieldLength = 16;
+        writer.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.shutdown();
+    }
+
+    @Test
+    @DisplayName("入队前序列化，之后修改参数对象不影响日志")
+    void testSerializesBeforeQueueing() throws Exception {
+        Map<String, Object> input = new HashMap<>(Map.of("k", "v"));
+
+        writer.record("tool", null, input, ToolExecutionResult.success(Map.of("n", 1), 5));
+        input.put("k", "changed");
+
+        awaitWritten(1);
+        ToolExecutionLogWriter.Entry entry = written.get(0);
+        assertEquals("{\"k\":\"v\"}", entry.input());
+        assertEquals("{\"n\":1}", entry.output());
+        assertEquals(ToolExecutionStatus.SUCCESS, entry.status());
+    }
+
+    @Test
+    @DisplayName("超长字段在入队前截断")
+    void testTruncatesBeforeQueueing() throws Exception {
+        writer.record("tool", null, "x".repeat(100), ToolExecutionResult.failed("e".repeat(40), 1));
+
+        awaitWritten(1);
+        ToolExecutionLogWriter.Entry entry = written.get(0);
+        assertTrue(entry.input().startsWith("x".repeat(16) + "...(truncated 84 chars)"));
+        assertTrue(entry.error().startsWith("e".repeat(16) + "...(truncated 24 chars)"));
+        assertEquals(2.0, registry.get("esa.tool.log.truncated.total").counter().count());
+    }
+
+    @Test
+    @DisplayName("写入线程停止后的记录同步写入，不会滞留在队列中")
+    void testRecordAfterShutdownWritesSynchronously() {
+        writer.shutdown();
+        written.clear();
+
+        assertTrue(writer.record("tool", null, "late", ToolExecutionResult.success("ok", 1)));
+
+        assertEquals(1, written.size());
+        assertEquals("late", written.get(0).input());
+        assertEquals(0, writer.queued());
+    }
+
+    private void awaitWritten(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (written.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, written.size());
+    }
+}
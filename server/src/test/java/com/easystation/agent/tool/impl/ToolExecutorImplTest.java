@@ -0,0 +1,162 @@
+package com.easystation.agent.tool.impl;
+
+import com.easystation.agent.tool.domain.ToolExecutionStatus;
+import com.easystation.agent.tool.domain.ToolParameter;
+import com.easystation.agent.tool.spi.Tool;
+import com.easystation.agent.tool.spi.ToolCancellation;
+import com.easystation.agent.tool.spi.ToolExecutionResult;
+import com.easystation.agent.tool.spi.ToolRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 工具执行器单元测试：隔离舱拒绝与超时
+ */
+class ToolExecutorImplTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ToolRegistry toolRegistry;
+    private ToolExecutorImpl executor;
+
+    @BeforeEach
+    void setUp() {
+        toolRegistry = mock(ToolRegistry.class);
+        executor = new ToolExecutorImpl();
+        executor.toolRegistry = toolRegistry;
+        executor.logWriter = mock(ToolExecutionLogWriter.class);
+        executor.registry = registry;
+        executor.maxConcurrent = 1;
+        executor.queueSize = 1;
+        executor.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("并发与排队名额用尽时立即拒绝，其他工具不受影响")
+    void testBulkheadRejectsWhenFull() throws Exception {
+        BlockingTool slow = register(new BlockingTool("slow"));
+        BlockingTool other = register(new BlockingTool("other"));
+        other.release.countDown();
+
+        CompletableFuture<ToolExecutionResult> running = executor.executeAsync("slow", Map.of(), 10_000).toCompletableFuture();
+        assertTrue(slow.started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<ToolExecutionResult> queued = executor.executeAsync("slow", Map.of(), 10_000).toCompletableFuture();
+
+        ToolExecutionResult rejected = executor.execute("slow", Map.of(), 10_000);
+        assertEquals(ToolExecutionStatus.FAILED, rejected.getStatus());
+        assertTrue(rejected.getError().contains("busy"));
+        assertEquals(1.0, registry.get("esa.tool.executions.rejected.total").tag("tool", "slow").counter().count());
+
+        assertEquals(ToolExecutionStatus.SUCCESS, executor.execute("other", Map.of(), 10_000).getStatus());
+
+        slow.release.countDown();
+        assertEquals(ToolExecutionStatus.SUCCESS, running.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(ToolExecutionStatus.SUCCESS, queued.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(2, slow.invocations.get());
+    }
+
+    @Test
+    @DisplayName("超时返回 TIMEOUT，运行取消回调并中断工具线程")
+    void testDeadlineAbortsRunningTool() throws Exception {
+        BlockingTool slow = register(new BlockingTool("slow"));
+
+        ToolExecutionResult result = executor.execute("slow", Map.of(), 100);
+
+        assertEquals(ToolExecutionStatus.TIMEOUT, result.getStatus());
+        assertTrue(slow.interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue(slow.hookRan.get());
+        assertEquals(1.0, registry.get("esa.tool.executions.timeout.total").tag("tool", "slow").counter().count());
+    }
+
+    @Test
+    @DisplayName("超时包含排队时间，排队中超时的执行不会运行工具并归还名额")
+    void testDeadlineCoversQueueTime() throws Exception {
+        BlockingTool slow = register(new BlockingTool("slow"));
+
+        CompletableFuture<ToolExecutionResult> running = executor.executeAsync("slow", Map.of(), 10_000).toCompletableFuture();
+        assertTrue(slow.started.await(5, TimeUnit.SECONDS));
+
+        ToolExecutionResult queued = executor.execute("slow", Map.of(), 100);
+        assertEquals(ToolExecutionStatus.TIMEOUT, queued.getStatus());
+
+        slow.release.countDown();
+        assertEquals(ToolExecutionStatus.SUCCESS, running.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(1, slow.invocations.get());
+        // 超时的排队执行已退出隔离舱，新的执行可以进入
+        assertEquals(ToolExecutionStatus.SUCCESS, executor.execute("slow", Map.of(), 10_000).getStatus());
+    }
+
+    private BlockingTool register(BlockingTool tool) {
+        when(toolRegistry.getTool(tool.getId())).thenReturn(Optional.of(tool));
+        return tool;
+    }
+
+    /**
+     * 阻塞直到 release 打开或被中断的工具
+     */
+    private static final class BlockingTool implements Tool {
+        final String id;
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final AtomicBoolean hookRan = new AtomicBoolean();
+        final AtomicInteger invocations = new AtomicInteger();
+
+        BlockingTool(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return id;
+        }
+
+        @Override
+        public String getDescription() {
+            return id;
+        }
+
+        @Override
+        public List<ToolParameter> getParameters() {
+            return List.of();
+        }
+
+        @Override
+        public ToolExecutionResult execute(Map<String, Object> params) {
+            invocations.incrementAndGet();
+            ToolCancellation.onCancel(() -> hookRan.set(true));
+            started.countDown();
+            try {
+                release.await();
+                return ToolExecutionResult.success("done");
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                return ToolExecutionResult.failed("interrupted");
+            }
+        }
+    }
+}
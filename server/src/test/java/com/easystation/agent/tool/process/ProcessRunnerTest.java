@@ -0,0 +1,65 @@
+package com.easystation.agent.tool.process;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 子进程执行器测试，依赖 POSIX sh
+ */
+class ProcessRunnerTest {
+
+    private final ProcessRunner runner = new ProcessRunner(4096, 4096);
+
+    @Test
+    @DisplayName("正常退出时返回退出码和输出")
+    void testCapturesOutputAndExitCode() throws Exception {
+        ProcessResult result = runner.run(new ProcessBuilder("sh", "-c", "echo hello; exit 3"), 5000);
+
+        assertFalse(result.timedOut());
+        assertEquals(3, result.exitCode());
+        assertEquals("hello\n", result.output());
+    }
+
+    @Test
+    @DisplayName("超时时终止已被过继的后台孙进程")
+    void testKillsOrphanedGrandchildOnTimeout() throws Exception {
+        // 子 shell 退出后 sleep 被过继，不再是 sh 的子孙进程
+        ProcessBuilder builder = new ProcessBuilder("sh", "-c", "(sleep 30 & echo $!); sleep 30");
+
+        ProcessResult result = runner.run(builder, 500);
+
+        assertTrue(result.timedOut());
+        assertTrue(result.durationMs() < 5000);
+        long grandchild = Long.parseLong(result.output().trim());
+        assertTrue(awaitExit(grandchild), "orphaned grandchild should be killed");
+        // 调用方的命令不被改写
+        assertEquals("sh", builder.command().get(0));
+    }
+
+    @Test
+    @DisplayName("超时时终止仍在运行的进程树")
+    void testTimeoutKillsRunningTree() throws Exception {
+        ProcessResult result = runner.run(new ProcessBuilder("sh", "-c", "sleep 30 & echo $!; wait"), 500);
+
+        assertTrue(result.timedOut());
+        assertEquals(-1, result.exitCode());
+        assertTrue(awaitExit(Long.parseLong(result.output().trim())));
+    }
+
+    private static boolean awaitExit(long pid) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            Optional<ProcessHandle> handle = ProcessHandle.of(pid);
+            if (handle.isEmpty() || !handle.get().isAlive()) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+}
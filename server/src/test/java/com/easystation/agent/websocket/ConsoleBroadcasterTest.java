@@ -0,0 +1,158 @@
+package com.easystation.agent.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ConsoleBroadcasterTest {
+
+    private static final String AGENT = "agent-1";
+
+    private ConsoleBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new ConsoleBroadcaster();
+        broadcaster.registry = new SimpleMeterRegistry();
+        broadcaster.replaySize = 10;
+        broadcaster.sessionQueueSize = 10;
+        broadcaster.init();
+    }
+
+    /**
+     * Session whose async sends complete immediately and are recorded in {@code sent}
+     */
+    private static Session session(String id, List<String> sent) {
+        Session session = mock(Session.class);
+        RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAsyncRemote()).thenReturn(remote);
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            invocation.<SendHandler>getArgument(1).onResult(new SendResult());
+            return null;
+        }).when(remote).sendText(anyString(), any(SendHandler.class));
+        return session;
+    }
+
+    @Test
+    @DisplayName("最后一个控制台断开后移除 Agent 频道")
+    void testChannelRemovedWhenLastConsoleLeaves() {
+        Session first = session("s1", new ArrayList<>());
+        Session second = session("s2", new ArrayList<>());
+
+        broadcaster.open(AGENT, first);
+        broadcaster.open(AGENT, second);
+        broadcaster.close(AGENT, first);
+        assertTrue(broadcaster.hasChannel(AGENT));
+
+        broadcaster.close(AGENT, second);
+        assertFalse(broadcaster.hasChannel(AGENT));
+    }
+
+    @Test
+    @DisplayName("无人订阅时不创建频道，但已连接 Agent 的帧仍被缓存")
+    void testNoChannelWithoutConsoles() {
+        broadcaster.agentConnected(AGENT);
+        broadcaster.broadcast(AGENT, "log-1");
+        broadcaster.broadcastHeartbeat(AGENT, "hb-1");
+
+        assertFalse(broadcaster.hasChannel(AGENT));
+        assertTrue(broadcaster.hasReplay(AGENT));
+    }
+
+    @Test
+    @DisplayName("第一个打开 Agent 的控制台收到连接以来的最近帧，心跳不重放")
+    void testReplayToFirstConsole() {
+        broadcaster.agentConnected(AGENT);
+        broadcaster.broadcast(AGENT, "log-1");
+        broadcaster.broadcastHeartbeat(AGENT, "hb-1");
+        broadcaster.broadcast(AGENT, "log-2");
+
+        List<String> sent = new ArrayList<>();
+        broadcaster.open(AGENT, session("s1", sent));
+
+        assertEquals(List.of("log-1", "log-2"), sent);
+    }
+
+    @Test
+    @DisplayName("新控制台连接时重放最近帧")
+    void testReplayToNewConsole() {
+        broadcaster.agentConnected(AGENT);
+        List<String> firstSent = new ArrayList<>();
+        List<String> secondSent = new ArrayList<>();
+        broadcaster.open(AGENT, session("s1", firstSent));
+        broadcaster.broadcast(AGENT, "log-1");
+        broadcaster.broadcast(AGENT, "log-2");
+
+        broadcaster.open(AGENT, session("s2", secondSent));
+
+        assertEquals(List.of("log-1", "log-2"), firstSent);
+        assertEquals(List.of("log-1", "log-2"), secondSent);
+    }
+
+    @Test
+    @DisplayName("重放缓冲有界，只保留最近的帧")
+    void testReplayIsBounded() {
+        broadcaster.agentConnected(AGENT);
+        for (int i = 0; i < 15; i++) {
+            broadcaster.broadcast(AGENT, "log-" + i);
+        }
+
+        List<String> sent = new ArrayList<>();
+        broadcaster.open(AGENT, session("s1", sent));
+
+        assertEquals(10, sent.size());
+        assertEquals("log-5", sent.get(0));
+        assertEquals("log-14", sent.get(9));
+    }
+
+    @Test
+    @DisplayName("Agent 断开后释放重放缓冲，已打开的控制台继续接收")
+    void testReplayReleasedOnAgentDisconnect() {
+        broadcaster.agentConnected(AGENT);
+        broadcaster.broadcast(AGENT, "old");
+        List<String> sent = new ArrayList<>();
+        broadcaster.open(AGENT, session("s1", sent));
+
+        broadcaster.agentDisconnected(AGENT);
+        assertFalse(broadcaster.hasReplay(AGENT));
+        broadcaster.broadcast(AGENT, "late");
+        assertEquals(List.of("old", "late"), sent);
+
+        broadcaster.agentConnected(AGENT);
+        List<String> reopened = new ArrayList<>();
+        broadcaster.open(AGENT, session("s2", reopened));
+        assertTrue(reopened.isEmpty());
+    }
+
+    @Test
+    @DisplayName("频道移除后重新连接的控制台使用新频道")
+    void testReopenAfterRemoval() {
+        Session first = session("s1", new ArrayList<>());
+        broadcaster.open(AGENT, first);
+        broadcaster.broadcast(AGENT, "old");
+        broadcaster.close(AGENT, first);
+
+        List<String> sent = new ArrayList<>();
+        broadcaster.open(AGENT, session("s2", sent));
+        broadcaster.broadcast(AGENT, "new");
+
+        assertTrue(broadcaster.hasChannel(AGENT));
+        assertEquals(List.of("new"), sent);
+    }
+}
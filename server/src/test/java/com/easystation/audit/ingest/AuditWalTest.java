@@ -0,0 +1,88 @@
+package com.easystation.audit.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditWalTest {
+
+    public static class Sample {
+        public UUID id;
+        public String name;
+    }
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testAppendSealAndReadBack() throws Exception {
+        AuditWal wal = new AuditWal(dir, new ObjectMapper());
+        Sample sample = new Sample();
+        sample.id = UUID.randomUUID();
+        sample.name = "审计";
+        wal.append(List.of(sample));
+
+        List<Path> files = wal.sealed();
+        assertEquals(1, files.size());
+        Files.writeString(files.get(0), "{\"type\":\"java.lang.Runtime\",\"entity\":{}}\n",
+                java.nio.file.StandardOpenOption.APPEND);
+
+        List<AuditWal.Entry> entries;
+        try (AuditWal.Reader reader = wal.open(files.get(0), AuditWalTest::resolve)) {
+            entries = reader.next(10);
+            assertTrue(reader.next(10).isEmpty());
+        }
+        assertEquals(2, entries.size());
+        Sample read = (Sample) entries.get(0).entity();
+        assertEquals(sample.id, read.id);
+        assertEquals("审计", read.name);
+        // 不允许的类型不会被实例化
+        assertNull(entries.get(1).entity());
+
+        wal.reject(files.get(0), List.of(entries.get(1).line()));
+        wal.delete(files.get(0));
+        assertTrue(wal.sealed().isEmpty());
+        assertTrue(Files.exists(dir.resolve(files.get(0).getFileName() + ".rejected")));
+    }
+
+    @Test
+    void testRewriteKeepsUnreadLines() throws Exception {
+        AuditWal wal = new AuditWal(dir, new ObjectMapper());
+        List<Sample> samples = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Sample sample = new Sample();
+            sample.id = UUID.randomUUID();
+            sample.name = "s" + i;
+            samples.add(sample);
+        }
+        wal.append(samples);
+        Path file = wal.sealed().get(0);
+
+        try (AuditWal.Reader reader = wal.open(file, AuditWalTest::resolve)) {
+            List<AuditWal.Entry> chunk = reader.next(2);
+            assertEquals(2, chunk.size());
+            // 第二条未写入，连同未读取的三条保留
+            assertEquals(4, wal.rewrite(file, List.of(chunk.get(1).line()), reader));
+        }
+
+        try (AuditWal.Reader reader = wal.open(file, AuditWalTest::resolve)) {
+            List<AuditWal.Entry> entries = reader.next(10);
+            assertEquals(List.of("s1", "s2", "s3", "s4"),
+                    entries.stream().map(e -> ((Sample) e.entity()).name).toList());
+        }
+    }
+
+    private static Class<?> resolve(String name) {
+        return Sample.class.getName().equals(name) ? Sample.class : null;
+    }
+}
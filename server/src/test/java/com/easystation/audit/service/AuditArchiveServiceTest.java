@@ -0,0 +1,214 @@
+package com.easystation.audit.service;
+
+import com.easystation.audit.archive.ArchiveManifest;
+import com.easystation.audit.archive.ArchiveSegmentReader;
+import com.easystation.audit.archive.ArchiveSegmentWriter;
+import com.easystation.audit.domain.AuditLog;
+import com.easystation.audit.dto.AuditRecord;
+import com.easystation.audit.enums.AuditAction;
+import com.easystation.audit.enums.AuditResult;
+import com.easystation.audit.stats.AuditStatsRollup;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 审计归档任务测试，测试数据的时间都早于 2010 年
+ */
+@QuarkusTest
+class AuditArchiveServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2001, 1, 1, 0, 0);
+    private static final LocalDateTime BEFORE = LocalDateTime.of(2005, 1, 1, 0, 0);
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    AuditLogService auditLogService;
+
+    @Inject
+    AuditStatsRollup statsRollup;
+
+    @TempDir
+    Path dir;
+
+    private AuditArchiveService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new AuditArchiveService();
+        service.objectMapper = objectMapper;
+        service.auditLogService = auditLogService;
+        service.statsRollup = statsRollup;
+        service.archiveDir = dir.toString();
+        service.chunkSize = 2;
+        service.resumeOnStartup = false;
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        QuarkusTransaction.requiringNew().run(() ->
+                AuditLog.delete("createdAt < ?1", LocalDateTime.of(2010, 1, 1, 0, 0)));
+    }
+
+    @Test
+    @DisplayName("归档写出带校验和的分段，并删除写入分段的记录")
+    void testArchivesAndDeletesSegments() throws Exception {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(createLog(BASE.plusMinutes(i)));
+        }
+        UUID newer = createLog(BEFORE.plusDays(1));
+
+        AuditRecord.ArchiveInfo info = service.start(BEFORE, null, null);
+        ArchiveManifest manifest = awaitDone(info.archiveId());
+
+        assertEquals(ArchiveManifest.COMPLETED, manifest.status);
+        assertEquals(5, manifest.recordCount);
+        assertEquals(3, manifest.segments.size());
+        ArchiveSegmentReader reader = new ArchiveSegmentReader(objectMapper);
+        List<UUID> archived = new ArrayList<>();
+        for (ArchiveManifest.Segment segment : manifest.segments) {
+            assertTrue(segment.deleted);
+            archived.addAll(reader.ids(dir.resolve(info.archiveId()).resolve(segment.file), segment));
+        }
+        assertEquals(ids, archived);
+        assertEquals(0, count(ids));
+        assertEquals(1, count(List.of(newer)));
+    }
+
+    @Test
+    @DisplayName("同一秒内启动的归档编号不同")
+    void testArchiveIdsAreUnique() {
+        LocalDateTime empty = LocalDateTime.of(1990, 1, 1, 0, 0);
+
+        String first = service.start(empty, null, null).archiveId();
+        String second = service.start(empty, null, null).archiveId();
+
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    @DisplayName("继续中断的归档时按分段文件中的主键补删，区间内迟到的记录保留")
+    void testResumeDeletesOnlyArchivedIds() throws Exception {
+        UUID a = createLog(BASE);
+        UUID late = createLog(BASE.plusMinutes(1));
+        UUID b = createLog(BASE.plusMinutes(2));
+        UUID c = createLog(BASE.plusMinutes(3));
+        ArchiveManifest manifest = interruptedArchive("audit_archive_resume", a, b);
+
+        assertTrue(service.resume(manifest.archiveId).isPresent());
+        ArchiveManifest done = awaitDone(manifest.archiveId);
+
+        assertEquals(ArchiveManifest.COMPLETED, done.status);
+        assertEquals(0, count(List.of(a, b, c)));
+        // 迟到的记录位于游标之前，不在任何分段中，不能被删除
+        assertEquals(1, count(List.of(late)));
+        assertEquals(3, done.recordCount);
+    }
+
+    @Test
+    @DisplayName("分段文件校验和不一致时归档失败，不删除记录")
+    void testChecksumMismatchFailsWithoutDeleting() throws Exception {
+        UUID a = createLog(BASE);
+        UUID b = createLog(BASE.plusMinutes(1));
+        ArchiveManifest manifest = interruptedArchive("audit_archive_corrupt", a, b);
+        manifest.segments.get(0).sha256 = "0".repeat(64);
+        writeManifest(manifest);
+
+        service.resume(manifest.archiveId);
+        ArchiveManifest done = awaitDone(manifest.archiveId);
+
+        assertEquals(ArchiveManifest.FAILED, done.status);
+        assertTrue(done.error.contains("校验和"));
+        assertEquals(2, count(List.of(a, b)));
+    }
+
+    /**
+     * 模拟写出第一个分段后、删除前中断的归档
+     */
+    private ArchiveManifest interruptedArchive(String archiveId, UUID first, UUID last) throws Exception {
+        Files.createDirectories(dir.resolve(archiveId));
+        List<AuditRecord.Detail> details = QuarkusTransaction.requiringNew().call(() -> List.of(
+                auditLogService.toDetail(AuditLog.findById(first)),
+                auditLogService.toDetail(AuditLog.findById(last))));
+        ArchiveManifest.Segment segment = new ArchiveSegmentWriter(objectMapper)
+                .write(dir.resolve(archiveId).resolve("segment-00001.ndjson.gz"), details);
+        segment.firstCreatedAt = details.get(0).createdAt();
+        segment.firstId = first;
+        segment.lastCreatedAt = details.get(1).createdAt();
+        segment.lastId = last;
+
+        ArchiveManifest manifest = new ArchiveManifest();
+        manifest.archiveId = archiveId;
+        manifest.beforeDate = BEFORE;
+        manifest.chunkSize = 2;
+        manifest.status = ArchiveManifest.RUNNING;
+        manifest.startedAt = LocalDateTime.now();
+        manifest.segments.add(segment);
+        manifest.cursorCreatedAt = segment.lastCreatedAt;
+        manifest.cursorId = last;
+        manifest.recordCount = segment.records;
+        manifest.totalBytes = segment.bytes;
+        writeManifest(manifest);
+        return manifest;
+    }
+
+    private void writeManifest(ArchiveManifest manifest) throws Exception {
+        objectMapper.writeValue(dir.resolve(manifest.archiveId).resolve("manifest.json").toFile(), manifest);
+    }
+
+    private static UUID createLog(LocalDateTime createdAt) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            AuditLog log = new AuditLog();
+            log.username = "archive-test";
+            log.action = AuditAction.LOGIN;
+            log.result = AuditResult.SUCCESS;
+            log.description = "archive test";
+            log.persistAndFlush();
+            // createdAt 由 @CreationTimestamp 填写，直接改库
+            AuditLog.getEntityManager()
+                    .createNativeQuery("update audit_log set created_at = ?1 where id = ?2")
+                    .setParameter(1, createdAt)
+                    .setParameter(2, log.id)
+                    .executeUpdate();
+            return log.id;
+        });
+    }
+
+    private static long count(List<UUID> ids) {
+        return QuarkusTransaction.requiringNew().call(() -> AuditLog.count("id in ?1", ids));
+    }
+
+    private ArchiveManifest awaitDone(String archiveId) throws Exception {
+        Path file = dir.resolve(archiveId).resolve("manifest.json");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            ArchiveManifest manifest = objectMapper.readValue(file.toFile(), ArchiveManifest.class);
+            if (!ArchiveManifest.RUNNING.equals(manifest.status)) {
+                return manifest;
+            }
+            Thread.sleep(20);
+        }
+        return fail("Audit archive " + archiveId + " did not finish");
+    }
+}
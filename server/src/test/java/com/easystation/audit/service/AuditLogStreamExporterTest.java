@@ -0,0 +1,166 @@
+package com.easystation.audit.service;
+
+import com.easystation.audit.domain.AuditLog;
+import com.easystation.audit.dto.AuditRecord;
+import com.easystation.audit.enums.AuditAction;
+import com.easystation.audit.enums.AuditResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 审计日志流式导出测试；每块 2 行，5 条记录跨越多个块
+ */
+@QuarkusTest
+class AuditLogStreamExporterTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2015, 1, 1, 0, 0);
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    AuditLogService auditLogService;
+
+    private AuditLogStreamExporter exporter;
+    private String username;
+    private final List<UUID> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        exporter = new AuditLogStreamExporter();
+        exporter.objectMapper = objectMapper;
+        exporter.auditLogService = auditLogService;
+        exporter.fetchSize = 2;
+        exporter.chunkTimeout = Duration.ofSeconds(30);
+
+        username = "export-" + UUID.randomUUID();
+        for (int i = 0; i < 5; i++) {
+            ids.add(createLog(username, BASE.plusMinutes(i)));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        QuarkusTransaction.requiringNew().run(() -> AuditLog.delete("username", username));
+    }
+
+    @Test
+    @DisplayName("CSV 导出包含表头和按时间排序的全部记录")
+    void testCsv() throws Exception {
+        String csv = new String(export("csv", null, false), StandardCharsets.UTF_8);
+
+        String[] lines = csv.replace("\uFEFF", "").split("\r\n");
+        assertEquals(6, lines.length);
+        assertTrue(lines[0].startsWith("ID,"));
+        for (int i = 0; i < ids.size(); i++) {
+            assertTrue(lines[i + 1].startsWith(ids.get(i) + "," + username + ","));
+        }
+    }
+
+    @Test
+    @DisplayName("JSON 导出为数组")
+    void testJsonArray() throws Exception {
+        JsonNode array = objectMapper.readTree(export("json", null, false));
+
+        assertTrue(array.isArray());
+        assertEquals(ids, idsOf(array));
+    }
+
+    @Test
+    @DisplayName("NDJSON 导出每行一个对象")
+    void testNdjson() throws Exception {
+        assertEquals(ids, ndjsonIds(export("ndjson", null, false)));
+    }
+
+    @Test
+    @DisplayName("gzip 输出解压后与未压缩输出一致")
+    void testGzip() throws Exception {
+        byte[] compressed = export("ndjson", null, true);
+
+        byte[] plain;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            plain = in.readAllBytes();
+        }
+        assertArrayEquals(export("ndjson", null, false), plain);
+    }
+
+    @Test
+    @DisplayName("从游标续传时只导出其后的记录")
+    void testResumeFromCursor() throws Exception {
+        JsonNode second = objectMapper.readTree(export("json", null, false)).get(1);
+        String cursor = second.get("createdAt").asText() + "," + second.get("id").asText();
+
+        assertEquals(ids.subList(2, 5), ndjsonIds(export("ndjson", cursor, false)));
+    }
+
+    @Test
+    @DisplayName("格式或游标无效时立即拒绝")
+    void testRejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> exporter.export(request(), "xml", null, false));
+        assertThrows(IllegalArgumentException.class, () -> exporter.export(request(), "json", "bad", false));
+    }
+
+    private byte[] export(String format, String cursor, boolean gzip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(request(), format, cursor, gzip).write(out);
+        return out.toByteArray();
+    }
+
+    private AuditRecord.ExportRequest request() {
+        return new AuditRecord.ExportRequest(username, null, null, null, null, null, null, null, null);
+    }
+
+    private List<UUID> ndjsonIds(byte[] body) throws IOException {
+        List<UUID> result = new ArrayList<>();
+        for (String line : new String(body, StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isBlank()) {
+                result.add(UUID.fromString(objectMapper.readTree(line).get("id").asText()));
+            }
+        }
+        return result;
+    }
+
+    private static List<UUID> idsOf(JsonNode array) {
+        List<UUID> result = new ArrayList<>();
+        array.forEach(node -> result.add(UUID.fromString(node.get("id").asText())));
+        return result;
+    }
+
+    private static UUID createLog(String username, LocalDateTime createdAt) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            AuditLog log = new AuditLog();
+            log.username = username;
+            log.action = AuditAction.LOGIN;
+            log.result = AuditResult.SUCCESS;
+            log.description = "export test";
+            log.persistAndFlush();
+            // createdAt 由 @CreationTimestamp 填写，直接改库
+            AuditLog.getEntityManager()
+                    .createNativeQuery("update audit_log set created_at = ?1 where id = ?2")
+                    .setParameter(1, createdAt)
+                    .setParameter(2, log.id)
+                    .executeUpdate();
+            return log.id;
+        });
+    }
+}
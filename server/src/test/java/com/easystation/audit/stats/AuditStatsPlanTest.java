@@ -0,0 +1,57 @@
+package com.easystation.audit.stats;
+
+import com.easystation.audit.enums.AuditStatsGranularity;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditStatsPlanTest {
+
+    private static final AuditStatsGranularity HOUR = AuditStatsGranularity.HOUR;
+    private static final AuditStatsGranularity DAY = AuditStatsGranularity.DAY;
+
+    @Test
+    void testWholeDaysFromDailyAndEdgesFromHourlyAndRaw() {
+        LocalDateTime from = LocalDateTime.of(2026, 3, 1, 22, 15);
+        LocalDateTime to = LocalDateTime.of(2026, 3, 4, 2, 30);
+
+        assertEquals(List.of(
+                new AuditStatsPlan.Segment(null, from, LocalDateTime.of(2026, 3, 1, 23, 0)),
+                new AuditStatsPlan.Segment(HOUR, LocalDateTime.of(2026, 3, 1, 23, 0), LocalDateTime.of(2026, 3, 2, 0, 0)),
+                new AuditStatsPlan.Segment(DAY, LocalDateTime.of(2026, 3, 2, 0, 0), LocalDateTime.of(2026, 3, 4, 0, 0)),
+                new AuditStatsPlan.Segment(HOUR, LocalDateTime.of(2026, 3, 4, 0, 0), LocalDateTime.of(2026, 3, 4, 2, 0)),
+                new AuditStatsPlan.Segment(null, LocalDateTime.of(2026, 3, 4, 2, 0), to)
+        ), AuditStatsPlan.of(from, to, DAY).segments());
+    }
+
+    @Test
+    void testHourlyOnlyWhenDailyNotAllowed() {
+        LocalDateTime from = LocalDateTime.of(2026, 3, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2026, 3, 3, 0, 0);
+
+        assertEquals(List.of(new AuditStatsPlan.Segment(HOUR, from, to)),
+                AuditStatsPlan.of(from, to, HOUR).segments());
+        assertEquals(List.of(new AuditStatsPlan.Segment(DAY, from, to)),
+                AuditStatsPlan.of(from, to, DAY).segments());
+    }
+
+    @Test
+    void testRangesWithoutWholeHourReadRawRows() {
+        LocalDateTime from = LocalDateTime.of(2026, 3, 1, 10, 10);
+        LocalDateTime boundary = LocalDateTime.of(2026, 3, 1, 11, 0);
+
+        // 同一小时内
+        assertEquals(List.of(new AuditStatsPlan.Segment(null, from, from.plusMinutes(30))),
+                AuditStatsPlan.of(from, from.plusMinutes(30), DAY).segments());
+        // 跨整点但不足一小时，按整点拆成两段明细
+        assertEquals(List.of(
+                new AuditStatsPlan.Segment(null, from, boundary),
+                new AuditStatsPlan.Segment(null, boundary, boundary.plusMinutes(5))
+        ), AuditStatsPlan.of(from, boundary.plusMinutes(5), DAY).segments());
+        assertTrue(AuditStatsPlan.of(from, from, DAY).segments().isEmpty());
+    }
+}
@@ -0,0 +1,41 @@
+package com.easystation.audit.stream;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlidingWindowCounterTest {
+
+    @Test
+    void testExpiresBucketsOutsideWindow() {
+        // 60 秒窗口，每桶 1 秒
+        SlidingWindowCounter counter = new SlidingWindowCounter(60_000, 60, 2);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+
+        assertEquals(1, counter.add(0, first));
+        assertEquals(2, counter.add(30_000, second));
+        assertEquals(3, counter.add(59_000, third));
+        assertEquals(List.of(third, second), counter.recent());
+
+        // 第一个桶滑出窗口
+        assertEquals(2, counter.count(60_000));
+        // 长时间无事件后整个窗口清空
+        assertEquals(0, counter.count(500_000));
+        assertTrue(counter.isIdle(500_000));
+        assertTrue(counter.recent().isEmpty());
+    }
+
+    @Test
+    void testLateEventCountsIntoCurrentBucket() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(60_000, 60, 0);
+        counter.add(10_000, null);
+        assertEquals(2, counter.add(5_000, null));
+        assertEquals(0, counter.count(70_000));
+    }
+}
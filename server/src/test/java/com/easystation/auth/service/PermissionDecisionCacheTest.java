@@ -0,0 +1,110 @@
+package com.easystation.auth.service;
+
+import com.easystation.common.cache.CacheService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 权限判定缓存单元测试，两个实例模拟共享同一 Redis 的两个节点
+ */
+class PermissionDecisionCacheTest {
+
+    private final UUID userId = UUID.randomUUID();
+    private final String versionKey = "user:permissions:version:" + userId;
+    private final Map<String, Object> redis = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private volatile Set<String> permissions = Set.of("host:view");
+    private final Function<UUID, Set<String>> loader = id -> {
+        loads.incrementAndGet();
+        return permissions;
+    };
+
+    private CacheService cacheService;
+    private PermissionDecisionCache nodeA;
+    private PermissionDecisionCache nodeB;
+
+    @BeforeEach
+    void setUp() {
+        cacheService = mock(CacheService.class);
+        when(cacheService.get(anyString(), eq(Long.class))).thenAnswer(i -> redis.get(i.<String>getArgument(0)));
+        doAnswer(i -> redis.put(i.getArgument(0), i.getArgument(1)))
+                .when(cacheService).set(anyString(), any(), anyLong(), any(TimeUnit.class));
+
+        nodeA = newCache();
+        nodeB = newCache();
+    }
+
+    private PermissionDecisionCache newCache() {
+        PermissionDecisionCache cache = new PermissionDecisionCache();
+        cache.cacheService = cacheService;
+        cache.registry = new SimpleMeterRegistry();
+        cache.enabled = true;
+        cache.maxUsers = 100;
+        cache.ttlSeconds = 300;
+        cache.init();
+        return cache;
+    }
+
+    @Test
+    @DisplayName("版本号未变化时命中本地判定缓存")
+    void testHitWhileVersionUnchanged() {
+        assertTrue(nodeA.hasPermission(userId, "host", "view", loader));
+        assertTrue(nodeA.hasPermission(userId, "host", "view", loader));
+        assertFalse(nodeA.hasPermission(userId, "host", "delete", loader));
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("其他节点更新版本号后丢弃本地判定并重新加载")
+    void testVersionBumpInvalidatesOtherNodes() {
+        assertFalse(nodeA.hasPermission(userId, "host", "delete", loader));
+
+        permissions = Set.of("host:manage");
+        nodeB.invalidate(userId);
+
+        assertTrue(nodeA.hasPermission(userId, "host", "delete", loader));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("版本号带过期时间且长于判定缓存 TTL")
+    void testVersionKeyExpiresAfterDecisions() {
+        nodeA.invalidate(userId);
+
+        verify(cacheService).set(eq(versionKey), any(), eq(600L), eq(TimeUnit.SECONDS));
+        assertTrue(nodeA.versionTtlSeconds() > nodeA.ttlSeconds);
+    }
+
+    @Test
+    @DisplayName("版本号过期后重新写入的值不会与旧值相同")
+    void testVersionNotReusedAfterExpiry() {
+        nodeB.invalidate(userId);
+        assertTrue(nodeA.hasPermission(userId, "host", "view", loader));
+        Object previous = redis.get(versionKey);
+
+        redis.remove(versionKey);
+        permissions = Set.of();
+        nodeB.invalidate(userId);
+
+        assertNotEquals(previous, redis.get(versionKey));
+        assertFalse(nodeA.hasPermission(userId, "host", "view", loader));
+    }
+}
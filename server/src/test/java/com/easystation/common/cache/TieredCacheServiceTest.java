@@ -0,0 +1,101 @@
+package com.easystation.common.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.quarkus.redis.datasource.pubsub.PubSubCommands;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 两级缓存单元测试，Redis 以 mock 代替
+ */
+class TieredCacheServiceTest {
+
+    private RedisCacheService redis;
+    private TieredCacheService cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redis = mock(RedisCacheService.class);
+        when(redis.fromJson(anyString(), anyString(), eq(String.class)))
+                .thenAnswer(invocation -> invocation.getArgument(1));
+
+        RedisDataSource dataSource = mock(RedisDataSource.class);
+        PubSubCommands<String> pubSub = mock(PubSubCommands.class);
+        when(dataSource.pubsub(String.class)).thenReturn(pubSub);
+        when(pubSub.subscribe(anyString(), any(Consumer.class)))
+                .thenReturn(mock(PubSubCommands.RedisSubscriber.class));
+
+        cache = new TieredCacheService();
+        cache.redis = redis;
+        cache.redisDataSource = dataSource;
+        cache.registry = new SimpleMeterRegistry();
+        cache.l1Enabled = true;
+        cache.maxSize = 100;
+        cache.l1TtlSeconds = 60;
+        cache.negativeTtlMillis = 1000;
+        cache.invalidationChannel = "cache:invalidate";
+        cache.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.destroy();
+    }
+
+    @Test
+    @DisplayName("exists 命中时不缓存无值条目，随后的 get 从 Redis 读取")
+    void testExistsDoesNotCacheValuelessEntry() {
+        when(redis.exists("k")).thenReturn(true);
+        when(redis.getRawWithTtl("k")).thenReturn(new RedisCacheService.RawValue("v", 30_000));
+
+        assertTrue(cache.exists("k"));
+        assertNull(cache.cached("k"));
+
+        assertEquals("v", cache.get("k", String.class));
+        verify(redis).getRawWithTtl("k");
+        assertEquals("v", cache.cached("k").value());
+    }
+
+    @Test
+    @DisplayName("exists 未命中时短暂负缓存")
+    void testExistsCachesAbsence() {
+        when(redis.exists("missing")).thenReturn(false);
+
+        assertFalse(cache.exists("missing"));
+        assertFalse(cache.exists("missing"));
+
+        verify(redis, times(1)).exists("missing");
+        assertTrue(cache.cached("missing").absent());
+    }
+
+    @Test
+    @DisplayName("multiGet 回填 L1 时使用 Redis 剩余 TTL")
+    void testMultiGetBackfillUsesRedisTtl() {
+        when(redis.multiGetRawWithTtl(List.of("a", "b", "c"))).thenReturn(Map.of(
+                "a", new RedisCacheService.RawValue("va", 500),
+                "b", new RedisCacheService.RawValue("vb", -1)));
+
+        Map<String, String> result = cache.multiGet(List.of("a", "b", "c"), String.class);
+
+        assertEquals(Map.of("a", "va", "b", "vb"), result);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), cache.cached("a").ttlNanos());
+        // 未设置过期时间的键使用 L1 默认 TTL
+        assertEquals(TimeUnit.SECONDS.toNanos(60), cache.cached("b").ttlNanos());
+        assertNull(cache.cached("c"));
+    }
+}
@@ -0,0 +1,43 @@
+package com.easystation.common.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 内存版限流计数存储，可模拟每次调用的网络往返延迟，供单元测试和基准测试使用
+ */
+class InMemoryRateLimitStore implements RateLimitStore {
+
+    final Map<String, Long> counters = new ConcurrentHashMap<>();
+    final AtomicInteger roundTrips = new AtomicInteger();
+    private final long roundTripNanos;
+
+    InMemoryRateLimitStore(long roundTripMicros) {
+        this.roundTripNanos = TimeUnit.MICROSECONDS.toNanos(roundTripMicros);
+    }
+
+    void roundTrip() {
+        roundTrips.incrementAndGet();
+        if (roundTripNanos > 0) {
+            LockSupport.parkNanos(roundTripNanos);
+        }
+    }
+
+    @Override
+    public synchronized Result acquire(String currentKey, String previousKey, int maxRequests, double previousWeight,
+                                       int permits, long ttlMillis, boolean force) {
+        roundTrip();
+        long current = counters.getOrDefault(currentKey, 0L);
+        long previous = counters.getOrDefault(previousKey, 0L);
+        double estimate = previous * previousWeight + current;
+        if (!force && estimate + permits > maxRequests) {
+            return new Result(false, (long) Math.floor(estimate));
+        }
+        current += permits;
+        counters.put(currentKey, current);
+        return new Result(true, (long) Math.floor(previous * previousWeight + current));
+    }
+}
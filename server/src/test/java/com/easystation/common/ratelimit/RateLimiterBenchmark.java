@@ -0,0 +1,96 @@
+package com.easystation.common.ratelimit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 限流算法吞吐量基准测试
+ *
+ * 以内存存储模拟 Redis 往返延迟（roundTripMicros），对比：
+ * legacy - 原实现的 GET + SET + EXPIRE 三次往返；
+ * slidingWindow - Lua 脚本单次往返；
+ * localBucket - 本地令牌桶预判 + 批量同步。
+ *
+ * 运行：mvn -Pbenchmark test-compile exec:java -Dexec.classpathScope=test
+ *      -Dexec.mainClass=com.easystation.common.ratelimit.RateLimiterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(8)
+public class RateLimiterBenchmark {
+
+    private static final String KEY = "ratelimit:bench:API:global";
+    private static final int MAX_REQUESTS = Integer.MAX_VALUE;
+    private static final int WINDOW_SECONDS = 60;
+
+    @Param({"0", "200"})
+    long roundTripMicros;
+
+    private InMemoryRateLimitStore store;
+    private SlidingWindowRateLimiter slidingWindow;
+    private SlidingWindowRateLimiter localBucket;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new InMemoryRateLimitStore(roundTripMicros);
+        slidingWindow = new SlidingWindowRateLimiter();
+        slidingWindow.store = store;
+        localBucket = new SlidingWindowRateLimiter();
+        localBucket.store = store;
+        localBucket.localEnabled = true;
+        localBucket.syncBatch = 50;
+        localBucket.syncIntervalMs = 200;
+    }
+
+    /**
+     * 原实现：GET、SET、首次 EXPIRE 各一次往返，且读改写之间无原子性
+     */
+    @Benchmark
+    public boolean legacy() {
+        store.roundTrip();
+        Long current = store.counters.get(KEY);
+        long count = current != null ? current + 1 : 1;
+        store.roundTrip();
+        store.counters.put(KEY, count);
+        if (count == 1) {
+            store.roundTrip();
+        }
+        return count <= MAX_REQUESTS;
+    }
+
+    @Benchmark
+    public boolean slidingWindow() {
+        return slidingWindow.tryAcquire(KEY, MAX_REQUESTS, WINDOW_SECONDS);
+    }
+
+    @Benchmark
+    public boolean localBucket() {
+        return localBucket.tryAcquire(KEY, MAX_REQUESTS, WINDOW_SECONDS);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RateLimiterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,69 @@
+package com.easystation.common.ratelimit;
+
+import io.quarkus.redis.datasource.RedisDataSource;
+import io.vertx.mutiny.redis.client.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RedisRateLimitStoreTest {
+
+    private RedisDataSource redis;
+    private RedisRateLimitStore store;
+    private Response response;
+
+    @BeforeEach
+    void setUp() {
+        redis = mock(RedisDataSource.class);
+        store = new RedisRateLimitStore();
+        store.redisDataSource = redis;
+
+        Response allowed = mock(Response.class);
+        when(allowed.toLong()).thenReturn(1L);
+        Response count = mock(Response.class);
+        when(count.toLong()).thenReturn(3L);
+        response = mock(Response.class);
+        when(response.get(0)).thenReturn(allowed);
+        when(response.get(1)).thenReturn(count);
+    }
+
+    @Test
+    @DisplayName("脚本已缓存时只发送摘要")
+    void testUsesEvalSha() {
+        when(redis.execute(eq("EVALSHA"), any(String[].class))).thenReturn(response);
+
+        RateLimitStore.Result result = store.acquire("cur", "prev", 10, 0.5, 1, 60000, false);
+
+        assertTrue(result.allowed());
+        assertEquals(3L, result.estimate());
+        verify(redis).execute(eq("EVALSHA"), any(String[].class));
+        verify(redis, never()).execute(eq("EVAL"), any(String[].class));
+    }
+
+    @Test
+    @DisplayName("NOSCRIPT 时改用 EVAL 发送脚本全文")
+    void testFallsBackToEvalOnNoScript() {
+        when(redis.execute(eq("EVALSHA"), any(String[].class)))
+                .thenThrow(new RuntimeException(new IllegalStateException("NOSCRIPT No matching script")));
+        when(redis.execute(eq("EVAL"), any(String[].class))).thenReturn(response);
+
+        RateLimitStore.Result result = store.acquire("cur", "prev", 10, 0.5, 1, 60000, false);
+
+        assertTrue(result.allowed());
+        verify(redis).execute(eq("EVAL"), any(String[].class));
+    }
+
+    @Test
+    @DisplayName("其他 Redis 错误直接抛出")
+    void testOtherErrorsPropagate() {
+        when(redis.execute(eq("EVALSHA"), any(String[].class))).thenThrow(new IllegalStateException("ERR timeout"));
+
+        assertThrows(IllegalStateException.class, () -> store.acquire("cur", "prev", 10, 0.5, 1, 60000, false));
+        verify(redis, never()).execute(eq("EVAL"), any(String[].class));
+    }
+}
@@ -0,0 +1,63 @@
+package com.easystation.common.ratelimit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowRateLimiterTest {
+
+    private SlidingWindowRateLimiter limiter(InMemoryRateLimitStore store, boolean local) {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter();
+        limiter.store = store;
+        limiter.localEnabled = local;
+        limiter.syncBatch = 10;
+        limiter.syncIntervalMs = 60_000;
+        return limiter;
+    }
+
+    @Test
+    @DisplayName("每次请求只访问一次存储，超限请求不计数")
+    void testSingleRoundTripPerRequest() {
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore(0);
+        SlidingWindowRateLimiter limiter = limiter(store, false);
+
+        int allowed = 0;
+        for (int i = 0; i < 15; i++) {
+            if (limiter.tryAcquire("k", 10, 3600)) {
+                allowed++;
+            }
+        }
+
+        assertEquals(10, allowed);
+        assertEquals(15, store.roundTrips.get());
+        assertEquals(10L, store.counters.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    @DisplayName("本地令牌桶批量同步且不超过上限")
+    void testLocalBucketBatchesSync() {
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore(0);
+        SlidingWindowRateLimiter limiter = limiter(store, true);
+
+        int allowed = 0;
+        for (int i = 0; i < 200; i++) {
+            if (limiter.tryAcquire("k", 100, 3600)) {
+                allowed++;
+            }
+        }
+
+        assertEquals(100, allowed);
+        assertTrue(store.roundTrips.get() < 100, "requests should be synced in batches");
+    }
+
+    @Test
+    @DisplayName("存储异常时放行请求")
+    void testFailOpen() {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter();
+        limiter.store = (currentKey, previousKey, maxRequests, previousWeight, permits, ttlMillis, force) -> {
+            throw new IllegalStateException("redis down");
+        };
+        assertTrue(limiter.tryAcquire("k", 1, 60));
+    }
+}
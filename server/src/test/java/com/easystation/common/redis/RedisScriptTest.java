@@ -0,0 +1,56 @@
+package com.easystation.common.redis;
+
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Response;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class RedisScriptTest {
+
+    private final RedisScript script = new RedisScript("return 1");
+    private final ReactiveRedisDataSource redis = mock(ReactiveRedisDataSource.class);
+    private final Response response = mock(Response.class);
+
+    @Test
+    @DisplayName("摘要为脚本全文的 SHA-1")
+    void testSha() {
+        assertEquals("e0e1f9fabfc9d4800c877a703b823ac0578ff8db", script.sha());
+    }
+
+    @Test
+    @DisplayName("异步执行时脚本已缓存只发送摘要")
+    void testAsyncUsesEvalSha() {
+        when(redis.execute(eq("EVALSHA"), any(String[].class))).thenReturn(Uni.createFrom().item(response));
+
+        assertSame(response, script.execute(redis, "1", "k").await().indefinitely());
+        verify(redis).execute("EVALSHA", script.sha(), "1", "k");
+        verify(redis, never()).execute(eq("EVAL"), any(String[].class));
+    }
+
+    @Test
+    @DisplayName("异步执行时 NOSCRIPT 改用 EVAL 发送全文")
+    void testAsyncFallsBackToEvalOnNoScript() {
+        when(redis.execute(eq("EVALSHA"), any(String[].class)))
+                .thenReturn(Uni.createFrom().failure(new IllegalStateException("NOSCRIPT No matching script")));
+        when(redis.execute(eq("EVAL"), any(String[].class))).thenReturn(Uni.createFrom().item(response));
+
+        assertSame(response, script.execute(redis, "1", "k").await().indefinitely());
+        verify(redis).execute("EVAL", "return 1", "1", "k");
+    }
+
+    @Test
+    @DisplayName("异步执行时其他错误直接失败")
+    void testAsyncOtherErrorsPropagate() {
+        when(redis.execute(eq("EVALSHA"), any(String[].class)))
+                .thenReturn(Uni.createFrom().failure(new IllegalStateException("ERR timeout")));
+
+        assertThrows(IllegalStateException.class, () -> script.execute(redis, "1", "k").await().indefinitely());
+        verify(redis, never()).execute(eq("EVAL"), any(String[].class));
+    }
+}
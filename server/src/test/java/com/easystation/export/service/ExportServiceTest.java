@@ -1,5 +1,8 @@
 package com.easystation.export.service;
 
+import com.easystation.audit.domain.AuditLog;
+import com.easystation.audit.enums.AuditAction;
+import com.easystation.audit.enums.AuditResult;
 import com.easystation.export.domain.ExportTask;
 import com.easystation.export.dto.ExportRequest;
 import com.easystation.export.dto.ExportTaskDTO;
@@ -7,12 +10,23 @@ import com.easystation.export.dto.ExportTaskListResponse;
 import com.easystation.export.enums.ExportStatus;
 import com.easystation.export.enums.ExportType;
 import com.easystation.export.repository.ExportTaskRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.test.junit.QuarkusTest;
 import jakarta.inject.Inject;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -25,6 +39,12 @@ class ExportServiceTest {
     @Inject
     ExportTaskRepository exportTaskRepository;
 
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
     @Test
     void testCreateExportTask() {
         UUID userId = UUID.randomUUID();
@@ -96,4 +116,125 @@ class ExportServiceTest {
         ExportTaskDTO taskDTO = exportService.getTaskStatus(nonExistentId);
         assertNull(taskDTO);
     }
+
+    @Test
+    void testProcessExportStreamsRowsInChunks() throws Exception {
+        LocalDateTime base = LocalDateTime.of(2016, 2, 1, 0, 0);
+        String username = "export-" + UUID.randomUUID();
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(createAuditLog(username, base.plusMinutes(i)));
+        }
+        ExportService service = newService(2, 50);
+        // Two rows per chunk with a limit of four: two full chunks, newest first
+        UUID taskId = createTask(new ExportRequest(ExportType.CSV.name(), "AUDIT_LOG",
+                base, base.plusHours(1), null, null, null, null, 4, 0));
+        try {
+            service.processExport(taskId);
+
+            ExportTask task = QuarkusTransaction.requiringNew().call(() -> exportTaskRepository.findById(taskId));
+            assertEquals(ExportStatus.COMPLETED.name(), task.status);
+            assertEquals(4, task.totalRecords);
+            String[] lines = Files.readString(Path.of(task.filePath), StandardCharsets.UTF_8)
+                    .replace("\uFEFF", "").split("\r\n");
+            assertEquals(5, lines.length);
+            for (int i = 0; i < 4; i++) {
+                assertTrue(lines[i + 1].startsWith(ids.get(4 - i) + "," + username + ","));
+            }
+            Files.deleteIfExists(Path.of(task.filePath));
+        } finally {
+            service.shutdown();
+            QuarkusTransaction.requiringNew().run(() -> AuditLog.delete("username", username));
+        }
+    }
+
+    @Test
+    void testTaskFailsWhenQueueIsFull() throws Exception {
+        ExportService service = newService(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // One task occupies the only worker and another the only queue slot
+            for (int i = 0; i < 2; i++) {
+                service.executor.execute(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            UUID taskId = createTask(new ExportRequest(ExportType.CSV.name(), "AUDIT_LOG",
+                    null, null, null, null, null, null, 10, 0));
+
+            service.processExportAsync(taskId);
+
+            ExportTask task = awaitFinished(taskId);
+            assertEquals(ExportStatus.FAILED.name(), task.status);
+            assertEquals("Export queue is full, please retry later", task.errorMessage);
+            assertNotNull(task.completedAt);
+        } finally {
+            release.countDown();
+            service.shutdown();
+        }
+    }
+
+    private ExportService newService(int workers, int queueSize) {
+        ExportService service = new ExportService();
+        service.exportTaskRepository = exportTaskRepository;
+        service.objectMapper = objectMapper;
+        service.transactionRegistry = transactionRegistry;
+        service.workers = workers;
+        service.queueSize = queueSize;
+        service.maxRows = 1000;
+        service.fetchSize = 2;
+        service.excelWindowSize = 200;
+        service.chunkTimeout = Duration.ofSeconds(30);
+        service.init();
+        return service;
+    }
+
+    private UUID createTask(ExportRequest request) throws Exception {
+        String queryParams = objectMapper.writeValueAsString(request);
+        return QuarkusTransaction.requiringNew().call(() -> {
+            ExportTask task = new ExportTask();
+            task.userId = UUID.randomUUID();
+            task.exportType = request.exportType();
+            task.dataType = request.dataType();
+            task.status = ExportStatus.PENDING.name();
+            task.createdAt = LocalDateTime.now();
+            task.queryParams = queryParams;
+            exportTaskRepository.persist(task);
+            return task.id;
+        });
+    }
+
+    private ExportTask awaitFinished(UUID taskId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            ExportTask task = QuarkusTransaction.requiringNew().call(() -> exportTaskRepository.findById(taskId));
+            if (!ExportStatus.PENDING.name().equals(task.status)) {
+                return task;
+            }
+            Thread.sleep(20);
+        }
+        return fail("Export task " + taskId + " is still pending");
+    }
+
+    private static UUID createAuditLog(String username, LocalDateTime createdAt) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            AuditLog log = new AuditLog();
+            log.username = username;
+            log.action = AuditAction.LOGIN;
+            log.result = AuditResult.SUCCESS;
+            log.description = "export test";
+            log.persistAndFlush();
+            // createdAt is set by @CreationTimestamp, so it is overwritten in the table
+            AuditLog.getEntityManager()
+                    .createNativeQuery("update audit_log set created_at = ?1 where id = ?2")
+                    .setParameter(1, createdAt)
+                    .setParameter(2, log.id)
+                    .executeUpdate();
+            return log.id;
+        });
+    }
 }
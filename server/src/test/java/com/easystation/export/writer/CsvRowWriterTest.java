@@ -0,0 +1,26 @@
+package com.easystation.export.writer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CsvRowWriterTest {
+
+    @Test
+    void testQuotesOnlyCellsThatNeedIt() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CsvRowWriter writer = new CsvRowWriter(out)) {
+            writer.writeHeader(new String[]{"ID", "描述", "时长"});
+            writer.writeRow(new Object[]{"1", "a,b", 42L});
+            writer.writeRow(new Object[]{"2", "say \"hi\"\nbye", null});
+        }
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertEquals("\uFEFFID,描述,时长\r\n"
+                + "1,\"a,b\",42\r\n"
+                + "2,\"say \"\"hi\"\"\nbye\",\r\n", csv);
+    }
+}
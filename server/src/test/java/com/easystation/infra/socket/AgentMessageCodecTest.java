@@ -0,0 +1,103 @@
+package com.easystation.infra.socket;
+
+import com.easystation.agent.dto.ExecResultContent;
+import com.easystation.agent.dto.HeartbeatRequest;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AgentMessageCodecTest {
+
+    private final UUID hostId = UUID.randomUUID();
+    private final List<Object[]> received = new ArrayList<>();
+    private AgentMessageCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        codec = new AgentMessageCodec();
+        // Same leniency as the Quarkus-managed mapper
+        codec.objectMapper = new ObjectMapper().findAndRegisterModules()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        codec.init();
+        codec.register("HEARTBEAT", HeartbeatRequest.class,
+                (host, requestId, content, raw) -> received.add(new Object[] {requestId, content}));
+        codec.register("EXEC_RESULT", ExecResultContent.class,
+                (host, requestId, content, raw) -> received.add(new Object[] {requestId, content}));
+        codec.register("LOG", String.class,
+                (host, requestId, content, raw) -> received.add(new Object[] {requestId, content}));
+    }
+
+    @Test
+    @DisplayName("按类型直接绑定 content 到记录")
+    void testBindsContentByType() {
+        assertTrue(codec.dispatch(hostId,
+                "{\"type\":\"EXEC_RESULT\",\"requestId\":\"r1\",\"content\":{\"status\":\"SUCCESS\",\"exitCode\":0,\"durationMs\":12,\"extra\":1}}"));
+
+        assertEquals(1, received.size());
+        assertEquals("r1", received.get(0)[0]);
+        assertEquals(new ExecResultContent("SUCCESS", 0, 12L, null), received.get(0)[1]);
+    }
+
+    @Test
+    @DisplayName("content 在 type 之前时先缓冲再绑定")
+    void testContentBeforeType() {
+        assertTrue(codec.dispatch(hostId, "{\"content\":{\"osType\":\"linux\"},\"type\":\"HEARTBEAT\"}"));
+
+        HeartbeatRequest heartbeat = (HeartbeatRequest) received.get(0)[1];
+        assertEquals("linux", heartbeat.osType());
+        assertNull(received.get(0)[0]);
+    }
+
+    @Test
+    @DisplayName("LOG 内容与 asText 一致")
+    void testLogContentAsText() {
+        assertTrue(codec.dispatch(hostId, "{\"type\":\"LOG\",\"content\":\"hello\"}"));
+        assertTrue(codec.dispatch(hostId, "{\"type\":\"LOG\",\"content\":{\"nested\":true},\"requestId\":\"r2\"}"));
+
+        assertEquals("hello", received.get(0)[1]);
+        assertEquals("", received.get(1)[1]);
+        assertEquals("r2", received.get(1)[0]);
+    }
+
+    @Test
+    @DisplayName("无法绑定的 content 以 null 分发")
+    void testUnbindableContent() {
+        assertTrue(codec.dispatch(hostId, "{\"type\":\"HEARTBEAT\",\"content\":\"not-an-object\"}"));
+
+        assertEquals(1, received.size());
+        assertNull(received.get(0)[1]);
+    }
+
+    @Test
+    @DisplayName("非 JSON 帧和未注册类型交由调用方处理")
+    void testUnhandledFrames() {
+        assertFalse(codec.dispatch(hostId, "HEARTBEAT"));
+        assertFalse(codec.dispatch(hostId, "{\"type\":\"UNKNOWN\",\"content\":{}}"));
+        assertFalse(codec.dispatch(hostId, "{\"content\":{}}"));
+        assertFalse(codec.dispatch(hostId, "{\"type\":\"LOG\",\"content\":"));
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    @DisplayName("编码结果携带类型和请求 ID")
+    void testEncode() throws Exception {
+        AgentMessageCodec.Outbound outbound = codec.encode("EXEC", "r3", Map.of("script", "echo \"hi\""));
+
+        assertEquals("EXEC", outbound.type());
+        assertEquals("r3", outbound.requestId());
+        JsonNode root = codec.objectMapper.readTree(outbound.json());
+        assertEquals("EXEC", root.path("type").asText());
+        assertEquals("r3", root.path("requestId").asText());
+        assertEquals("echo \"hi\"", root.path("content").path("script").asText());
+    }
+}
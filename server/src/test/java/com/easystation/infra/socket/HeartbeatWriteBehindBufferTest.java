@@ -0,0 +1,71 @@
+package com.easystation.infra.socket;
+
+import com.easystation.infra.domain.enums.HostStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeartbeatWriteBehindBufferTest {
+
+    private final UUID hostId = UUID.randomUUID();
+    private SimpleMeterRegistry registry;
+    private HeartbeatWriteBehindBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        buffer = new HeartbeatWriteBehindBuffer();
+        buffer.registry = registry;
+        buffer.enabled = true;
+        buffer.init();
+    }
+
+    @Test
+    @DisplayName("状态未提交前心跳必须直写")
+    void testWritesThroughUntilStatusCommitted() {
+        assertFalse(buffer.offer(hostId, HostStatus.ONLINE, "linux"));
+        assertNull(buffer.pending(hostId));
+        assertEquals(1.0, registry.get("esa.heartbeat.buffer.write-through.total").counter().count());
+    }
+
+    @Test
+    @DisplayName("同一主机的心跳合并为一条，保留最近一次上报的系统类型")
+    void testCoalescesHeartbeats() {
+        buffer.statusPersisted(hostId, HostStatus.ONLINE);
+
+        assertTrue(buffer.offer(hostId, HostStatus.ONLINE, "linux"));
+        assertTrue(buffer.offer(hostId, HostStatus.ONLINE, null));
+        assertTrue(buffer.offer(hostId, HostStatus.ONLINE, null));
+
+        assertEquals(1.0, registry.get("esa.heartbeat.buffer.pending").gauge().value());
+        assertEquals(3.0, registry.get("esa.heartbeat.buffer.coalesced.total").counter().count());
+        assertEquals("linux", buffer.pending(hostId).osType());
+        assertEquals(HostStatus.ONLINE, buffer.pending(hostId).status());
+    }
+
+    @Test
+    @DisplayName("状态变化后丢弃旧状态的缓冲心跳并改为直写")
+    void testStatusChangeDropsBufferedHeartbeat() {
+        buffer.statusPersisted(hostId, HostStatus.ONLINE);
+        assertTrue(buffer.offer(hostId, HostStatus.ONLINE, null));
+
+        buffer.statusPersisted(hostId, HostStatus.OFFLINE);
+
+        assertNull(buffer.pending(hostId));
+        assertFalse(buffer.offer(hostId, HostStatus.ONLINE, null));
+    }
+
+    @Test
+    @DisplayName("关闭缓冲时全部直写")
+    void testDisabledBufferWritesThrough() {
+        buffer.enabled = false;
+        buffer.statusPersisted(hostId, HostStatus.ONLINE);
+
+        assertFalse(buffer.offer(hostId, HostStatus.ONLINE, null));
+    }
+}
@@ -0,0 +1,102 @@
+package com.easystation.infra.socket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingRequestsTest {
+
+    private final UUID host = UUID.randomUUID();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private PendingRequests requests;
+
+    @BeforeEach
+    void setUp() {
+        requests = new PendingRequests();
+        requests.registry = registry;
+        requests.maxPending = 2;
+        requests.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        requests.shutdown();
+    }
+
+    @Test
+    @DisplayName("回复完成对应请求并移除条目，迟到的回复被忽略")
+    void testReplyCompletesRequest() throws Exception {
+        CompletableFuture<String> future = requests.register("r1", host, String.class, Duration.ofSeconds(10), null);
+
+        assertTrue(requests.complete("r1", host, "ok"));
+
+        assertEquals("ok", future.get(1, TimeUnit.SECONDS));
+        assertFalse(requests.isPending("r1"));
+        assertFalse(requests.complete("r1", host, "late"));
+        assertEquals(1.0, registry.get("esa.agent.requests.completed.total").counter().count());
+    }
+
+    @Test
+    @DisplayName("其他主机或类型不符的回复不完成请求")
+    void testRejectsMismatchedReply() {
+        CompletableFuture<String> future = requests.register("r1", host, String.class, Duration.ofSeconds(10), null);
+
+        assertFalse(requests.complete("r1", UUID.randomUUID(), "ok"));
+        assertFalse(requests.complete("r1", host, 42));
+
+        assertFalse(future.isDone());
+        assertTrue(requests.isPending("r1"));
+    }
+
+    @Test
+    @DisplayName("截止时间到达时以超时失败并运行超时回调")
+    void testDeadlineTimesOut() throws Exception {
+        CountDownLatch onTimeout = new CountDownLatch(1);
+        CompletableFuture<String> future = requests.register("r1", host, String.class, Duration.ofMillis(50),
+                onTimeout::countDown);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        assertTrue(onTimeout.await(5, TimeUnit.SECONDS));
+        assertFalse(requests.isPending("r1"));
+        assertFalse(requests.complete("r1", host, "late"));
+        assertEquals(1.0, registry.get("esa.agent.requests.timeout.total").counter().count());
+    }
+
+    @Test
+    @DisplayName("发送失败时请求以该异常结束")
+    void testFail() {
+        CompletableFuture<String> future = requests.register("r1", host, String.class, Duration.ofSeconds(10), null);
+
+        requests.fail("r1", new IllegalStateException("send failed"));
+
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals(0, requests.size());
+    }
+
+    @Test
+    @DisplayName("重复的请求 ID 和超出上限的注册被拒绝")
+    void testRejectsDuplicateAndOverflow() {
+        requests.register("r1", host, String.class, Duration.ofSeconds(10), null);
+
+        assertThrows(IllegalStateException.class,
+                () -> requests.register("r1", host, String.class, Duration.ofSeconds(10), null));
+
+        requests.register("r2", host, String.class, Duration.ofSeconds(10), null);
+        assertThrows(IllegalStateException.class,
+                () -> requests.register("r3", host, String.class, Duration.ofSeconds(10), null));
+    }
+}